@@ -0,0 +1,269 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.admin.cluster.health;
+
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.ClusterAdminClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.newConcurrentMap;
+
+/**
+ * Resolves cluster health requests that wait for a condition (<tt>wait_for_status</tt>,
+ * <tt>wait_for_nodes</tt>, <tt>wait_for_active_shards</tt>, <tt>wait_for_relocating_shards</tt>)
+ * on the client, instead of each request waiting on the master. All waiting requests on the same
+ * indices share one poller that fetches the plain health every <tt>pollInterval</tt>, and each
+ * request is answered as soon as a health matches its condition, or with a timed out health
+ * after its timeout.
+ */
+public class ClusterHealthPoller {
+
+    private final ESLogger logger;
+
+    private final ClusterAdminClient client;
+
+    private final ThreadPool threadPool;
+
+    private final TimeValue pollInterval;
+
+    private final ConcurrentMap<String, Poll> polls = newConcurrentMap();
+
+    /**
+     * @param client the client to fetch the plain health with
+     */
+    public ClusterHealthPoller(ClusterAdminClient client, TimeValue pollInterval) {
+        this.logger = Loggers.getLogger(getClass(), client.settings());
+        this.client = client;
+        this.threadPool = client.threadPool();
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Does the request wait for a condition?
+     */
+    public static boolean waits(ClusterHealthRequest request) {
+        return request.waitForStatus() != null || request.waitForRelocatingShards() != -1
+                || request.waitForActiveShards() != -1 || Strings.hasText(request.waitForNodes());
+    }
+
+    public void waitFor(ClusterHealthRequest request, ActionListener<ClusterHealthResponse> listener) {
+        String waitForNodes = request.waitForNodes();
+        if (Strings.hasText(waitForNodes)) {
+            // checked up front, a poll failing on it would never answer its waiters
+            try {
+                matchesNodes(waitForNodes, 0);
+            } catch (RuntimeException e) {
+                listener.onFailure(new ElasticSearchIllegalArgumentException("invalid wait_for_nodes [" + waitForNodes + "]", e));
+                return;
+            }
+        }
+        String[] indices = request.indices() == null ? Strings.EMPTY_ARRAY : request.indices().clone();
+        Arrays.sort(indices);
+        String key = Strings.arrayToCommaDelimitedString(indices);
+        Waiter waiter = new Waiter(request, listener);
+        while (true) {
+            Poll poll = polls.get(key);
+            if (poll == null) {
+                poll = new Poll(key, indices);
+                Poll existing = polls.putIfAbsent(key, poll);
+                if (existing != null) {
+                    poll = existing;
+                }
+            }
+            if (poll.add(waiter)) {
+                return;
+            }
+            // the poll just finished, start over
+            polls.remove(key, poll);
+        }
+    }
+
+    static boolean matches(ClusterHealthRequest request, ClusterHealthResponse response) {
+        if (request.waitForStatus() != null && response.status().value() > request.waitForStatus().value()) {
+            return false;
+        }
+        if (request.waitForRelocatingShards() != -1 && response.relocatingShards() > request.waitForRelocatingShards()) {
+            return false;
+        }
+        if (request.waitForActiveShards() != -1 && response.activeShards() < request.waitForActiveShards()) {
+            return false;
+        }
+        String waitForNodes = request.waitForNodes();
+        if (Strings.hasText(waitForNodes)) {
+            return matchesNodes(waitForNodes, response.numberOfNodes());
+        }
+        return true;
+    }
+
+    private static boolean matchesNodes(String waitForNodes, int nodes) {
+        if (waitForNodes.startsWith(">=")) {
+            return nodes >= Integer.parseInt(waitForNodes.substring(2));
+        } else if (waitForNodes.startsWith("ge(")) {
+            return nodes >= Integer.parseInt(waitForNodes.substring(3, waitForNodes.length() - 1));
+        } else if (waitForNodes.startsWith("<=")) {
+            return nodes <= Integer.parseInt(waitForNodes.substring(2));
+        } else if (waitForNodes.startsWith("le(")) {
+            return nodes <= Integer.parseInt(waitForNodes.substring(3, waitForNodes.length() - 1));
+        } else if (waitForNodes.startsWith(">")) {
+            return nodes > Integer.parseInt(waitForNodes.substring(1));
+        } else if (waitForNodes.startsWith("gt(")) {
+            return nodes > Integer.parseInt(waitForNodes.substring(3, waitForNodes.length() - 1));
+        } else if (waitForNodes.startsWith("<")) {
+            return nodes < Integer.parseInt(waitForNodes.substring(1));
+        } else if (waitForNodes.startsWith("lt(")) {
+            return nodes < Integer.parseInt(waitForNodes.substring(3, waitForNodes.length() - 1));
+        }
+        return nodes == Integer.parseInt(waitForNodes);
+    }
+
+    /**
+     * A copy of the shared response, marked as timed out.
+     */
+    static ClusterHealthResponse timedOut(ClusterHealthResponse response) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        response.writeTo(out);
+        ClusterHealthResponse copy = new ClusterHealthResponse();
+        copy.readFrom(new BytesStreamInput(out.bytes()));
+        copy.timedOut = true;
+        return copy;
+    }
+
+    private static class Waiter {
+
+        final ClusterHealthRequest request;
+
+        final ActionListener<ClusterHealthResponse> listener;
+
+        final long deadline;
+
+        Waiter(ClusterHealthRequest request, ActionListener<ClusterHealthResponse> listener) {
+            this.request = request;
+            this.listener = listener;
+            this.deadline = System.currentTimeMillis() + request.timeout().millis();
+        }
+    }
+
+    private class Poll implements Runnable {
+
+        private final String key;
+
+        private final String[] indices;
+
+        private final List<Waiter> waiters = new ArrayList<Waiter>();
+
+        private boolean started;
+
+        private boolean finished;
+
+        Poll(String key, String[] indices) {
+            this.key = key;
+            this.indices = indices;
+        }
+
+        /**
+         * Adds the waiter, returns <tt>false</tt> if this poll already finished.
+         */
+        boolean add(Waiter waiter) {
+            boolean start;
+            synchronized (this) {
+                if (finished) {
+                    return false;
+                }
+                waiters.add(waiter);
+                start = !started;
+                started = true;
+            }
+            if (start) {
+                threadPool.generic().execute(this);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            client.health(new ClusterHealthRequest(indices), new ActionListener<ClusterHealthResponse>() {
+                @Override
+                public void onResponse(ClusterHealthResponse response) {
+                    resolve(response, null);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    logger.debug("failed to poll cluster health for [{}]", e, key);
+                    resolve(null, e);
+                }
+            });
+        }
+
+        private void resolve(ClusterHealthResponse response, Throwable failure) {
+            long now = System.currentTimeMillis();
+            List<Waiter> matched = new ArrayList<Waiter>();
+            List<Waiter> expired = new ArrayList<Waiter>();
+            boolean done;
+            synchronized (this) {
+                for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                    Waiter waiter = it.next();
+                    if (response != null && matches(waiter.request, response)) {
+                        matched.add(waiter);
+                        it.remove();
+                    } else if (now >= waiter.deadline) {
+                        expired.add(waiter);
+                        it.remove();
+                    }
+                }
+                done = waiters.isEmpty();
+                finished = done;
+            }
+            if (done) {
+                polls.remove(key, this);
+            } else {
+                threadPool.schedule(pollInterval, ThreadPool.Names.GENERIC, this);
+            }
+            for (Waiter waiter : matched) {
+                waiter.listener.onResponse(response);
+            }
+            for (Waiter waiter : expired) {
+                if (response == null) {
+                    waiter.listener.onFailure(failure);
+                    continue;
+                }
+                try {
+                    waiter.listener.onResponse(timedOut(response));
+                } catch (Exception e) {
+                    waiter.listener.onFailure(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.client.support;
+
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.admin.cluster.ClusterAction;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthAction;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthPoller;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateAction;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateRequest;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateResponse;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.action.support.RequestCoalescer;
+import org.elasticsearch.client.ClusterAdminClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.Arrays;
+
+/**
+ * A cluster admin client that shares cluster health and cluster state requests between callers,
+ * for applications where many components poll the cluster on their own.
+ * <p/>
+ * Identical health and state requests are sent once while in flight, and answered from the last
+ * response for <tt>cluster.coalesce.ttl</tt> (defaults to <tt>1s</tt>, at most
+ * <tt>cluster.coalesce.size</tt> distinct requests). Health requests waiting for a condition are
+ * resolved by a {@link ClusterHealthPoller} polling every <tt>cluster.health.poll_interval</tt>
+ * (defaults to <tt>500ms</tt>), instead of holding a request open on the master for each caller.
+ * All other actions are passed to the wrapped client. Shared responses must not be modified.
+ */
+public class CoalescingClusterAdminClient extends AbstractClusterAdminClient {
+
+    private final ClusterAdminClient client;
+
+    private final RequestCoalescer<ClusterHealthResponse> health;
+
+    private final RequestCoalescer<ClusterStateResponse> state;
+
+    private final ClusterHealthPoller healthPoller;
+
+    public CoalescingClusterAdminClient(ClusterAdminClient client) {
+        this(client, client.settings());
+    }
+
+    public CoalescingClusterAdminClient(ClusterAdminClient client, Settings settings) {
+        this.client = client;
+        TimeValue ttl = settings.getAsTime("cluster.coalesce.ttl", TimeValue.timeValueSeconds(1));
+        long size = settings.getAsLong("cluster.coalesce.size", 100L);
+        this.health = new RequestCoalescer<ClusterHealthResponse>(ttl, size);
+        this.state = new RequestCoalescer<ClusterStateResponse>(ttl, size);
+        this.healthPoller = new ClusterHealthPoller(this, settings.getAsTime("cluster.health.poll_interval", TimeValue.timeValueMillis(500)));
+    }
+
+    public Settings settings() {
+        return client.settings();
+    }
+
+    public ThreadPool threadPool() {
+        return client.threadPool();
+    }
+
+    public void close() {
+        health.clear();
+        state.clear();
+        client.close();
+    }
+
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>>
+            ActionFuture<Response> execute(ClusterAction<Request, Response, RequestBuilder> action, Request request) {
+        PlainActionFuture<Response> future = PlainActionFuture.newFuture();
+        execute(action, request, future);
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>>
+            void execute(ClusterAction<Request, Response, RequestBuilder> action, Request request, ActionListener<Response> listener) {
+        if (action == ClusterHealthAction.INSTANCE) {
+            health((ClusterHealthRequest) request, (ActionListener<ClusterHealthResponse>) listener);
+        } else if (action == ClusterStateAction.INSTANCE) {
+            final ClusterStateRequest stateRequest = (ClusterStateRequest) request;
+            state.execute(key(stateRequest), (ActionListener<ClusterStateResponse>) listener, new RequestCoalescer.Sender<ClusterStateResponse>() {
+                @Override
+                public void send(ActionListener<ClusterStateResponse> listener) {
+                    client.execute(ClusterStateAction.INSTANCE, stateRequest, listener);
+                }
+            });
+        } else {
+            client.execute(action, request, listener);
+        }
+    }
+
+    @Override
+    public void health(final ClusterHealthRequest request, ActionListener<ClusterHealthResponse> listener) {
+        if (ClusterHealthPoller.waits(request)) {
+            healthPoller.waitFor(request, listener);
+            return;
+        }
+        health.execute(key(request), listener, new RequestCoalescer.Sender<ClusterHealthResponse>() {
+            @Override
+            public void send(ActionListener<ClusterHealthResponse> listener) {
+                client.execute(ClusterHealthAction.INSTANCE, request, listener);
+            }
+        });
+    }
+
+    private static String key(ClusterHealthRequest request) {
+        // health requests have no local flag, so all remaining fields make up the key
+        StringBuilder sb = new StringBuilder();
+        sb.append(sorted(request.indices()))
+                .append('|').append(request.timeout())
+                .append('|').append(request.waitForStatus())
+                .append('|').append(request.waitForRelocatingShards())
+                .append('|').append(request.waitForActiveShards())
+                .append('|').append(request.waitForNodes())
+                .append('|').append(request.masterNodeTimeout());
+        return sb.toString();
+    }
+
+    private static String key(ClusterStateRequest request) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(request.filterRoutingTable() ? 'r' : '-')
+                .append(request.filterNodes() ? 'n' : '-')
+                .append(request.filterMetaData() ? 'm' : '-')
+                .append(request.filterBlocks() ? 'b' : '-')
+                .append(request.local() ? 'l' : '-')
+                .append('|').append(sorted(request.filteredIndices()))
+                .append('|').append(sorted(request.filteredIndexTemplates()))
+                .append('|').append(request.masterNodeTimeout());
+        return sb.toString();
+    }
+
+    static String sorted(String[] values) {
+        if (values == null || values.length == 0) {
+            return "";
+        }
+        String[] copy = values.clone();
+        Arrays.sort(copy);
+        return Strings.arrayToCommaDelimitedString(copy);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.client.support;
+
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.admin.indices.IndicesAction;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesAction;
+import org.elasticsearch.action.admin.indices.create.CreateIndexAction;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexAction;
+import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsAction;
+import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
+import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
+import org.elasticsearch.action.admin.indices.exists.types.TypesExistsAction;
+import org.elasticsearch.action.admin.indices.exists.types.TypesExistsRequest;
+import org.elasticsearch.action.admin.indices.exists.types.TypesExistsResponse;
+import org.elasticsearch.action.admin.indices.mapping.delete.DeleteMappingAction;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingAction;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.action.support.RequestCoalescer;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * An indices admin client that shares index and type existence checks between callers.
+ * <p/>
+ * Identical checks are sent once while in flight, and answered from the last response for
+ * <tt>indices.coalesce.ttl</tt> (defaults to <tt>1s</tt>, at most <tt>indices.coalesce.size</tt>
+ * distinct checks). Creating or deleting indices, mappings or aliases through this client drops
+ * the remembered answers. All other actions are passed to the wrapped client.
+ */
+public class CoalescingIndicesAdminClient extends AbstractIndicesAdminClient {
+
+    private final IndicesAdminClient client;
+
+    private final RequestCoalescer<IndicesExistsResponse> indicesExists;
+
+    private final RequestCoalescer<TypesExistsResponse> typesExists;
+
+    public CoalescingIndicesAdminClient(IndicesAdminClient client) {
+        this(client, client.settings());
+    }
+
+    public CoalescingIndicesAdminClient(IndicesAdminClient client, Settings settings) {
+        this.client = client;
+        TimeValue ttl = settings.getAsTime("indices.coalesce.ttl", TimeValue.timeValueSeconds(1));
+        long size = settings.getAsLong("indices.coalesce.size", 1000L);
+        this.indicesExists = new RequestCoalescer<IndicesExistsResponse>(ttl, size);
+        this.typesExists = new RequestCoalescer<TypesExistsResponse>(ttl, size);
+    }
+
+    public Settings settings() {
+        return client.settings();
+    }
+
+    public ThreadPool threadPool() {
+        return client.threadPool();
+    }
+
+    public void close() {
+        invalidate();
+        client.close();
+    }
+
+    /**
+     * Drops the remembered existence checks, to be called after changing indices with another client.
+     */
+    public CoalescingIndicesAdminClient invalidate() {
+        indicesExists.clear();
+        typesExists.clear();
+        return this;
+    }
+
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>>
+            ActionFuture<Response> execute(IndicesAction<Request, Response, RequestBuilder> action, Request request) {
+        PlainActionFuture<Response> future = PlainActionFuture.newFuture();
+        execute(action, request, future);
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>>
+            void execute(IndicesAction<Request, Response, RequestBuilder> action, Request request, final ActionListener<Response> listener) {
+        if (action == IndicesExistsAction.INSTANCE) {
+            final IndicesExistsRequest existsRequest = (IndicesExistsRequest) request;
+            indicesExists.execute(CoalescingClusterAdminClient.sorted(existsRequest.indices()), (ActionListener<IndicesExistsResponse>) listener,
+                    new RequestCoalescer.Sender<IndicesExistsResponse>() {
+                        @Override
+                        public void send(ActionListener<IndicesExistsResponse> listener) {
+                            client.execute(IndicesExistsAction.INSTANCE, existsRequest, listener);
+                        }
+                    });
+        } else if (action == TypesExistsAction.INSTANCE) {
+            final TypesExistsRequest existsRequest = (TypesExistsRequest) request;
+            String key = CoalescingClusterAdminClient.sorted(existsRequest.indices()) + "|" + CoalescingClusterAdminClient.sorted(existsRequest.types())
+                    + "|" + existsRequest.ignoreIndices();
+            typesExists.execute(key, (ActionListener<TypesExistsResponse>) listener, new RequestCoalescer.Sender<TypesExistsResponse>() {
+                @Override
+                public void send(ActionListener<TypesExistsResponse> listener) {
+                    client.execute(TypesExistsAction.INSTANCE, existsRequest, listener);
+                }
+            });
+        } else if (action == CreateIndexAction.INSTANCE || action == DeleteIndexAction.INSTANCE || action == PutMappingAction.INSTANCE
+                || action == DeleteMappingAction.INSTANCE || action == IndicesAliasesAction.INSTANCE) {
+            invalidate();
+            client.execute(action, request, new ActionListener<Response>() {
+                @Override
+                public void onResponse(Response response) {
+                    invalidate();
+                    listener.onResponse(response);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    invalidate();
+                    listener.onFailure(e);
+                }
+            });
+        } else {
+            client.execute(action, request, listener);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateRequest;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateResponse;
+import org.elasticsearch.client.ClusterAdminClient;
+import org.elasticsearch.cluster.block.ClusterBlocks;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A client side view of the cluster state, shared by all components that need the meta data
+ * or the routing table instead of fetching the cluster state on their own.
+ * <p/>
+ * The service polls the cluster state every <tt>cluster.state.poll_interval</tt> (defaults to
+ * <tt>1s</tt>). Each poll first asks for the state version only (a fully filtered state), and
+ * only fetches and reads the (filtered) state when the version changed. The parts of the state
+ * to fetch are configured with <tt>cluster.state.filter_routing_table</tt>,
+ * <tt>cluster.state.filter_metadata</tt>, <tt>cluster.state.filter_nodes</tt>,
+ * <tt>cluster.state.filter_blocks</tt> and <tt>cluster.state.indices</tt>, or with an explicit
+ * {@link ClusterStateRequest}.
+ * <p/>
+ * Index meta data and index routing tables that did not change are carried over from the
+ * previous state, so the {@link ClusterChangedEvent}s published to the registered
+ * {@link ClusterStateListener}s can be checked for changes by identity.
+ */
+public class ClusterStateService {
+
+    private static final ClusterState EMPTY_STATE = ClusterState.builder().version(-1).build();
+
+    private final ESLogger logger;
+
+    private final ClusterAdminClient client;
+
+    private final ThreadPool threadPool;
+
+    private final ClusterStateRequest request;
+
+    private final TimeValue pollInterval;
+
+    private final List<ClusterStateListener> listeners = new CopyOnWriteArrayList<ClusterStateListener>();
+
+    private volatile ClusterState state = EMPTY_STATE;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile Poller poller;
+
+    private volatile ScheduledFuture<?> scheduled;
+
+    public ClusterStateService(ClusterAdminClient client) {
+        this(client, client.settings());
+    }
+
+    public ClusterStateService(ClusterAdminClient client, Settings settings) {
+        this(client, new ClusterStateRequest()
+                .filterRoutingTable(settings.getAsBoolean("cluster.state.filter_routing_table", false))
+                .filterMetaData(settings.getAsBoolean("cluster.state.filter_metadata", false))
+                .filterNodes(settings.getAsBoolean("cluster.state.filter_nodes", false))
+                .filterBlocks(settings.getAsBoolean("cluster.state.filter_blocks", false))
+                .filteredIndices(settings.getAsArray("cluster.state.indices", Strings.EMPTY_ARRAY)),
+                settings.getAsTime("cluster.state.poll_interval", TimeValue.timeValueSeconds(1)));
+    }
+
+    public ClusterStateService(ClusterAdminClient client, ClusterStateRequest request, TimeValue pollInterval) {
+        this.logger = Loggers.getLogger(getClass(), client.settings());
+        this.client = client;
+        this.threadPool = client.threadPool();
+        this.request = request;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Starts polling, does nothing if already started.
+     */
+    public ClusterStateService start() {
+        if (started.compareAndSet(false, true)) {
+            // a poll of a previous start still running sees it is not the current poller and stops
+            Poller poller = new Poller();
+            this.poller = poller;
+            scheduled = threadPool.schedule(TimeValue.timeValueMillis(0), ThreadPool.Names.GENERIC, poller);
+        }
+        return this;
+    }
+
+    public void stop() {
+        started.set(false);
+        ScheduledFuture<?> scheduled = this.scheduled;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    /**
+     * The latest cluster state, an empty state with version <tt>-1</tt> until the first poll completed.
+     */
+    public ClusterState state() {
+        return this.state;
+    }
+
+    public void add(ClusterStateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void remove(ClusterStateListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void update(ClusterState newState) {
+        ClusterState previousState = this.state;
+        if (newState.version() == previousState.version()) {
+            return;
+        }
+        newState = merge(previousState, newState);
+        this.state = newState;
+        ClusterChangedEvent event = new ClusterChangedEvent("poll", newState, previousState);
+        for (ClusterStateListener listener : listeners) {
+            try {
+                listener.clusterChanged(event);
+            } catch (Exception e) {
+                logger.warn("failed to notify listener [{}] of cluster state version [{}]", e, listener, newState.version());
+            }
+        }
+    }
+
+    /**
+     * Carries over the parts of the previous state that did not change.
+     */
+    private ClusterState merge(ClusterState previousState, ClusterState newState) {
+        MetaData metaData = merge(previousState.metaData(), newState.metaData());
+        RoutingTable routingTable = merge(previousState.routingTable(), newState.routingTable());
+        ClusterBlocks blocks = newState.blocks();
+        if (blocks.global().equals(previousState.blocks().global()) && blocks.indices().equals(previousState.blocks().indices())) {
+            blocks = previousState.blocks();
+        }
+        return new ClusterState(newState.version(), metaData, routingTable, newState.nodes(), blocks,
+                newState.allocationExplanation(), newState.customs());
+    }
+
+    private MetaData merge(MetaData previous, MetaData metaData) {
+        boolean same = previous.version() == metaData.version() && previous.indices().size() == metaData.indices().size();
+        MetaData.Builder builder = MetaData.builder().metaData(metaData);
+        for (IndexMetaData indexMetaData : metaData) {
+            IndexMetaData previousIndexMetaData = previous.index(indexMetaData.index());
+            if (previousIndexMetaData != null && previousIndexMetaData.version() == indexMetaData.version()) {
+                builder.put(previousIndexMetaData, false);
+            } else {
+                same = false;
+            }
+        }
+        return same ? previous : builder.build();
+    }
+
+    private RoutingTable merge(RoutingTable previous, RoutingTable routingTable) {
+        boolean same = previous.version() == routingTable.version() && previous.indicesRouting().size() == routingTable.indicesRouting().size();
+        RoutingTable.Builder builder = RoutingTable.builder().version(routingTable.version());
+        for (IndexRoutingTable indexRoutingTable : routingTable) {
+            IndexRoutingTable previousIndexRoutingTable = previous.index(indexRoutingTable.index());
+            if (previousIndexRoutingTable != null && sameShards(previousIndexRoutingTable, indexRoutingTable)) {
+                builder.add(previousIndexRoutingTable);
+            } else {
+                builder.add(indexRoutingTable);
+                same = false;
+            }
+        }
+        return same ? previous : builder.build();
+    }
+
+    private static boolean sameShards(IndexRoutingTable previous, IndexRoutingTable indexRoutingTable) {
+        if (previous.shards().size() != indexRoutingTable.shards().size()) {
+            return false;
+        }
+        for (IndexShardRoutingTable shardRoutingTable : indexRoutingTable) {
+            IndexShardRoutingTable previousShardRoutingTable = previous.shard(shardRoutingTable.shardId().id());
+            if (previousShardRoutingTable == null || previousShardRoutingTable.size() != shardRoutingTable.size()) {
+                return false;
+            }
+            Iterator<ShardRouting> it = previousShardRoutingTable.iterator();
+            for (ShardRouting shardRouting : shardRoutingTable) {
+                if (!shardRouting.equals(it.next())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private class Poller implements Runnable {
+
+        @Override
+        public void run() {
+            if (!running()) {
+                return;
+            }
+            ClusterStateRequest versionRequest = new ClusterStateRequest().filterAll().local(request.local());
+            client.state(versionRequest, new ActionListener<ClusterStateResponse>() {
+                @Override
+                public void onResponse(ClusterStateResponse response) {
+                    if (response.state().version() == state.version()) {
+                        reschedule();
+                        return;
+                    }
+                    fetch();
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    logger.debug("failed to fetch cluster state version", e);
+                    reschedule();
+                }
+            });
+        }
+
+        private void fetch() {
+            client.state(request, new ActionListener<ClusterStateResponse>() {
+                @Override
+                public void onResponse(ClusterStateResponse response) {
+                    try {
+                        update(response.state());
+                    } finally {
+                        reschedule();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    logger.debug("failed to fetch cluster state", e);
+                    reschedule();
+                }
+            });
+        }
+
+        private boolean running() {
+            return started.get() && poller == this;
+        }
+
+        private void reschedule() {
+            if (running()) {
+                scheduled = threadPool.schedule(pollInterval, ThreadPool.Names.GENERIC, this);
+            }
+        }
+    }
+}
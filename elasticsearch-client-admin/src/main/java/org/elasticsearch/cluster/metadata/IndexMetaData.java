@@ -527,15 +527,18 @@ public class IndexMetaData {
                 tmpSettings = ImmutableSettings.settingsBuilder().put(settings).putArray("index.aliases").build();
             }
 
-            // update default mapping on the MappingMetaData
-            if (mappings.containsKey("_default_"/*MapperService.DEFAULT_MAPPING*/)) {
-                MappingMetaData defaultMapping = mappings.get("_default_"/*MapperService.DEFAULT_MAPPING*/);
-                for (MappingMetaData mappingMetaData : mappings.map().values()) {
-                    mappingMetaData.updateDefaultMapping(defaultMapping);
+            // update default mapping on the MappingMetaData, and share identical mappings across indices
+            MappingMetaData defaultMapping = mappings.get("_default_"/*MapperService.DEFAULT_MAPPING*/);
+            MapBuilder<String, MappingMetaData> tmpMappings = MapBuilder.newMapBuilder();
+            for (Map.Entry<String, MappingMetaData> entry : mappings.map().entrySet()) {
+                MappingMetaData mappingMetaData = entry.getValue();
+                if (defaultMapping != null) {
+                    mappingMetaData = mappingMetaData.updateDefaultMapping(defaultMapping);
                 }
+                tmpMappings.put(entry.getKey(), MappingMetaData.intern(mappingMetaData));
             }
 
-            return new IndexMetaData(index, version, state, tmpSettings, mappings.immutableMap(), tmpAliases.immutableMap(), customs.immutableMap());
+            return new IndexMetaData(index, version, state, tmpSettings, tmpMappings.immutableMap(), tmpAliases.immutableMap(), customs.immutableMap());
         }
 
         public static void toXContent(IndexMetaData indexMetaData, XContentBuilder builder, ToXContent.Params params) throws IOException {
@@ -19,6 +19,8 @@
 
 package org.elasticsearch.cluster.metadata;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.elasticsearch.ElasticSearchIllegalStateException;
 import org.elasticsearch.action.TimestampParsingException;
 import org.elasticsearch.common.Nullable;
@@ -158,19 +160,38 @@ public class MappingMetaData {
     public static class Timestamp {
 
         public static String parseStringTimestamp(String timestampAsString, FormatDateTimeFormatter dateTimeFormatter) throws TimestampParsingException {
+            // if its a millisecond timestamp, just return the string as is
+            if (isLong(timestampAsString)) {
+                return timestampAsString;
+            }
             long ts;
             try {
-                // if we manage to parse it, its a millisecond timestamp, just return the string as is
-                ts = Long.parseLong(timestampAsString);
-                return timestampAsString;
-            } catch (NumberFormatException e) {
+                ts = dateTimeFormatter.parseMillis(timestampAsString);
+            } catch (RuntimeException e) {
+                throw new TimestampParsingException(timestampAsString);
+            }
+            return Long.toString(ts);
+        }
+
+        private static boolean isLong(String value) {
+            int length = value.length();
+            int from = length > 1 && value.charAt(0) == '-' ? 1 : 0;
+            // longer numbers may overflow, leave them to Long#parseLong
+            if (length == 0 || length - from > 18) {
                 try {
-                    ts = dateTimeFormatter.parser().parseMillis(timestampAsString);
-                } catch (RuntimeException e1) {
-                    throw new TimestampParsingException(timestampAsString);
+                    Long.parseLong(value);
+                    return true;
+                } catch (NumberFormatException e) {
+                    return false;
                 }
             }
-            return Long.toString(ts);
+            for (int i = from; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
         }
 
 
@@ -184,7 +205,8 @@ public class MappingMetaData {
 
         private final String[] pathElements;
 
-        private final FormatDateTimeFormatter dateTimeFormatter;
+        // resolved on first use, most mappings never parse a timestamp on the client
+        private volatile FormatDateTimeFormatter dateTimeFormatter;
 
         public Timestamp(boolean enabled, String path, String format) {
             this.enabled = enabled;
@@ -195,7 +217,6 @@ public class MappingMetaData {
                 pathElements = Strings.delimitedListToStringArray(path, ".");
             }
             this.format = format;
-            this.dateTimeFormatter = Joda.forPattern(format);
         }
 
         public boolean enabled() {
@@ -219,7 +240,12 @@ public class MappingMetaData {
         }
 
         public FormatDateTimeFormatter dateTimeFormatter() {
-            return this.dateTimeFormatter;
+            FormatDateTimeFormatter dateTimeFormatter = this.dateTimeFormatter;
+            if (dateTimeFormatter == null) {
+                dateTimeFormatter = Joda.forPattern(format);
+                this.dateTimeFormatter = dateTimeFormatter;
+            }
+            return dateTimeFormatter;
         }
 
         @Override
@@ -230,8 +256,6 @@ public class MappingMetaData {
             Timestamp timestamp = (Timestamp) o;
 
             if (enabled != timestamp.enabled) return false;
-            if (dateTimeFormatter != null ? !dateTimeFormatter.equals(timestamp.dateTimeFormatter) : timestamp.dateTimeFormatter != null)
-                return false;
             if (format != null ? !format.equals(timestamp.format) : timestamp.format != null) return false;
             if (path != null ? !path.equals(timestamp.path) : timestamp.path != null) return false;
             if (!Arrays.equals(pathElements, timestamp.pathElements)) return false;
@@ -245,11 +269,12 @@ public class MappingMetaData {
             result = 31 * result + (path != null ? path.hashCode() : 0);
             result = 31 * result + (format != null ? format.hashCode() : 0);
             result = 31 * result + (pathElements != null ? Arrays.hashCode(pathElements) : 0);
-            result = 31 * result + (dateTimeFormatter != null ? dateTimeFormatter.hashCode() : 0);
             return result;
         }
     }
 
+    private static final Interner<MappingMetaData> INTERNER = Interners.newWeakInterner();
+
     private final String type;
 
     private final CompressedString source;
@@ -258,9 +283,13 @@ public class MappingMetaData {
     protected Routing routing;
     protected Timestamp timestamp;
 
+    // false while the id, routing and timestamp settings still need to be decoded from the source
+    private volatile boolean decoded = true;
+
     protected MappingMetaData(String type, CompressedString source) {
          this.type = type;
          this.source = source;
+         this.decoded = false;
     }    
 
     public MappingMetaData(Map<String, Object> mapping) throws IOException {
@@ -278,15 +307,49 @@ public class MappingMetaData {
         initMappers(withoutType);
     }
     
+    /**
+     * Creates the mapping meta data from a compressed mapping. Only the root type is read
+     * up front, the rest of the mapping is decoded on first access.
+     */
     public MappingMetaData(CompressedString mapping) throws IOException {
         this.source = mapping;
-        Map<String, Object> mappingMap = XContentHelper.createParser(mapping.compressed(), 0, mapping.compressed().length).mapOrderedAndClose();
-        if (mappingMap.size() != 1) {
-            throw new ElasticSearchIllegalStateException("Can't derive type from mapping, no root type: " + mapping.string());
+        XContentParser parser = XContentHelper.createParser(mapping.compressed(), 0, mapping.compressed().length);
+        try {
+            XContentParser.Token token = parser.nextToken();
+            if (token == XContentParser.Token.START_OBJECT) {
+                token = parser.nextToken();
+            }
+            if (token != XContentParser.Token.FIELD_NAME) {
+                throw new ElasticSearchIllegalStateException("Can't derive type from mapping, no root type: " + mapping.string());
+            }
+            // the rest is checked when decoding
+            this.type = parser.currentName();
+        } finally {
+            parser.close();
         }
-        this.type = mappingMap.keySet().iterator().next();
-        initMappers((Map<String, Object>) mappingMap.get(this.type));
-    }    
+        this.decoded = false;
+    }
+
+    private void decode() {
+        if (decoded) {
+            return;
+        }
+        synchronized (this) {
+            if (decoded) {
+                return;
+            }
+            try {
+                Map<String, Object> mappingMap = XContentHelper.createParser(source.compressed(), 0, source.compressed().length).mapOrderedAndClose();
+                if (mappingMap.size() == 1 && mappingMap.containsKey(type)) {
+                    mappingMap = (Map<String, Object>) mappingMap.get(type);
+                }
+                initMappers(mappingMap);
+            } catch (IOException e) {
+                throw new ElasticSearchIllegalStateException("failed to decode mapping [" + type + "]", e);
+            }
+            decoded = true;
+        }
+    }
 
     private void initMappers(Map<String, Object> withoutType) {
         if (withoutType.containsKey("_id")) {
@@ -350,16 +413,20 @@ public class MappingMetaData {
         this.timestamp = timestamp;
     }
 
-    void updateDefaultMapping(MappingMetaData defaultMapping) {
-        if (id == Id.EMPTY) {
-            id = defaultMapping.id();
-        }
-        if (routing == Routing.EMPTY) {
-            routing = defaultMapping.routing();
-        }
-        if (timestamp == Timestamp.EMPTY) {
-            timestamp = defaultMapping.timestamp();
+    /**
+     * Returns the mapping with the id, routing and timestamp settings it does not set taken from
+     * the default mapping. Mappings may be shared (see {@link #intern(MappingMetaData)}), so this
+     * one is left unchanged and a new one is returned if needed.
+     */
+    MappingMetaData updateDefaultMapping(MappingMetaData defaultMapping) {
+        decode();
+        Id id = this.id == Id.EMPTY ? defaultMapping.id() : this.id;
+        Routing routing = this.routing == Routing.EMPTY ? defaultMapping.routing() : this.routing;
+        Timestamp timestamp = this.timestamp == Timestamp.EMPTY ? defaultMapping.timestamp() : this.timestamp;
+        if (id == this.id && routing == this.routing && timestamp == this.timestamp) {
+            return this;
         }
+        return new MappingMetaData(type, source, id, routing, timestamp);
     }
 
     public String type() {
@@ -390,14 +457,17 @@ public class MappingMetaData {
     }
 
     public Id id() {
+        decode();
         return this.id;
     }
 
     public Routing routing() {
+        decode();
         return this.routing;
     }
 
     public Timestamp timestamp() {
+        decode();
         return this.timestamp;
     }
 
@@ -438,7 +508,7 @@ public class MappingMetaData {
             boolean incLocationRouting = false;
             boolean incLocationTimestamp = false;
             if (context.idParsingStillNeeded() && fieldName.equals(idPart)) {
-                if (context.locationId + 1 == id.pathElements().length) {
+                if (context.locationId + 1 == id().pathElements().length) {
                     context.id = parser.textOrNull();
                     context.idResolved = true;
                 } else {
@@ -446,7 +516,7 @@ public class MappingMetaData {
                 }
             }
             if (context.routingParsingStillNeeded() && fieldName.equals(routingPart)) {
-                if (context.locationRouting + 1 == routing.pathElements().length) {
+                if (context.locationRouting + 1 == routing().pathElements().length) {
                     context.routing = parser.textOrNull();
                     context.routingResolved = true;
                 } else {
@@ -454,7 +524,7 @@ public class MappingMetaData {
                 }
             }
             if (context.timestampParsingStillNeeded() && fieldName.equals(timestampPart)) {
-                if (context.locationTimestamp + 1 == timestamp.pathElements().length) {
+                if (context.locationTimestamp + 1 == timestamp().pathElements().length) {
                     context.timestamp = parser.textOrNull();
                     context.timestampResolved = true;
                 } else {
@@ -518,22 +588,22 @@ public class MappingMetaData {
 
         MappingMetaData that = (MappingMetaData) o;
 
-        if (!id.equals(that.id)) return false;
-        if (!routing.equals(that.routing)) return false;
-        if (!source.equals(that.source)) return false;
-        if (!timestamp.equals(that.timestamp)) return false;
         if (!type.equals(that.type)) return false;
+        if (!source.equals(that.source)) return false;
+        // settings not decoded yet derive from the source alone, no need to decode them
+        if (!decoded && !that.decoded) return true;
+        if (!id().equals(that.id())) return false;
+        if (!routing().equals(that.routing())) return false;
+        if (!timestamp().equals(that.timestamp())) return false;
 
         return true;
     }
 
     @Override
     public int hashCode() {
+        // without the decoded settings, so hashing (and interning) does not decode the mapping
         int result = type.hashCode();
         result = 31 * result + source.hashCode();
-        result = 31 * result + id.hashCode();
-        result = 31 * result + routing.hashCode();
-        result = 31 * result + timestamp.hashCode();
         return result;
     }
 
@@ -549,6 +619,16 @@ public class MappingMetaData {
         return new MappingMetaData(type, source, id, routing, timestamp);
     }
 
+    /**
+     * Returns the shared instance equal to the given mapping. Time based indices usually carry
+     * the same mappings, interning them keeps a single copy of each mapping across all index
+     * meta data and cluster states. Interned mappings must not be changed, {@link IndexMetaData}
+     * interns its mappings once the default mapping has been applied.
+     */
+    public static MappingMetaData intern(MappingMetaData mappingMd) {
+        return INTERNER.intern(mappingMd);
+    }
+
     public static class ParseContext {
         final boolean shouldParseId;
         final boolean shouldParseRouting;
@@ -34,9 +34,11 @@ import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.regex.Regex;
+import org.elasticsearch.common.regex.SimpleMatchIndex;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.loader.SettingsLoader;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.xcontent.*;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.indices.IndexMissingException;
@@ -44,6 +46,7 @@ import org.elasticsearch.rest.RestStatus;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
@@ -148,6 +151,9 @@ public class MetaData implements Iterable<IndexMetaData> {
 
     private final ImmutableMap<String, String[]> aliasAndIndexToIndexMap;
 
+    // built on demand
+    private volatile WildcardIndex wildcardIndex;
+
     MetaData(long version, Settings transientSettings, Settings persistentSettings, ImmutableMap<String, IndexMetaData> indices, ImmutableMap<String, IndexTemplateMetaData> templates, ImmutableMap<String, Custom> customs) {
         this.version = version;
         this.transientSettings = transientSettings;
@@ -576,6 +582,25 @@ public class MetaData implements Iterable<IndexMetaData> {
     }
 
     public String[] convertFromWildcards(String[] aliasesOrIndices, boolean wildcardOnlyOpen, IgnoreIndices ignoreIndices) {
+        if (!hasWildcardExpression(aliasesOrIndices)) {
+            return convertFromWildcards(aliasesOrIndices, wildcardOnlyOpen, ignoreIndices, null);
+        }
+        WildcardIndex wildcardIndex = wildcardIndex();
+        String key = wildcardIndex.key(aliasesOrIndices, wildcardOnlyOpen, ignoreIndices);
+        String[] result = wildcardIndex.resolved.get(key);
+        if (result == null) {
+            result = convertFromWildcards(aliasesOrIndices, wildcardOnlyOpen, ignoreIndices, wildcardIndex);
+            if (result == aliasesOrIndices) {
+                result = result.clone();
+            }
+            if (wildcardIndex.resolved.size() < WildcardIndex.MAX_RESOLVED) {
+                wildcardIndex.resolved.put(key, result);
+            }
+        }
+        return result.clone();
+    }
+
+    private String[] convertFromWildcards(String[] aliasesOrIndices, boolean wildcardOnlyOpen, IgnoreIndices ignoreIndices, @Nullable WildcardIndex wildcardIndex) {
         Set<String> result = null;
         for (int i = 0; i < aliasesOrIndices.length; i++) {
             String aliasOrIndex = aliasesOrIndices[i];
@@ -615,27 +640,13 @@ public class MetaData implements Iterable<IndexMetaData> {
                 result = new THashSet<String>();
                 result.addAll(Arrays.asList(aliasesOrIndices).subList(0, i));
             }
-            String[] indices = wildcardOnlyOpen ? concreteAllOpenIndices() : concreteAllIndices();
-            boolean found = false;
-            for (String index : indices) {
-                if (Regex.simpleMatch(aliasOrIndex, index)) {
-                    found = true;
-                    if (add) {
-                        result.add(index);
-                    } else {
-                        result.remove(index);
-                    }
-                }
-            }
-            for (String alias : aliases.keySet()) {
-                if (Regex.simpleMatch(aliasOrIndex, alias)) {
-                    found = true;
-                    if (add) {
-                        result.add(alias);
-                    } else {
-                        result.remove(alias);
-                    }
-                }
+            List<String> matches = new ArrayList<String>();
+            boolean found = (wildcardOnlyOpen ? wildcardIndex.openIndices : wildcardIndex.allIndices).match(aliasOrIndex, matches);
+            found |= wildcardIndex.aliases.match(aliasOrIndex, matches);
+            if (add) {
+                result.addAll(matches);
+            } else {
+                result.removeAll(matches);
             }
             if (!found && ignoreIndices != IgnoreIndices.MISSING) {
                 throw new IndexMissingException(new Index(aliasOrIndex));
@@ -647,6 +658,58 @@ public class MetaData implements Iterable<IndexMetaData> {
         return result.toArray(new String[result.size()]);
     }
 
+    private static boolean hasWildcardExpression(String[] aliasesOrIndices) {
+        for (String aliasOrIndex : aliasesOrIndices) {
+            if (aliasOrIndex.length() > 0 && (aliasOrIndex.charAt(0) == '-' || Regex.isSimpleMatchPattern(aliasOrIndex))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private WildcardIndex wildcardIndex() {
+        WildcardIndex wildcardIndex = this.wildcardIndex;
+        if (wildcardIndex == null) {
+            wildcardIndex = new WildcardIndex(Arrays.asList(allIndices), Arrays.asList(allOpenIndices), aliases.keySet());
+            this.wildcardIndex = wildcardIndex;
+        }
+        return wildcardIndex;
+    }
+
+    /**
+     * The index and alias names of this meta data indexed for wildcard matching, and the
+     * expressions resolved against them so far. Meta data is immutable, so both are valid
+     * until the next meta data version replaces this instance.
+     */
+    static class WildcardIndex {
+
+        static final int MAX_RESOLVED = 1000;
+
+        final SimpleMatchIndex allIndices;
+
+        final SimpleMatchIndex openIndices;
+
+        final SimpleMatchIndex aliases;
+
+        final ConcurrentMap<String, String[]> resolved = ConcurrentCollections.newConcurrentMap();
+
+        WildcardIndex(Collection<String> allIndices, Collection<String> openIndices, Collection<String> aliases) {
+            this.allIndices = new SimpleMatchIndex(allIndices);
+            this.openIndices = new SimpleMatchIndex(openIndices);
+            this.aliases = new SimpleMatchIndex(aliases);
+        }
+
+        String key(String[] aliasesOrIndices, boolean wildcardOnlyOpen, IgnoreIndices ignoreIndices) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(wildcardOnlyOpen).append(',').append(ignoreIndices.id());
+            for (String aliasOrIndex : aliasesOrIndices) {
+                // index and alias names can't contain commas
+                sb.append(',').append(aliasOrIndex);
+            }
+            return sb.toString();
+        }
+    }
+
     public boolean hasIndex(String index) {
         return indices.containsKey(index);
     }
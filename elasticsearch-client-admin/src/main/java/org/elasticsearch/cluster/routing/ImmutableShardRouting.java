@@ -20,6 +20,8 @@
 package org.elasticsearch.cluster.routing;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -34,6 +36,9 @@ import java.io.Serializable;
  */
 public class ImmutableShardRouting implements Streamable, Serializable, ShardRouting {
 
+    // a cluster state refers to the same few node ids from every shard copy
+    private static final Interner<String> NODE_IDS = Interners.newWeakInterner();
+
     protected String index;
 
     protected int shardId;
@@ -50,10 +55,9 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
 
     private transient ShardId shardIdentifier;
 
-    private final transient ImmutableList<ShardRouting> asList;
+    private transient ImmutableList<ShardRouting> asList;
 
     ImmutableShardRouting() {
-        this.asList = ImmutableList.of((ShardRouting) this);
     }
 
     public ImmutableShardRouting(ShardRouting copy) {
@@ -79,7 +83,6 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
         this.currentNodeId = currentNodeId;
         this.primary = primary;
         this.state = state;
-        this.asList = ImmutableList.of((ShardRouting) this);
         this.version = version;
     }
 
@@ -166,6 +169,9 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
 
     
     public ShardIterator shardsIt() {
+        if (asList == null) {
+            asList = ImmutableList.of((ShardRouting) this);
+        }
         return new PlainShardIterator(shardId(), asList);
     }
 
@@ -181,6 +187,13 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
         return entry;
     }
 
+    static ImmutableShardRouting readShardRoutingEntry(StreamInput in, ShardId shardId) throws IOException {
+        ImmutableShardRouting entry = new ImmutableShardRouting();
+        entry.readFrom(in, shardId.index().name(), shardId.id());
+        entry.shardIdentifier = shardId;
+        return entry;
+    }
+
     public void readFrom(StreamInput in, String index, int shardId) throws IOException {
         this.index = index;
         this.shardId = shardId;
@@ -191,11 +204,11 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
     public void readFromThin(StreamInput in) throws IOException {
         version = in.readLong();
         if (in.readBoolean()) {
-            currentNodeId = in.readUTF();
+            currentNodeId = NODE_IDS.intern(in.readUTF());
         }
 
         if (in.readBoolean()) {
-            relocatingNodeId = in.readUTF();
+            relocatingNodeId = NODE_IDS.intern(in.readUTF());
         }
 
         primary = in.readBoolean();
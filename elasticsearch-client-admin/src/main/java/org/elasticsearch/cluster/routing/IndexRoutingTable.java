@@ -47,14 +47,18 @@ public class IndexRoutingTable implements Iterable<IndexShardRoutingTable> {
     // shards with state set to UNASSIGNED
     private final ImmutableMap<Integer, IndexShardRoutingTable> shards;
 
-    private final ImmutableList<ShardRouting> allShards;
-    private final ImmutableList<ShardRouting> allActiveShards;
+    // built on demand
+    private volatile ImmutableList<ShardRouting> allShards;
+    private volatile ImmutableList<ShardRouting> allActiveShards;
 
     private final AtomicInteger counter = new AtomicInteger();
 
     IndexRoutingTable(String index, Map<Integer, IndexShardRoutingTable> shards) {
         this.index = index;
         this.shards = ImmutableMap.copyOf(shards);
+    }
+
+    private void buildAllShards() {
         ImmutableList.Builder<ShardRouting> allShards = ImmutableList.builder();
         ImmutableList.Builder<ShardRouting> allActiveShards = ImmutableList.builder();
         for (IndexShardRoutingTable indexShardRoutingTable : shards.values()) {
@@ -65,8 +69,8 @@ public class IndexRoutingTable implements Iterable<IndexShardRoutingTable> {
                 }
             }
         }
-        this.allShards = allShards.build();
         this.allActiveShards = allActiveShards.build();
+        this.allShards = allShards.build();
     }
 
     public String index() {
@@ -79,10 +83,14 @@ public class IndexRoutingTable implements Iterable<IndexShardRoutingTable> {
 
     public IndexRoutingTable normalizeVersions() {
         IndexRoutingTable.Builder builder = new Builder(this.index);
+        boolean normalized = false;
         for (IndexShardRoutingTable shardTable : shards.values()) {
-            builder.addIndexShard(shardTable.normalizeVersions());
+            IndexShardRoutingTable normalizedShardTable = shardTable.normalizeVersions();
+            normalized |= normalizedShardTable != shardTable;
+            builder.addIndexShard(normalizedShardTable);
         }
-        return builder.build();
+        // keep the same instance when nothing changed, so unchanged tables can be compared by identity
+        return normalized ? builder.build() : this;
     }
 
     public void validate(RoutingTableValidation validation, MetaData metaData) {
@@ -197,10 +205,16 @@ public class IndexRoutingTable implements Iterable<IndexShardRoutingTable> {
      * An iterator over all shards (including replicas).
      */
     public ShardsIterator randomAllShardsIt() {
+        if (allShards == null) {
+            buildAllShards();
+        }
         return new PlainShardsIterator(allShards, counter.incrementAndGet());
     }
 
     public ShardsIterator randomAllActiveShardsIt() {
+        if (allActiveShards == null) {
+            buildAllShards();
+        }
         return new PlainShardsIterator(allActiveShards, counter.incrementAndGet());
     }
 
@@ -42,51 +42,68 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
 
     final ShardId shardId;
 
-    final ShardRouting primary;
-    final ImmutableList<ShardRouting> primaryAsList;
-    final ImmutableList<ShardRouting> replicas;
     final ImmutableList<ShardRouting> shards;
-    final ImmutableList<ShardRouting> activeShards;
-    final ImmutableList<ShardRouting> assignedShards;
 
     final AtomicInteger counter;
 
     final boolean primaryAllocatedPostApi;
 
+    // the views on the shards are built on demand, most tables of a large cluster state are never
+    // used for routing by the client
+    private volatile Views views;
+
     IndexShardRoutingTable(ShardId shardId, ImmutableList<ShardRouting> shards, boolean primaryAllocatedPostApi) {
         this.shardId = shardId;
         this.shards = shards;
         this.primaryAllocatedPostApi = primaryAllocatedPostApi;
         this.counter = new AtomicInteger(ThreadLocalRandom.current().nextInt(shards.size()));
+    }
+
+    private Views views() {
+        Views views = this.views;
+        if (views == null) {
+            views = new Views(shards);
+            this.views = views;
+        }
+        return views;
+    }
 
-        ShardRouting primary = null;
-        List<ShardRouting> replicas = new ArrayList<ShardRouting>();
-        List<ShardRouting> activeShards = new ArrayList<ShardRouting>();
-        List<ShardRouting> assignedShards = new ArrayList<ShardRouting>();
+    static class Views {
 
-        for (ShardRouting shard : shards) {
-            if (shard.primary()) {
-                primary = shard;
-            } else {
-                replicas.add(shard);
-            }
-            if (shard.active()) {
-                activeShards.add(shard);
+        final ShardRouting primary;
+        final ImmutableList<ShardRouting> primaryAsList;
+        final ImmutableList<ShardRouting> replicas;
+        final ImmutableList<ShardRouting> activeShards;
+        final ImmutableList<ShardRouting> assignedShards;
+
+        Views(ImmutableList<ShardRouting> shards) {
+            ShardRouting primary = null;
+            ImmutableList.Builder<ShardRouting> replicas = ImmutableList.builder();
+            ImmutableList.Builder<ShardRouting> activeShards = ImmutableList.builder();
+            ImmutableList.Builder<ShardRouting> assignedShards = ImmutableList.builder();
+            for (ShardRouting shard : shards) {
+                if (shard.primary()) {
+                    primary = shard;
+                } else {
+                    replicas.add(shard);
+                }
+                if (shard.active()) {
+                    activeShards.add(shard);
+                }
+                if (shard.assignedToNode()) {
+                    assignedShards.add(shard);
+                }
             }
-            if (shard.assignedToNode()) {
-                assignedShards.add(shard);
+            this.primary = primary;
+            if (primary != null) {
+                this.primaryAsList = ImmutableList.of(primary);
+            } else {
+                this.primaryAsList = ImmutableList.of();
             }
+            this.replicas = replicas.build();
+            this.activeShards = activeShards.build();
+            this.assignedShards = assignedShards.build();
         }
-
-        this.primary = primary;
-        if (primary != null) {
-            this.primaryAsList = ImmutableList.of(primary);
-        } else {
-            this.primaryAsList = ImmutableList.of();
-        }
-        this.replicas = ImmutableList.copyOf(replicas);
-        this.activeShards = ImmutableList.copyOf(activeShards);
-        this.assignedShards = ImmutableList.copyOf(assignedShards);
     }
 
     /**
@@ -160,7 +177,7 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
     }
 
     public ImmutableList<ShardRouting> activeShards() {
-        return this.activeShards;
+        return views().activeShards;
     }
 
     public ImmutableList<ShardRouting> getActiveShards() {
@@ -168,11 +185,11 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
     }
 
     public ImmutableList<ShardRouting> assignedShards() {
-        return this.assignedShards;
+        return views().assignedShards;
     }
 
     public ImmutableList<ShardRouting> getAssignedShards() {
-        return this.assignedShards;
+        return assignedShards();
     }
 
     public int countWithState(ShardRoutingState state) {
@@ -198,37 +215,38 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
     }
 
     public ShardIterator activeShardsRandomIt() {
-        return new PlainShardIterator(shardId, activeShards, counter.getAndIncrement());
+        return new PlainShardIterator(shardId, activeShards(), counter.getAndIncrement());
     }
 
     public ShardIterator activeShardsIt() {
-        return new PlainShardIterator(shardId, activeShards);
+        return new PlainShardIterator(shardId, activeShards());
     }
 
     public ShardIterator activeShardsIt(int index) {
-        return new PlainShardIterator(shardId, activeShards, index);
+        return new PlainShardIterator(shardId, activeShards(), index);
     }
 
     public ShardIterator assignedShardsRandomIt() {
-        return new PlainShardIterator(shardId, assignedShards, counter.getAndIncrement());
+        return new PlainShardIterator(shardId, assignedShards(), counter.getAndIncrement());
     }
 
     public ShardIterator assignedShardsIt() {
-        return new PlainShardIterator(shardId, assignedShards);
+        return new PlainShardIterator(shardId, assignedShards());
     }
 
     public ShardIterator assignedShardsIt(int index) {
-        return new PlainShardIterator(shardId, assignedShards, index);
+        return new PlainShardIterator(shardId, assignedShards(), index);
     }
 
     /**
      * Returns an iterator only on the primary shard.
      */
     public ShardIterator primaryShardIt() {
-        return new PlainShardIterator(shardId, primaryAsList);
+        return new PlainShardIterator(shardId, views().primaryAsList);
     }
 
     public ShardIterator primaryFirstActiveShardsIt() {
+        ImmutableList<ShardRouting> activeShards = activeShards();
         ArrayList<ShardRouting> ordered = new ArrayList<ShardRouting>(activeShards.size());
         // fill it in a randomized fashion
         int index = Math.abs(counter.getAndIncrement());
@@ -268,14 +286,14 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
      * Prefers execution on the provided node if applicable.
      */
     public ShardIterator preferNodeActiveShardsIt(String nodeId) {
-        return preferNodeShardsIt(nodeId, activeShards);
+        return preferNodeShardsIt(nodeId, activeShards());
     }
 
     /**
      * Prefers execution on the provided node if applicable.
      */
     public ShardIterator preferNodeAssignedShardsIt(String nodeId) {
-        return preferNodeShardsIt(nodeId, assignedShards);
+        return preferNodeShardsIt(nodeId, assignedShards());
     }
 
     private ShardIterator preferNodeShardsIt(String nodeId, ImmutableList<ShardRouting> shards) {
@@ -339,7 +357,7 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
         AttributesRoutings shardRoutings = activeShardsByAttributes.get(key);
         if (shardRoutings == null) {
             synchronized (shardsByAttributeMutex) {
-                ArrayList<ShardRouting> from = new ArrayList<ShardRouting>(activeShards);
+                ArrayList<ShardRouting> from = new ArrayList<ShardRouting>(activeShards());
                 ArrayList<ShardRouting> to = new ArrayList<ShardRouting>();
                 for (String attribute : attributes) {
                     String localAttributeValue = nodes.localNode().attributes().get(attribute);
@@ -378,11 +396,11 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
     }
 
     public ShardRouting primaryShard() {
-        return primary;
+        return views().primary;
     }
 
     public List<ShardRouting> replicaShards() {
-        return this.replicas;
+        return views().replicas;
     }
 
     public List<ShardRouting> shardsWithState(ShardRoutingState... states) {
@@ -459,7 +477,8 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
 
             int size = in.readVInt();
             for (int i = 0; i < size; i++) {
-                ImmutableShardRouting shard = ImmutableShardRouting.readShardRoutingEntry(in, index, iShardId);
+                // all copies share the shard id of the table
+                ImmutableShardRouting shard = ImmutableShardRouting.readShardRoutingEntry(in, builder.shardId);
                 builder.addShard(shard);
             }
 
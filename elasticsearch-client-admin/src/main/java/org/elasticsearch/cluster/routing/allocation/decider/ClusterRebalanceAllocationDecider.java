@@ -59,6 +59,10 @@ public class ClusterRebalanceAllocationDecider extends SimpleAllocationDecider {
         //logger.debug("using [cluster.routing.allocation.allow_rebalance] with [{}]", type.toString().toLowerCase());
     }
 
+    public ClusterRebalanceType type() {
+        return type;
+    }
+
     @Override
     public boolean canRebalance(ShardRouting shardRouting, RoutingAllocation allocation) {
         if (type == ClusterRebalanceType.INDICES_PRIMARIES_ACTIVE) {
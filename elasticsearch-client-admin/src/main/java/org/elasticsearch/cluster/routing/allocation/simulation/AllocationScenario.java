@@ -0,0 +1,141 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation.simulation;
+
+import org.elasticsearch.common.regex.Regex;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A change to simulate on top of a captured cluster state, for example adding nodes or changing
+ * the number of replicas of indices. Index names can be simple match patterns (<tt>logs-*</tt>).
+ *
+ * @see AllocationSimulator
+ */
+public class AllocationScenario {
+
+    private final String name;
+
+    private int addedNodes;
+
+    private final Set<String> removedNodes = new HashSet<String>();
+
+    private final List<IndexChange> indexChanges = new ArrayList<IndexChange>();
+
+    public AllocationScenario(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Adds nodes, each on its own host.
+     */
+    public AllocationScenario addNodes(int count) {
+        this.addedNodes += count;
+        return this;
+    }
+
+    public AllocationScenario removeNodes(String... nodeIds) {
+        for (String nodeId : nodeIds) {
+            removedNodes.add(nodeId);
+        }
+        return this;
+    }
+
+    public AllocationScenario numberOfReplicas(int replicas, String... indices) {
+        indexChanges.add(new IndexChange(indices, replicas, null));
+        return this;
+    }
+
+    /**
+     * Sets <tt>index.routing.allocation.total_shards_per_node</tt>, <tt>-1</tt> for no limit.
+     */
+    public AllocationScenario totalShardsPerNode(int totalShardsPerNode, String... indices) {
+        indexChanges.add(new IndexChange(indices, null, totalShardsPerNode));
+        return this;
+    }
+
+    int addedNodes() {
+        return addedNodes;
+    }
+
+    Set<String> removedNodes() {
+        return removedNodes;
+    }
+
+    /**
+     * The number of replicas of the index in this scenario.
+     */
+    int numberOfReplicas(String index, int numberOfReplicas) {
+        for (IndexChange change : indexChanges) {
+            if (change.replicas != null && change.matches(index)) {
+                numberOfReplicas = change.replicas;
+            }
+        }
+        return numberOfReplicas;
+    }
+
+    int totalShardsPerNode(String index, int totalShardsPerNode) {
+        for (IndexChange change : indexChanges) {
+            if (change.totalShardsPerNode != null && change.matches(index)) {
+                totalShardsPerNode = change.totalShardsPerNode;
+            }
+        }
+        return totalShardsPerNode;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    static class IndexChange {
+
+        final String[] indices;
+
+        final Integer replicas;
+
+        final Integer totalShardsPerNode;
+
+        IndexChange(String[] indices, Integer replicas, Integer totalShardsPerNode) {
+            this.indices = indices;
+            this.replicas = replicas;
+            this.totalShardsPerNode = totalShardsPerNode;
+        }
+
+        boolean matches(String index) {
+            if (indices == null || indices.length == 0) {
+                return true;
+            }
+            for (String pattern : indices) {
+                if (Regex.isSimpleMatchPattern(pattern) ? Regex.simpleMatch(pattern, index) : pattern.equals(index)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation.simulation;
+
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.ElasticSearchInterruptedException;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.allocation.decider.ClusterRebalanceAllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.SameShardAllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.ShardsLimitAllocationDecider;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ClientEsExecutors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Simulates shard allocation offline on a captured {@link ClusterState}, to plan capacity
+ * ("what if we add 6 nodes", "what if these indices get another replica").
+ * <p/>
+ * The cluster state is captured once into compact arrays (nodes, indices and the nodes of each
+ * shard copy). Each {@link AllocationScenario} runs on its own copy of them, with the copies of a
+ * node and the copies of a shard indexed, so that deciding on a node only looks at what the
+ * bundled deciders would look at: the other copies of the shard ({@link SameShardAllocationDecider},
+ * including <tt>cluster.routing.allocation.same_shard.host</tt>), the shards of the index on the
+ * node ({@link ShardsLimitAllocationDecider}), and whether the primary is allocated
+ * (<tt>ReplicaAfterPrimaryActiveAllocationDecider</tt>). Rebalancing is gated like the
+ * {@link ClusterRebalanceAllocationDecider} (<tt>cluster.routing.allocation.allow_rebalance</tt>).
+ * The simulation assumes allocated shards start right away, and reports the converged state.
+ * <p/>
+ * Other deciders are <b>not</b> simulated, so results can differ from the real allocation when
+ * they are in effect: shard allocation awareness (<tt>cluster.routing.allocation.awareness.*</tt>),
+ * allocation filtering (<tt>cluster.routing.allocation.include/exclude/require.*</tt> and the
+ * <tt>index.routing.allocation.*</tt> index settings), disabled allocation
+ * (<tt>cluster.routing.allocation.disable_*</tt>) and recovery throttling. They are listed in
+ * {@link SimulationResult#ignoredDeciders()}, and the ones configured in the settings or the
+ * captured cluster state in {@link SimulationResult#configuredIgnoredDeciders()}.
+ * <p/>
+ * Scenarios are independent, {@link #simulate(List)} runs them in parallel on
+ * <tt>allocation.simulator.threads</tt> threads (defaults to the number of processors).
+ */
+public class AllocationSimulator {
+
+    /**
+     * The deciders of a real allocation that the simulation does not take into account.
+     */
+    public static final List<String> IGNORED_DECIDERS = Collections.unmodifiableList(Arrays.asList("awareness", "filter", "disable", "throttling"));
+
+    private final ESLogger logger;
+
+    private final Settings settings;
+
+    final boolean sameHost;
+
+    final ClusterRebalanceAllocationDecider.ClusterRebalanceType rebalanceType;
+
+    private final int threads;
+
+    // the captured nodes, nodes on the same host share a host ordinal
+    final String[] nodeIds;
+
+    final int[] nodeHosts;
+
+    // the captured open indices
+    final String[] indices;
+
+    final int[] numberOfReplicas;
+
+    final int[] totalShardsPerNode;
+
+    // the captured shards, ordered by index and shard id, with the node ordinals of their copies
+    final int[] shardIndex;
+
+    final int[] shardPrimaryNode;
+
+    final int[][] shardReplicaNodes;
+
+    // the ignored deciders that have settings, and so likely change the real allocation
+    final List<String> configuredIgnoredDeciders;
+
+    public AllocationSimulator(ClusterState clusterState) {
+        this(clusterState, ImmutableSettings.Builder.EMPTY_SETTINGS);
+    }
+
+    public AllocationSimulator(ClusterState clusterState, Settings settings) {
+        this.logger = Loggers.getLogger(getClass(), settings);
+        this.settings = settings;
+        this.sameHost = settings.getAsBoolean(SameShardAllocationDecider.SAME_HOST_SETTING, false);
+        this.rebalanceType = new ClusterRebalanceAllocationDecider(settings).type();
+        this.threads = settings.getAsInt("allocation.simulator.threads", Runtime.getRuntime().availableProcessors());
+
+        List<DiscoveryNode> nodes = new ArrayList<DiscoveryNode>(clusterState.nodes().dataNodes().values());
+        Map<String, Integer> nodeOrdinals = new HashMap<String, Integer>();
+        this.nodeIds = new String[nodes.size()];
+        this.nodeHosts = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            DiscoveryNode node = nodes.get(i);
+            nodeIds[i] = node.id();
+            nodeOrdinals.put(node.id(), i);
+            nodeHosts[i] = i;
+            for (int j = 0; j < i; j++) {
+                if (node.address() != null && nodes.get(j).address() != null && node.address().sameHost(nodes.get(j).address())) {
+                    nodeHosts[i] = nodeHosts[j];
+                    break;
+                }
+            }
+        }
+
+        List<IndexMetaData> openIndices = new ArrayList<IndexMetaData>();
+        int shards = 0;
+        for (IndexMetaData indexMetaData : clusterState.metaData()) {
+            if (indexMetaData.state() == IndexMetaData.State.OPEN) {
+                openIndices.add(indexMetaData);
+                shards += indexMetaData.numberOfShards();
+            }
+        }
+        this.indices = new String[openIndices.size()];
+        this.numberOfReplicas = new int[openIndices.size()];
+        this.totalShardsPerNode = new int[openIndices.size()];
+        this.shardIndex = new int[shards];
+        this.shardPrimaryNode = new int[shards];
+        this.shardReplicaNodes = new int[shards][];
+        int shard = 0;
+        for (int i = 0; i < openIndices.size(); i++) {
+            IndexMetaData indexMetaData = openIndices.get(i);
+            indices[i] = indexMetaData.index();
+            numberOfReplicas[i] = indexMetaData.numberOfReplicas();
+            totalShardsPerNode[i] = indexMetaData.settings().getAsInt(ShardsLimitAllocationDecider.INDEX_TOTAL_SHARDS_PER_NODE, -1);
+            IndexRoutingTable indexRoutingTable = clusterState.routingTable().index(indexMetaData.index());
+            for (int shardId = 0; shardId < indexMetaData.numberOfShards(); shardId++, shard++) {
+                shardIndex[shard] = i;
+                shardPrimaryNode[shard] = -1;
+                int[] replicaNodes = new int[0];
+                IndexShardRoutingTable shardRoutingTable = indexRoutingTable == null ? null : indexRoutingTable.shard(shardId);
+                if (shardRoutingTable != null) {
+                    replicaNodes = new int[shardRoutingTable.size()];
+                    int replicas = 0;
+                    for (ShardRouting shardRouting : shardRoutingTable) {
+                        Integer node = shardRouting.assignedToNode() ? nodeOrdinals.get(shardRouting.currentNodeId()) : null;
+                        if (node == null) {
+                            continue;
+                        }
+                        if (shardRouting.primary()) {
+                            shardPrimaryNode[shard] = node;
+                        } else {
+                            replicaNodes[replicas++] = node;
+                        }
+                    }
+                    if (replicas < replicaNodes.length) {
+                        int[] trimmed = new int[replicas];
+                        System.arraycopy(replicaNodes, 0, trimmed, 0, replicas);
+                        replicaNodes = trimmed;
+                    }
+                }
+                shardReplicaNodes[shard] = replicaNodes;
+            }
+        }
+        this.configuredIgnoredDeciders = configuredIgnoredDeciders(settings, clusterState, openIndices);
+        if (!configuredIgnoredDeciders.isEmpty()) {
+            logger.warn("the {} allocation deciders are configured but not simulated", configuredIgnoredDeciders);
+        }
+        logger.debug("captured cluster state with [{}] data nodes, [{}] open indices and [{}] shards", nodeIds.length, indices.length, shards);
+    }
+
+    private static List<String> configuredIgnoredDeciders(Settings settings, ClusterState clusterState, List<IndexMetaData> indices) {
+        List<String> configured = new ArrayList<String>();
+        Settings[] clusterSettings = {settings, clusterState.metaData().settings()};
+        if (hasPrefix(clusterSettings, "cluster.routing.allocation.awareness.")) {
+            configured.add("awareness");
+        }
+        boolean filter = hasPrefix(clusterSettings, "cluster.routing.allocation.include.")
+                || hasPrefix(clusterSettings, "cluster.routing.allocation.exclude.")
+                || hasPrefix(clusterSettings, "cluster.routing.allocation.require.");
+        for (int i = 0; i < indices.size() && !filter; i++) {
+            Settings[] indexSettings = {indices.get(i).settings()};
+            filter = hasPrefix(indexSettings, "index.routing.allocation.include.")
+                    || hasPrefix(indexSettings, "index.routing.allocation.exclude.")
+                    || hasPrefix(indexSettings, "index.routing.allocation.require.");
+        }
+        if (filter) {
+            configured.add("filter");
+        }
+        if (hasPrefix(clusterSettings, "cluster.routing.allocation.disable_")) {
+            configured.add("disable");
+        }
+        if (hasPrefix(clusterSettings, "cluster.routing.allocation.node_concurrent_recoveries")
+                || hasPrefix(clusterSettings, "cluster.routing.allocation.node_initial_primaries_recoveries")) {
+            configured.add("throttling");
+        }
+        return Collections.unmodifiableList(configured);
+    }
+
+    private static boolean hasPrefix(Settings[] settings, String prefix) {
+        for (Settings s : settings) {
+            for (String key : s.getAsMap().keySet()) {
+                if (key.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public SimulationResult simulate(AllocationScenario scenario) {
+        return new SimulatedAllocation(this, scenario).run();
+    }
+
+    /**
+     * Simulates the scenarios in parallel, returning the results in the order of the scenarios.
+     */
+    public List<SimulationResult> simulate(List<AllocationScenario> scenarios) {
+        List<SimulationResult> results = new ArrayList<SimulationResult>(scenarios.size());
+        if (threads <= 1 || scenarios.size() <= 1) {
+            for (AllocationScenario scenario : scenarios) {
+                results.add(simulate(scenario));
+            }
+            return results;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, scenarios.size()),
+                ClientEsExecutors.daemonThreadFactory(settings, "allocation_simulator"));
+        try {
+            List<Future<SimulationResult>> futures = new ArrayList<Future<SimulationResult>>(scenarios.size());
+            for (final AllocationScenario scenario : scenarios) {
+                futures.add(executor.submit(new Callable<SimulationResult>() {
+                    @Override
+                    public SimulationResult call() throws Exception {
+                        return simulate(scenario);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new ElasticSearchException("failed to simulate [" + scenarios.get(i).name() + "]", e.getCause());
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticSearchInterruptedException("interrupted while simulating", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
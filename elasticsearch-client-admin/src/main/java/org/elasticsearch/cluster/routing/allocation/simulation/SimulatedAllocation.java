@@ -0,0 +1,421 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation.simulation;
+
+import org.elasticsearch.cluster.routing.allocation.decider.ClusterRebalanceAllocationDecider.ClusterRebalanceType;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * The allocation of a single scenario. Shard copies are numbered, the copies of a shard are
+ * consecutive with the primary first, and nodes are kept ordered by their number of shards,
+ * so allocating a copy walks the least loaded nodes first and stops at the first one that the
+ * deciders accept.
+ */
+final class SimulatedAllocation {
+
+    private final AllocationSimulator simulator;
+
+    private final AllocationScenario scenario;
+
+    private final String[] nodeIds;
+
+    private final int[] nodeHosts;
+
+    private final int[] nodeLoad;
+
+    // the copies on each node
+    private final int[][] nodeCopies;
+
+    private final int[] nodeCopyCount;
+
+    private final int[] totalShardsPerNode;
+
+    // shards of each index per node, only kept for indices with a shards per node limit
+    private final int[][] indexNodeCount;
+
+    // the first copy of each shard, the primary, plus a last entry with the number of copies
+    private final int[] shardStart;
+
+    private final int[] copyShard;
+
+    private final int[] copyNode;
+
+    private final int[] copyInitialNode;
+
+    private final TreeSet<Integer> nodesByLoad;
+
+    SimulatedAllocation(AllocationSimulator simulator, AllocationScenario scenario) {
+        this.simulator = simulator;
+        this.scenario = scenario;
+
+        int addedNodes = scenario.addedNodes();
+        int[] nodeOrdinals = new int[simulator.nodeIds.length];
+        int nodes = 0;
+        for (int i = 0; i < simulator.nodeIds.length; i++) {
+            nodeOrdinals[i] = scenario.removedNodes().contains(simulator.nodeIds[i]) ? -1 : nodes++;
+        }
+        this.nodeIds = new String[nodes + addedNodes];
+        this.nodeHosts = new int[nodes + addedNodes];
+        for (int i = 0; i < simulator.nodeIds.length; i++) {
+            if (nodeOrdinals[i] != -1) {
+                nodeIds[nodeOrdinals[i]] = simulator.nodeIds[i];
+                nodeHosts[nodeOrdinals[i]] = simulator.nodeHosts[i];
+            }
+        }
+        for (int i = 0; i < addedNodes; i++) {
+            nodeIds[nodes + i] = "simulated_node_" + (i + 1);
+            // each added node is on its own host
+            nodeHosts[nodes + i] = simulator.nodeIds.length + i;
+        }
+        nodes += addedNodes;
+
+        int indices = simulator.indices.length;
+        int[] numberOfReplicas = new int[indices];
+        this.totalShardsPerNode = new int[indices];
+        this.indexNodeCount = new int[indices][];
+        for (int i = 0; i < indices; i++) {
+            numberOfReplicas[i] = Math.max(0, scenario.numberOfReplicas(simulator.indices[i], simulator.numberOfReplicas[i]));
+            totalShardsPerNode[i] = scenario.totalShardsPerNode(simulator.indices[i], simulator.totalShardsPerNode[i]);
+            if (totalShardsPerNode[i] > 0) {
+                indexNodeCount[i] = new int[nodes];
+            }
+        }
+
+        int shards = simulator.shardIndex.length;
+        this.shardStart = new int[shards + 1];
+        for (int shard = 0; shard < shards; shard++) {
+            shardStart[shard + 1] = shardStart[shard] + 1 + numberOfReplicas[simulator.shardIndex[shard]];
+        }
+        int copies = shardStart[shards];
+        this.copyShard = new int[copies];
+        this.copyNode = new int[copies];
+        Arrays.fill(copyNode, -1);
+        for (int shard = 0; shard < shards; shard++) {
+            int start = shardStart[shard];
+            int end = shardStart[shard + 1];
+            Arrays.fill(copyShard, start, end, shard);
+            int next = start + 1;
+            int primaryNode = simulator.shardPrimaryNode[shard] == -1 ? -1 : nodeOrdinals[simulator.shardPrimaryNode[shard]];
+            copyNode[start] = primaryNode;
+            for (int replicaNode : simulator.shardReplicaNodes[shard]) {
+                int node = nodeOrdinals[replicaNode];
+                if (node == -1) {
+                    continue;
+                }
+                if (copyNode[start] == -1) {
+                    // the primary is gone, promote the replica
+                    copyNode[start] = node;
+                } else if (next < end) {
+                    copyNode[next++] = node;
+                }
+            }
+        }
+        this.copyInitialNode = copyNode.clone();
+
+        this.nodeLoad = new int[nodes];
+        this.nodeCopies = new int[nodes][];
+        this.nodeCopyCount = new int[nodes];
+        int capacity = nodes == 0 ? 0 : Math.max(4, 2 * copies / nodes);
+        for (int node = 0; node < nodes; node++) {
+            nodeCopies[node] = new int[capacity];
+        }
+        for (int copy = 0; copy < copies; copy++) {
+            if (copyNode[copy] != -1) {
+                addToNode(copy, copyNode[copy]);
+            }
+        }
+        this.nodesByLoad = new TreeSet<Integer>(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer node1, Integer node2) {
+                int load1 = nodeLoad[node1];
+                int load2 = nodeLoad[node2];
+                if (load1 != load2) {
+                    return load1 < load2 ? -1 : 1;
+                }
+                return node1.compareTo(node2);
+            }
+        });
+        for (int node = 0; node < nodes; node++) {
+            nodesByLoad.add(node);
+        }
+    }
+
+    SimulationResult run() {
+        long start = System.currentTimeMillis();
+        allocateUnassigned();
+        moveShardsThatCannotRemain();
+        if (canRebalance()) {
+            rebalance();
+        }
+
+        int unassignedPrimaries = 0;
+        int unassignedReplicas = 0;
+        int relocations = 0;
+        for (int copy = 0; copy < copyNode.length; copy++) {
+            if (copyNode[copy] == -1) {
+                if (primary(copy)) {
+                    unassignedPrimaries++;
+                } else {
+                    unassignedReplicas++;
+                }
+            } else if (copyInitialNode[copy] != -1 && copyInitialNode[copy] != copyNode[copy]) {
+                relocations++;
+            }
+        }
+        return new SimulationResult(scenario.name(), nodeIds, nodeLoad.clone(), copyNode.length,
+                unassignedPrimaries, unassignedReplicas, relocations, simulator.configuredIgnoredDeciders, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Allocates the primaries first, then the first replica of all shards, and so on.
+     */
+    private void allocateUnassigned() {
+        int shards = shardStart.length - 1;
+        int maxCopies = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            maxCopies = Math.max(maxCopies, shardStart[shard + 1] - shardStart[shard]);
+        }
+        for (int position = 0; position < maxCopies; position++) {
+            for (int shard = 0; shard < shards; shard++) {
+                int copy = shardStart[shard] + position;
+                if (copy >= shardStart[shard + 1] || copyNode[copy] != -1) {
+                    continue;
+                }
+                int node = findNode(copy, Integer.MAX_VALUE);
+                if (node != -1) {
+                    copyNode[copy] = node;
+                    addToNode(copy, node);
+                }
+            }
+        }
+    }
+
+    private void moveShardsThatCannotRemain() {
+        for (int node = 0; node < nodeLoad.length; node++) {
+            for (int i = nodeCopyCount[node] - 1; i >= 0; i--) {
+                int copy = nodeCopies[node][i];
+                if (canRemain(copy, node)) {
+                    continue;
+                }
+                int target = findNode(copy, Integer.MAX_VALUE);
+                if (target != -1) {
+                    move(copy, node, target);
+                }
+            }
+        }
+    }
+
+    private boolean canRebalance() {
+        if (simulator.rebalanceType == ClusterRebalanceType.ALWAYS) {
+            return true;
+        }
+        for (int copy = 0; copy < copyNode.length; copy++) {
+            if (copyNode[copy] == -1 && (primary(copy) || simulator.rebalanceType == ClusterRebalanceType.INDICES_ALL_ACTIVE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves shards from the most to the least loaded nodes, until they differ by at most one
+     * shard or no more shard can move.
+     * <p/>
+     * The copies of a node before its scan position are known not to move anywhere. A move only
+     * makes its source node a better target (one shard, one shard of the index and one copy of the
+     * shard less), so it only rescans those copies against the source node instead of starting
+     * over on all nodes.
+     */
+    private void rebalance() {
+        if (nodeLoad.length < 2) {
+            return;
+        }
+        int[] scanned = new int[nodeLoad.length];
+        int maxMoves = copyNode.length;
+        int moves = 0;
+        while (moves < maxMoves) {
+            int lightest = nodesByLoad.first();
+            int heaviest = -1;
+            for (Iterator<Integer> it = nodesByLoad.descendingIterator(); it.hasNext(); ) {
+                int node = it.next();
+                if (nodeLoad[node] - nodeLoad[lightest] <= 1) {
+                    break;
+                }
+                if (scanned[node] < nodeCopyCount[node]) {
+                    heaviest = node;
+                    break;
+                }
+            }
+            if (heaviest == -1) {
+                return;
+            }
+            int copy = moveOne(heaviest, scanned);
+            if (copy != -1) {
+                moves++;
+                rescan(copy, heaviest, scanned);
+            }
+        }
+    }
+
+    /**
+     * Moves the first copy after the scan position of the node that can move, and advances the
+     * scan position past the ones that can not. Returns the moved copy, <tt>-1</tt> if none.
+     */
+    private int moveOne(int from, int[] scanned) {
+        // only move to nodes that end up with less shards than the source node has now
+        int maxLoad = nodeLoad[from] - 1;
+        for (int i = scanned[from]; i < nodeCopyCount[from]; i++) {
+            int copy = nodeCopies[from][i];
+            int target = findNode(copy, maxLoad);
+            if (target != -1) {
+                // the last copy takes its place, so the scan position stays valid
+                move(copy, from, target);
+                return copy;
+            }
+            scanned[from] = i + 1;
+        }
+        return -1;
+    }
+
+    private void rescan(int moved, int from, int[] scanned) {
+        // the target has more shards, so it can move them to more nodes
+        scanned[copyNode[moved]] = 0;
+        if (simulator.sameHost) {
+            // the other copies of the shard can now go to the other nodes on the host of the source
+            int shard = copyShard[moved];
+            for (int other = shardStart[shard]; other < shardStart[shard + 1]; other++) {
+                if (copyNode[other] != -1) {
+                    scanned[copyNode[other]] = 0;
+                }
+            }
+        }
+        for (Iterator<Integer> it = nodesByLoad.descendingIterator(); it.hasNext(); ) {
+            int node = it.next();
+            if (nodeLoad[from] >= nodeLoad[node] - 1) {
+                break;
+            }
+            for (int i = 0; i < scanned[node]; i++) {
+                if (canAllocate(nodeCopies[node][i], from)) {
+                    scanned[node] = i;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The least loaded node with less than <tt>maxLoad</tt> shards that the copy can be allocated
+     * on, <tt>-1</tt> if none.
+     */
+    private int findNode(int copy, int maxLoad) {
+        for (int node : nodesByLoad) {
+            if (nodeLoad[node] >= maxLoad) {
+                return -1;
+            }
+            if (canAllocate(copy, node)) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    private boolean canAllocate(int copy, int node) {
+        int shard = copyShard[copy];
+        for (int other = shardStart[shard]; other < shardStart[shard + 1]; other++) {
+            int otherNode = copyNode[other];
+            if (other == copy || otherNode == -1) {
+                continue;
+            }
+            // SameShardAllocationDecider
+            if (otherNode == node || (simulator.sameHost && nodeHosts[otherNode] == nodeHosts[node])) {
+                return false;
+            }
+        }
+        // ShardsLimitAllocationDecider
+        int index = simulator.shardIndex[shard];
+        if (totalShardsPerNode[index] > 0 && indexNodeCount[index][node] >= totalShardsPerNode[index]) {
+            return false;
+        }
+        // ReplicaAfterPrimaryActiveAllocationDecider
+        if (!primary(copy) && copyNode[shardStart[shard]] == -1) {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean canRemain(int copy, int node) {
+        int index = simulator.shardIndex[copyShard[copy]];
+        return totalShardsPerNode[index] <= 0 || indexNodeCount[index][node] <= totalShardsPerNode[index];
+    }
+
+    private boolean primary(int copy) {
+        return copy == shardStart[copyShard[copy]];
+    }
+
+    private void move(int copy, int from, int to) {
+        removeFromNode(copy, from);
+        copyNode[copy] = to;
+        addToNode(copy, to);
+    }
+
+    private void addToNode(int copy, int node) {
+        int[] copies = nodeCopies[node];
+        if (nodeCopyCount[node] == copies.length) {
+            copies = Arrays.copyOf(copies, Math.max(4, copies.length * 2));
+            nodeCopies[node] = copies;
+        }
+        copies[nodeCopyCount[node]++] = copy;
+        adjustLoad(node, 1);
+        int index = simulator.shardIndex[copyShard[copy]];
+        if (indexNodeCount[index] != null) {
+            indexNodeCount[index][node]++;
+        }
+    }
+
+    private void removeFromNode(int copy, int node) {
+        int[] copies = nodeCopies[node];
+        int count = nodeCopyCount[node];
+        for (int i = 0; i < count; i++) {
+            if (copies[i] == copy) {
+                copies[i] = copies[count - 1];
+                nodeCopyCount[node] = count - 1;
+                break;
+            }
+        }
+        adjustLoad(node, -1);
+        int index = simulator.shardIndex[copyShard[copy]];
+        if (indexNodeCount[index] != null) {
+            indexNodeCount[index][node]--;
+        }
+    }
+
+    private void adjustLoad(int node, int delta) {
+        // the load is part of the ordering, re-insert the node around the change
+        boolean ordered = nodesByLoad != null && nodesByLoad.remove(node);
+        nodeLoad[node] += delta;
+        if (ordered) {
+            nodesByLoad.add(node);
+        }
+    }
+}
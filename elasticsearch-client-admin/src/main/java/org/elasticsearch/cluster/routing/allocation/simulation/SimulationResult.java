@@ -0,0 +1,148 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation.simulation;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of simulating an {@link AllocationScenario}.
+ */
+public class SimulationResult {
+
+    private final String scenario;
+
+    private final String[] nodeIds;
+
+    private final int[] shardsPerNode;
+
+    private final int totalShards;
+
+    private final int unassignedPrimaries;
+
+    private final int unassignedReplicas;
+
+    private final int relocations;
+
+    private final List<String> configuredIgnoredDeciders;
+
+    private final long tookInMillis;
+
+    SimulationResult(String scenario, String[] nodeIds, int[] shardsPerNode, int totalShards,
+                     int unassignedPrimaries, int unassignedReplicas, int relocations, List<String> configuredIgnoredDeciders,
+                     long tookInMillis) {
+        this.scenario = scenario;
+        this.nodeIds = nodeIds;
+        this.shardsPerNode = shardsPerNode;
+        this.totalShards = totalShards;
+        this.unassignedPrimaries = unassignedPrimaries;
+        this.unassignedReplicas = unassignedReplicas;
+        this.relocations = relocations;
+        this.configuredIgnoredDeciders = configuredIgnoredDeciders;
+        this.tookInMillis = tookInMillis;
+    }
+
+    public String scenario() {
+        return scenario;
+    }
+
+    public int numberOfNodes() {
+        return nodeIds.length;
+    }
+
+    /**
+     * The number of shard copies, primaries and replicas.
+     */
+    public int totalShards() {
+        return totalShards;
+    }
+
+    public int assignedShards() {
+        return totalShards - unassignedPrimaries - unassignedReplicas;
+    }
+
+    public int unassignedPrimaries() {
+        return unassignedPrimaries;
+    }
+
+    public int unassignedReplicas() {
+        return unassignedReplicas;
+    }
+
+    /**
+     * The number of shard copies that end up on another node than in the captured state.
+     */
+    public int relocations() {
+        return relocations;
+    }
+
+    public int minShardsPerNode() {
+        int min = nodeIds.length == 0 ? 0 : Integer.MAX_VALUE;
+        for (int shards : shardsPerNode) {
+            min = Math.min(min, shards);
+        }
+        return min;
+    }
+
+    public int maxShardsPerNode() {
+        int max = 0;
+        for (int shards : shardsPerNode) {
+            max = Math.max(max, shards);
+        }
+        return max;
+    }
+
+    public Map<String, Integer> shardsPerNode() {
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < nodeIds.length; i++) {
+            map.put(nodeIds[i], shardsPerNode[i]);
+        }
+        return map;
+    }
+
+    /**
+     * The allocation deciders the simulation does not take into account, see {@link AllocationSimulator}.
+     */
+    public List<String> ignoredDeciders() {
+        return AllocationSimulator.IGNORED_DECIDERS;
+    }
+
+    /**
+     * The ignored allocation deciders that are configured, the real allocation likely differs
+     * from the simulated one if there are any.
+     */
+    public List<String> configuredIgnoredDeciders() {
+        return configuredIgnoredDeciders;
+    }
+
+    public long tookInMillis() {
+        return tookInMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "simulation[" + scenario + "] nodes [" + nodeIds.length + "], shards [" + assignedShards() + "/" + totalShards
+                + "], unassigned primaries [" + unassignedPrimaries + "], unassigned replicas [" + unassignedReplicas
+                + "], relocations [" + relocations + "], shards per node [" + minShardsPerNode() + ".." + maxShardsPerNode()
+                + "], ignored deciders " + ignoredDeciders() + ", configured ignored deciders " + configuredIgnoredDeciders
+                + ", took [" + tookInMillis + "ms]";
+    }
+}
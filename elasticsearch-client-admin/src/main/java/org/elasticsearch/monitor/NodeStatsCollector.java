@@ -0,0 +1,513 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.monitor;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsRequest;
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
+import org.elasticsearch.client.ClusterAdminClient;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.monitor.fs.FsStats;
+import org.elasticsearch.monitor.jvm.JvmStats;
+import org.elasticsearch.monitor.network.NetworkStats;
+import org.elasticsearch.monitor.os.OsStats;
+import org.elasticsearch.monitor.process.ProcessStats;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.newConcurrentMap;
+
+/**
+ * Collects the os, process, jvm, network, fs and transport stats of all nodes every
+ * <tt>monitor.collector.interval</tt> (defaults to <tt>10s</tt>) and keeps the last
+ * <tt>monitor.collector.history</tt> samples (defaults to <tt>360</tt>) of each node.
+ * <p/>
+ * The samples of a node are kept as raw values in a ring buffer of primitive slots, one per
+ * {@link Metric}, so recording a sample does not allocate. Counters (gc time, cpu time, bytes
+ * received and sent, ...) are turned into per second rates between consecutive samples when
+ * read, skipping intervals in which the counter went back (the node restarted). Averages and
+ * percentiles can be computed over any window up to the history length.
+ */
+public class NodeStatsCollector {
+
+    /**
+     * The collected values. Counters are read as rates per second, gauges as is.
+     */
+    public static enum Metric {
+        /** Used heap in bytes. */
+        HEAP_USED(false),
+        /** Committed heap in bytes. */
+        HEAP_COMMITTED(false),
+        /** Live jvm threads. */
+        THREADS(false),
+        /** Garbage collections per second, of all collectors. */
+        GC_COUNT(true),
+        /** Milliseconds spent in garbage collection per second, of all collectors. */
+        GC_TIME(true),
+        /** Process cpu milliseconds per second. */
+        PROCESS_CPU_TIME(true),
+        /** Process cpu usage in percent. */
+        PROCESS_CPU_PERCENT(false),
+        OPEN_FILE_DESCRIPTORS(false),
+        /** System and user cpu usage of the os in percent. */
+        OS_CPU_PERCENT(false),
+        /** The one minute load average. */
+        LOAD_AVERAGE(false),
+        TCP_CURRENT_ESTABLISHED(false),
+        /** Received tcp segments per second. */
+        TCP_IN_SEGMENTS(true),
+        /** Sent tcp segments per second. */
+        TCP_OUT_SEGMENTS(true),
+        /** Retransmitted tcp segments per second. */
+        TCP_RETRANSMITTED_SEGMENTS(true),
+        /** Available disk space in bytes, of all data paths. */
+        FS_AVAILABLE(false),
+        /** Bytes read from disk per second, of all data paths. */
+        FS_READ_BYTES(true),
+        /** Bytes written to disk per second, of all data paths. */
+        FS_WRITE_BYTES(true),
+        TRANSPORT_SERVER_OPEN(false),
+        /** Transport messages received per second. */
+        TRANSPORT_RX_COUNT(true),
+        /** Transport bytes received per second. */
+        TRANSPORT_RX_BYTES(true),
+        /** Transport messages sent per second. */
+        TRANSPORT_TX_COUNT(true),
+        /** Transport bytes sent per second. */
+        TRANSPORT_TX_BYTES(true);
+
+        private static final Metric[] VALUES = values();
+
+        private final boolean counter;
+
+        Metric(boolean counter) {
+            this.counter = counter;
+        }
+
+        public boolean counter() {
+            return counter;
+        }
+    }
+
+    /**
+     * Marks a value the node did not report.
+     */
+    private static final long MISSING = Long.MIN_VALUE;
+
+    private final ESLogger logger;
+
+    private final ClusterAdminClient client;
+
+    private final ThreadPool threadPool;
+
+    private final TimeValue interval;
+
+    private final int history;
+
+    private final NodesStatsRequest request;
+
+    private final ConcurrentMap<String, NodeHistory> nodes = newConcurrentMap();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile Collector collector;
+
+    private volatile ScheduledFuture<?> scheduled;
+
+    public NodeStatsCollector(ClusterAdminClient client) {
+        this(client, client.settings());
+    }
+
+    public NodeStatsCollector(ClusterAdminClient client, Settings settings) {
+        this.logger = Loggers.getLogger(getClass(), settings);
+        this.client = client;
+        this.threadPool = client.threadPool();
+        this.interval = settings.getAsTime("monitor.collector.interval", TimeValue.timeValueSeconds(10));
+        this.history = Math.max(2, settings.getAsInt("monitor.collector.history", 360));
+        this.request = new NodesStatsRequest(settings.getAsArray("monitor.collector.nodes"))
+                .clear().os(true).process(true).jvm(true).network(true).fs(true).transport(true);
+    }
+
+    /**
+     * Starts collecting, does nothing if already started.
+     */
+    public NodeStatsCollector start() {
+        if (started.compareAndSet(false, true)) {
+            // a collection of a previous start still running sees it is not the current collector and stops
+            Collector collector = new Collector();
+            this.collector = collector;
+            scheduled = threadPool.schedule(TimeValue.timeValueMillis(0), ThreadPool.Names.GENERIC, collector);
+        }
+        return this;
+    }
+
+    public void stop() {
+        started.set(false);
+        ScheduledFuture<?> scheduled = this.scheduled;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    /**
+     * Records the stats of all nodes in the response. Nodes that did not report for the whole
+     * history are dropped.
+     */
+    public void record(NodesStatsResponse response) {
+        long now = System.currentTimeMillis();
+        for (NodeStats stats : response.nodes()) {
+            history(stats.node().id()).record(stats, now);
+        }
+        long expired = now - interval.millis() * history;
+        for (Iterator<NodeHistory> it = nodes.values().iterator(); it.hasNext(); ) {
+            if (it.next().lastSeen < expired) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * The ids of the nodes with samples.
+     */
+    public Set<String> nodes() {
+        return nodes.keySet();
+    }
+
+    /**
+     * The number of samples of the node.
+     */
+    public int samples(String nodeId) {
+        NodeHistory history = nodes.get(nodeId);
+        return history == null ? 0 : history.count();
+    }
+
+    /**
+     * The latest value (or rate) of the metric, <tt>NaN</tt> if unknown.
+     */
+    public double last(String nodeId, Metric metric) {
+        NodeHistory history = nodes.get(nodeId);
+        return history == null ? Double.NaN : history.last(metric);
+    }
+
+    /**
+     * The average of the metric over the samples taken in the given window, <tt>NaN</tt> if
+     * there are none.
+     */
+    public double average(String nodeId, Metric metric, TimeValue window) {
+        NodeHistory history = nodes.get(nodeId);
+        return history == null ? Double.NaN : history.average(metric, window.millis());
+    }
+
+    /**
+     * The percentile (<tt>0</tt> to <tt>100</tt>) of the metric over the samples taken in the
+     * given window, <tt>NaN</tt> if there are none.
+     */
+    public double percentile(String nodeId, Metric metric, TimeValue window, double percentile) {
+        NodeHistory history = nodes.get(nodeId);
+        return history == null ? Double.NaN : history.percentile(metric, window.millis(), percentile);
+    }
+
+    /**
+     * The percentile of the metric over the samples of all nodes taken in the given window.
+     */
+    public double clusterPercentile(Metric metric, TimeValue window, double percentile) {
+        // nodes are added and dropped while collecting, size the array from one snapshot
+        List<NodeHistory> histories = new ArrayList<NodeHistory>(nodes.values());
+        int size = 0;
+        for (NodeHistory history : histories) {
+            size += history.capacity;
+        }
+        double[] values = new double[size];
+        int count = 0;
+        for (NodeHistory history : histories) {
+            count += history.values(metric, window.millis(), values, count);
+        }
+        return percentile(values, count, percentile);
+    }
+
+    private NodeHistory history(String nodeId) {
+        NodeHistory history = nodes.get(nodeId);
+        if (history == null) {
+            history = new NodeHistory(this.history);
+            NodeHistory existing = nodes.putIfAbsent(nodeId, history);
+            if (existing != null) {
+                history = existing;
+            }
+        }
+        return history;
+    }
+
+    private static double percentile(double[] values, int count, double percentile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(values, 0, count);
+        // nearest rank
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return values[Math.min(count - 1, Math.max(0, rank - 1))];
+    }
+
+    /**
+     * The samples of one node. Values are stored in one slot per metric and sample,
+     * <tt>values[metric * capacity + slot]</tt>.
+     */
+    private static class NodeHistory {
+
+        final int capacity;
+
+        final long[] timestamps;
+
+        final long[] values;
+
+        final double[] scratch;
+
+        int next;
+
+        int count;
+
+        volatile long lastSeen;
+
+        NodeHistory(int capacity) {
+            this.capacity = capacity;
+            this.timestamps = new long[capacity];
+            this.values = new long[capacity * Metric.VALUES.length];
+            this.scratch = new double[capacity];
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized void record(NodeStats stats, long now) {
+            lastSeen = now;
+            if (count > 0 && stats.timestamp() <= timestamps[slot(count - 1)]) {
+                // the same or an older sample
+                return;
+            }
+            int slot = next;
+            timestamps[slot] = stats.timestamp();
+            for (Metric metric : Metric.VALUES) {
+                values[metric.ordinal() * capacity + slot] = MISSING;
+            }
+
+            JvmStats jvm = stats.jvm();
+            if (jvm != null) {
+                set(Metric.HEAP_USED, slot, jvm.mem().heapUsed().bytes());
+                set(Metric.HEAP_COMMITTED, slot, jvm.mem().heapCommitted().bytes());
+                set(Metric.THREADS, slot, jvm.threads().count());
+                long gcCount = 0;
+                long gcTime = 0;
+                for (JvmStats.GarbageCollector gc : jvm.gc().collectors()) {
+                    gcCount += gc.collectionCount();
+                    gcTime += gc.collectionTime().millis();
+                }
+                set(Metric.GC_COUNT, slot, gcCount);
+                set(Metric.GC_TIME, slot, gcTime);
+            }
+            ProcessStats process = stats.process();
+            if (process != null) {
+                if (process.cpu() != null) {
+                    set(Metric.PROCESS_CPU_TIME, slot, process.cpu().total().millis());
+                    set(Metric.PROCESS_CPU_PERCENT, slot, process.cpu().percent());
+                }
+                set(Metric.OPEN_FILE_DESCRIPTORS, slot, process.openFileDescriptors());
+            }
+            OsStats os = stats.os();
+            if (os != null) {
+                if (os.cpu() != null) {
+                    set(Metric.OS_CPU_PERCENT, slot, os.cpu().sys() + os.cpu().user());
+                }
+                if (os.loadAverage().length > 0) {
+                    // kept with three decimals
+                    set(Metric.LOAD_AVERAGE, slot, Math.round(os.loadAverage()[0] * 1000));
+                }
+            }
+            NetworkStats network = stats.network();
+            if (network != null && network.tcp() != null) {
+                set(Metric.TCP_CURRENT_ESTABLISHED, slot, network.tcp().currEstab());
+                set(Metric.TCP_IN_SEGMENTS, slot, network.tcp().inSegs());
+                set(Metric.TCP_OUT_SEGMENTS, slot, network.tcp().outSegs());
+                set(Metric.TCP_RETRANSMITTED_SEGMENTS, slot, network.tcp().retransSegs());
+            }
+            FsStats fs = stats.fs();
+            if (fs != null) {
+                long available = 0;
+                long readBytes = 0;
+                long writeBytes = 0;
+                for (FsStats.Info info : fs) {
+                    available += Math.max(0, info.available().bytes());
+                    readBytes += Math.max(0, info.diskReadSizeInBytes());
+                    writeBytes += Math.max(0, info.diskWriteSizeInBytes());
+                }
+                set(Metric.FS_AVAILABLE, slot, available);
+                set(Metric.FS_READ_BYTES, slot, readBytes);
+                set(Metric.FS_WRITE_BYTES, slot, writeBytes);
+            }
+            TransportStats transport = stats.transport();
+            if (transport != null) {
+                set(Metric.TRANSPORT_SERVER_OPEN, slot, transport.serverOpen());
+                set(Metric.TRANSPORT_RX_COUNT, slot, transport.rxCount());
+                set(Metric.TRANSPORT_RX_BYTES, slot, transport.rxSize().bytes());
+                set(Metric.TRANSPORT_TX_COUNT, slot, transport.txCount());
+                set(Metric.TRANSPORT_TX_BYTES, slot, transport.txSize().bytes());
+            }
+
+            next = (next + 1) % capacity;
+            if (count < capacity) {
+                count++;
+            }
+        }
+
+        private void set(Metric metric, int slot, long value) {
+            values[metric.ordinal() * capacity + slot] = value < 0 ? MISSING : value;
+        }
+
+        /**
+         * The slot of the i-th sample, oldest first.
+         */
+        private int slot(int i) {
+            return (next - count + i + capacity) % capacity;
+        }
+
+        /**
+         * The value of the i-th sample, the rate since the previous sample for counters.
+         */
+        private double value(Metric metric, int i) {
+            int offset = metric.ordinal() * capacity;
+            int slot = slot(i);
+            long value = values[offset + slot];
+            if (value == MISSING) {
+                return Double.NaN;
+            }
+            if (!metric.counter()) {
+                return metric == Metric.LOAD_AVERAGE ? value / 1000d : value;
+            }
+            if (i == 0) {
+                return Double.NaN;
+            }
+            int previousSlot = slot(i - 1);
+            long previous = values[offset + previousSlot];
+            long took = timestamps[slot] - timestamps[previousSlot];
+            if (previous == MISSING || value < previous || took <= 0) {
+                return Double.NaN;
+            }
+            return (value - previous) * 1000d / took;
+        }
+
+        synchronized double last(Metric metric) {
+            return count == 0 ? Double.NaN : value(metric, count - 1);
+        }
+
+        synchronized double average(Metric metric, long window) {
+            double sum = 0;
+            int n = 0;
+            for (int i = first(window); i < count; i++) {
+                double value = value(metric, i);
+                if (!Double.isNaN(value)) {
+                    sum += value;
+                    n++;
+                }
+            }
+            return n == 0 ? Double.NaN : sum / n;
+        }
+
+        synchronized double percentile(Metric metric, long window, double percentile) {
+            return NodeStatsCollector.percentile(scratch, values(metric, window, scratch, 0), percentile);
+        }
+
+        /**
+         * Copies the values of the metric in the window to the array, returns how many.
+         */
+        synchronized int values(Metric metric, long window, double[] to, int offset) {
+            int n = 0;
+            for (int i = first(window); i < count; i++) {
+                double value = value(metric, i);
+                if (!Double.isNaN(value)) {
+                    to[offset + n++] = value;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * The first sample taken within the window before the latest one.
+         */
+        private int first(long window) {
+            if (count == 0) {
+                return 0;
+            }
+            long from = timestamps[slot(count - 1)] - window;
+            int i = count - 1;
+            while (i > 0 && timestamps[slot(i - 1)] >= from) {
+                i--;
+            }
+            return i;
+        }
+    }
+
+    private class Collector implements Runnable {
+
+        @Override
+        public void run() {
+            if (!running()) {
+                return;
+            }
+            client.nodesStats(request, new ActionListener<NodesStatsResponse>() {
+                @Override
+                public void onResponse(NodesStatsResponse response) {
+                    try {
+                        record(response);
+                    } finally {
+                        reschedule();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    logger.debug("failed to collect node stats", e);
+                    reschedule();
+                }
+            });
+        }
+
+        private boolean running() {
+            return started.get() && collector == this;
+        }
+
+        private void reschedule() {
+            if (running()) {
+                scheduled = threadPool.schedule(interval, ThreadPool.Names.GENERIC, this);
+            }
+        }
+    }
+}
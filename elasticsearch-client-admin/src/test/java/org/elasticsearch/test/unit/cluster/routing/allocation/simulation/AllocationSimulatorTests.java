@@ -0,0 +1,262 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.cluster.routing.allocation.simulation;
+
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.ImmutableShardRouting;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.cluster.routing.allocation.decider.SameShardAllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.ShardsLimitAllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.simulation.AllocationScenario;
+import org.elasticsearch.cluster.routing.allocation.simulation.AllocationSimulator;
+import org.elasticsearch.cluster.routing.allocation.simulation.SimulationResult;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.index.shard.ShardId;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+@Test
+public class AllocationSimulatorTests {
+
+    @Test
+    public void testSameShard() throws Exception {
+        ClusterState state = new StateBuilder().node("n1", 1).node("n2", 2)
+                .index("test", 1, 2, -1)
+                .build();
+        AllocationSimulator simulator = new AllocationSimulator(state);
+
+        SimulationResult result = simulator.simulate(new AllocationScenario("current"));
+        assertThat(result.totalShards(), equalTo(3));
+        assertThat(result.unassignedPrimaries(), equalTo(0));
+        // the second replica has no node without a copy of the shard
+        assertThat(result.unassignedReplicas(), equalTo(1));
+        assertThat(result.maxShardsPerNode(), equalTo(1));
+
+        result = simulator.simulate(new AllocationScenario("add").addNodes(1));
+        assertThat(result.numberOfNodes(), equalTo(3));
+        assertThat(result.unassignedReplicas(), equalTo(0));
+        assertThat(result.shardsPerNode().get("simulated_node_1"), equalTo(1));
+    }
+
+    @Test
+    public void testSameHost() throws Exception {
+        ClusterState state = new StateBuilder().node("n1", 1).node("n2", 1).node("n3", 2).node("n4", 2)
+                .index("test", 1, 2, -1)
+                .build();
+
+        SimulationResult result = new AllocationSimulator(state).simulate(new AllocationScenario("current"));
+        assertThat(result.unassignedReplicas(), equalTo(0));
+
+        AllocationSimulator simulator = new AllocationSimulator(state, settingsBuilder().put(SameShardAllocationDecider.SAME_HOST_SETTING, true).build());
+        result = simulator.simulate(new AllocationScenario("current"));
+        assertThat(result.assignedShards(), equalTo(2));
+        assertThat(result.unassignedReplicas(), equalTo(1));
+
+        // added nodes are each on their own host
+        result = simulator.simulate(new AllocationScenario("add").addNodes(1));
+        assertThat(result.unassignedReplicas(), equalTo(0));
+        assertThat(result.shardsPerNode().get("simulated_node_1"), equalTo(1));
+    }
+
+    @Test
+    public void testTotalShardsPerNodeAllocate() throws Exception {
+        ClusterState state = new StateBuilder().node("n1", 1).node("n2", 2)
+                .index("test", 4, 0, 1)
+                .build();
+        AllocationSimulator simulator = new AllocationSimulator(state);
+
+        SimulationResult result = simulator.simulate(new AllocationScenario("current"));
+        assertThat(result.assignedShards(), equalTo(2));
+        assertThat(result.unassignedPrimaries(), equalTo(2));
+
+        result = simulator.simulate(new AllocationScenario("add").addNodes(2));
+        assertThat(result.unassignedPrimaries(), equalTo(0));
+        assertThat(result.maxShardsPerNode(), equalTo(1));
+
+        result = simulator.simulate(new AllocationScenario("unlimited").totalShardsPerNode(-1, "test"));
+        assertThat(result.unassignedPrimaries(), equalTo(0));
+        assertThat(result.maxShardsPerNode(), equalTo(2));
+    }
+
+    @Test
+    public void testTotalShardsPerNodeRemain() throws Exception {
+        ClusterState state = new StateBuilder().node("n1", 1).node("n2", 2)
+                .index("test", 4, 0, -1, "n1", "n1", "n1", "n1")
+                .build();
+        AllocationSimulator simulator = new AllocationSimulator(state);
+
+        SimulationResult result = simulator.simulate(new AllocationScenario("limit 2").totalShardsPerNode(2, "test"));
+        assertThat(result.shardsPerNode().get("n1"), equalTo(2));
+        assertThat(result.shardsPerNode().get("n2"), equalTo(2));
+        assertThat(result.relocations(), equalTo(2));
+
+        // the shards that have nowhere to go stay where they are
+        result = simulator.simulate(new AllocationScenario("limit 1").totalShardsPerNode(1, "test"));
+        assertThat(result.shardsPerNode().get("n1"), equalTo(3));
+        assertThat(result.shardsPerNode().get("n2"), equalTo(1));
+        assertThat(result.unassignedPrimaries(), equalTo(0));
+        assertThat(result.relocations(), equalTo(1));
+    }
+
+    @Test
+    public void testReplicaPromotion() throws Exception {
+        ClusterState state = new StateBuilder().node("n1", 1).node("n2", 2).node("n3", 3)
+                .index("test", 2, 1, -1, "n1,n2", "n1,n2")
+                .build();
+        AllocationSimulator simulator = new AllocationSimulator(state);
+
+        SimulationResult result = simulator.simulate(new AllocationScenario("remove").removeNodes("n1"));
+        assertThat(result.numberOfNodes(), equalTo(2));
+        assertThat(result.unassignedPrimaries(), equalTo(0));
+        assertThat(result.unassignedReplicas(), equalTo(0));
+        assertThat(result.shardsPerNode().get("n2"), equalTo(2));
+        assertThat(result.shardsPerNode().get("n3"), equalTo(2));
+        // the promoted replicas did not move
+        assertThat(result.relocations(), equalTo(0));
+
+        result = simulator.simulate(new AllocationScenario("remove two").removeNodes("n1", "n3"));
+        assertThat(result.unassignedPrimaries(), equalTo(0));
+        assertThat(result.unassignedReplicas(), equalTo(2));
+    }
+
+    @Test
+    public void testRebalanceStopsWithinOneShard() throws Exception {
+        ClusterState state = new StateBuilder().node("n1", 1).node("n2", 2)
+                .index("test", 5, 0, -1, "n1", "n1", "n1", "n1", "n1")
+                .build();
+        AllocationSimulator simulator = new AllocationSimulator(state);
+
+        SimulationResult result = simulator.simulate(new AllocationScenario("current"));
+        assertThat(result.shardsPerNode().get("n1"), equalTo(3));
+        assertThat(result.shardsPerNode().get("n2"), equalTo(2));
+        assertThat(result.relocations(), equalTo(2));
+
+        result = simulator.simulate(new AllocationScenario("add").addNodes(1));
+        assertThat(result.shardsPerNode().get("n1"), equalTo(2));
+        assertThat(result.minShardsPerNode(), equalTo(1));
+        assertThat(result.relocations(), equalTo(3));
+    }
+
+    @Test
+    public void testRebalanceWaitsForUnassignedShards() throws Exception {
+        ClusterState state = new StateBuilder().node("n1", 1).node("n2", 2).node("n3", 3)
+                .index("a", 4, 0, -1, "n1", "n1", "n1", "n1")
+                .index("b", 1, 3, -1, "n1")
+                .build();
+
+        // indices_all_active by default, and one replica of b can not be allocated
+        SimulationResult result = new AllocationSimulator(state).simulate(new AllocationScenario("current"));
+        assertThat(result.unassignedReplicas(), equalTo(1));
+        assertThat(result.shardsPerNode().get("n1"), equalTo(5));
+        assertThat(result.relocations(), equalTo(0));
+
+        for (String allowRebalance : new String[]{"indices_primaries_active", "always"}) {
+            Settings settings = settingsBuilder().put("cluster.routing.allocation.allow_rebalance", allowRebalance).build();
+            result = new AllocationSimulator(state, settings).simulate(new AllocationScenario("current"));
+            assertThat(result.unassignedReplicas(), equalTo(1));
+            assertThat(result.shardsPerNode().get("n1"), equalTo(3));
+            assertThat(result.minShardsPerNode(), equalTo(2));
+            assertThat(result.relocations(), equalTo(2));
+        }
+    }
+
+    @Test
+    public void testNumberOfReplicas() throws Exception {
+        ClusterState state = new StateBuilder().node("n1", 1).node("n2", 2)
+                .index("test", 2, 1, -1, "n1,n2", "n2,n1")
+                .build();
+        AllocationSimulator simulator = new AllocationSimulator(state);
+
+        SimulationResult result = simulator.simulate(new AllocationScenario("no replicas").numberOfReplicas(0, "te*"));
+        assertThat(result.totalShards(), equalTo(2));
+        assertThat(result.shardsPerNode().get("n1"), equalTo(1));
+        assertThat(result.shardsPerNode().get("n2"), equalTo(1));
+        assertThat(result.relocations(), equalTo(0));
+
+        result = simulator.simulate(new AllocationScenario("two replicas").numberOfReplicas(2, "test"));
+        assertThat(result.totalShards(), equalTo(6));
+        assertThat(result.assignedShards(), equalTo(4));
+        assertThat(result.unassignedReplicas(), equalTo(2));
+
+        result = simulator.simulate(new AllocationScenario("other index").numberOfReplicas(0, "other"));
+        assertThat(result.totalShards(), equalTo(4));
+        assertThat(result.unassignedReplicas(), equalTo(0));
+    }
+
+    /**
+     * Builds a cluster state with started shards. Each node is on the host with the given number,
+     * and the copies of a shard are given as the comma separated node ids, the primary first.
+     */
+    private static class StateBuilder {
+
+        private final DiscoveryNodes.Builder nodes = DiscoveryNodes.newNodesBuilder();
+
+        private final MetaData.Builder metaData = MetaData.newMetaDataBuilder();
+
+        private final RoutingTable.Builder routingTable = RoutingTable.builder();
+
+        StateBuilder node(String nodeId, int host) throws UnknownHostException {
+            InetAddress address = InetAddress.getByAddress(new byte[]{10, 0, 0, (byte) host});
+            nodes.put(new DiscoveryNode(nodeId, new InetSocketTransportAddress(address, 9300)));
+            return this;
+        }
+
+        StateBuilder index(String index, int shards, int replicas, int totalShardsPerNode, String... shardNodes) {
+            ImmutableSettings.Builder settings = settingsBuilder();
+            if (totalShardsPerNode > 0) {
+                settings.put(ShardsLimitAllocationDecider.INDEX_TOTAL_SHARDS_PER_NODE, totalShardsPerNode);
+            }
+            metaData.put(IndexMetaData.newIndexMetaDataBuilder(index).settings(settings)
+                    .numberOfShards(shards).numberOfReplicas(replicas));
+            IndexRoutingTable.Builder indexRoutingTable = new IndexRoutingTable.Builder(index);
+            for (int shard = 0; shard < shardNodes.length; shard++) {
+                IndexShardRoutingTable.Builder shardRoutingTable = new IndexShardRoutingTable.Builder(new ShardId(index, shard), true);
+                String[] nodeIds = shardNodes[shard].split(",");
+                for (int i = 0; i < nodeIds.length; i++) {
+                    shardRoutingTable.addShard(new ImmutableShardRouting(index, shard, nodeIds[i], i == 0, ShardRoutingState.STARTED, 1));
+                }
+                indexRoutingTable.addIndexShard(shardRoutingTable.build());
+            }
+            routingTable.add(indexRoutingTable);
+            return this;
+        }
+
+        ClusterState build() {
+            return ClusterState.builder().nodes(nodes).metaData(metaData).routingTable(routingTable).build();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.monitor;
+
+import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
+import org.elasticsearch.client.ClusterAdminClient;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.transport.DummyTransportAddress;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.monitor.NodeStatsCollector;
+import org.elasticsearch.monitor.NodeStatsCollector.Metric;
+import org.elasticsearch.transport.TransportStats;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+@Test
+public class NodeStatsCollectorTests {
+
+    private static final TimeValue ALL = TimeValue.timeValueHours(1);
+
+    @Test
+    public void testWraparound() {
+        NodeStatsCollector collector = collector(3);
+        for (int i = 1; i <= 5; i++) {
+            collector.record(response(stats("node1", i * 1000, i, 0)));
+        }
+        assertThat(collector.samples("node1"), equalTo(3));
+        assertThat(collector.last("node1", Metric.TRANSPORT_SERVER_OPEN), equalTo(5.0));
+        // only the last three samples are left
+        assertThat(collector.average("node1", Metric.TRANSPORT_SERVER_OPEN, ALL), equalTo(4.0));
+        assertThat(collector.percentile("node1", Metric.TRANSPORT_SERVER_OPEN, ALL, 0), equalTo(3.0));
+        assertThat(collector.percentile("node1", Metric.TRANSPORT_SERVER_OPEN, ALL, 100), equalTo(5.0));
+        // the window reaches back to the sample taken one second before the latest one
+        assertThat(collector.average("node1", Metric.TRANSPORT_SERVER_OPEN, TimeValue.timeValueSeconds(1)), equalTo(4.5));
+
+        // an older sample is ignored
+        collector.record(response(stats("node1", 2000, 100, 0)));
+        assertThat(collector.samples("node1"), equalTo(3));
+        assertThat(collector.last("node1", Metric.TRANSPORT_SERVER_OPEN), equalTo(5.0));
+    }
+
+    @Test
+    public void testCounterReset() {
+        NodeStatsCollector collector = collector(5);
+        long[] rxCounts = {0, 1000, 3000, 10, 1010};
+        for (int i = 0; i < rxCounts.length; i++) {
+            collector.record(response(stats("node1", (i + 1) * 1000, 1, rxCounts[i])));
+        }
+        // the first sample has no rate, and neither does the one after the restart
+        assertThat(collector.last("node1", Metric.TRANSPORT_RX_COUNT), equalTo(1000.0));
+        assertThat(collector.average("node1", Metric.TRANSPORT_RX_COUNT, ALL), equalTo(4000.0 / 3));
+        assertThat(collector.percentile("node1", Metric.TRANSPORT_RX_COUNT, ALL, 100), equalTo(2000.0));
+
+        // once the samples before the restart are dropped, only the oldest sample has no rate
+        collector.record(response(stats("node1", 6000, 1, 3010)));
+        collector.record(response(stats("node1", 8000, 1, 5010)));
+        collector.record(response(stats("node1", 9000, 1, 5510)));
+        assertThat(collector.average("node1", Metric.TRANSPORT_RX_COUNT, ALL), equalTo((1000.0 + 2000 + 1000 + 500) / 4));
+    }
+
+    @Test
+    public void testClusterPercentile() {
+        NodeStatsCollector collector = collector(3);
+        for (int i = 1; i <= 3; i++) {
+            collector.record(response(stats("node1", i * 1000, i, 0), stats("node2", i * 1000, i + 3, 0)));
+        }
+        assertThat(collector.nodes().size(), equalTo(2));
+        assertThat(collector.clusterPercentile(Metric.TRANSPORT_SERVER_OPEN, ALL, 50), equalTo(3.0));
+        assertThat(collector.clusterPercentile(Metric.TRANSPORT_SERVER_OPEN, ALL, 100), equalTo(6.0));
+        assertThat(Double.isNaN(collector.clusterPercentile(Metric.HEAP_USED, ALL, 50)), equalTo(true));
+    }
+
+    private static NodeStatsCollector collector(int history) {
+        ClusterAdminClient client = (ClusterAdminClient) Proxy.newProxyInstance(NodeStatsCollectorTests.class.getClassLoader(),
+                new Class[]{ClusterAdminClient.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                return null;
+            }
+        });
+        return new NodeStatsCollector(client, settingsBuilder().put("monitor.collector.history", history).build());
+    }
+
+    private static NodeStats stats(String nodeId, long timestamp, long serverOpen, long rxCount) {
+        return new NodeStats(new DiscoveryNode(nodeId, DummyTransportAddress.INSTANCE), timestamp, null, null,
+                null, null, null, null, null, null, new TransportStats(serverOpen, rxCount, 0, 0, 0), null);
+    }
+
+    private static NodesStatsResponse response(NodeStats... stats) {
+        return new NodesStatsResponse(new ClusterName("test"), stats);
+    }
+}
@@ -0,0 +1,39 @@
+#!/bin/sh
+
+# Runs the benchmarks and keeps the JSON results as baseline/<name>.json, together with the
+# JVM and hardware they were taken on in baseline/<name>.txt. Any further arguments are passed
+# to JMH, like the name of a single benchmark class.
+#
+#   mvn -P default,benchmarks package -pl elasticsearch-client-benchmarks -am
+#   cd elasticsearch-client-benchmarks && ./baseline.sh <name> [jmh options]
+
+if [ $# -lt 1 ]; then
+  echo "usage: $0 <name> [jmh options]" >&2
+  exit 1
+fi
+NAME=$1
+shift
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+if [ ! -f target/benchmarks.jar ]; then
+  echo "target/benchmarks.jar not found, build it first" >&2
+  exit 1
+fi
+
+{
+  echo "date: `date -u +%Y-%m-%dT%H:%M:%SZ`"
+  echo "commit: `git rev-parse HEAD 2>/dev/null`"
+  echo "os: `uname -srm`"
+  if [ -r /proc/cpuinfo ]; then
+    echo "cpu: `grep -m1 'model name' /proc/cpuinfo | cut -d: -f2 | sed 's/^ *//'`"
+    echo "cores: `grep -c ^processor /proc/cpuinfo`"
+    echo "memory: `grep -m1 MemTotal /proc/meminfo | cut -d: -f2 | sed 's/^ *//'`"
+  else
+    echo "cpu: `sysctl -n machdep.cpu.brand_string 2>/dev/null`"
+    echo "cores: `sysctl -n hw.ncpu 2>/dev/null`"
+    echo "memory: `sysctl -n hw.memsize 2>/dev/null`"
+  fi
+  echo "jvm:"
+  "$JAVA" -version 2>&1 | sed 's/^/  /'
+} > baseline/$NAME.txt
+
+"$JAVA" -jar target/benchmarks.jar -rf json -rff baseline/$NAME.json "$@"
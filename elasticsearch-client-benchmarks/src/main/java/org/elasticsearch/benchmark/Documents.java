@@ -0,0 +1,97 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.benchmark;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Reproducible documents for the benchmarks, log event like, with a few strings, numbers, a
+ * date, an array and a nested object, about 500 bytes as JSON.
+ */
+public class Documents {
+
+    private static final String[] WORDS = {"elasticsearch", "client", "transport", "bulk", "index", "search",
+            "shard", "replica", "node", "cluster", "mapping", "query", "filter", "facet", "document", "field"};
+
+    private Documents() {
+    }
+
+    public static Map<String, Object> document(int i) {
+        Random random = new Random(i);
+        Map<String, Object> document = new LinkedHashMap<String, Object>();
+        document.put("id", i);
+        document.put("timestamp", 1357000000000L + i * 1000L);
+        document.put("host", "host-" + random.nextInt(100) + ".example.com");
+        document.put("level", random.nextBoolean() ? "INFO" : "WARN");
+        document.put("message", sentence(random, 20));
+        document.put("took", random.nextDouble() * 100);
+        document.put("success", random.nextBoolean());
+        List<String> tags = new ArrayList<String>();
+        for (int t = 0; t < 4; t++) {
+            tags.add(WORDS[random.nextInt(WORDS.length)]);
+        }
+        document.put("tags", tags);
+        Map<String, Object> user = new LinkedHashMap<String, Object>();
+        user.put("name", WORDS[random.nextInt(WORDS.length)] + random.nextInt(1000));
+        user.put("age", 18 + random.nextInt(60));
+        user.put("address", sentence(random, 4));
+        document.put("user", user);
+        return document;
+    }
+
+    public static BytesReference source(int i, XContentType type) throws IOException {
+        return XContentFactory.contentBuilder(type).map(document(i)).bytes();
+    }
+
+    /**
+     * A bulk body of <tt>count</tt> index actions, as sent to the <tt>_bulk</tt> endpoint.
+     */
+    public static String bulkBody(int count) throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            body.append("{\"index\":{\"_index\":\"test\",\"_type\":\"type\",\"_id\":\"").append(i).append("\"}}\n");
+            XContentBuilder builder = XContentFactory.jsonBuilder().map(document(i));
+            body.append(builder.string()).append('\n');
+        }
+        return body.toString();
+    }
+
+    public static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.benchmark.bulk;
+
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.HttpRequest;
+import org.elasticsearch.benchmark.Documents;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.http.action.bulk.HttpBulkAction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a bulk body into a bulk request, and encoding a bulk request as the body of the HTTP
+ * bulk action.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BulkBenchmark {
+
+    @Param({"100", "1000"})
+    public int actions;
+
+    private BytesReference body;
+
+    private BulkRequest request;
+
+    private BenchmarkHttpBulkAction httpBulkAction;
+
+    @Setup
+    public void setup() throws Exception {
+        body = new BytesArray(Documents.bulkBody(actions));
+        request = new BulkRequest();
+        for (int i = 0; i < actions; i++) {
+            request.add(new IndexRequest("test", "type", Integer.toString(i)).source(Documents.document(i)));
+        }
+        httpBulkAction = new BenchmarkHttpBulkAction();
+    }
+
+    @Benchmark
+    public BulkRequest parse() throws Exception {
+        return new BulkRequest().add(body, false, null, null);
+    }
+
+    @Benchmark
+    public HttpRequest httpBody() throws IOException {
+        return httpBulkAction.request(request);
+    }
+
+    static class BenchmarkHttpBulkAction extends HttpBulkAction {
+
+        HttpRequest request(BulkRequest request) throws IOException {
+            return toRequest(request);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.benchmark.compress;
+
+import org.elasticsearch.ElasticSearchIllegalStateException;
+import org.elasticsearch.benchmark.Documents;
+import org.elasticsearch.common.compress.BasicCompressor;
+import org.elasticsearch.common.compress.lzf.BasicLZFCompressor;
+import org.elasticsearch.common.compress.snappy.xerial.ClientXerialSnappyCompressor;
+import org.elasticsearch.common.compress.snappy.xerial.XerialSnappy;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compressing and uncompressing a bulk body with LZF and Snappy, in one shot and through the
+ * compressed streams used by the transport.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressBenchmark {
+
+    @Param({"lzf", "snappy"})
+    public String compressor;
+
+    @Param({"100", "1000"})
+    public int documents;
+
+    private BasicCompressor basicCompressor;
+
+    private byte[] data;
+
+    private byte[] compressed;
+
+    private BytesStreamOutput out;
+
+    @Setup
+    public void setup() throws IOException {
+        if ("lzf".equals(compressor)) {
+            basicCompressor = new BasicLZFCompressor();
+        } else {
+            if (!XerialSnappy.available) {
+                throw new ElasticSearchIllegalStateException("snappy unavailable", XerialSnappy.failure);
+            }
+            basicCompressor = new ClientXerialSnappyCompressor();
+        }
+        data = Documents.bulkBody(documents).getBytes("UTF-8");
+        compressed = basicCompressor.compress(data, 0, data.length);
+        out = new BytesStreamOutput();
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        return basicCompressor.compress(data, 0, data.length);
+    }
+
+    @Benchmark
+    public byte[] uncompress() throws IOException {
+        return basicCompressor.uncompress(compressed, 0, compressed.length);
+    }
+
+    @Benchmark
+    public int compressStream() throws IOException {
+        out.reset();
+        StreamOutput stream = basicCompressor.streamOutput(out);
+        stream.writeBytes(data, 0, data.length);
+        stream.close();
+        return out.size();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.benchmark.metadata;
+
+import org.elasticsearch.action.support.IgnoreIndices;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving wildcard index expressions against the meta data of many daily indices, for
+ * expressions resolved before and for the first resolution on new meta data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WildcardsBenchmark {
+
+    private static final String[][] EXPRESSIONS = {
+            {"logs-*"},
+            {"logs-2012.01.*"},
+            {"*-debug"},
+            {"logs-2012.0*", "-logs-2012.01.0*"},
+            {"metrics-2012.01.01", "logs-2012.02.*"}
+    };
+
+    @Param({"100", "1000"})
+    public int indices;
+
+    private MetaData metaData;
+
+    private MetaData freshMetaData;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        MetaData.Builder builder = MetaData.builder();
+        for (int i = 0; i < indices; i++) {
+            // two kinds of daily indices, with 28 days per month
+            int day = i / 2;
+            String name = String.format(Locale.ROOT, "%s-%04d.%02d.%02d", i % 2 == 0 ? "logs" : "metrics",
+                    2012 + day / (28 * 12), 1 + (day / 28) % 12, 1 + day % 28);
+            if (i % 10 == 0) {
+                name += "-debug";
+            }
+            builder.put(IndexMetaData.builder(name).numberOfShards(1).numberOfReplicas(1));
+        }
+        metaData = builder.build();
+    }
+
+    @Setup(Level.Invocation)
+    public void freshMetaData() {
+        // the resolved expressions are cached per meta data, new meta data starts without them
+        freshMetaData = MetaData.builder().metaData(metaData).build();
+    }
+
+    @Benchmark
+    public String[] resolve() {
+        String[] expression = EXPRESSIONS[next++ % EXPRESSIONS.length];
+        return metaData.convertFromWildcards(expression, true, IgnoreIndices.MISSING);
+    }
+
+    @Benchmark
+    public String[] resolveFirst() {
+        String[] expression = EXPRESSIONS[next++ % EXPRESSIONS.length];
+        return freshMetaData.convertFromWildcards(expression, true, IgnoreIndices.MISSING);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.benchmark.stream;
+
+import org.elasticsearch.benchmark.Documents;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.HandlesStreamInput;
+import org.elasticsearch.common.io.stream.HandlesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The string and vint codecs of the stream output and input, and the handles stream that writes
+ * repeated strings (like index and type names) as handles.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamBenchmark {
+
+    private static final int COUNT = 1000;
+
+    private String[] strings;
+
+    private int[] ints;
+
+    private String[] names;
+
+    private BytesStreamOutput out;
+
+    private BytesReference stringBytes;
+
+    private BytesReference vIntBytes;
+
+    private BytesReference handlesBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(0);
+        strings = new String[COUNT];
+        ints = new int[COUNT];
+        names = new String[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            strings[i] = Documents.sentence(random, 1 + random.nextInt(8));
+            // mostly small numbers, like lengths and counts
+            ints[i] = random.nextInt(10) == 0 ? random.nextInt() & Integer.MAX_VALUE : random.nextInt(1000);
+            names[i] = "index-" + random.nextInt(5);
+        }
+        out = new BytesStreamOutput();
+        writeStrings();
+        stringBytes = out.bytes().copyBytesArray();
+        writeVInts();
+        vIntBytes = out.bytes().copyBytesArray();
+        writeHandles();
+        handlesBytes = out.bytes().copyBytesArray();
+    }
+
+    @Benchmark
+    public int writeStrings() throws IOException {
+        out.reset();
+        for (String string : strings) {
+            out.writeString(string);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public int readStrings() throws IOException {
+        StreamInput in = new BytesStreamInput(stringBytes);
+        int length = 0;
+        for (int i = 0; i < COUNT; i++) {
+            length += in.readString().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int writeVInts() throws IOException {
+        out.reset();
+        for (int value : ints) {
+            out.writeVInt(value);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public int readVInts() throws IOException {
+        StreamInput in = new BytesStreamInput(vIntBytes);
+        int sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += in.readVInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int writeHandles() throws IOException {
+        out.reset();
+        HandlesStreamOutput handles = new HandlesStreamOutput(out);
+        for (String name : names) {
+            handles.writeString(name);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public int readHandles() throws IOException {
+        HandlesStreamInput in = new HandlesStreamInput(new BytesStreamInput(handlesBytes));
+        int length = 0;
+        for (int i = 0; i < COUNT; i++) {
+            length += in.readString().length();
+        }
+        return length;
+    }
+}
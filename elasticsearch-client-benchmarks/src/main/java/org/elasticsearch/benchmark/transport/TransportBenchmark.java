@@ -0,0 +1,206 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.benchmark.transport;
+
+import org.elasticsearch.benchmark.Documents;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.threadpool.transport.TransportThreadPool;
+import org.elasticsearch.transport.BaseTransportRequestHandler;
+import org.elasticsearch.transport.BaseTransportResponseHandler;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.client.ClientTransportService;
+import org.elasticsearch.transport.local.LocalClientTransport;
+import org.elasticsearch.transport.netty.ClientNettyTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request and response round trip between two transport services in the same JVM, over the
+ * local transport, or over the netty transport on the loopback interface (with and without
+ * compression). The request carries a document source and the response echoes it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+
+    private static final String ACTION = "benchmark/echo";
+
+    @Param({"local", "netty", "netty_compressed"})
+    public String transport;
+
+    private ThreadPool threadPool;
+
+    private ClientTransportService server;
+
+    private ClientTransportService client;
+
+    private DiscoveryNode serverNode;
+
+    private BytesReference source;
+
+    @Setup
+    public void setup() throws IOException {
+        threadPool = new TransportThreadPool();
+        Settings serverSettings = ImmutableSettings.settingsBuilder()
+                .put("transport.host", "127.0.0.1")
+                .put("transport.tcp.port", "9700-9800")
+                .put("transport.tcp.compress", "netty_compressed".equals(transport))
+                .build();
+        Settings clientSettings = ImmutableSettings.settingsBuilder()
+                .put(serverSettings)
+                .put("network.server", false)
+                .build();
+        server = new ClientTransportService(serverSettings, transport(serverSettings), threadPool).start();
+        client = new ClientTransportService(clientSettings, transport(clientSettings), threadPool).start();
+        server.registerHandler(ACTION, new BaseTransportRequestHandler<EchoRequest>() {
+            @Override
+            public EchoRequest newInstance() {
+                return new EchoRequest();
+            }
+
+            @Override
+            public void messageReceived(EchoRequest request, TransportChannel channel) throws Exception {
+                channel.sendResponse(new EchoResponse(request.source));
+            }
+
+            @Override
+            public String executor() {
+                return ThreadPool.Names.SAME;
+            }
+        });
+        serverNode = new DiscoveryNode("server", server.boundAddress().publishAddress());
+        client.connectToNode(serverNode);
+        source = Documents.source(1, XContentType.JSON);
+    }
+
+    private Transport transport(Settings settings) {
+        if ("local".equals(transport)) {
+            return new LocalClientTransport(settings, threadPool);
+        }
+        return new ClientNettyTransport(settings, threadPool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.stop();
+        server.stop();
+        threadPool.shutdownNow();
+    }
+
+    @Benchmark
+    public EchoResponse roundTrip() {
+        return client.submitRequest(serverNode, ACTION, new EchoRequest(source), new BaseTransportResponseHandler<EchoResponse>() {
+            @Override
+            public EchoResponse newInstance() {
+                return new EchoResponse();
+            }
+
+            @Override
+            public void handleResponse(EchoResponse response) {
+            }
+
+            @Override
+            public void handleException(TransportException exp) {
+            }
+
+            @Override
+            public String executor() {
+                return ThreadPool.Names.SAME;
+            }
+        }).txGet();
+    }
+
+    static class EchoRequest extends TransportRequest {
+
+        BytesReference source;
+
+        EchoRequest() {
+        }
+
+        EchoRequest(BytesReference source) {
+            this.source = source;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            source = in.readBytesReference();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeBytesReference(source);
+        }
+    }
+
+    public static class EchoResponse extends TransportResponse {
+
+        BytesReference source;
+
+        EchoResponse() {
+        }
+
+        EchoResponse(BytesReference source) {
+            this.source = source;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            source = in.readBytesReference();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeBytesReference(source);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.benchmark.xcontent;
+
+import org.elasticsearch.benchmark.Documents;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a document with the xcontent builder and reading it back into a map, for JSON and Smile.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XContentBenchmark {
+
+    @Param({"JSON", "SMILE"})
+    public XContentType type;
+
+    private Map<String, Object> document;
+
+    private BytesReference source;
+
+    @Setup
+    public void setup() throws IOException {
+        document = Documents.document(1);
+        source = Documents.source(1, type);
+    }
+
+    @Benchmark
+    public BytesReference buildFields() throws IOException {
+        XContentBuilder builder = XContentFactory.contentBuilder(type);
+        builder.startObject()
+                .field("id", 1)
+                .field("timestamp", 1357000000000L)
+                .field("host", "host-1.example.com")
+                .field("level", "INFO")
+                .field("message", "elasticsearch client transport bulk index search shard replica node cluster")
+                .field("took", 12.5)
+                .field("success", true)
+                .array("tags", "bulk", "index", "search", "node")
+                .startObject("user").field("name", "kimchy").field("age", 40).field("address", "somewhere").endObject()
+                .endObject();
+        return builder.bytes();
+    }
+
+    @Benchmark
+    public BytesReference buildMap() throws IOException {
+        return XContentFactory.contentBuilder(type).map(document).bytes();
+    }
+
+    @Benchmark
+    public Map<String, Object> convertToMap() {
+        return XContentHelper.convertToMap(source, true).v2();
+    }
+}
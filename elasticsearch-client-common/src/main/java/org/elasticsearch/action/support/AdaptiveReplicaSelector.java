@@ -0,0 +1,246 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.support;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.newConcurrentMap;
+
+/**
+ * Selects the node that is expected to answer a read the fastest, so that the
+ * <tt>preference</tt> of searches and gets can be steered away from slow or busy nodes.
+ * <p/>
+ * For each node, an exponentially weighted moving average of the response time
+ * (<tt>replica_selection.alpha</tt>, defaults to <tt>0.3</tt>) and the number of outstanding
+ * requests are tracked. A node is ranked by its average multiplied by one plus its outstanding
+ * requests. The average of a node decays towards the mean of all nodes with the time since its
+ * last response (<tt>replica_selection.decay</tt>, defaults to <tt>10s</tt>), so that a node that
+ * was slow once gets traffic again and can prove it recovered. A failure counts as a response
+ * of twice the current average, but at least <tt>replica_selection.failure_penalty</tt>
+ * (defaults to <tt>1s</tt>). A node without any response yet is ranked first while no request
+ * to it is outstanding, so it gets a single probe, and is otherwise ranked as if it answered in
+ * the mean time of all nodes, so a hung or new node does not draw all traffic.
+ */
+public class AdaptiveReplicaSelector {
+
+    private final double alpha;
+
+    private final long decayNanos;
+
+    private final long failurePenaltyNanos;
+
+    private final ConcurrentMap<String, NodeStats> nodes = newConcurrentMap();
+
+    private final AtomicInteger offset = new AtomicInteger();
+
+    public AdaptiveReplicaSelector(Settings settings) {
+        this.alpha = settings.getAsDouble("replica_selection.alpha", 0.3d);
+        this.decayNanos = settings.getAsTime("replica_selection.decay", TimeValue.timeValueSeconds(10)).nanos();
+        this.failurePenaltyNanos = settings.getAsTime("replica_selection.failure_penalty", TimeValue.timeValueSeconds(1)).nanos();
+    }
+
+    /**
+     * Sets the nodes to select from, for example the data nodes of the cluster state. The
+     * statistics of nodes that are still known are kept.
+     */
+    public void nodes(Iterable<String> nodeIds) {
+        Set<String> ids = new HashSet<String>();
+        for (String nodeId : nodeIds) {
+            ids.add(nodeId);
+            node(nodeId);
+        }
+        for (Iterator<String> it = nodes.keySet().iterator(); it.hasNext(); ) {
+            if (!ids.contains(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Adds a node to select from, if it is not known yet.
+     */
+    public void addNode(String nodeId) {
+        if (nodeId != null) {
+            node(nodeId);
+        }
+    }
+
+    public Set<String> nodes() {
+        return nodes.keySet();
+    }
+
+    /**
+     * The node expected to answer the fastest, or <tt>null</tt> if no node is known.
+     */
+    public String select() {
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        long now = System.nanoTime();
+        double mean = mean();
+        // ties go to the first node after a rotating offset, so equally ranked nodes share the load
+        int size = nodes.size();
+        int offset = (this.offset.getAndIncrement() & Integer.MAX_VALUE) % size;
+        String selected = null;
+        double selectedRank = Double.MAX_VALUE;
+        int selectedPosition = Integer.MAX_VALUE;
+        int i = 0;
+        for (Map.Entry<String, NodeStats> entry : nodes.entrySet()) {
+            double rank = entry.getValue().rank(now, mean);
+            int position = (i++ - offset + size) % size;
+            if (selected == null || rank < selectedRank || (rank == selectedRank && position < selectedPosition)) {
+                selected = entry.getKey();
+                selectedRank = rank;
+                selectedPosition = position;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Marks a request as sent to the node.
+     */
+    public void started(String nodeId) {
+        node(nodeId).outstanding.incrementAndGet();
+    }
+
+    /**
+     * Marks a request to the node as answered after the given time.
+     */
+    public void finished(String nodeId, long tookNanos) {
+        NodeStats stats = nodes.get(nodeId);
+        if (stats == null) {
+            return;
+        }
+        stats.outstanding.decrementAndGet();
+        stats.sample(tookNanos);
+    }
+
+    /**
+     * Marks a request as not sent to the node after all, without counting it as a response.
+     */
+    public void cancelled(String nodeId) {
+        NodeStats stats = nodes.get(nodeId);
+        if (stats != null) {
+            stats.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * Marks a request to the node as failed.
+     */
+    public void failed(String nodeId) {
+        NodeStats stats = nodes.get(nodeId);
+        if (stats == null) {
+            return;
+        }
+        stats.outstanding.decrementAndGet();
+        stats.sample(Math.max(failurePenaltyNanos, (long) (2 * stats.average)));
+    }
+
+    /**
+     * The current response time average of the node in milliseconds, <tt>-1</tt> if unknown.
+     */
+    public double averageMillis(String nodeId) {
+        NodeStats stats = nodes.get(nodeId);
+        if (stats == null || stats.lastUpdate == 0) {
+            return -1;
+        }
+        return stats.decayed(System.nanoTime(), mean()) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public int outstanding(String nodeId) {
+        NodeStats stats = nodes.get(nodeId);
+        return stats == null ? 0 : stats.outstanding.get();
+    }
+
+    private double mean() {
+        double sum = 0;
+        int count = 0;
+        for (NodeStats stats : nodes.values()) {
+            if (stats.lastUpdate != 0) {
+                sum += stats.average;
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    private NodeStats node(String nodeId) {
+        NodeStats stats = nodes.get(nodeId);
+        if (stats == null) {
+            stats = new NodeStats();
+            NodeStats existing = nodes.putIfAbsent(nodeId, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    private class NodeStats {
+
+        final AtomicInteger outstanding = new AtomicInteger();
+
+        volatile double average;
+
+        volatile long lastUpdate;
+
+        synchronized void sample(long tookNanos) {
+            long now = System.nanoTime();
+            if (lastUpdate == 0) {
+                average = tookNanos;
+            } else {
+                average = alpha * tookNanos + (1 - alpha) * average;
+            }
+            lastUpdate = now == 0 ? 1 : now;
+        }
+
+        double decayed(long now, double mean) {
+            double average = this.average;
+            if (decayNanos <= 0) {
+                return average;
+            }
+            double weight = Math.exp(-(double) (now - lastUpdate) / decayNanos);
+            return mean + (average - mean) * weight;
+        }
+
+        double rank(long now, double mean) {
+            int outstanding = Math.max(0, this.outstanding.get());
+            if (lastUpdate == 0) {
+                if (outstanding == 0) {
+                    // not answered yet, probe it before all nodes with a known response time
+                    return -1;
+                }
+                return (mean > 0 ? mean : 1) * (1 + outstanding);
+            }
+            return decayed(now, mean) * (1 + outstanding);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.support;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.newConcurrentMap;
+
+/**
+ * Merges identical requests: while a request with the same key is in flight, later callers are
+ * added to it instead of sending their own, and for <tt>ttl</tt> after it returned they are
+ * answered with its response. Failures are passed to all waiting callers and not kept.
+ * <p/>
+ * The response is shared by all callers, so it must not be modified.
+ */
+public class RequestCoalescer<Response> {
+
+    /**
+     * Sends the actual request for a key.
+     */
+    public interface Sender<Response> {
+
+        void send(ActionListener<Response> listener);
+    }
+
+    private final ConcurrentMap<Object, InFlight> inFlight = newConcurrentMap();
+
+    private final Cache<Object, Response> responses;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public RequestCoalescer(TimeValue ttl, long maxSize) {
+        // without a ttl, responses are only shared with the callers that joined while in flight
+        this.responses = CacheBuilder.newBuilder()
+                .maximumSize(ttl.millis() > 0 ? maxSize : 0)
+                .expireAfterWrite(Math.max(1, ttl.millis()), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public void execute(final Object key, ActionListener<Response> listener, Sender<Response> sender) {
+        Response response = responses.getIfPresent(key);
+        if (response != null) {
+            listener.onResponse(response);
+            return;
+        }
+        InFlight request = new InFlight();
+        InFlight existing = inFlight.putIfAbsent(key, request);
+        if (existing != null) {
+            existing.add(listener);
+            return;
+        }
+        request.add(listener);
+        final InFlight sent = request;
+        final long sentGeneration = generation.get();
+        try {
+            sender.send(new ActionListener<Response>() {
+                @Override
+                public void onResponse(Response response) {
+                    // do not cache a response that may predate a clear()
+                    if (sentGeneration == generation.get()) {
+                        responses.put(key, response);
+                    }
+                    inFlight.remove(key, sent);
+                    sent.onResponse(response);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    inFlight.remove(key, sent);
+                    sent.onFailure(e);
+                }
+            });
+        } catch (Throwable e) {
+            // otherwise the request stays registered and every later caller waits on it forever
+            inFlight.remove(key, sent);
+            sent.onFailure(e);
+        }
+    }
+
+    /**
+     * The number of requests currently in flight.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Drops the cached responses. Requests in flight still answer the callers waiting on them,
+     * but their responses are not cached and later callers send a new request.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        inFlight.clear();
+        responses.invalidateAll();
+    }
+
+    private class InFlight implements ActionListener<Response> {
+
+        private List<ActionListener<Response>> listeners = new ArrayList<ActionListener<Response>>(2);
+
+        private Response response;
+
+        private Throwable failure;
+
+        void add(ActionListener<Response> listener) {
+            synchronized (this) {
+                if (listeners != null) {
+                    listeners.add(listener);
+                    return;
+                }
+            }
+            // joined after completion, before the request was removed
+            if (failure != null) {
+                listener.onFailure(failure);
+            } else {
+                listener.onResponse(response);
+            }
+        }
+
+        @Override
+        public void onResponse(Response response) {
+            for (ActionListener<Response> listener : complete(response, null)) {
+                listener.onResponse(response);
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            for (ActionListener<Response> listener : complete(null, e)) {
+                listener.onFailure(e);
+            }
+        }
+
+        private synchronized List<ActionListener<Response>> complete(Response response, Throwable failure) {
+            List<ActionListener<Response>> listeners = this.listeners;
+            if (listeners == null) {
+                // already completed, e.g. the sender failed after notifying its listener
+                return Collections.emptyList();
+            }
+            this.response = response;
+            this.failure = failure;
+            this.listeners = null;
+            return listeners;
+        }
+    }
+}
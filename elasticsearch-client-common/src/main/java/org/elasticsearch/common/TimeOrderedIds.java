@@ -0,0 +1,94 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates compact, time ordered ids for documents, to be used instead of {@link UUID#randomBase64UUID()}
+ * when the client assigns the ids of new documents.
+ * <p/>
+ * An id is 15 bytes encoded as 20 URL safe base64 chars: the time in milliseconds (42 bits) and a
+ * sequence (21 bits) that together increase with each id, even if the clock goes back, followed
+ * by 7 random bytes chosen once per process. The base64 alphabet is in ascii order, so the ids of
+ * a process sort in the order they were generated, and ids generated close in time share a
+ * prefix, which keeps the lookups of new ids in the terms dictionary cheap.
+ * <p/>
+ * Generating an id is lock free and only allocates the returned string.
+ */
+public class TimeOrderedIds {
+
+    /**
+     * URL safe base64 chars, in ascii order.
+     */
+    private static final char[] ALPHABET = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private static final int SEQUENCE_BITS = 21;
+
+    private static final int LENGTH = 20;
+
+    private static final byte[] NODE = new byte[7];
+
+    static {
+        new SecureRandom().nextBytes(NODE);
+    }
+
+    // the time in milliseconds, shifted by the sequence bits, and the sequence
+    private static final AtomicLong last = new AtomicLong();
+
+    private static final ThreadLocal<char[]> buffer = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[LENGTH];
+        }
+    };
+
+    private TimeOrderedIds() {
+    }
+
+    public static String next() {
+        long next;
+        while (true) {
+            long last = TimeOrderedIds.last.get();
+            // a full sequence moves on to the next millisecond
+            next = Math.max(System.currentTimeMillis() << SEQUENCE_BITS, last + 1);
+            if (TimeOrderedIds.last.compareAndSet(last, next)) {
+                break;
+            }
+        }
+        char[] chars = buffer.get();
+        // 64 bits of time and sequence and 56 bits of node, 6 bits per char
+        int pos = 0;
+        for (int shift = 58; shift >= 4; shift -= 6) {
+            chars[pos++] = ALPHABET[(int) (next >>> shift) & 0x3F];
+        }
+        // the last 4 bits of the time and sequence and the first 2 bits of the node
+        chars[pos++] = ALPHABET[(int) (next & 0x0F) << 2 | (NODE[0] & 0xFF) >>> 6];
+        long node = 0;
+        for (byte b : NODE) {
+            node = node << 8 | b & 0xFF;
+        }
+        for (int shift = 48; shift >= 0; shift -= 6) {
+            chars[pos++] = ALPHABET[(int) (node >>> shift) & 0x3F];
+        }
+        return new String(chars, 0, LENGTH);
+    }
+}
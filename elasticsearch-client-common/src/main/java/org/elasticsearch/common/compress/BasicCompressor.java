@@ -52,4 +52,9 @@ public interface BasicCompressor {
 
     CompressedStreamOutput streamOutput(StreamOutput out) throws IOException;
 
+    /**
+     * The time spent and the contexts allocated by this compressor, including its streams.
+     */
+    CompressorStats stats();
+
 }
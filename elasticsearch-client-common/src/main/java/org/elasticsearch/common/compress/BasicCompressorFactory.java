@@ -24,9 +24,7 @@ import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.MapBuilder;
-import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.io.stream.BasicCachedStreamOutput;
-import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 
@@ -141,13 +139,13 @@ public class BasicCompressorFactory {
             if (bytes.hasArray()) {
                 return new BytesArray(compressor.uncompress(bytes.array(), bytes.arrayOffset(), bytes.length()));
             }
-            StreamInput compressed = compressor.streamInput(bytes.streamInput());
+            CompressedStreamInput compressed = compressor.streamInput(bytes.streamInput());
             BasicCachedStreamOutput.Entry entry = BasicCachedStreamOutput.popEntry();
             try {
-                Streams.copy(compressed, entry.bytes());
-                compressed.close();
-                return new BytesArray(entry.bytes().bytes().toBytes());
+                compressed.copyTo(entry.bytes());
+                return entry.bytes().bytes().copyBytesArray();
             } finally {
+                compressed.close();
                 BasicCachedStreamOutput.pushEntry(entry);
             }
         }
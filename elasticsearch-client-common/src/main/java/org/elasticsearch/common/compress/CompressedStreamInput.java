@@ -21,6 +21,7 @@ package org.elasticsearch.common.compress;
 
 import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
 
 import java.io.EOFException;
 import java.io.IOException;
@@ -31,6 +32,7 @@ public abstract class CompressedStreamInput<T extends CompressorContext> extends
 
     private final StreamInput in;
     protected final CompressorContext context;
+    private final CompressorStats stats;
 
     private boolean closed;
 
@@ -39,8 +41,13 @@ public abstract class CompressedStreamInput<T extends CompressorContext> extends
     private int valid = 0;
 
     public CompressedStreamInput(StreamInput in, T context) throws IOException {
+        this(in, context, null);
+    }
+
+    public CompressedStreamInput(StreamInput in, T context, CompressorStats stats) throws IOException {
         this.in = in;
         this.context = context;
+        this.stats = stats;
         super.setVersion(in.getVersion());
         readHeader(in);
     }
@@ -136,6 +143,21 @@ public abstract class CompressedStreamInput<T extends CompressorContext> extends
         }
     }
 
+    /**
+     * Writes the rest of the uncompressed data to the output, straight from the uncompressed
+     * buffer, returning the number of bytes written.
+     */
+    public long copyTo(StreamOutput out) throws IOException {
+        long total = 0;
+        while (readyBuffer()) {
+            int length = valid - position;
+            out.writeBytes(uncompressed, position, length);
+            position = valid;
+            total += length;
+        }
+        return total;
+    }
+
     @Override
     public void reset() throws IOException {
         this.position = 0;
@@ -165,7 +187,15 @@ public abstract class CompressedStreamInput<T extends CompressorContext> extends
         if (closed) {
             return false;
         }
-        valid = uncompress(in, uncompressed);
+        if (stats == null) {
+            valid = uncompress(in, uncompressed);
+        } else {
+            long start = System.nanoTime();
+            valid = uncompress(in, uncompressed);
+            if (valid > 0) {
+                stats.uncompressed(valid, start);
+            }
+        }
         if (valid < 0) {
             return false;
         }
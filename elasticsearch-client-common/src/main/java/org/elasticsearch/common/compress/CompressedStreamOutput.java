@@ -30,6 +30,7 @@ public abstract class CompressedStreamOutput<T extends CompressorContext> extend
 
     private final StreamOutput out;
     protected final T context;
+    private final CompressorStats stats;
 
     protected byte[] uncompressed;
     protected int uncompressedLength;
@@ -38,8 +39,13 @@ public abstract class CompressedStreamOutput<T extends CompressorContext> extend
     private boolean closed;
 
     public CompressedStreamOutput(StreamOutput out, T context) throws IOException {
+        this(out, context, null);
+    }
+
+    public CompressedStreamOutput(StreamOutput out, T context, CompressorStats stats) throws IOException {
         this.out = out;
         this.context = context;
+        this.stats = stats;
         super.setVersion(out.getVersion());
         writeHeader(out);
     }
@@ -92,7 +98,7 @@ public abstract class CompressedStreamOutput<T extends CompressorContext> extend
 
         // then write intermediate full block, if any, without copying:
         while (length >= BUFFER_LEN) {
-            compress(input, offset, BUFFER_LEN, out);
+            compressChunk(input, offset, BUFFER_LEN);
             offset += BUFFER_LEN;
             length -= BUFFER_LEN;
         }
@@ -130,11 +136,21 @@ public abstract class CompressedStreamOutput<T extends CompressorContext> extend
 
     private void flushBuffer() throws IOException {
         if (position > 0) {
-            compress(uncompressed, 0, position, out);
+            compressChunk(uncompressed, 0, position);
             position = 0;
         }
     }
 
+    private void compressChunk(byte[] data, int offset, int len) throws IOException {
+        if (stats == null) {
+            compress(data, offset, len, out);
+            return;
+        }
+        long start = System.nanoTime();
+        compress(data, offset, len, out);
+        stats.compressed(len, start);
+    }
+
     protected abstract void writeHeader(StreamOutput out) throws IOException;
 
     /**
@@ -23,6 +23,8 @@ import org.elasticsearch.common.lucene.util.UnicodeUtil;
 import org.elasticsearch.common.Unicode;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BasicCachedStreamOutput;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -92,8 +94,22 @@ public class CompressedString implements Streamable {
         return compressor.uncompress(bytes, 0, bytes.length);
     }
 
+    /**
+     * Uncompresses into a reused buffer and decodes the string from it, without allocating the
+     * uncompressed bytes.
+     */
     public String string() throws IOException {
-        return Unicode.fromBytes(uncompressed());
+        BasicCompressor compressor = BasicCompressorFactory.compressor(bytes);
+        CompressedStreamInput compressed = compressor.streamInput(new BytesStreamInput(bytes, false));
+        BasicCachedStreamOutput.Entry entry = BasicCachedStreamOutput.popEntry();
+        try {
+            compressed.copyTo(entry.bytes());
+            BytesReference uncompressed = entry.bytes().bytes();
+            return Unicode.fromBytes(uncompressed.array(), uncompressed.arrayOffset(), uncompressed.length());
+        } finally {
+            compressed.close();
+            BasicCachedStreamOutput.pushEntry(entry);
+        }
     }
 
     public static CompressedString readCompressedString(StreamInput in) throws IOException {
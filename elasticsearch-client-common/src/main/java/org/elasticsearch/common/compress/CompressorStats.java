@@ -0,0 +1,128 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.common.compress;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the work of a {@link BasicCompressor}: the number of compressed and uncompressed chunks,
+ * their uncompressed size, the time spent on them, and the compressor contexts (encoders and their
+ * buffers) that had to be allocated because none could be reused.
+ */
+public class CompressorStats {
+
+    private final AtomicLong compressCount = new AtomicLong();
+
+    private final AtomicLong compressBytes = new AtomicLong();
+
+    private final AtomicLong compressNanos = new AtomicLong();
+
+    private final AtomicLong uncompressCount = new AtomicLong();
+
+    private final AtomicLong uncompressBytes = new AtomicLong();
+
+    private final AtomicLong uncompressNanos = new AtomicLong();
+
+    private final AtomicLong contextsCreated = new AtomicLong();
+
+    private final AtomicLong contextsReused = new AtomicLong();
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    /**
+     * Records compressing <tt>length</tt> bytes that started at <tt>startNanos</tt> ({@link System#nanoTime()}).
+     */
+    public void compressed(int length, long startNanos) {
+        compressCount.incrementAndGet();
+        compressBytes.addAndGet(length);
+        compressNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records uncompressing into <tt>length</tt> bytes that started at <tt>startNanos</tt> ({@link System#nanoTime()}).
+     */
+    public void uncompressed(int length, long startNanos) {
+        uncompressCount.incrementAndGet();
+        uncompressBytes.addAndGet(length);
+        uncompressNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    public void contextCreated(long bytes) {
+        contextsCreated.incrementAndGet();
+        allocatedBytes.addAndGet(bytes);
+    }
+
+    public void contextReused() {
+        contextsReused.incrementAndGet();
+    }
+
+    public long compressCount() {
+        return compressCount.get();
+    }
+
+    /**
+     * The number of (uncompressed) bytes compressed.
+     */
+    public long compressBytes() {
+        return compressBytes.get();
+    }
+
+    public long compressNanos() {
+        return compressNanos.get();
+    }
+
+    public long uncompressCount() {
+        return uncompressCount.get();
+    }
+
+    /**
+     * The number of bytes uncompressed to.
+     */
+    public long uncompressBytes() {
+        return uncompressBytes.get();
+    }
+
+    public long uncompressNanos() {
+        return uncompressNanos.get();
+    }
+
+    public long contextsCreated() {
+        return contextsCreated.get();
+    }
+
+    public long contextsReused() {
+        return contextsReused.get();
+    }
+
+    /**
+     * The approximate number of bytes allocated for compressor contexts that could not be reused.
+     */
+    public long allocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "compress [" + compressCount() + "] chunks, [" + compressBytes() + "] bytes in [" + compressNanos() / 1000000 + "ms], "
+                + "uncompress [" + uncompressCount() + "] chunks, [" + uncompressBytes() + "] bytes in [" + uncompressNanos() / 1000000 + "ms], "
+                + "contexts created [" + contextsCreated() + "] (" + allocatedBytes() + " bytes), reused [" + contextsReused() + "]";
+    }
+}
@@ -31,6 +31,7 @@ public class BasicCachedStreamInput {
 
     static class Entry {
         char[] chars = new char[80];
+        byte[] bytes = new byte[240];
         final HandlesStreamInput handles;
 
         Entry(HandlesStreamInput handles) {
@@ -78,4 +79,12 @@ public class BasicCachedStreamInput {
         }
         return entry.chars;
     }
+
+    public static byte[] getByteArray(int size) {
+        Entry entry = instance();
+        if (entry.bytes.length < size) {
+            entry.bytes = new byte[size];
+        }
+        return entry.bytes;
+    }
 }
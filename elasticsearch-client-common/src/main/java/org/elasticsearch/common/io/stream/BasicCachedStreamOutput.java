@@ -140,10 +140,11 @@ public class BasicCachedStreamOutput {
     }
 
     public static void pushEntry(Entry entry) {
-        entry.reset();
-        if (entry.bytes().bytes().length() > BYTES_LIMIT) {
+        // a small write may still have left a large buffer behind, so check the capacity
+        if (entry.bytes().capacity() > BYTES_LIMIT) {
             return;
         }
+        entry.reset();
         Queue<Entry> ref = cache.get();
         if (ref == null) {
             ref = ConcurrentCollections.newQueue();
@@ -30,6 +30,25 @@ public class ByteBufferStreamInput extends StreamInput {
         return buffer.get();
     }
 
+    @Override
+    public String readString() throws IOException {
+        int charCount = readVInt();
+        char[] chars = BasicCachedStreamInput.getCharArray(charCount);
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            int end = decodeString(buffer.array(), offset + buffer.position(), offset + buffer.limit(), chars, charCount);
+            buffer.position(end - offset);
+        } else {
+            // copy the most the string can take, and skip what it took
+            int length = (int) Math.min(buffer.remaining(), 3L * charCount);
+            byte[] bytes = BasicCachedStreamInput.getByteArray(length);
+            int position = buffer.position();
+            buffer.get(bytes, 0, length);
+            buffer.position(position + decodeString(bytes, 0, length, chars, charCount));
+        }
+        return new String(chars, 0, charCount);
+    }
+
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
         if (!buffer.hasRemaining()) {
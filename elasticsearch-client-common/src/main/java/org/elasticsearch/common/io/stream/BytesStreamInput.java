@@ -111,6 +111,14 @@ public class BytesStreamInput extends StreamInput {
         return len;
     }
 
+    @Override
+    public String readString() throws IOException {
+        int charCount = readVInt();
+        char[] chars = BasicCachedStreamInput.getCharArray(charCount);
+        pos = decodeString(buf, pos, count, chars, charCount);
+        return new String(chars, 0, charCount);
+    }
+
     public byte[] underlyingBuffer() {
         return buf;
     }
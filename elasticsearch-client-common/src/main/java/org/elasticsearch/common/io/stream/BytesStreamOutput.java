@@ -77,6 +77,21 @@ public class BytesStreamOutput extends StreamOutput implements BytesStream {
         count = newcount;
     }
 
+    @Override
+    public void writeString(String str) throws IOException {
+        int charCount = str.length();
+        writeVInt(charCount);
+        // only count the exact length if the worst case does not fit
+        long maxCount = count + 3L * charCount;
+        if (maxCount > buf.length) {
+            int newcount = count + encodedLength(str);
+            if (newcount > buf.length) {
+                buf = Arrays.copyOf(buf, Bytes.oversize(newcount, 1));
+            }
+        }
+        count = encodeString(str, buf, count);
+    }
+
     public void skip(int length) {
         int newcount = count + length;
         if (newcount > buf.length) {
@@ -130,4 +145,11 @@ public class BytesStreamOutput extends StreamOutput implements BytesStream {
     public int size() {
         return count;
     }
+
+    /**
+     * Returns the length of the underlying buffer, which may be larger than {@link #size()}.
+     */
+    public int capacity() {
+        return buf.length;
+    }
 }
@@ -28,6 +28,7 @@ import org.elasticsearch.common.text.StringAndBytesText;
 import org.elasticsearch.common.text.Text;
 import org.joda.time.DateTime;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
@@ -220,6 +221,88 @@ public abstract class StreamInput extends InputStream {
         return new String(chars, 0, charCount);
     }
 
+    /**
+     * Decodes <tt>charCount</tt> chars written by {@link StreamOutput#writeString(String)} from the
+     * array, reading no further than <tt>end</tt>. Returns the offset after the string.
+     */
+    protected static int decodeString(byte[] buf, int offset, int end, char[] chars, int charCount) throws EOFException {
+        int charIndex = 0;
+        // ascii run, the common case for names and ids
+        int asciiEnd = Math.min(charCount, end - offset);
+        while (charIndex < asciiEnd) {
+            int c = buf[offset];
+            if (c < 0) {
+                break;
+            }
+            chars[charIndex++] = (char) c;
+            offset++;
+        }
+        int c;
+        if (end - offset >= 3 * (charCount - charIndex)) {
+            // the remaining chars can not take more than the remaining bytes, no bounds checks needed
+            decode:
+            while (charIndex < charCount) {
+                c = buf[offset++] & 0xff;
+                switch (c >> 4) {
+                    case 0:
+                    case 1:
+                    case 2:
+                    case 3:
+                    case 4:
+                    case 5:
+                    case 6:
+                    case 7:
+                        chars[charIndex++] = (char) c;
+                        break;
+                    case 12:
+                    case 13:
+                        chars[charIndex++] = (char) ((c & 0x1F) << 6 | buf[offset++] & 0x3F);
+                        break;
+                    case 14:
+                        chars[charIndex++] = (char) ((c & 0x0F) << 12 | (buf[offset] & 0x3F) << 6 | (buf[offset + 1] & 0x3F) << 0);
+                        offset += 2;
+                        break;
+                    default:
+                        // skipped like readString() does, the remaining bytes may not suffice anymore
+                        break decode;
+                }
+            }
+        }
+        while (charIndex < charCount) {
+            if (offset >= end) {
+                throw new EOFException();
+            }
+            c = buf[offset++] & 0xff;
+            switch (c >> 4) {
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    chars[charIndex++] = (char) c;
+                    break;
+                case 12:
+                case 13:
+                    if (offset >= end) {
+                        throw new EOFException();
+                    }
+                    chars[charIndex++] = (char) ((c & 0x1F) << 6 | buf[offset++] & 0x3F);
+                    break;
+                case 14:
+                    if (offset + 1 >= end) {
+                        throw new EOFException();
+                    }
+                    chars[charIndex++] = (char) ((c & 0x0F) << 12 | (buf[offset] & 0x3F) << 6 | (buf[offset + 1] & 0x3F) << 0);
+                    offset += 2;
+                    break;
+            }
+        }
+        return offset;
+    }
+
     /**
      * @deprecated use {@link #readString()}
      */
@@ -213,6 +213,54 @@ public abstract class StreamOutput extends OutputStream {
         }
     }
 
+    /**
+     * The number of bytes {@link #writeString(String)} writes for the chars of the string,
+     * at most three times its length.
+     */
+    protected static int encodedLength(String str) {
+        int charCount = str.length();
+        int length = charCount;
+        for (int i = 0; i < charCount; i++) {
+            int c = str.charAt(i);
+            if (c > 0x007F) {
+                length += c > 0x07FF ? 2 : 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Encodes the chars of the string like {@link #writeString(String)} into the array, which
+     * must have room for {@link #encodedLength(String)} bytes at the offset. Returns the offset
+     * after the string.
+     */
+    protected static int encodeString(String str, byte[] buf, int offset) {
+        int charCount = str.length();
+        int i = 0;
+        // ascii run, the common case for names and ids
+        for (; i < charCount; i++) {
+            int c = str.charAt(i);
+            if (c > 0x007F) {
+                break;
+            }
+            buf[offset++] = (byte) c;
+        }
+        for (; i < charCount; i++) {
+            int c = str.charAt(i);
+            if (c <= 0x007F) {
+                buf[offset++] = (byte) c;
+            } else if (c > 0x07FF) {
+                buf[offset++] = (byte) (0xE0 | c >> 12 & 0x0F);
+                buf[offset++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buf[offset++] = (byte) (0x80 | c >> 0 & 0x3F);
+            } else {
+                buf[offset++] = (byte) (0xC0 | c >> 6 & 0x1F);
+                buf[offset++] = (byte) (0x80 | c >> 0 & 0x3F);
+            }
+        }
+        return offset;
+    }
+
     /**
      * Writes a string.
      *
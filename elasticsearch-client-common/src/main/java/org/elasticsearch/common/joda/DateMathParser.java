@@ -7,13 +7,21 @@ import org.joda.time.MutableDateTime;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * Parses dates with date math (for example <tt>now-1d/d</tt>). The last rounding of each unit is
+ * remembered, so rounding times that fall in the same month, week, day, hour, minute or second
+ * (like <tt>now</tt> in repeated queries) does not go through Joda again.
  */
 public class DateMathParser {
 
+    private static final String UNITS = "Mwdhms";
+
     private final FormatDateTimeFormatter dateTimeFormatter;
 
     private final TimeUnit timeUnit;
 
+    // the last rounding of each of the UNITS
+    private final Rounding[] roundings = new Rounding[UNITS.length()];
+
     public DateMathParser(FormatDateTimeFormatter dateTimeFormatter, TimeUnit timeUnit) {
         this.dateTimeFormatter = dateTimeFormatter;
         this.timeUnit = timeUnit;
@@ -90,41 +98,27 @@ public class DateMathParser {
                     }
                 }
                 char unit = mathString.charAt(i++);
+                if (type == 0) {
+                    round(dateTime, unit, roundUp, mathString);
+                    continue;
+                }
                 switch (unit) {
                     case 'M':
-                        if (type == 0) {
-                            if (roundUp) {
-                                dateTime.monthOfYear().roundCeiling();
-                            } else {
-                                dateTime.monthOfYear().roundFloor();
-                            }
-                        } else if (type == 1) {
+                        if (type == 1) {
                             dateTime.addMonths(num);
                         } else if (type == 2) {
                             dateTime.addMonths(-num);
                         }
                         break;
                     case 'w':
-                        if (type == 0) {
-                            if (roundUp) {
-                                dateTime.weekOfWeekyear().roundCeiling();
-                            } else {
-                                dateTime.weekOfWeekyear().roundFloor();
-                            }
-                        } else if (type == 1) {
+                        if (type == 1) {
                             dateTime.addWeeks(num);
                         } else if (type == 2) {
                             dateTime.addWeeks(-num);
                         }
                         break;
                     case 'd':
-                        if (type == 0) {
-                            if (roundUp) {
-                                dateTime.dayOfMonth().roundCeiling();
-                            } else {
-                                dateTime.dayOfMonth().roundFloor();
-                            }
-                        } else if (type == 1) {
+                        if (type == 1) {
                             dateTime.addDays(num);
                         } else if (type == 2) {
                             dateTime.addDays(-num);
@@ -132,39 +126,21 @@ public class DateMathParser {
                         break;
                     case 'h':
                     case 'H':
-                        if (type == 0) {
-                            if (roundUp) {
-                                dateTime.hourOfDay().roundCeiling();
-                            } else {
-                                dateTime.hourOfDay().roundFloor();
-                            }
-                        } else if (type == 1) {
+                        if (type == 1) {
                             dateTime.addHours(num);
                         } else if (type == 2) {
                             dateTime.addHours(-num);
                         }
                         break;
                     case 'm':
-                        if (type == 0) {
-                            if (roundUp) {
-                                dateTime.minuteOfHour().roundCeiling();
-                            } else {
-                                dateTime.minuteOfHour().roundFloor();
-                            }
-                        } else if (type == 1) {
+                        if (type == 1) {
                             dateTime.addMinutes(num);
                         } else if (type == 2) {
                             dateTime.addMinutes(-num);
                         }
                         break;
                     case 's':
-                        if (type == 0) {
-                            if (roundUp) {
-                                dateTime.secondOfMinute().roundCeiling();
-                            } else {
-                                dateTime.secondOfMinute().roundFloor();
-                            }
-                        } else if (type == 1) {
+                        if (type == 1) {
                             dateTime.addSeconds(num);
                         } else if (type == 2) {
                             dateTime.addSeconds(-num);
@@ -183,9 +159,48 @@ public class DateMathParser {
         return dateTime.getMillis();
     }
 
+    private void round(MutableDateTime dateTime, char unit, boolean roundUp, String mathString) {
+        int index = UNITS.indexOf(unit == 'H' ? 'h' : unit);
+        if (index == -1) {
+            throw new ElasticSearchParseException("unit [" + unit + "] not supported for date math [" + mathString + "]");
+        }
+        long time = dateTime.getMillis();
+        Rounding rounding = roundings[index];
+        if (rounding == null || time < rounding.floor || time >= rounding.next) {
+            MutableDateTime.Property property = property(new MutableDateTime(time, DateTimeZone.UTC), index);
+            property.roundFloor();
+            long floor = property.getMutableDateTime().getMillis();
+            property.add(1);
+            rounding = new Rounding(floor, property.getMutableDateTime().getMillis());
+            roundings[index] = rounding;
+        }
+        if (!roundUp || time == rounding.floor) {
+            dateTime.setMillis(rounding.floor);
+        } else {
+            dateTime.setMillis(rounding.next);
+        }
+    }
+
+    private static MutableDateTime.Property property(MutableDateTime dateTime, int index) {
+        switch (index) {
+            case 0:
+                return dateTime.monthOfYear();
+            case 1:
+                return dateTime.weekOfWeekyear();
+            case 2:
+                return dateTime.dayOfMonth();
+            case 3:
+                return dateTime.hourOfDay();
+            case 4:
+                return dateTime.minuteOfHour();
+            default:
+                return dateTime.secondOfMinute();
+        }
+    }
+
     private long parseStringValue(String value) {
         try {
-            return dateTimeFormatter.parser().parseMillis(value);
+            return dateTimeFormatter.parseMillis(value);
         } catch (RuntimeException e) {
             try {
                 long time = Long.parseLong(value);
@@ -224,4 +239,19 @@ public class DateMathParser {
             }
         }
     }
+
+    /**
+     * A rounded time and the start of the next unit, immutable so it can be shared without locking.
+     */
+    private static class Rounding {
+
+        final long floor;
+
+        final long next;
+
+        Rounding(long floor, long next) {
+            this.floor = floor;
+            this.next = next;
+        }
+    }
 }
@@ -33,6 +33,8 @@ public class FormatDateTimeFormatter {
 
     private final DateTimeFormatter printer;
 
+    private final boolean isoOptionalTime;
+
     public FormatDateTimeFormatter(String format, DateTimeFormatter parser) {
         this(format, parser, parser);
     }
@@ -41,6 +43,7 @@ public class FormatDateTimeFormatter {
         this.format = format;
         this.parser = parser;
         this.printer = printer;
+        this.isoOptionalTime = "dateOptionalTime".equals(format) || "date_optional_time".equals(format);
     }
 
     public String format() {
@@ -54,4 +57,15 @@ public class FormatDateTimeFormatter {
     public DateTimeFormatter printer() {
         return this.printer;
     }
+
+    /**
+     * Parses the text with the {@link #parser()}, reading the usual <tt>dateOptionalTime</tt>
+     * forms directly (see {@link IsoDates}).
+     */
+    public long parseMillis(String text) {
+        if (isoOptionalTime) {
+            return IsoDates.parseMillis(text, parser);
+        }
+        return parser.parseMillis(text);
+    }
 }
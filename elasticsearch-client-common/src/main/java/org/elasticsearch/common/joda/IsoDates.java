@@ -0,0 +1,267 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.joda;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Prints and parses the common UTC ISO 8601 dates without going through Joda formatters.
+ * <p/>
+ * {@link #print(long, char[], int)} writes the same <tt>yyyy-MM-dd'T'HH:mm:ss.SSSZ</tt> form as
+ * {@link ISODateTimeFormat#dateTime()} in UTC (for example <tt>2012-10-01T08:30:00.000Z</tt>)
+ * into a char buffer, reusing the date part of the last printed day. {@link #parseMillis(String, DateTimeFormatter)}
+ * reads the dates accepted by {@link ISODateTimeFormat#dateOptionalTimeParser()} in their usual
+ * forms (a date, optionally followed by a time with or without fraction and a <tt>Z</tt> or
+ * <tt>+HH:mm</tt> offset), and leaves everything else to the given Joda parser.
+ */
+public class IsoDates {
+
+    /**
+     * The length of a printed date.
+     */
+    public static final int LENGTH = 24;
+
+    private static final DateTimeFormatter PRINTER = ISODateTimeFormat.dateTime().withZone(DateTimeZone.UTC);
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    // 0000-01-01 and 10000-01-01, the years printed with four digits
+    private static final long MIN_MILLIS = daysFromCivil(0, 1, 1) * MILLIS_PER_DAY;
+
+    private static final long MAX_MILLIS = daysFromCivil(10000, 1, 1) * MILLIS_PER_DAY;
+
+    private static volatile Day lastDay = new Day(0);
+
+    private IsoDates() {
+    }
+
+    public static String print(long millis) {
+        if (millis < MIN_MILLIS || millis >= MAX_MILLIS) {
+            return PRINTER.print(millis);
+        }
+        char[] chars = new char[LENGTH];
+        print(millis, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Prints the date into the buffer at the given offset, returning the number of chars written,
+     * always {@link #LENGTH}, or <tt>-1</tt> if the year does not have four digits and the date
+     * needs to be printed with {@link ISODateTimeFormat#dateTime()}.
+     */
+    public static int print(long millis, char[] buffer, int offset) {
+        if (millis < MIN_MILLIS || millis >= MAX_MILLIS) {
+            return -1;
+        }
+        Day day = lastDay;
+        if (millis < day.start || millis >= day.start + MILLIS_PER_DAY) {
+            day = new Day(floorDiv(millis, MILLIS_PER_DAY));
+            lastDay = day;
+        }
+        System.arraycopy(day.prefix, 0, buffer, offset, day.prefix.length);
+        int time = (int) (millis - day.start);
+        int pos = offset + day.prefix.length;
+        pos = digits(time / 3600000, 2, buffer, pos);
+        buffer[pos++] = ':';
+        pos = digits(time / 60000 % 60, 2, buffer, pos);
+        buffer[pos++] = ':';
+        pos = digits(time / 1000 % 60, 2, buffer, pos);
+        buffer[pos++] = '.';
+        pos = digits(time % 1000, 3, buffer, pos);
+        buffer[pos] = 'Z';
+        return LENGTH;
+    }
+
+    /**
+     * Parses the date, falling back to the given parser for the forms not handled here, and for
+     * invalid dates so that they fail the same way.
+     */
+    public static long parseMillis(String text, DateTimeFormatter fallback) {
+        long millis = parse(text);
+        if (millis == Long.MIN_VALUE) {
+            return fallback.parseMillis(text);
+        }
+        return millis;
+    }
+
+    /**
+     * The date in milliseconds, or {@link Long#MIN_VALUE} if it is not in one of the handled forms.
+     */
+    static long parse(String text) {
+        int length = text.length();
+        if (length < 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int year = number(text, 0, 4);
+        int month = number(text, 5, 2);
+        int day = number(text, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return Long.MIN_VALUE;
+        }
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+        if (length == 10) {
+            return millis;
+        }
+        if (text.charAt(10) != 'T' || length < 13) {
+            return Long.MIN_VALUE;
+        }
+        int hour = number(text, 11, 2);
+        if (hour < 0 || hour > 23) {
+            return Long.MIN_VALUE;
+        }
+        millis += hour * 3600000L;
+        int pos = 13;
+        if (pos < length && text.charAt(pos) == ':') {
+            int minute = number(text, pos + 1, 2);
+            if (minute < 0 || minute > 59) {
+                return Long.MIN_VALUE;
+            }
+            millis += minute * 60000L;
+            pos += 3;
+            if (pos < length && text.charAt(pos) == ':') {
+                int second = number(text, pos + 1, 2);
+                if (second < 0 || second > 59) {
+                    return Long.MIN_VALUE;
+                }
+                millis += second * 1000L;
+                pos += 3;
+                if (pos < length && text.charAt(pos) == '.') {
+                    // up to nine digits, truncated to milliseconds
+                    pos++;
+                    int from = pos;
+                    int fraction = 0;
+                    while (pos < length && pos - from < 9) {
+                        int digit = text.charAt(pos) - '0';
+                        if (digit < 0 || digit > 9) {
+                            break;
+                        }
+                        if (pos - from < 3) {
+                            fraction = fraction * 10 + digit;
+                        }
+                        pos++;
+                    }
+                    if (pos == from) {
+                        return Long.MIN_VALUE;
+                    }
+                    for (int i = pos - from; i < 3; i++) {
+                        fraction *= 10;
+                    }
+                    millis += fraction;
+                }
+            }
+        }
+        if (pos == length) {
+            return millis;
+        }
+        char c = text.charAt(pos);
+        if (c == 'Z' && pos + 1 == length) {
+            return millis;
+        }
+        if ((c == '+' || c == '-') && pos + 6 == length && text.charAt(pos + 3) == ':') {
+            int offsetHours = number(text, pos + 1, 2);
+            int offsetMinutes = number(text, pos + 4, 2);
+            if (offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return Long.MIN_VALUE;
+            }
+            long offset = offsetHours * 3600000L + offsetMinutes * 60000L;
+            return c == '+' ? millis - offset : millis + offset;
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private static int number(String text, int offset, int length) {
+        if (offset + length > text.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int digits(int value, int length, char[] buffer, int pos) {
+        for (int i = pos + length - 1; i >= pos; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + length;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long result = value / divisor;
+        return value % divisor < 0 ? result - 1 : result;
+    }
+
+    /**
+     * The days since the epoch of a date in the proleptic Gregorian calendar, as used by the
+     * Joda ISO chronology.
+     */
+    static long daysFromCivil(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * A day and its printed <tt>yyyy-MM-dd'T'</tt> prefix.
+     */
+    private static class Day {
+
+        final long start;
+
+        final char[] prefix = new char[11];
+
+        Day(long days) {
+            this.start = days * MILLIS_PER_DAY;
+            long z = days + 719468;
+            long era = (z >= 0 ? z : z - 146096) / 146097;
+            long dayOfEra = z - era * 146097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long mp = (5 * dayOfYear + 2) / 153;
+            int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+            int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+            int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+            int pos = digits(year, 4, prefix, 0);
+            prefix[pos++] = '-';
+            pos = digits(month, 2, prefix, pos);
+            prefix[pos++] = '-';
+            pos = digits(day, 2, prefix, pos);
+            prefix[pos] = 'T';
+        }
+    }
+}
@@ -20,21 +20,41 @@
 package org.elasticsearch.common.joda;
 
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.joda.time.*;
 import org.joda.time.field.DividedDateTimeField;
 import org.joda.time.field.OffsetDateTimeField;
 import org.joda.time.field.ScaledDurationField;
 import org.joda.time.format.*;
 
+import java.util.concurrent.ConcurrentMap;
+
 /**
  *
  */
 public class Joda {
 
+    // formatters are immutable, bounded in case patterns come from requests
+    private static final int MAX_CACHED_PATTERNS = 1000;
+
+    private static final ConcurrentMap<String, FormatDateTimeFormatter> patterns = ConcurrentCollections.newConcurrentMap();
+
     /**
      * Parses a joda based pattern, including some named ones (similar to the built in Joda ISO ones).
+     * The formatters are cached per pattern.
      */
     public static FormatDateTimeFormatter forPattern(String input) {
+        FormatDateTimeFormatter formatter = patterns.get(input);
+        if (formatter == null) {
+            formatter = create(input);
+            if (patterns.size() < MAX_CACHED_PATTERNS) {
+                patterns.put(input, formatter);
+            }
+        }
+        return formatter;
+    }
+
+    private static FormatDateTimeFormatter create(String input) {
         DateTimeFormatter formatter;
         if ("basicDate".equals(input) || "basic_date".equals(input)) {
             formatter = ISODateTimeFormat.basicDate();
@@ -0,0 +1,157 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.regex;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * An immutable set of names that finds the names matching a simple match pattern
+ * (see {@link Regex#simpleMatch(String, String)}) without testing every name.
+ * <p/>
+ * The names are kept sorted, and sorted by their reversed form. The literal prefix of
+ * a pattern (before the first <tt>*</tt>) selects a range of the first, the literal
+ * suffix (after the last <tt>*</tt>) a range of the second, and only the names of the
+ * smaller range are matched against the pattern.
+ */
+public class SimpleMatchIndex {
+
+    private static final Comparator<String> REVERSED_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String s1, String s2) {
+            int i1 = s1.length() - 1;
+            int i2 = s2.length() - 1;
+            for (; i1 >= 0 && i2 >= 0; i1--, i2--) {
+                char c1 = s1.charAt(i1);
+                char c2 = s2.charAt(i2);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+            return s1.length() - s2.length();
+        }
+    };
+
+    private final String[] names;
+
+    private final String[] reversedNames;
+
+    public SimpleMatchIndex(Collection<String> names) {
+        this.names = names.toArray(new String[names.size()]);
+        Arrays.sort(this.names);
+        this.reversedNames = this.names.clone();
+        Arrays.sort(this.reversedNames, REVERSED_ORDER);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Adds the names matching the pattern to the given collection, returning <tt>true</tt>
+     * if any name matched.
+     */
+    public boolean match(String pattern, Collection<String> matches) {
+        int firstIndex = pattern.indexOf('*');
+        if (firstIndex == -1) {
+            if (Arrays.binarySearch(names, pattern) >= 0) {
+                matches.add(pattern);
+                return true;
+            }
+            return false;
+        }
+        String prefix = pattern.substring(0, firstIndex);
+        int from = lowerBound(names, prefix, null);
+        int to = prefixEnd(from, prefix);
+
+        int lastIndex = pattern.lastIndexOf('*');
+        String suffix = pattern.substring(lastIndex + 1);
+        int reversedFrom = lowerBound(reversedNames, suffix, REVERSED_ORDER);
+        int reversedTo = suffixEnd(reversedFrom, suffix);
+
+        String[] candidates = names;
+        if (reversedTo - reversedFrom < to - from) {
+            candidates = reversedNames;
+            from = reversedFrom;
+            to = reversedTo;
+        }
+        // a single wildcard only needs the other end checked
+        boolean singleWildcard = firstIndex == lastIndex;
+        boolean found = false;
+        for (int i = from; i < to; i++) {
+            String name = candidates[i];
+            boolean matched;
+            if (singleWildcard) {
+                matched = name.length() >= prefix.length() + suffix.length() && name.startsWith(prefix) && name.endsWith(suffix);
+            } else {
+                matched = Regex.simpleMatch(pattern, name);
+            }
+            if (matched) {
+                matches.add(name);
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private int prefixEnd(int from, String prefix) {
+        int low = from;
+        int high = names.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (names[mid].startsWith(prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int suffixEnd(int from, String suffix) {
+        int low = from;
+        int high = reversedNames.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (reversedNames[mid].endsWith(suffix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(String[] sorted, String key, Comparator<String> comparator) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparator == null ? sorted[mid].compareTo(key) : comparator.compare(sorted[mid], key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -41,22 +41,35 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import static org.elasticsearch.common.Strings.toCamelCase;
 import static org.elasticsearch.common.unit.ByteSizeValue.parseBytesSizeValue;
 import static org.elasticsearch.common.unit.SizeValue.parseSizeValue;
 import static org.elasticsearch.common.unit.TimeValue.parseTimeValue;
+import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.newConcurrentMap;
 
 /**
  * An immutable implementation of {@link Settings}.
+ * <p/>
+ * The values of typed settings (see {@link Setting}), the settings by prefix and the component
+ * settings are computed once and cached, so reading them again does not go through the map.
  */
 public class ImmutableSettings implements Settings {
 
+    private static final Object NULL_VALUE = new Object();
+
     private ImmutableMap<String, String> settings;
 
     private transient ClassLoader classLoader;
 
+    private final transient ConcurrentMap<Setting<?>, Object> values = newConcurrentMap();
+
+    private final transient ConcurrentMap<String, Settings> prefixSettings = newConcurrentMap();
+
+    private final transient ConcurrentMap<Class, Settings> componentSettings = newConcurrentMap();
+
     private ImmutableSettings(Map<String, String> settings, ClassLoader classLoader) {
         this.settings = ImmutableMap.copyOf(settings);
         this.classLoader = classLoader;
@@ -79,11 +92,18 @@ public class ImmutableSettings implements Settings {
 
     
     public Settings getComponentSettings(Class component) {
+        Settings componentSettings = this.componentSettings.get(component);
+        if (componentSettings != null) {
+            return componentSettings;
+        }
         if (component.getName().startsWith("org.elasticsearch")) {
-            return getComponentSettings("org.elasticsearch", component);
+            componentSettings = getComponentSettings("org.elasticsearch", component);
+        } else {
+            // not starting with org.elasticsearch, just remove the first package part (probably org/net/com)
+            componentSettings = getComponentSettings(component.getName().substring(0, component.getName().indexOf('.')), component);
         }
-        // not starting with org.elasticsearch, just remove the first package part (probably org/net/com)
-        return getComponentSettings(component.getName().substring(0, component.getName().indexOf('.')), component);
+        this.componentSettings.putIfAbsent(component, componentSettings);
+        return componentSettings;
     }
 
     
@@ -99,6 +119,10 @@ public class ImmutableSettings implements Settings {
 
     
     public Settings getByPrefix(String prefix) {
+        Settings prefixSettings = this.prefixSettings.get(prefix);
+        if (prefixSettings != null) {
+            return prefixSettings;
+        }
         Builder builder = new Builder();
         for (Map.Entry<String, String> entry : getAsMap().entrySet()) {
             if (entry.getKey().startsWith(prefix)) {
@@ -110,7 +134,9 @@ public class ImmutableSettings implements Settings {
             }
         }
         builder.classLoader(classLoader);
-        return builder.build();
+        prefixSettings = builder.build();
+        this.prefixSettings.putIfAbsent(prefix, prefixSettings);
+        return prefixSettings;
     }
 
     
@@ -129,6 +155,17 @@ public class ImmutableSettings implements Settings {
         return retVal == null ? defaultValue : retVal;
     }
 
+    @SuppressWarnings({"unchecked"})
+    public <T> T get(Setting<T> setting) throws SettingsException {
+        Object value = values.get(setting);
+        if (value == null) {
+            value = setting.read(this);
+            values.putIfAbsent(setting, value == null ? NULL_VALUE : value);
+            return (T) value;
+        }
+        return value == NULL_VALUE ? null : (T) value;
+    }
+
     
     public Float getAsFloat(String setting, Float defaultValue) {
         String sValue = get(setting);
@@ -0,0 +1,138 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.common.settings;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+
+/**
+ * A typed setting key with its default value. The value is parsed once per {@link Settings}
+ * instance and cached there (see {@link Settings#get(Setting)}), so components that read
+ * configuration on every request should keep their keys as constants, for example:
+ * <pre>
+ * static final Setting&lt;TimeValue&gt; TIMEOUT = Setting.timeSetting("http.request.timeout", TimeValue.timeValueSeconds(15));
+ * ...
+ * TimeValue timeout = TIMEOUT.get(settings);
+ * </pre>
+ * Keys are cached by identity, so a key should be created once and not per read.
+ */
+public abstract class Setting<T> {
+
+    private final String key;
+
+    private final T defaultValue;
+
+    protected Setting(String key, @Nullable T defaultValue) {
+        this.key = key;
+        this.defaultValue = defaultValue;
+    }
+
+    public String key() {
+        return this.key;
+    }
+
+    @Nullable
+    public T defaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * The value of the setting in the given settings, or the default value if it is not set.
+     */
+    public T get(Settings settings) throws SettingsException {
+        return settings.get(this);
+    }
+
+    /**
+     * Reads and parses the value from the given settings, without caching.
+     */
+    protected abstract T read(Settings settings) throws SettingsException;
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    public static Setting<String> stringSetting(String key, @Nullable String defaultValue) {
+        return new Setting<String>(key, defaultValue) {
+            @Override
+            protected String read(Settings settings) {
+                String value = settings.get(key());
+                return value == null ? defaultValue() : value;
+            }
+        };
+    }
+
+    public static Setting<Integer> intSetting(String key, @Nullable Integer defaultValue) {
+        return new Setting<Integer>(key, defaultValue) {
+            @Override
+            protected Integer read(Settings settings) {
+                return settings.getAsInt(key(), defaultValue());
+            }
+        };
+    }
+
+    public static Setting<Long> longSetting(String key, @Nullable Long defaultValue) {
+        return new Setting<Long>(key, defaultValue) {
+            @Override
+            protected Long read(Settings settings) {
+                return settings.getAsLong(key(), defaultValue());
+            }
+        };
+    }
+
+    public static Setting<Double> doubleSetting(String key, @Nullable Double defaultValue) {
+        return new Setting<Double>(key, defaultValue) {
+            @Override
+            protected Double read(Settings settings) {
+                return settings.getAsDouble(key(), defaultValue());
+            }
+        };
+    }
+
+    public static Setting<Boolean> booleanSetting(String key, @Nullable Boolean defaultValue) {
+        return new Setting<Boolean>(key, defaultValue) {
+            @Override
+            protected Boolean read(Settings settings) {
+                return settings.getAsBoolean(key(), defaultValue());
+            }
+        };
+    }
+
+    public static Setting<TimeValue> timeSetting(String key, @Nullable TimeValue defaultValue) {
+        return new Setting<TimeValue>(key, defaultValue) {
+            @Override
+            protected TimeValue read(Settings settings) {
+                return settings.getAsTime(key(), defaultValue());
+            }
+        };
+    }
+
+    public static Setting<ByteSizeValue> bytesSizeSetting(String key, @Nullable ByteSizeValue defaultValue) {
+        return new Setting<ByteSizeValue>(key, defaultValue) {
+            @Override
+            protected ByteSizeValue read(Settings settings) {
+                return settings.getAsBytesSize(key(), defaultValue());
+            }
+        };
+    }
+}
@@ -91,6 +91,16 @@ public interface Settings {
      */
     String get(String setting, String defaultValue);
 
+    /**
+     * Returns the value of the typed setting, or its default value if it is not set. The value is
+     * parsed on the first read and cached in this settings instance.
+     *
+     * @param setting The typed setting key
+     * @return The value, or the default value of the setting if no value exists
+     * @throws SettingsException Failure to parse the setting
+     */
+    <T> T get(Setting<T> setting) throws SettingsException;
+
     /**
      * Returns group settings for the given setting prefix.
      */
@@ -19,12 +19,16 @@
 
 package org.elasticsearch.common.xcontent;
 
+import org.elasticsearch.ElasticSearchIllegalStateException;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.BytesStream;
 import org.elasticsearch.common.io.FastByteArrayOutputStream;
+import org.elasticsearch.common.io.stream.BasicCachedStreamOutput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.joda.IsoDates;
 import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.xcontent.support.XContentMapConverter;
 import org.joda.time.DateTimeZone;
@@ -75,6 +79,17 @@ public final class XContentBuilder implements BytesStream {
         return new XContentBuilder(xContent, new FastByteArrayOutputStream());
     }
 
+    /**
+     * Constructs a new builder writing into a pooled buffer (see {@link BasicCachedStreamOutput})
+     * instead of a fresh one. The builder must be {@link #release() released} when done with, and
+     * its {@link #bytes()} point into the pooled buffer, so they are only valid until then. Use
+     * {@link #copyBytes()} to keep the content beyond the release. Using the builder after it was
+     * released fails with an {@link ElasticSearchIllegalStateException}.
+     */
+    public static XContentBuilder cachedBuilder(XContent xContent) throws IOException {
+        return new XContentBuilder(xContent, new CachedOutputStream(BasicCachedStreamOutput.popEntry()));
+    }
+
 
     private XContentGenerator generator;
 
@@ -86,6 +101,8 @@ public final class XContentBuilder implements BytesStream {
 
     private StringBuilder cachedStringBuilder;
 
+    private char[] dateBuffer;
+
 
     /**
      * Constructs a new builder using the provided xcontent and an OutputStream. Make sure
@@ -114,6 +131,13 @@ public final class XContentBuilder implements BytesStream {
         return generator.contentType();
     }
 
+    /**
+     * The generator used by this builder, for writing content directly.
+     */
+    public XContentGenerator generator() {
+        return this.generator;
+    }
+
     public XContentBuilder prettyPrint() {
         generator.usePrettyPrint();
         return this;
@@ -975,6 +999,9 @@ public final class XContentBuilder implements BytesStream {
         if (date == null) {
             return nullValue();
         }
+        if (dateTimeFormatter == defaultDatePrinter) {
+            return dateValue(date.getMillis());
+        }
         return value(dateTimeFormatter.print(date));
     }
 
@@ -986,9 +1013,27 @@ public final class XContentBuilder implements BytesStream {
         if (date == null) {
             return nullValue();
         }
+        if (dateTimeFormatter == defaultDatePrinter) {
+            return dateValue(date.getTime());
+        }
         return value(dateTimeFormatter.print(date.getTime()));
     }
 
+    /**
+     * Writes the date as printed by the {@link #defaultDatePrinter}, without creating a string.
+     */
+    private XContentBuilder dateValue(long millis) throws IOException {
+        if (dateBuffer == null) {
+            dateBuffer = new char[IsoDates.LENGTH];
+        }
+        int length = IsoDates.print(millis, dateBuffer, 0);
+        if (length == -1) {
+            return value(defaultDatePrinter.print(millis));
+        }
+        generator.writeString(dateBuffer, 0, length);
+        return this;
+    }
+
     public XContentBuilder value(Integer value) throws IOException {
         if (value == null) {
             return nullValue();
@@ -1149,6 +1194,25 @@ public final class XContentBuilder implements BytesStream {
         return ((BytesStream) bos).bytes();
     }
 
+    /**
+     * A copy of the bytes, which stays valid after the builder was {@link #release() released}.
+     */
+    public BytesReference copyBytes() {
+        return bytes().copyBytesArray();
+    }
+
+    /**
+     * Returns the buffer of a {@link #cachedBuilder(XContent) cached builder} to the pool. The
+     * builder and the {@link #bytes()} it returned must not be used anymore. Does nothing for
+     * other builders, and when called more than once.
+     */
+    public void release() {
+        if (bos instanceof CachedOutputStream) {
+            close();
+            ((CachedOutputStream) bos).release();
+        }
+    }
+
     /**
      * Returns the actual stream used.
      */
@@ -1167,4 +1231,52 @@ public final class XContentBuilder implements BytesStream {
         BytesArray bytesArray = bytes().toBytesArray();
         return new String(bytesArray.array(), bytesArray.arrayOffset(), bytesArray.length(), "UTF-8");
     }
+
+    /**
+     * Writes into a pooled buffer until released, and fails afterwards, so a released builder cannot
+     * write into a buffer that is already used by another one.
+     */
+    private static class CachedOutputStream extends OutputStream implements BytesStream {
+
+        private BasicCachedStreamOutput.Entry entry;
+
+        CachedOutputStream(BasicCachedStreamOutput.Entry entry) {
+            this.entry = entry;
+        }
+
+        private BytesStreamOutput out() {
+            if (entry == null) {
+                throw new ElasticSearchIllegalStateException("builder already released");
+            }
+            return entry.bytes();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out().write(b, off, len);
+        }
+
+        @Override
+        public BytesReference bytes() {
+            return out().bytes();
+        }
+
+        @Override
+        public void close() {
+            // the buffer goes back to the pool on release
+        }
+
+        void release() {
+            BasicCachedStreamOutput.Entry entry = this.entry;
+            if (entry != null) {
+                this.entry = null;
+                BasicCachedStreamOutput.pushEntry(entry);
+            }
+        }
+    }
 }
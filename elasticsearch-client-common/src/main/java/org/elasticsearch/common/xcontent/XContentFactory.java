@@ -103,6 +103,14 @@ public class XContentFactory {
         throw new ElasticSearchIllegalArgumentException("No matching content type for " + type);
     }
 
+    /**
+     * Returns a binary content builder for the provided content type, writing into a pooled buffer.
+     * The builder must be released, see {@link XContentBuilder#cachedBuilder(XContent)}.
+     */
+    public static XContentBuilder cachedContentBuilder(XContentType type) throws IOException {
+        return XContentBuilder.cachedBuilder(xContent(type));
+    }
+
     /**
      * Returns the {@link org.elasticsearch.common.xcontent.XContent} for the provided content type.
      */
@@ -24,6 +24,8 @@ import org.elasticsearch.common.bytes.BytesReference;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 
 /**
  *
@@ -64,6 +66,10 @@ public interface XContentGenerator {
 
     void writeNumber(float f) throws IOException;
 
+    void writeNumber(BigInteger v) throws IOException;
+
+    void writeNumber(BigDecimal v) throws IOException;
+
     void writeBoolean(boolean state) throws IOException;
 
     void writeNull() throws IOException;
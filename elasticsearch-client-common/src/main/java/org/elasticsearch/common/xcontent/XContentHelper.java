@@ -28,6 +28,7 @@ import org.elasticsearch.common.compress.CompressedStreamInput;
 import org.elasticsearch.common.compress.BasicCompressor;
 import org.elasticsearch.common.compress.BasicCompressorFactory;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.xcontent.support.XContentMapConverter;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -95,6 +96,22 @@ public class XContentHelper {
         }
     }
 
+    /**
+     * Converts the content to a map taking less memory, see {@link XContentMapConverter#readCompactMap(XContentParser)}.
+     */
+    public static Map<String, Object> convertToCompactMap(BytesReference bytes) throws ElasticSearchParseException {
+        try {
+            XContentParser parser = createParser(bytes);
+            try {
+                return XContentMapConverter.readCompactMap(parser);
+            } finally {
+                parser.close();
+            }
+        } catch (IOException e) {
+            throw new ElasticSearchParseException("Failed to parse content to map", e);
+        }
+    }
+
     public static Tuple<XContentType, Map<String, Object>> convertToMap(byte[] data, boolean ordered) throws ElasticSearchParseException {
         return convertToMap(data, 0, data.length, ordered);
     }
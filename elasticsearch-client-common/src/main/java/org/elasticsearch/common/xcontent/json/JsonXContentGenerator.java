@@ -27,6 +27,8 @@ import org.elasticsearch.common.xcontent.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 
 /**
  *
@@ -125,6 +127,16 @@ public class JsonXContentGenerator implements XContentGenerator {
     }
 
     
+    public void writeNumber(BigInteger v) throws IOException {
+        generator.writeNumber(v);
+    }
+
+    
+    public void writeNumber(BigDecimal v) throws IOException {
+        generator.writeNumber(v);
+    }
+
+    
     public void writeBoolean(boolean state) throws IOException {
         generator.writeBoolean(state);
     }
@@ -0,0 +1,260 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.xcontent.support;
+
+import java.util.*;
+
+/**
+ * An insertion ordered map of parsed objects, keeping up to {@link #MAX_SIZE} entries in two
+ * arrays instead of a hash table. Keys are compared by identity first, field names returned
+ * by the parsers are interned. Once more entries are added, the map moves them to a
+ * {@link LinkedHashMap}.
+ */
+class CompactMap extends AbstractMap<String, Object> {
+
+    static final int MAX_SIZE = 16;
+
+    private String[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    private Map<String, Object> map;
+
+    CompactMap() {
+        this.keys = new String[4];
+        this.values = new Object[4];
+    }
+
+    /**
+     * The map to return once parsing is done, this map with its arrays trimmed, or the
+     * {@link LinkedHashMap} it moved to.
+     */
+    Map<String, Object> compact() {
+        if (map != null) {
+            return map;
+        }
+        if (size < keys.length) {
+            keys = Arrays.copyOf(keys, size);
+            values = Arrays.copyOf(values, size);
+        }
+        return this;
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        if (key != null) {
+            for (int i = 0; i < size; i++) {
+                if (key.equals(keys[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return map != null ? map.size() : size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map != null ? map.containsKey(key) : indexOf(key) != -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (map != null) {
+            return map.get(key);
+        }
+        int index = indexOf(key);
+        return index == -1 ? null : values[index];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (map != null) {
+            return map.put(key, value);
+        }
+        int index = indexOf(key);
+        if (index != -1) {
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        if (size == MAX_SIZE) {
+            map = new LinkedHashMap<String, Object>(MAX_SIZE * 4);
+            for (int i = 0; i < size; i++) {
+                map.put(keys[i], values[i]);
+            }
+            keys = null;
+            values = null;
+            size = 0;
+            return map.put(key, value);
+        }
+        if (size == keys.length) {
+            int length = Math.min(MAX_SIZE, Math.max(4, size * 2));
+            keys = Arrays.copyOf(keys, length);
+            values = Arrays.copyOf(values, length);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (map != null) {
+            return map.remove(key);
+        }
+        int index = indexOf(key);
+        if (index == -1) {
+            return null;
+        }
+        Object previous = values[index];
+        removeAt(index);
+        return previous;
+    }
+
+    private void removeAt(int index) {
+        int moved = size - index - 1;
+        System.arraycopy(keys, index + 1, keys, index, moved);
+        System.arraycopy(values, index + 1, values, index, moved);
+        size--;
+        keys[size] = null;
+        values[size] = null;
+    }
+
+    @Override
+    public void clear() {
+        if (map != null) {
+            map.clear();
+            return;
+        }
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (map != null) {
+            return map.entrySet();
+        }
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                if (map != null) {
+                    return map.entrySet().iterator();
+                }
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return CompactMap.this.size();
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int next;
+
+        private int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new MapEntry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1) {
+                throw new IllegalStateException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+        }
+    }
+
+    private class MapEntry implements Entry<String, Object> {
+
+        private final int index;
+
+        MapEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return keys[index];
+        }
+
+        @Override
+        public Object getValue() {
+            return values[index];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry e = (Entry) o;
+            return (getKey() == null ? e.getKey() == null : getKey().equals(e.getKey()))
+                    && (getValue() == null ? e.getValue() == null : getValue().equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            return (getKey() == null ? 0 : getKey().hashCode()) ^ (getValue() == null ? 0 : getValue().hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,551 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.xcontent.support;
+
+import com.google.common.base.Charsets;
+import org.elasticsearch.ElasticSearchParseException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.BasicCompressorFactory;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A read mostly view of a JSON source as a map, that only parses the values that are read.
+ * <p/>
+ * The first access scans the bytes of the source once, without parsing them, to find where the
+ * value of each top level field starts and ends. Reading a field then parses only its value, and
+ * objects are returned as lazy sources themselves, so reading a path like <tt>user.name</tt> with
+ * {@link #value(String)} or the typed accessors parses just the name. Values are parsed as with
+ * {@link XContentMapConverter#readCompactMap(XContentParser)}.
+ * <p/>
+ * The view implements the whole {@link Map} interface, modifying it (also through its entries)
+ * parses all top level values first. Sources that are not JSON, or JSON this scan does not handle
+ * (like unquoted field names), are parsed completely on first access.
+ * <p/>
+ * Reads are synchronized, so one source can be shared by several threads, like the hits of a
+ * cached search response.
+ */
+public class LazySource extends AbstractMap<String, Object> {
+
+    private static final Object NOT_PARSED = new Object();
+
+    private static final int MAX_LINEAR_LOOKUP = 16;
+
+    private final BytesReference source;
+
+    private byte[] bytes;
+
+    private int from;
+
+    private int to;
+
+    private boolean indexed;
+
+    private String[] names;
+
+    private int[] starts;
+
+    private int[] ends;
+
+    private Object[] values;
+
+    private int size;
+
+    private Map<String, Integer> lookup;
+
+    // all values, once not json, not scanned, or modified
+    private Map<String, Object> map;
+
+    public LazySource(BytesReference source) {
+        this.source = source;
+    }
+
+    private LazySource(byte[] bytes, int from, int to) {
+        this.source = null;
+        this.bytes = bytes;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * The value at the given path, with the same semantics as {@link XContentMapValues#extractValue(String, Map)}.
+     */
+    public Object value(String path) {
+        return XContentMapValues.extractValue(path, this);
+    }
+
+    public String stringValue(String path) {
+        Object value = value(path);
+        return value == null ? null : value.toString();
+    }
+
+    public long longValue(String path, long defaultValue) {
+        XContentParser parser = scalarParser(path);
+        if (parser == null) {
+            return XContentMapValues.nodeLongValue(value(path), defaultValue);
+        }
+        try {
+            return parser.currentToken() == XContentParser.Token.VALUE_NULL ? defaultValue : parser.longValue();
+        } catch (IOException e) {
+            throw new ElasticSearchParseException("failed to parse [" + path + "]", e);
+        } finally {
+            parser.close();
+        }
+    }
+
+    public double doubleValue(String path, double defaultValue) {
+        XContentParser parser = scalarParser(path);
+        if (parser == null) {
+            return XContentMapValues.nodeDoubleValue(value(path), defaultValue);
+        }
+        try {
+            return parser.currentToken() == XContentParser.Token.VALUE_NULL ? defaultValue : parser.doubleValue();
+        } catch (IOException e) {
+            throw new ElasticSearchParseException("failed to parse [" + path + "]", e);
+        } finally {
+            parser.close();
+        }
+    }
+
+    public boolean booleanValue(String path, boolean defaultValue) {
+        XContentParser parser = scalarParser(path);
+        if (parser == null) {
+            return XContentMapValues.nodeBooleanValue(value(path), defaultValue);
+        }
+        try {
+            return parser.currentToken() == XContentParser.Token.VALUE_NULL ? defaultValue : parser.booleanValue();
+        } catch (IOException e) {
+            throw new ElasticSearchParseException("failed to parse [" + path + "]", e);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * A parser positioned on the unparsed scalar value at the path, to read it without boxing, or
+     * <tt>null</tt> if the value is missing, parsed already, or not a scalar in nested objects.
+     */
+    private XContentParser scalarParser(String path) {
+        LazySource current = this;
+        int start = 0;
+        while (true) {
+            LazySource next;
+            int end = start;
+            synchronized (current) {
+                current.index();
+                if (current.map != null) {
+                    return null;
+                }
+                // like extractValue, a missing key is tried again with the next path element appended
+                int index = -1;
+                while (index == -1 && end != -1) {
+                    end = path.indexOf('.', end + 1);
+                    index = current.indexOf(end == -1 ? path.substring(start) : path.substring(start, end));
+                }
+                if (index == -1) {
+                    return null;
+                }
+                Object parsed = current.values[index];
+                byte first = current.bytes[current.starts[index]];
+                if (end == -1) {
+                    if (parsed != NOT_PARSED || first == '{' || first == '[') {
+                        return null;
+                    }
+                    try {
+                        XContentParser parser = current.parser(index);
+                        parser.nextToken();
+                        return parser;
+                    } catch (IOException e) {
+                        throw new ElasticSearchParseException("failed to parse [" + path + "]", e);
+                    }
+                }
+                if (parsed == NOT_PARSED ? first != '{' : !(parsed instanceof LazySource)) {
+                    return null;
+                }
+                next = (LazySource) current.value(index);
+            }
+            current = next;
+            start = end + 1;
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        index();
+        return map != null ? map.size() : size;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        index();
+        return map != null ? map.containsKey(key) : indexOf(key) != -1;
+    }
+
+    @Override
+    public synchronized Object get(Object key) {
+        index();
+        if (map != null) {
+            return map.get(key);
+        }
+        int index = indexOf(key);
+        return index == -1 ? null : value(index);
+    }
+
+    @Override
+    public synchronized Object put(String key, Object value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        materialize().clear();
+    }
+
+    @Override
+    public synchronized Set<Entry<String, Object>> entrySet() {
+        index();
+        if (map != null) {
+            return map.entrySet();
+        }
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                final String[] names;
+                final int size;
+                synchronized (LazySource.this) {
+                    if (map != null) {
+                        return map.entrySet().iterator();
+                    }
+                    // the scanned names do not change, values are read through the map so
+                    // the iteration goes on after an entry was set or removed
+                    names = LazySource.this.names;
+                    size = LazySource.this.size;
+                }
+                return new Iterator<Entry<String, Object>>() {
+                    private int next;
+
+                    private String last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        last = names[next++];
+                        return new SourceEntry(last, get(last));
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+                        LazySource.this.remove(last);
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LazySource.this.size();
+            }
+        };
+    }
+
+    private class SourceEntry extends SimpleEntry<String, Object> {
+
+        SourceEntry(String key, Object value) {
+            super(key, value);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    private Map<String, Object> materialize() {
+        index();
+        if (map == null) {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            for (int i = 0; i < size; i++) {
+                map.put(names[i], value(i));
+            }
+            this.map = map;
+            names = null;
+            starts = null;
+            ends = null;
+            values = null;
+            lookup = null;
+        }
+        return map;
+    }
+
+    private int indexOf(Object key) {
+        if (lookup != null) {
+            Integer index = lookup.get(key);
+            return index == null ? -1 : index;
+        }
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object value(int index) {
+        Object value = values[index];
+        if (value == NOT_PARSED) {
+            if (bytes[starts[index]] == '{') {
+                value = new LazySource(bytes, starts[index], ends[index]);
+            } else {
+                XContentParser parser = null;
+                try {
+                    parser = parser(index);
+                    value = XContentMapConverter.readValue(parser, XContentMapConverter.COMPACT_MAP_FACTORY, parser.nextToken());
+                } catch (IOException e) {
+                    throw new ElasticSearchParseException("failed to parse [" + names[index] + "]", e);
+                } finally {
+                    if (parser != null) {
+                        parser.close();
+                    }
+                }
+            }
+            values[index] = value;
+        }
+        return value;
+    }
+
+    private XContentParser parser(int index) throws IOException {
+        return JsonXContent.jsonXContent.createParser(bytes, starts[index], ends[index] - starts[index]);
+    }
+
+    private void index() {
+        if (indexed) {
+            return;
+        }
+        indexed = true;
+        try {
+            if (source != null) {
+                BytesReference uncompressed = BasicCompressorFactory.uncompressIfNeeded(source);
+                if (!uncompressed.hasArray() || XContentFactory.xContentType(uncompressed) != XContentType.JSON) {
+                    map = XContentHelper.convertToCompactMap(uncompressed);
+                    return;
+                }
+                bytes = uncompressed.array();
+                from = uncompressed.arrayOffset();
+                to = from + uncompressed.length();
+            }
+            names = new String[8];
+            starts = new int[8];
+            ends = new int[8];
+            if (!scan()) {
+                XContentParser parser = JsonXContent.jsonXContent.createParser(bytes, from, to - from);
+                try {
+                    map = XContentMapConverter.readCompactMap(parser);
+                } finally {
+                    parser.close();
+                }
+                names = null;
+                starts = null;
+                ends = null;
+                lookup = null;
+                size = 0;
+                return;
+            }
+            values = new Object[size];
+            Arrays.fill(values, NOT_PARSED);
+        } catch (IOException e) {
+            throw new ElasticSearchParseException("failed to parse source", e);
+        }
+    }
+
+    /**
+     * Finds the names and value offsets of the fields of the object, returns <tt>false</tt> if it
+     * cannot be scanned and needs to be parsed.
+     */
+    private boolean scan() {
+        int pos = skipWhitespace(from);
+        if (pos == to || bytes[pos] != '{') {
+            return false;
+        }
+        pos = skipWhitespace(pos + 1);
+        if (pos < to && bytes[pos] == '}') {
+            return true;
+        }
+        while (pos < to) {
+            if (bytes[pos] != '"') {
+                return false;
+            }
+            int nameEnd = skipString(pos);
+            if (nameEnd == -1) {
+                return false;
+            }
+            for (int i = pos + 1; i < nameEnd - 1; i++) {
+                if (bytes[i] == '\\') {
+                    // escaped names are rare, leave them to the parser
+                    return false;
+                }
+            }
+            String name = new String(bytes, pos + 1, nameEnd - pos - 2, Charsets.UTF_8);
+            pos = skipWhitespace(nameEnd);
+            if (pos == to || bytes[pos] != ':') {
+                return false;
+            }
+            int start = skipWhitespace(pos + 1);
+            int end = skipValue(start);
+            if (end == -1) {
+                return false;
+            }
+            add(name, start, end);
+            pos = skipWhitespace(end);
+            if (pos == to) {
+                return false;
+            }
+            if (bytes[pos] == '}') {
+                return true;
+            }
+            if (bytes[pos] != ',') {
+                return false;
+            }
+            pos = skipWhitespace(pos + 1);
+        }
+        return false;
+    }
+
+    private void add(String name, int start, int end) {
+        int index = indexOf(name);
+        if (index != -1) {
+            // the last value wins, as when parsing into a map
+            starts[index] = start;
+            ends[index] = end;
+            return;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        names[size] = name;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+        if (lookup != null) {
+            lookup.put(name, size - 1);
+        } else if (size > MAX_LINEAR_LOOKUP) {
+            lookup = new HashMap<String, Integer>();
+            for (int i = 0; i < size; i++) {
+                lookup.put(names[i], i);
+            }
+        }
+    }
+
+    private int skipWhitespace(int pos) {
+        while (pos < to) {
+            byte b = bytes[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * The position after the string starting at the given quote, <tt>-1</tt> if it does not end.
+     */
+    private int skipString(int pos) {
+        pos++;
+        while (pos < to) {
+            byte b = bytes[pos];
+            if (b == '\\') {
+                pos += 2;
+            } else if (b == '"') {
+                return pos + 1;
+            } else {
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The position after the value starting at the given position, <tt>-1</tt> if it does not end.
+     */
+    private int skipValue(int pos) {
+        if (pos == to) {
+            return -1;
+        }
+        byte b = bytes[pos];
+        if (b == '"') {
+            return skipString(pos);
+        }
+        if (b == '{' || b == '[') {
+            int depth = 0;
+            while (pos < to) {
+                b = bytes[pos];
+                if (b == '"') {
+                    pos = skipString(pos);
+                    if (pos == -1) {
+                        return -1;
+                    }
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0) {
+                        return pos + 1;
+                    }
+                }
+                pos++;
+            }
+            return -1;
+        }
+        int start = pos;
+        while (pos < to) {
+            b = bytes[pos];
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos == start ? -1 : pos;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.xcontent.support;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A list of parsed numbers of the same type (all ints, all longs or all doubles) kept in a
+ * primitive array. The numbers are boxed when read, to the same types as in a list parsed
+ * without it. The first modification moves the numbers to an {@link ArrayList}.
+ */
+class NumberList extends AbstractList<Object> implements RandomAccess {
+
+    static final int INT = 0;
+
+    static final int LONG = 1;
+
+    static final int DOUBLE = 2;
+
+    private final int type;
+
+    private int[] ints;
+
+    private long[] longs;
+
+    private double[] doubles;
+
+    private int size;
+
+    private ArrayList<Object> list;
+
+    NumberList(int type) {
+        this.type = type;
+        if (type == INT) {
+            ints = new int[8];
+        } else if (type == LONG) {
+            longs = new long[8];
+        } else {
+            doubles = new double[8];
+        }
+    }
+
+    void addInt(int value) {
+        if (size == ints.length) {
+            ints = Arrays.copyOf(ints, size * 2);
+        }
+        ints[size++] = value;
+    }
+
+    void addLong(long value) {
+        if (size == longs.length) {
+            longs = Arrays.copyOf(longs, size * 2);
+        }
+        longs[size++] = value;
+    }
+
+    void addDouble(double value) {
+        if (size == doubles.length) {
+            doubles = Arrays.copyOf(doubles, size * 2);
+        }
+        doubles[size++] = value;
+    }
+
+    /**
+     * Trims the array to the parsed numbers.
+     */
+    NumberList trim() {
+        if (type == INT) {
+            ints = Arrays.copyOf(ints, size);
+        } else if (type == LONG) {
+            longs = Arrays.copyOf(longs, size);
+        } else {
+            doubles = Arrays.copyOf(doubles, size);
+        }
+        return this;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (list != null) {
+            return list.get(index);
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (type == INT) {
+            return ints[index];
+        } else if (type == LONG) {
+            return longs[index];
+        }
+        return doubles[index];
+    }
+
+    @Override
+    public int size() {
+        return list != null ? list.size() : size;
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        return list().set(index, element);
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        modCount++;
+        list().add(index, element);
+    }
+
+    @Override
+    public Object remove(int index) {
+        modCount++;
+        return list().remove(index);
+    }
+
+    private ArrayList<Object> list() {
+        if (list == null) {
+            ArrayList<Object> list = new ArrayList<Object>(size + 1);
+            for (int i = 0; i < size; i++) {
+                list.add(get(i));
+            }
+            this.list = list;
+            ints = null;
+            longs = null;
+            doubles = null;
+        }
+        return list;
+    }
+}
@@ -21,8 +21,8 @@ package org.elasticsearch.common.xcontent.support;
 
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.joda.IsoDates;
 import org.elasticsearch.common.text.Text;
-import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentGenerator;
 import org.elasticsearch.common.xcontent.XContentParser;
 
@@ -52,6 +52,16 @@ public class XContentMapConverter {
         }
     };
 
+    /**
+     * Creates the maps of {@link #readCompactMap(XContentParser)}.
+     */
+    public static final MapFactory COMPACT_MAP_FACTORY = new MapFactory() {
+
+        public Map<String, Object> newMap() {
+            return new CompactMap();
+        }
+    };
+
     public static Map<String, Object> readMap(XContentParser parser) throws IOException {
         return readMap(parser, SIMPLE_MAP_FACTORY);
     }
@@ -60,6 +70,16 @@ public class XContentMapConverter {
         return readMap(parser, ORDERED_MAP_FACTORY);
     }
 
+    /**
+     * Reads an insertion ordered map that takes less memory, for parsing many similar documents
+     * like the sources of search hits. Objects of up to 16 fields are kept in arrays instead of
+     * hash tables, and arrays of only ints, only longs or only doubles are kept in primitive
+     * arrays. The maps and lists can be modified, and are equal to the ones of {@link #readMap(XContentParser)}.
+     */
+    public static Map<String, Object> readCompactMap(XContentParser parser) throws IOException {
+        return readMap(parser, COMPACT_MAP_FACTORY);
+    }
+
     public static Map<String, Object> readMap(XContentParser parser, MapFactory mapFactory) throws IOException {
         Map<String, Object> map = mapFactory.newMap();
         XContentParser.Token t = parser.currentToken();
@@ -77,10 +97,16 @@ public class XContentMapConverter {
             Object value = readValue(parser, mapFactory, t);
             map.put(fieldName, value);
         }
+        if (mapFactory == COMPACT_MAP_FACTORY) {
+            return ((CompactMap) map).compact();
+        }
         return map;
     }
 
-    private static List<Object> readList(XContentParser parser, MapFactory mapFactory, XContentParser.Token t) throws IOException {
+    static List<Object> readList(XContentParser parser, MapFactory mapFactory, XContentParser.Token t) throws IOException {
+        if (mapFactory == COMPACT_MAP_FACTORY) {
+            return readCompactList(parser, mapFactory);
+        }
         ArrayList<Object> list = new ArrayList<Object>();
         while ((t = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             list.add(readValue(parser, mapFactory, t));
@@ -88,7 +114,49 @@ public class XContentMapConverter {
         return list;
     }
 
-    private static Object readValue(XContentParser parser, MapFactory mapFactory, XContentParser.Token t) throws IOException {
+    private static List<Object> readCompactList(XContentParser parser, MapFactory mapFactory) throws IOException {
+        XContentParser.Token t = parser.nextToken();
+        List<Object> list = null;
+        if (t == XContentParser.Token.VALUE_NUMBER) {
+            XContentParser.NumberType numberType = parser.numberType();
+            NumberList numbers = null;
+            if (numberType == XContentParser.NumberType.INT) {
+                numbers = new NumberList(NumberList.INT);
+                do {
+                    numbers.addInt(parser.intValue());
+                    t = parser.nextToken();
+                } while (t == XContentParser.Token.VALUE_NUMBER && parser.numberType() == numberType);
+            } else if (numberType == XContentParser.NumberType.LONG) {
+                numbers = new NumberList(NumberList.LONG);
+                do {
+                    numbers.addLong(parser.longValue());
+                    t = parser.nextToken();
+                } while (t == XContentParser.Token.VALUE_NUMBER && parser.numberType() == numberType);
+            } else if (numberType == XContentParser.NumberType.DOUBLE) {
+                numbers = new NumberList(NumberList.DOUBLE);
+                do {
+                    numbers.addDouble(parser.doubleValue());
+                    t = parser.nextToken();
+                } while (t == XContentParser.Token.VALUE_NUMBER && parser.numberType() == numberType);
+            }
+            if (numbers != null) {
+                if (t == XContentParser.Token.END_ARRAY) {
+                    return numbers.trim();
+                }
+                // mixed values, continue with a plain list
+                list = new ArrayList<Object>(numbers);
+            }
+        }
+        if (list == null) {
+            list = new ArrayList<Object>();
+        }
+        for (; t != XContentParser.Token.END_ARRAY; t = parser.nextToken()) {
+            list.add(readValue(parser, mapFactory, t));
+        }
+        return list;
+    }
+
+    static Object readValue(XContentParser parser, MapFactory mapFactory, XContentParser.Token t) throws IOException {
         if (t == XContentParser.Token.VALUE_NULL) {
             return null;
         } else if (t == XContentParser.Token.VALUE_STRING) {
@@ -177,7 +245,7 @@ public class XContentMapConverter {
         } else if (type == byte[].class) {
             gen.writeBinary((byte[]) value);
         } else if (value instanceof Date) {
-            gen.writeString(XContentBuilder.defaultDatePrinter.print(((Date) value).getTime()));
+            gen.writeString(IsoDates.print(((Date) value).getTime()));
         } else if (value instanceof BytesReference) {
             BytesReference bytes = (BytesReference) value;
             if (!bytes.hasArray()) {
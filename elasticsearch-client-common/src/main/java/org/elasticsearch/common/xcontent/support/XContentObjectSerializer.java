@@ -0,0 +1,666 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.xcontent.support;
+
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.joda.IsoDates;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentGenerator;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentString;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes plain java objects directly to an {@link XContentGenerator} and reads them back
+ * from an {@link XContentParser}, without going through intermediate maps.
+ * <p/>
+ * The properties of a class (bean getters with their setters, and public fields) are
+ * looked up once, and the resulting plan is cached per class, see {@link #serializer(Class)}.
+ * The field names are pre-encoded as {@link XContentString}s. <tt>null</tt> properties are
+ * not written. Nested objects of other classes are written with their own serializer.
+ * Dates are written in the ISO format of {@link XContentBuilder#defaultDatePrinter}, big numbers
+ * exactly. An object that (indirectly) references itself is rejected.
+ * <p/>
+ * Collection and map properties are read into the declared type, or for interfaces into a
+ * matching implementation (for example a <tt>LinkedHashSet</tt> for a <tt>Set</tt>, a
+ * <tt>TreeMap</tt> for a <tt>SortedMap</tt>). Their elements, and the elements of arrays, are
+ * read as the declared element type.
+ */
+public class XContentObjectSerializer<T> {
+
+    private static final ConcurrentMap<Class<?>, XContentObjectSerializer<?>> serializers = ConcurrentCollections.newConcurrentMap();
+
+    private static final DateTimeFormatter dateParser = ISODateTimeFormat.dateOptionalTimeParser().withZone(DateTimeZone.UTC);
+
+    // the implementations used for collection and map properties declared as interfaces, the first assignable one is used
+    private static final Class<?>[] COLLECTION_TYPES = {ArrayList.class, LinkedHashSet.class, TreeSet.class, ArrayDeque.class};
+
+    private static final Class<?>[] MAP_TYPES = {LinkedHashMap.class, TreeMap.class, ConcurrentHashMap.class, ConcurrentSkipListMap.class};
+
+    // the objects and containers currently being written by this thread, to detect cycles
+    private static final ThreadLocal<Map<Object, Boolean>> writing = new ThreadLocal<Map<Object, Boolean>>() {
+        @Override
+        protected Map<Object, Boolean> initialValue() {
+            return new IdentityHashMap<Object, Boolean>();
+        }
+    };
+
+    /**
+     * Returns the (cached) serializer for the given class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> XContentObjectSerializer<T> serializer(Class<T> clazz) {
+        XContentObjectSerializer<T> serializer = (XContentObjectSerializer<T>) serializers.get(clazz);
+        if (serializer == null) {
+            serializer = new XContentObjectSerializer<T>(clazz);
+            XContentObjectSerializer<T> existing = (XContentObjectSerializer<T>) serializers.putIfAbsent(clazz, serializer);
+            if (existing != null) {
+                serializer = existing;
+            }
+        }
+        return serializer;
+    }
+
+    private final Class<T> clazz;
+
+    private final Constructor<T> constructor;
+
+    private final Property[] properties;
+
+    private final Map<String, Property> propertiesByName;
+
+    private XContentObjectSerializer(Class<T> clazz) {
+        this.clazz = clazz;
+        Constructor<T> constructor;
+        try {
+            constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            // can only be written
+            constructor = null;
+        }
+        this.constructor = constructor;
+        List<Property> properties = new ArrayList<Property>();
+        Set<String> names = new HashSet<String>();
+        try {
+            BeanInfo beanInfo = Introspector.getBeanInfo(clazz, Object.class);
+            for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+                if (descriptor.getReadMethod() != null) {
+                    names.add(descriptor.getName());
+                    properties.add(new Property(descriptor.getName(), descriptor.getPropertyType(),
+                            descriptor.getReadMethod().getGenericReturnType(), descriptor.getReadMethod(), descriptor.getWriteMethod(), null));
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw new ElasticSearchIllegalArgumentException("failed to introspect [" + clazz + "]", e);
+        }
+        for (Field field : clazz.getFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || names.contains(field.getName())) {
+                // a public field with a getter is written once, through the getter
+                continue;
+            }
+            properties.add(new Property(field.getName(), field.getType(), field.getGenericType(), null, null, field));
+        }
+        this.properties = properties.toArray(new Property[properties.size()]);
+        this.propertiesByName = new HashMap<String, Property>();
+        for (Property property : this.properties) {
+            propertiesByName.put(property.name.getValue(), property);
+        }
+    }
+
+    /**
+     * Writes the object as an xcontent object.
+     */
+    public void write(T object, XContentGenerator generator) throws IOException {
+        enter(object);
+        try {
+            generator.writeStartObject();
+            for (Property property : properties) {
+                property.write(object, generator);
+            }
+            generator.writeEndObject();
+        } finally {
+            exit(object);
+        }
+    }
+
+    /**
+     * Writes the object into the builder.
+     */
+    public XContentBuilder write(T object, XContentBuilder builder) throws IOException {
+        write(object, builder.generator());
+        return builder;
+    }
+
+    /**
+     * Serializes the object as the given content type.
+     */
+    public BytesReference toBytes(T object, XContentType contentType) throws IOException {
+        XContentBuilder builder = XContentFactory.contentBuilder(contentType);
+        write(object, builder.generator());
+        return builder.bytes();
+    }
+
+    /**
+     * Reads an object from a source, for example {@link org.elasticsearch.common.bytes.BytesReference}s
+     * of search hits or get responses.
+     */
+    public T read(BytesReference source) throws IOException {
+        XContentParser parser = XContentHelper.createParser(source);
+        try {
+            return read(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Reads an object from the parser, which is positioned at (or before) the start of the object.
+     * Unknown fields are skipped.
+     */
+    public T read(XContentParser parser) throws IOException {
+        XContentParser.Token token = parser.currentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        if (token != XContentParser.Token.START_OBJECT) {
+            throw new IOException("expected an object for [" + clazz.getName() + "], got " + token);
+        }
+        if (constructor == null) {
+            throw new IOException("no default constructor for [" + clazz.getName() + "]");
+        }
+        T object;
+        try {
+            object = constructor.newInstance();
+        } catch (InvocationTargetException e) {
+            throw ioException("failed to create [" + clazz.getName() + "]", e.getTargetException());
+        } catch (Exception e) {
+            throw ioException("failed to create [" + clazz.getName() + "]", e);
+        }
+        while ((token = parser.nextToken()) == XContentParser.Token.FIELD_NAME) {
+            Property property = propertiesByName.get(parser.currentName());
+            token = parser.nextToken();
+            if (property == null || !property.writable()) {
+                parser.skipChildren();
+                continue;
+            }
+            property.read(object, parser, token);
+        }
+        return object;
+    }
+
+    private static final int KIND_STRING = 0;
+    private static final int KIND_INT = 1;
+    private static final int KIND_LONG = 2;
+    private static final int KIND_FLOAT = 3;
+    private static final int KIND_DOUBLE = 4;
+    private static final int KIND_BOOLEAN = 5;
+    private static final int KIND_SHORT = 6;
+    private static final int KIND_DATE = 7;
+    private static final int KIND_ENUM = 8;
+    private static final int KIND_OTHER = 9;
+
+    private static int kind(Class<?> type) {
+        if (type == String.class) {
+            return KIND_STRING;
+        } else if (type == int.class || type == Integer.class) {
+            return KIND_INT;
+        } else if (type == long.class || type == Long.class) {
+            return KIND_LONG;
+        } else if (type == float.class || type == Float.class) {
+            return KIND_FLOAT;
+        } else if (type == double.class || type == Double.class) {
+            return KIND_DOUBLE;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return KIND_BOOLEAN;
+        } else if (type == short.class || type == Short.class) {
+            return KIND_SHORT;
+        } else if (Date.class.isAssignableFrom(type)) {
+            return KIND_DATE;
+        } else if (type.isEnum()) {
+            return KIND_ENUM;
+        }
+        return KIND_OTHER;
+    }
+
+    /**
+     * Writes a value of a type that is not known up front.
+     */
+    @SuppressWarnings("unchecked")
+    static void writeValue(XContentGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+            return;
+        }
+        Class type = value.getClass();
+        switch (kind(type)) {
+            case KIND_STRING:
+                generator.writeString((String) value);
+                return;
+            case KIND_INT:
+                generator.writeNumber(((Integer) value).intValue());
+                return;
+            case KIND_LONG:
+                generator.writeNumber(((Long) value).longValue());
+                return;
+            case KIND_FLOAT:
+                generator.writeNumber(((Float) value).floatValue());
+                return;
+            case KIND_DOUBLE:
+                generator.writeNumber(((Double) value).doubleValue());
+                return;
+            case KIND_BOOLEAN:
+                generator.writeBoolean(((Boolean) value).booleanValue());
+                return;
+            case KIND_SHORT:
+                generator.writeNumber(((Short) value).shortValue());
+                return;
+            case KIND_DATE:
+                generator.writeString(IsoDates.print(((Date) value).getTime()));
+                return;
+            case KIND_ENUM:
+                generator.writeString(((Enum) value).name());
+                return;
+        }
+        if (value instanceof Map) {
+            enter(value);
+            try {
+                generator.writeStartObject();
+                for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+                    generator.writeFieldName(String.valueOf(entry.getKey()));
+                    writeValue(generator, entry.getValue());
+                }
+                generator.writeEndObject();
+            } finally {
+                exit(value);
+            }
+        } else if (value instanceof Iterable) {
+            enter(value);
+            try {
+                generator.writeStartArray();
+                for (Object item : (Iterable) value) {
+                    writeValue(generator, item);
+                }
+                generator.writeEndArray();
+            } finally {
+                exit(value);
+            }
+        } else if (value instanceof Object[]) {
+            enter(value);
+            try {
+                generator.writeStartArray();
+                for (Object item : (Object[]) value) {
+                    writeValue(generator, item);
+                }
+                generator.writeEndArray();
+            } finally {
+                exit(value);
+            }
+        } else if (type == byte[].class) {
+            generator.writeBinary((byte[]) value);
+        } else if (type.isArray()) {
+            // arrays of other primitives
+            generator.writeStartArray();
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                writeValue(generator, Array.get(value, i));
+            }
+            generator.writeEndArray();
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Byte || value instanceof AtomicInteger || value instanceof AtomicLong) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (type.getName().startsWith("java.")) {
+            generator.writeString(value.toString());
+        } else {
+            serializer(type).write(value, generator);
+        }
+    }
+
+    private static void enter(Object value) {
+        if (writing.get().put(value, Boolean.TRUE) != null) {
+            throw new ElasticSearchIllegalArgumentException("cyclic reference to [" + value.getClass().getName() + "] while writing it");
+        }
+    }
+
+    private static void exit(Object value) {
+        writing.get().remove(value);
+    }
+
+    /**
+     * Reads a (non null) value as the given type, the generic type providing the element types of
+     * collections and maps.
+     */
+    @SuppressWarnings("unchecked")
+    static Object readValue(XContentParser parser, XContentParser.Token token, Class<?> type, Type genericType) throws IOException {
+        switch (kind(type)) {
+            case KIND_STRING:
+                return parser.text();
+            case KIND_INT:
+                return parser.intValue();
+            case KIND_LONG:
+                return parser.longValue();
+            case KIND_FLOAT:
+                return parser.floatValue();
+            case KIND_DOUBLE:
+                return parser.doubleValue();
+            case KIND_BOOLEAN:
+                return parser.booleanValue();
+            case KIND_SHORT:
+                return parser.shortValue();
+            case KIND_DATE:
+                if (token == XContentParser.Token.VALUE_NUMBER) {
+                    return new Date(parser.longValue());
+                }
+                return new Date(dateParser.parseMillis(parser.text()));
+            case KIND_ENUM:
+                return Enum.valueOf((Class<Enum>) type, parser.text());
+        }
+        if (token.isValue()) {
+            if (type == byte[].class && token != XContentParser.Token.VALUE_NUMBER) {
+                return parser.binaryValue();
+            } else if (type == byte.class || type == Byte.class) {
+                return (byte) parser.intValue();
+            } else if (type == BigInteger.class) {
+                return new BigInteger(parser.text());
+            } else if (type == BigDecimal.class) {
+                return new BigDecimal(parser.text());
+            } else if (type == AtomicLong.class) {
+                return new AtomicLong(parser.longValue());
+            } else if (type == AtomicInteger.class) {
+                return new AtomicInteger(parser.intValue());
+            }
+        }
+        if (token == XContentParser.Token.START_OBJECT) {
+            if (type == Object.class) {
+                return parser.map();
+            }
+            if (Map.class.isAssignableFrom(type)) {
+                Map<String, Object> map = (Map<String, Object>) newInstance(type, Map.class, MAP_TYPES);
+                Type valueType = typeArgument(genericType, 1);
+                Class<?> valueClass = rawClass(valueType);
+                while ((token = parser.nextToken()) == XContentParser.Token.FIELD_NAME) {
+                    String key = parser.currentName();
+                    token = parser.nextToken();
+                    map.put(key, token == XContentParser.Token.VALUE_NULL ? null : readValue(parser, token, valueClass, valueType));
+                }
+                return map;
+            }
+            return serializer(type).read(parser);
+        } else if (token == XContentParser.Token.START_ARRAY) {
+            if (type.isArray()) {
+                Class<?> componentType = type.getComponentType();
+                List<Object> values = new ArrayList<Object>();
+                while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+                    values.add(token == XContentParser.Token.VALUE_NULL ? null : readValue(parser, token, componentType, componentType));
+                }
+                Object array = Array.newInstance(componentType, values.size());
+                for (int i = 0; i < values.size(); i++) {
+                    // nulls stay the default value of primitive arrays
+                    if (values.get(i) != null) {
+                        Array.set(array, i, values.get(i));
+                    }
+                }
+                return array;
+            }
+            Collection<Object> collection = (Collection<Object>) newInstance(type, Collection.class, COLLECTION_TYPES);
+            Type elementType = typeArgument(genericType, 0);
+            Class<?> elementClass = rawClass(elementType);
+            while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+                collection.add(token == XContentParser.Token.VALUE_NULL ? null : readValue(parser, token, elementClass, elementType));
+            }
+            return collection;
+        } else if (token == XContentParser.Token.VALUE_EMBEDDED_OBJECT) {
+            return parser.binaryValue();
+        } else if (token == XContentParser.Token.VALUE_NUMBER) {
+            return parser.numberValue();
+        } else if (token == XContentParser.Token.VALUE_BOOLEAN) {
+            return parser.booleanValue();
+        }
+        return parser.text();
+    }
+
+    /**
+     * Creates the given type, or the first of the implementations assignable to it if it can not be created.
+     */
+    private static Object newInstance(Class<?> type, Class<?> base, Class<?>[] implementations) throws IOException {
+        if (!base.isAssignableFrom(type) && !type.isAssignableFrom(implementations[0])) {
+            throw new IOException("can not read [" + base.getSimpleName() + "] into [" + type.getName() + "]");
+        }
+        Class<?> implementation = null;
+        if (base.isAssignableFrom(type) && !type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            implementation = type;
+        } else {
+            for (Class<?> candidate : implementations) {
+                if (type.isAssignableFrom(candidate)) {
+                    implementation = candidate;
+                    break;
+                }
+            }
+        }
+        if (implementation == null) {
+            throw new IOException("no implementation to read [" + type.getName() + "]");
+        }
+        try {
+            return implementation.newInstance();
+        } catch (Exception e) {
+            throw ioException("failed to create [" + implementation.getName() + "]", e);
+        }
+    }
+
+    private static IOException ioException(String message, Throwable cause) {
+        // initCause, the jdk5 build has no IOException constructor taking a cause
+        IOException e = new IOException(message + ": " + cause.getMessage());
+        e.initCause(cause);
+        return e;
+    }
+
+    private static Type typeArgument(Type genericType, int index) {
+        if (genericType instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return rawClass(((ParameterizedType) type).getRawType());
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        } else if (type instanceof WildcardType) {
+            return rawClass(((WildcardType) type).getUpperBounds()[0]);
+        } else if (type instanceof TypeVariable) {
+            return rawClass(((TypeVariable) type).getBounds()[0]);
+        }
+        return Object.class;
+    }
+
+    private static final class Property {
+
+        final XContentString name;
+
+        final Class<?> type;
+
+        final Type genericType;
+
+        final int kind;
+
+        final Method getter;
+
+        final Method setter;
+
+        final Field field;
+
+        Property(String name, Class<?> type, Type genericType, Method getter, Method setter, Field field) {
+            this.name = new XContentString(name);
+            this.type = type;
+            this.genericType = genericType;
+            this.kind = kind(type);
+            this.getter = getter;
+            this.setter = setter;
+            this.field = field;
+            if (getter != null) {
+                getter.setAccessible(true);
+            }
+            if (setter != null) {
+                setter.setAccessible(true);
+            }
+        }
+
+        boolean writable() {
+            return setter != null || (field != null && !Modifier.isFinal(field.getModifiers()));
+        }
+
+        void write(Object object, XContentGenerator generator) throws IOException {
+            try {
+                if (field != null && type.isPrimitive()) {
+                    // avoid boxing for public primitive fields
+                    switch (kind) {
+                        case KIND_INT:
+                            generator.writeNumberField(name, field.getInt(object));
+                            return;
+                        case KIND_LONG:
+                            generator.writeNumberField(name, field.getLong(object));
+                            return;
+                        case KIND_FLOAT:
+                            generator.writeNumberField(name, field.getFloat(object));
+                            return;
+                        case KIND_DOUBLE:
+                            generator.writeNumberField(name, field.getDouble(object));
+                            return;
+                        case KIND_BOOLEAN:
+                            generator.writeBooleanField(name, field.getBoolean(object));
+                            return;
+                    }
+                }
+                Object value = field != null ? field.get(object) : getter.invoke(object);
+                if (value == null) {
+                    return;
+                }
+                switch (kind) {
+                    case KIND_STRING:
+                        generator.writeStringField(name, (String) value);
+                        return;
+                    case KIND_INT:
+                        generator.writeNumberField(name, ((Integer) value).intValue());
+                        return;
+                    case KIND_LONG:
+                        generator.writeNumberField(name, ((Long) value).longValue());
+                        return;
+                    case KIND_FLOAT:
+                        generator.writeNumberField(name, ((Float) value).floatValue());
+                        return;
+                    case KIND_DOUBLE:
+                        generator.writeNumberField(name, ((Double) value).doubleValue());
+                        return;
+                    case KIND_BOOLEAN:
+                        generator.writeBooleanField(name, ((Boolean) value).booleanValue());
+                        return;
+                    default:
+                        generator.writeFieldName(name);
+                        writeValue(generator, value);
+                }
+            } catch (IllegalAccessException e) {
+                throw ioException("failed to read [" + name.getValue() + "]", e);
+            } catch (InvocationTargetException e) {
+                throw ioException("failed to read [" + name.getValue() + "]", e.getTargetException());
+            }
+        }
+
+        void read(Object object, XContentParser parser, XContentParser.Token token) throws IOException {
+            Object value;
+            if (token == XContentParser.Token.VALUE_NULL) {
+                if (type.isPrimitive()) {
+                    return;
+                }
+                value = null;
+            } else {
+                value = readValue(parser, token, type, genericType);
+            }
+            try {
+                if (setter != null) {
+                    setter.invoke(object, value);
+                } else {
+                    field.set(object, value);
+                }
+            } catch (IllegalAccessException e) {
+                throw ioException("failed to set [" + name.getValue() + "]", e);
+            } catch (IllegalArgumentException e) {
+                throw ioException("failed to set [" + name.getValue() + "]", e);
+            } catch (InvocationTargetException e) {
+                throw ioException("failed to set [" + name.getValue() + "]", e.getTargetException());
+            }
+        }
+    }
+}
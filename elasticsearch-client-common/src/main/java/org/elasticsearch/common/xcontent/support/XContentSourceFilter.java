@@ -0,0 +1,263 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.xcontent.support;
+
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.regex.Regex;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentGenerator;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filters a source with include and exclude patterns while streaming it from an
+ * {@link XContentParser} to an {@link XContentGenerator}, without building the source
+ * as a map first. The patterns follow the semantics of
+ * {@link XContentMapValues#filter(java.util.Map, String[], String[])}: excluded paths
+ * are dropped, an included path is kept if an include pattern matches it or starts
+ * with it, and objects that end up empty are dropped.
+ * <p/>
+ * The filter is meant to be compiled once and reused. The decisions for the paths seen
+ * are kept in a tree keyed by field name, so that sources with the same structure are
+ * filtered without matching any patterns or building any path strings.
+ */
+public class XContentSourceFilter {
+
+    private static final int MAX_CACHED_PATHS = 10000;
+
+    private final String[] includes;
+
+    private final String[] excludes;
+
+    private final PathNode root;
+
+    private final AtomicInteger cachedPaths = new AtomicInteger();
+
+    public static XContentSourceFilter compile(String[] includes, String[] excludes) {
+        return new XContentSourceFilter(includes, excludes);
+    }
+
+    private XContentSourceFilter(String[] includes, String[] excludes) {
+        this.includes = includes == null ? Strings.EMPTY_ARRAY : includes;
+        this.excludes = excludes == null ? Strings.EMPTY_ARRAY : excludes;
+        this.root = new PathNode(null, true);
+    }
+
+    /**
+     * Filters the source, returning the filtered source in the same content type.
+     */
+    public BytesReference filter(BytesReference source) throws IOException {
+        XContentParser parser = XContentHelper.createParser(source);
+        try {
+            BytesStreamOutput out = new BytesStreamOutput(source.length());
+            XContentGenerator generator = XContentFactory.xContent(parser.contentType()).createGenerator(out);
+            filter(parser, generator);
+            generator.close();
+            return out.bytes();
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Filters the object the parser is positioned at (or starts with) into the generator.
+     */
+    public void filter(XContentParser parser, XContentGenerator generator) throws IOException {
+        XContentParser.Token token = parser.currentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        if (token != XContentParser.Token.START_OBJECT) {
+            throw new IOException("expected an object to filter, got " + token);
+        }
+        generator.writeStartObject();
+        if (includes.length == 0 && excludes.length == 0) {
+            copyObject(parser, generator);
+        } else {
+            filterObject(parser, root, new Output(generator));
+        }
+        generator.writeEndObject();
+    }
+
+    private void copyObject(XContentParser parser, XContentGenerator generator) throws IOException {
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                generator.writeFieldName(parser.currentName());
+                parser.nextToken();
+                generator.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    private void filterObject(XContentParser parser, PathNode node, Output out) throws IOException {
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token != XContentParser.Token.FIELD_NAME) {
+                continue;
+            }
+            String name = parser.currentName();
+            PathNode child = node.child(name);
+            token = parser.nextToken();
+            if (!child.accepted) {
+                parser.skipChildren();
+                continue;
+            }
+            if (token == XContentParser.Token.START_OBJECT) {
+                // only written once the object turns out to be non empty
+                out.pushObject(name);
+                filterObject(parser, child, out);
+                out.popObject();
+            } else if (token == XContentParser.Token.START_ARRAY) {
+                out.flush();
+                out.generator.writeFieldName(name);
+                out.generator.writeStartArray();
+                filterArray(parser, child, out);
+                out.generator.writeEndArray();
+            } else {
+                out.flush();
+                out.generator.writeFieldName(name);
+                out.generator.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    private void filterArray(XContentParser parser, PathNode node, Output out) throws IOException {
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+            if (token == XContentParser.Token.START_OBJECT) {
+                out.pushObject(null);
+                filterObject(parser, node, out);
+                out.popObject();
+            } else if (token == XContentParser.Token.START_ARRAY) {
+                out.generator.writeStartArray();
+                filterArray(parser, node, out);
+                out.generator.writeEndArray();
+            } else {
+                out.generator.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    private boolean accepts(String path) {
+        for (String exclude : excludes) {
+            if (Regex.simpleMatch(exclude, path)) {
+                return false;
+            }
+        }
+        if (includes.length == 0) {
+            return true;
+        }
+        for (String include : includes) {
+            // check for prefix as well, something like: obj1.arr1.*
+            if (include.startsWith(path) || Regex.simpleMatch(include, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A node in the tree of the paths seen so far, with the filter decision for the path.
+     */
+    private class PathNode {
+
+        final String path;
+
+        final boolean accepted;
+
+        private final ConcurrentMap<String, PathNode> children = ConcurrentCollections.newConcurrentMap();
+
+        PathNode(String path, boolean accepted) {
+            this.path = path;
+            this.accepted = accepted;
+        }
+
+        PathNode child(String name) {
+            PathNode child = children.get(name);
+            if (child != null) {
+                return child;
+            }
+            String childPath = path == null ? name : path + '.' + name;
+            child = new PathNode(childPath, accepts(childPath));
+            // sources with arbitrary keys should not grow the tree without bounds
+            if (cachedPaths.get() < MAX_CACHED_PATHS) {
+                PathNode existing = children.putIfAbsent(name, child);
+                if (existing != null) {
+                    return existing;
+                }
+                cachedPaths.incrementAndGet();
+            }
+            return child;
+        }
+    }
+
+    /**
+     * Delays writing the start of objects until there is content for them.
+     */
+    private static class Output {
+
+        final XContentGenerator generator;
+
+        private String[] names = new String[8];
+
+        private int depth;
+
+        private int writtenDepth;
+
+        Output(XContentGenerator generator) {
+            this.generator = generator;
+        }
+
+        void pushObject(String name) {
+            if (depth == names.length) {
+                String[] newNames = new String[names.length * 2];
+                System.arraycopy(names, 0, newNames, 0, names.length);
+                names = newNames;
+            }
+            names[depth++] = name;
+        }
+
+        void popObject() throws IOException {
+            if (writtenDepth == depth) {
+                generator.writeEndObject();
+                writtenDepth--;
+            }
+            names[--depth] = null;
+        }
+
+        void flush() throws IOException {
+            for (; writtenDepth < depth; writtenDepth++) {
+                String name = names[writtenDepth];
+                if (name != null) {
+                    generator.writeFieldName(name);
+                }
+                generator.writeStartObject();
+            }
+        }
+    }
+}
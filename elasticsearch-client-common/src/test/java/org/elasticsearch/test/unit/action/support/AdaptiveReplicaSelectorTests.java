@@ -0,0 +1,70 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.action.support;
+
+import org.elasticsearch.action.support.AdaptiveReplicaSelector;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+@Test
+public class AdaptiveReplicaSelectorTests {
+
+    @Test
+    public void testUnansweredNodeIsProbedOnce() {
+        AdaptiveReplicaSelector selector = new AdaptiveReplicaSelector(EMPTY_SETTINGS);
+        selector.nodes(Arrays.asList("known", "new"));
+        selector.started("known");
+        selector.finished("known", TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(selector.select(), equalTo("new"));
+        selector.started("new");
+        // while the probe is outstanding, the new node ranks as a node with the mean response time
+        assertThat(selector.select(), equalTo("known"));
+        assertThat(selector.select(), equalTo("known"));
+
+        selector.cancelled("new");
+        assertThat(selector.outstanding("new"), equalTo(0));
+        assertThat(selector.select(), equalTo("new"));
+    }
+
+    @Test
+    public void testOutstandingRequests() {
+        AdaptiveReplicaSelector selector = new AdaptiveReplicaSelector(EMPTY_SETTINGS);
+        selector.nodes(Arrays.asList("a", "b"));
+        for (String nodeId : new String[]{"a", "b"}) {
+            selector.started(nodeId);
+            selector.finished(nodeId, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        selector.started("a");
+        assertThat(selector.select(), equalTo("b"));
+        selector.failed("a");
+        assertThat(selector.outstanding("a"), equalTo(0));
+        // the failure counts as a slow response
+        assertThat(selector.select(), equalTo("b"));
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.common;
+
+import org.elasticsearch.common.TimeOrderedIds;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ */
+@Test
+public class TimeOrderedIdsTests {
+
+    @Test
+    public void testOrderedAndUnique() {
+        Set<String> ids = new HashSet<String>();
+        String previous = "";
+        for (int i = 0; i < 100000; i++) {
+            String id = TimeOrderedIds.next();
+            assertThat(id.length(), equalTo(20));
+            assertThat(id.compareTo(previous), greaterThan(0));
+            assertThat(id.matches("[-_0-9A-Za-z]+"), equalTo(true));
+            ids.add(id);
+            previous = id;
+        }
+        assertThat(ids.size(), equalTo(100000));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.common.io.streams;
+
+import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+@Test
+public class StreamStringTests {
+
+    private static List<String> strings() {
+        List<String> strings = new ArrayList<String>(Arrays.asList("", "a", "logs-2012.10.01", "café", "日本語",
+                "x😀y", "\u007f\u0080߿ࠀ￿"));
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(100);
+            for (int j = 0; j < length; j++) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        sb.append((char) random.nextInt(0x80));
+                        break;
+                    case 1:
+                        sb.append((char) random.nextInt(0x800));
+                        break;
+                    case 2:
+                        sb.append((char) random.nextInt(0x10000));
+                        break;
+                    default:
+                        sb.append((char) ('a' + random.nextInt(26)));
+                }
+            }
+            strings.add(sb.toString());
+        }
+        return strings;
+    }
+
+    @Test
+    public void testSameAsGenericPath() throws Exception {
+        List<String> strings = strings();
+        ByteArrayOutputStream generic = new ByteArrayOutputStream();
+        OutputStreamStreamOutput genericOut = new OutputStreamStreamOutput(generic);
+        BytesStreamOutput out = new BytesStreamOutput(4);
+        for (String s : strings) {
+            genericOut.writeString(s);
+            out.writeString(s);
+        }
+        byte[] bytes = out.bytes().toBytes();
+        assertThat(Arrays.equals(bytes, generic.toByteArray()), equalTo(true));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.flip();
+        byte[] padded = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, padded, 3, bytes.length);
+        StreamInput[] inputs = {new InputStreamStreamInput(new ByteArrayInputStream(bytes)), new BytesStreamInput(bytes, false),
+                new BytesStreamInput(padded, 3, bytes.length, false), new ByteBufferStreamInput(ByteBuffer.wrap(bytes)),
+                new ByteBufferStreamInput(direct)};
+        for (StreamInput in : inputs) {
+            for (String s : strings) {
+                assertThat(in.readString(), equalTo(s));
+            }
+            assertThat(in.read(), equalTo(-1));
+        }
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.writeString("café日");
+        byte[] bytes = out.bytes().toBytes();
+        for (int length = 1; length < bytes.length; length++) {
+            try {
+                new BytesStreamInput(bytes, 0, length, false).readString();
+                assertThat("no failure reading " + length + " bytes", false, equalTo(true));
+            } catch (EOFException e) {
+                // expected
+            }
+        }
+    }
+}
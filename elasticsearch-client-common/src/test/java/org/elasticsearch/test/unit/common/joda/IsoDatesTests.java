@@ -0,0 +1,70 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.common.joda;
+
+import org.elasticsearch.common.joda.IsoDates;
+import org.elasticsearch.common.joda.Joda;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.joda.time.format.DateTimeFormatter;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ */
+@Test
+public class IsoDatesTests {
+
+    @Test
+    public void testPrintSameAsJoda() {
+        Random random = new Random();
+        for (int i = 0; i < 10000; i++) {
+            long millis = random.nextLong() % 300000000000000L;
+            assertThat(IsoDates.print(millis), equalTo(XContentBuilder.defaultDatePrinter.print(millis)));
+        }
+    }
+
+    @Test
+    public void testParseSameAsJoda() {
+        DateTimeFormatter parser = Joda.forPattern("dateOptionalTime").parser();
+        String[] dates = {"2012-10-01", "2012-10-01T10", "2012-10-01T10:11", "2012-10-01T10:11:12",
+                "2012-10-01T10:11:12.5", "2012-10-01T10:11:12.123456789", "2012-10-01T10:11:12.120Z",
+                "2012-10-01T10:11:12+02:00", "2012-10-01T10:11:12.001-05:30", "2012-02-29", "1969-12-31T23:59:59.999Z",
+                "2012-10-01T10:1", "12012-10-01"};
+        for (String date : dates) {
+            assertThat(date, IsoDates.parseMillis(date, parser), equalTo(parser.parseMillis(date)));
+            assertThat(date, Joda.forPattern("dateOptionalTime").parseMillis(date), equalTo(parser.parseMillis(date)));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidDate() {
+        IsoDates.parseMillis("2011-02-29", Joda.forPattern("dateOptionalTime").parser());
+    }
+
+    @Test
+    public void testPatternsCached() {
+        assertThat(Joda.forPattern("yyyy/MM/dd"), sameInstance(Joda.forPattern("yyyy/MM/dd")));
+    }
+}
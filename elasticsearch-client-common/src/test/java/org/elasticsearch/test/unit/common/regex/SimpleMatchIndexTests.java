@@ -0,0 +1,68 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.common.regex;
+
+import org.elasticsearch.common.regex.Regex;
+import org.elasticsearch.common.regex.SimpleMatchIndex;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+@Test
+public class SimpleMatchIndexTests {
+
+    @Test
+    public void testSameAsSimpleMatch() {
+        List<String> names = new ArrayList<String>();
+        for (int day = 1; day <= 31; day++) {
+            String date = "2012.10." + (day < 10 ? "0" : "") + day;
+            names.add("logs-" + date);
+            names.add("logs-" + date + "-debug");
+            names.add("metrics-" + date);
+        }
+        names.add("logs");
+        names.add("a");
+        SimpleMatchIndex index = new SimpleMatchIndex(names);
+
+        String[] patterns = {"*", "logs*", "logs-2012.10.*", "*-debug", "logs-*-debug", "*.10.1*", "logs*2*debug",
+                "metrics-2012.10.01", "none*", "*none", "a*", "*a", "logs-2012.10.0*-debug"};
+        for (String pattern : patterns) {
+            Set<String> expected = new HashSet<String>();
+            for (String name : names) {
+                if (Regex.simpleMatch(pattern, name)) {
+                    expected.add(name);
+                }
+            }
+            List<String> matches = new ArrayList<String>();
+            boolean found = index.match(pattern, matches);
+            assertThat(pattern, new HashSet<String>(matches), equalTo(expected));
+            assertThat(pattern, matches.size(), equalTo(expected.size()));
+            assertThat(pattern, found, equalTo(!expected.isEmpty()));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.test.unit.common.settings;
+
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ */
+@Test
+public class SettingTests {
+
+    private static final Setting<TimeValue> TIMEOUT = Setting.timeSetting("http.request.timeout", TimeValue.timeValueSeconds(15));
+
+    private static final Setting<ByteSizeValue> SIZE = Setting.bytesSizeSetting("bulk.size", new ByteSizeValue(5));
+
+    private static final Setting<Integer> RETRIES = Setting.intSetting("http.request.maxretries", 3);
+
+    private static final Setting<String> USER = Setting.stringSetting("http.user", null);
+
+    @Test
+    public void testTypedValues() {
+        Settings settings = settingsBuilder()
+                .put("http.request.timeout", "10s")
+                .put("bulk.size", "5mb")
+                .build();
+        assertThat(TIMEOUT.get(settings), equalTo(TimeValue.timeValueSeconds(10)));
+        assertThat(TIMEOUT.get(settings), sameInstance(TIMEOUT.get(settings)));
+        assertThat(SIZE.get(settings).mbFrac(), equalTo(5.0));
+        assertThat(RETRIES.get(settings), equalTo(3));
+        assertThat(USER.get(settings), nullValue());
+    }
+
+    @Test(expectedExceptions = SettingsException.class)
+    public void testFailedParse() {
+        RETRIES.get(settingsBuilder().put("http.request.maxretries", "many").build());
+    }
+
+    @Test
+    public void testPrefixSettingsCached() {
+        Settings settings = settingsBuilder().put("http.user", "kimchy").build();
+        assertThat(settings.getByPrefix("http."), sameInstance(settings.getByPrefix("http.")));
+        assertThat(settings.getByPrefix("http.").get("user"), equalTo("kimchy"));
+    }
+}
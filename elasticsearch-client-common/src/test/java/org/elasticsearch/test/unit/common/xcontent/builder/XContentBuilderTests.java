@@ -20,6 +20,8 @@
 package org.elasticsearch.test.unit.common.xcontent.builder;
 
 import com.google.common.collect.Lists;
+import org.elasticsearch.ElasticSearchIllegalStateException;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.FastByteArrayOutputStream;
 import org.elasticsearch.common.io.FastCharArrayWriter;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -32,6 +34,7 @@ import static org.elasticsearch.common.xcontent.XContentBuilder.FieldCaseConvers
 import static org.elasticsearch.common.xcontent.XContentBuilder.FieldCaseConversion.UNDERSCORE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.testng.Assert.fail;
 
 /**
  *
@@ -106,4 +109,28 @@ public class XContentBuilderTests {
         builder.startObject().field("testName", "value").endObject();
         assertThat(builder.string(), equalTo("{\"test_name\":\"value\"}"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCachedBuilder() throws Exception {
+        XContentBuilder builder = XContentFactory.cachedContentBuilder(XContentType.JSON);
+        builder.startObject().field("test", "value").endObject();
+        BytesReference bytes = builder.copyBytes();
+        builder.release();
+        assertThat(bytes.toUtf8(), equalTo("{\"test\":\"value\"}"));
+
+        try {
+            builder.bytes();
+            fail("released builder must not be usable");
+        } catch (ElasticSearchIllegalStateException e) {
+            // all is well
+        }
+        // releasing again does nothing
+        builder.release();
+
+        builder = XContentFactory.cachedContentBuilder(XContentType.JSON);
+        builder.startObject().field("other", 1).endObject();
+        assertThat(builder.string(), equalTo("{\"other\":1}"));
+        builder.release();
+        assertThat(bytes.toUtf8(), equalTo("{\"test\":\"value\"}"));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.common.xcontent.support;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.elasticsearch.common.xcontent.support.XContentMapConverter;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+/**
+ */
+@Test
+public class CompactMapTests {
+
+    @Test
+    public void testSameAsMap() throws Exception {
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject()
+                .field("string", "value")
+                .field("int", 1)
+                .field("long", Long.MAX_VALUE)
+                .field("double", 1.5)
+                .field("bool", true)
+                .nullField("null")
+                .array("ints", 1, 2, 3)
+                .array("longs", 10000000000L, 20000000000L)
+                .array("doubles", 1.5, 2.5)
+                .array("mixed", 1, 10000000000L, "a", 1.5)
+                .startArray("empty").endArray()
+                .startObject("object").field("a", 1).startArray("objects").startObject().field("b", 2).endObject().endArray().endObject();
+        for (int i = 0; i < 20; i++) {
+            builder.field("field" + i, i);
+        }
+        builder.endObject();
+        String json = builder.string();
+
+        Map<String, Object> map = parse(json, false);
+        Map<String, Object> compact = parse(json, true);
+        assertThat(compact, equalTo(map));
+        assertThat(map, equalTo(compact));
+        assertThat(compact.hashCode(), equalTo(map.hashCode()));
+        assertThat(((Map) compact.get("object")).get("a"), equalTo((Object) 1));
+        assertThat(((List) compact.get("longs")).get(1), equalTo((Object) 20000000000L));
+        assertThat(((List) compact.get("mixed")).get(0), instanceOf(Integer.class));
+        assertThat(((List) compact.get("mixed")).get(1), instanceOf(Long.class));
+
+        // the order of the fields is kept
+        List<String> keys = new ArrayList<String>(compact.keySet());
+        assertThat(keys.get(0), equalTo("string"));
+        assertThat(keys.get(keys.size() - 1), equalTo("field19"));
+    }
+
+    @Test
+    public void testModify() throws Exception {
+        Map<String, Object> compact = parse("{\"a\":1,\"b\":[1,2,3],\"c\":\"x\"}", true);
+        compact.put("d", 4);
+        compact.remove("a");
+        for (int i = 0; i < 20; i++) {
+            compact.put("field" + i, i);
+        }
+        assertThat(compact.size(), equalTo(23));
+        assertThat(compact.get("field19"), equalTo((Object) 19));
+        assertThat(compact.get("a"), equalTo(null));
+
+        List<Object> list = (List<Object>) compact.get("b");
+        list.add("four");
+        list.set(0, 0L);
+        assertThat(list.toString(), equalTo("[0, 2, 3, four]"));
+
+        compact = parse("{\"a\":1,\"b\":2,\"c\":3}", true);
+        for (Iterator<Map.Entry<String, Object>> it = compact.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Object> entry = it.next();
+            if (entry.getKey().equals("b")) {
+                it.remove();
+            } else {
+                entry.setValue("x");
+            }
+        }
+        assertThat(compact.toString(), equalTo("{a=x, c=x}"));
+    }
+
+    private static Map<String, Object> parse(String json, boolean compact) throws Exception {
+        XContentParser parser = JsonXContent.jsonXContent.createParser(json);
+        try {
+            return compact ? XContentMapConverter.readCompactMap(parser) : XContentMapConverter.readMap(parser);
+        } finally {
+            parser.close();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.test.unit.common.xcontent.support;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.support.LazySource;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ */
+@Test
+public class LazySourceTests {
+
+    @Test
+    public void testSameAsMap() throws Exception {
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject()
+                .field("string", "va\"lue")
+                .field("int", 1)
+                .field("long", Long.MAX_VALUE)
+                .field("double", 1.5)
+                .field("bool", true)
+                .nullField("null")
+                .array("mixed", 1, "a", 1.5)
+                .startObject("user").field("name", "kimchy").startObject("address").field("zip", 1234).endObject().endObject();
+        for (int i = 0; i < 20; i++) {
+            builder.field("field" + i, i);
+        }
+        builder.endObject();
+        BytesArray bytes = new BytesArray(builder.string());
+
+        Map<String, Object> map = XContentHelper.convertToMap(bytes, true).v2();
+        LazySource source = new LazySource(bytes);
+        assertThat(source.get("int"), equalTo((Object) 1));
+        assertThat(source.containsKey("missing"), equalTo(false));
+        assertThat(source.size(), equalTo(map.size()));
+        assertThat((Map<String, Object>) source, equalTo(map));
+        assertThat(map, equalTo((Map<String, Object>) source));
+        assertThat(source.hashCode(), equalTo(map.hashCode()));
+    }
+
+    @Test
+    public void testPaths() throws Exception {
+        LazySource source = new LazySource(new BytesArray("{\"user\":{\"name\":\"kimchy\",\"age\":40,\"address\":{\"zip\":1234}},"
+                + "\"k.l\":{\"m\":1.5},\"active\":true,\"empty\":null}"));
+        assertThat(source.stringValue("user.name"), equalTo("kimchy"));
+        assertThat(source.longValue("user.age", -1), equalTo(40L));
+        assertThat(source.longValue("user.address.zip", -1), equalTo(1234L));
+        assertThat(source.longValue("user.missing", -1), equalTo(-1L));
+        assertThat(source.doubleValue("k.l.m", -1), equalTo(1.5));
+        assertThat(source.booleanValue("active", false), equalTo(true));
+        assertThat(source.booleanValue("empty", false), equalTo(false));
+        assertThat(source.value("user.name.first"), nullValue());
+    }
+
+    @Test
+    public void testDuplicatesAndModifications() throws Exception {
+        LazySource source = new LazySource(new BytesArray("{\"a\":1,\"b\":{\"c\":2},\"a\":3}"));
+        // the last value of a field wins, as when parsing into a map
+        assertThat(source.get("a"), equalTo((Object) 3));
+        assertThat(source.size(), equalTo(2));
+
+        source.put("d", "e");
+        source.remove("a");
+        assertThat(source.size(), equalTo(2));
+        assertThat(source.stringValue("d"), equalTo("e"));
+        assertThat(source.longValue("b.c", -1), equalTo(2L));
+    }
+
+    @Test
+    public void testUnquotedFieldNames() throws Exception {
+        LazySource source = new LazySource(new BytesArray("{a:1, \"b\":\"c\"}"));
+        assertThat(source.get("a"), equalTo((Object) 1));
+        assertThat(source.stringValue("b"), equalTo("c"));
+    }
+
+    @Test
+    public void testEntries() throws Exception {
+        LazySource source = new LazySource(new BytesArray("{\"a\":1,\"b\":{\"c\":2},\"d\":\"x\"}"));
+        for (Iterator<Map.Entry<String, Object>> it = source.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Object> entry = it.next();
+            if (entry.getKey().equals("a")) {
+                it.remove();
+            } else if (entry.getKey().equals("d")) {
+                assertThat(entry.setValue("y"), equalTo((Object) "x"));
+            }
+        }
+        assertThat(source.size(), equalTo(2));
+        assertThat(source.containsKey("a"), equalTo(false));
+        assertThat(source.stringValue("d"), equalTo("y"));
+        assertThat(source.longValue("b.c", -1), equalTo(2L));
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+        for (int i = 0; i < 40; i++) {
+            builder.startObject("field" + i).field("value", i).endObject();
+        }
+        final BytesArray bytes = new BytesArray(builder.endObject().string());
+        final int threads = 8;
+        for (int round = 0; round < 100; round++) {
+            final LazySource source = new LazySource(bytes);
+            final CyclicBarrier barrier = new CyclicBarrier(threads);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            Thread[] readers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                final int offset = t * 5;
+                readers[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            barrier.await();
+                            for (int i = 0; i < 40; i++) {
+                                int field = (i + offset) % 40;
+                                assertThat(source.longValue("field" + field + ".value", -1), equalTo((long) field));
+                                assertThat(source.get("field" + field), instanceOf(Map.class));
+                            }
+                            assertThat(source.size(), equalTo(40));
+                            assertThat(source.entrySet().size(), equalTo(40));
+                        } catch (Throwable e) {
+                            failure.set(e);
+                        }
+                    }
+                };
+                readers[t].start();
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+        }
+    }
+}
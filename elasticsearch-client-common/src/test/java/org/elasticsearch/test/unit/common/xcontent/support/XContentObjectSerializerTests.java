@@ -0,0 +1,266 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.common.xcontent.support;
+
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.support.XContentObjectSerializer;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.testng.Assert.fail;
+
+/**
+ */
+@Test
+public class XContentObjectSerializerTests {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        XContentObjectSerializer<Doc> serializer = XContentObjectSerializer.serializer(Doc.class);
+        assertThat(XContentObjectSerializer.serializer(Doc.class), sameInstance(serializer));
+
+        Doc doc = new Doc();
+        doc.setName("test");
+        doc.setCount(3);
+        doc.setCreated(new Date(1357000000000L));
+        doc.tags = Arrays.asList("a", "b");
+        doc.child = new Child();
+        doc.child.value = 1.5;
+
+        for (XContentType type : new XContentType[]{XContentType.JSON, XContentType.SMILE}) {
+            BytesReference bytes = serializer.toBytes(doc, type);
+            Doc read = serializer.read(bytes);
+            assertThat(read.getName(), equalTo("test"));
+            assertThat(read.getCount(), equalTo(3));
+            assertThat(read.getCreated(), equalTo(doc.getCreated()));
+            assertThat(read.getMissing(), nullValue());
+            assertThat(read.tags, equalTo(doc.tags));
+            assertThat(read.child.value, equalTo(1.5));
+        }
+    }
+
+    @Test
+    public void testSameAsMap() throws Exception {
+        Doc doc = new Doc();
+        doc.setName("test");
+        doc.setCount(3);
+        Map<String, Object> map = XContentHelper.convertToMap(XContentObjectSerializer.serializer(Doc.class).toBytes(doc, XContentType.JSON), false).v2();
+        assertThat(map.get("name"), equalTo((Object) "test"));
+        assertThat(map.get("count"), equalTo((Object) 3));
+        // null values are not written
+        assertThat(map.containsKey("missing"), equalTo(false));
+        assertThat(map.containsKey("child"), equalTo(false));
+    }
+
+    @Test
+    public void testCollectionTypes() throws Exception {
+        Types types = new Types();
+        types.set = new HashSet<String>(Arrays.asList("a", "b"));
+        types.sortedSet = new TreeSet<Integer>(Arrays.asList(3, 1, 2));
+        types.sortedMap = new TreeMap<String, Long>();
+        types.sortedMap.put("b", 2l);
+        types.sortedMap.put("a", 1l);
+        types.treeMap = new TreeMap<String, Object>();
+        types.treeMap.put("a", "b");
+        Child child = new Child();
+        child.value = 1.5;
+        types.children = Arrays.asList(child);
+
+        XContentObjectSerializer<Types> serializer = XContentObjectSerializer.serializer(Types.class);
+        Types read = serializer.read(serializer.toBytes(types, XContentType.JSON));
+        assertThat(read.set, instanceOf(LinkedHashSet.class));
+        assertThat(read.set, equalTo(types.set));
+        assertThat(read.sortedSet, instanceOf(TreeSet.class));
+        assertThat(read.sortedSet, equalTo(types.sortedSet));
+        assertThat(read.sortedMap, instanceOf(TreeMap.class));
+        assertThat(read.sortedMap, equalTo(types.sortedMap));
+        assertThat(read.treeMap, equalTo(types.treeMap));
+        assertThat(read.children.get(0).value, equalTo(1.5));
+    }
+
+    @Test
+    public void testArraysAndNumbers() throws Exception {
+        Types types = new Types();
+        types.floats = new float[]{1.5f, 2.25f};
+        types.bigInteger = new BigInteger("123456789012345678901234567890");
+        types.bigDecimal = new BigDecimal("0.1000000000000000000001");
+        types.counter = new AtomicLong(9007199254740993l);
+
+        XContentObjectSerializer<Types> serializer = XContentObjectSerializer.serializer(Types.class);
+        for (XContentType type : new XContentType[]{XContentType.JSON, XContentType.SMILE}) {
+            Types read = serializer.read(serializer.toBytes(types, type));
+            assertThat(read.floats.length, equalTo(2));
+            assertThat(read.floats[1], equalTo(2.25f));
+            assertThat(read.bigInteger, equalTo(types.bigInteger));
+            assertThat(read.bigDecimal, equalTo(types.bigDecimal));
+            assertThat(read.counter.get(), equalTo(types.counter.get()));
+        }
+    }
+
+    @Test
+    public void testCycles() throws Exception {
+        Types types = new Types();
+        Child child = new Child();
+        // the same object twice is fine
+        types.children = Arrays.asList(child, child);
+        XContentObjectSerializer.serializer(Types.class).toBytes(types, XContentType.JSON);
+
+        types.self = types;
+        try {
+            XContentObjectSerializer.serializer(Types.class).toBytes(types, XContentType.JSON);
+            fail("cyclic references must be rejected");
+        } catch (ElasticSearchIllegalArgumentException e) {
+            // expected
+        }
+        types.self = null;
+        List<Object> list = new ArrayList<Object>();
+        list.add(list);
+        types.objects = list;
+        try {
+            XContentObjectSerializer.serializer(Types.class).toBytes(types, XContentType.JSON);
+            fail("cyclic references must be rejected");
+        } catch (ElasticSearchIllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFieldWithGetter() throws Exception {
+        Named named = new Named();
+        named.name = "test";
+        XContentObjectSerializer<Named> serializer = XContentObjectSerializer.serializer(Named.class);
+        // written once, through the getter
+        assertThat(serializer.toBytes(named, XContentType.JSON).toUtf8(), equalTo("{\"name\":\"TEST\"}"));
+        assertThat(serializer.read(serializer.toBytes(named, XContentType.JSON)).name, equalTo("TEST"));
+    }
+
+    public static class Doc {
+
+        private String name;
+
+        private int count;
+
+        private Date created;
+
+        private String missing;
+
+        public List<String> tags;
+
+        public Child child;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        public void setCreated(Date created) {
+            this.created = created;
+        }
+
+        public String getMissing() {
+            return missing;
+        }
+
+        public void setMissing(String missing) {
+            this.missing = missing;
+        }
+    }
+
+    public static class Named {
+
+        public String name;
+
+        public String getName() {
+            return name.toUpperCase();
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Child {
+
+        public double value;
+    }
+
+    public static class Types {
+
+        public Set<String> set;
+
+        public SortedSet<Integer> sortedSet;
+
+        public SortedMap<String, Long> sortedMap;
+
+        public TreeMap<String, Object> treeMap;
+
+        public List<Child> children;
+
+        public float[] floats;
+
+        public BigInteger bigInteger;
+
+        public BigDecimal bigDecimal;
+
+        public AtomicLong counter;
+
+        public Types self;
+
+        public List<Object> objects;
+    }
+}
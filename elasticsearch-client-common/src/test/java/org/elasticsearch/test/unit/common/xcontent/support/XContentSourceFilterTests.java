@@ -0,0 +1,90 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.common.xcontent.support;
+
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.common.xcontent.support.XContentSourceFilter;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+@Test
+public class XContentSourceFilterTests {
+
+    @Test
+    public void testFilterLikeMapFilter() throws Exception {
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject()
+                .startObject("path1")
+                .startArray("path2")
+                .startObject().field("test", "value1").field("other", 1).endObject()
+                .startObject().field("test", "value2").endObject()
+                .endArray()
+                .startObject("empty").field("x", "y").endObject()
+                .endObject()
+                .field("test1", "value1")
+                .field("test2", "value2")
+                .nullField("test3")
+                .endObject();
+        BytesReference source = builder.bytes();
+
+        assertSameAsMapFilter(source, new String[]{"test1"}, Strings.EMPTY_ARRAY);
+        assertSameAsMapFilter(source, new String[]{"test*"}, Strings.EMPTY_ARRAY);
+        assertSameAsMapFilter(source, Strings.EMPTY_ARRAY, new String[]{"test1"});
+        assertSameAsMapFilter(source, new String[]{"path1"}, Strings.EMPTY_ARRAY);
+        assertSameAsMapFilter(source, new String[]{"path1*"}, Strings.EMPTY_ARRAY);
+        assertSameAsMapFilter(source, new String[]{"path1.path2.*"}, Strings.EMPTY_ARRAY);
+        assertSameAsMapFilter(source, new String[]{"path1.*"}, new String[]{"path1.empty.x"});
+        assertSameAsMapFilter(source, new String[]{"*.test"}, Strings.EMPTY_ARRAY);
+        assertSameAsMapFilter(source, Strings.EMPTY_ARRAY, Strings.EMPTY_ARRAY);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        XContentSourceFilter filter = XContentSourceFilter.compile(new String[]{"obj.a", "b"}, Strings.EMPTY_ARRAY);
+        for (int i = 0; i < 3; i++) {
+            BytesReference source = XContentFactory.jsonBuilder().startObject()
+                    .startObject("obj").field("a", i).field("c", i).endObject()
+                    .field("b", "x" + i)
+                    .endObject().bytes();
+            Map<String, Object> filtered = XContentHelper.convertToMap(filter.filter(source), false).v2();
+            assertThat(filtered.size(), equalTo(2));
+            assertThat(XContentMapValues.extractValue("obj.a", filtered), equalTo((Object) i));
+            assertThat(XContentMapValues.extractValue("obj.c", filtered), equalTo(null));
+            assertThat(filtered.get("b"), equalTo((Object) ("x" + i)));
+        }
+    }
+
+    private void assertSameAsMapFilter(BytesReference source, String[] includes, String[] excludes) throws Exception {
+        Map<String, Object> map = XContentHelper.convertToMap(source, false).v2();
+        Map<String, Object> expected = XContentMapValues.filter(map, includes, excludes);
+        BytesReference filtered = XContentSourceFilter.compile(includes, excludes).filter(source);
+        assertThat(XContentHelper.convertToMap(filtered, false).v2(), equalTo(expected));
+    }
+}
@@ -20,6 +20,7 @@
 package org.elasticsearch.common.compress.lzf;
 
 import com.ning.compress.lzf.ChunkDecoder;
+import com.ning.compress.lzf.ChunkEncoder;
 import com.ning.compress.lzf.LZFChunk;
 import com.ning.compress.lzf.LZFEncoder;
 import com.ning.compress.lzf.util.ChunkDecoderFactory;
@@ -81,11 +82,23 @@ public class BasicLZFCompressor implements BasicCompressor {
     }
 
     public byte[] uncompress(byte[] data, int offset, int length) throws IOException {
-        return decoder.decode(data, offset, length);
+        long start = System.nanoTime();
+        byte[] uncompressed = decoder.decode(data, offset, length);
+        LZFCompressorContext.INSTANCE.stats().uncompressed(uncompressed.length, start);
+        return uncompressed;
     }
 
     public byte[] compress(byte[] data, int offset, int length) throws IOException {
-        return LZFEncoder.encode(data, offset, length);
+        LZFCompressorContext context = LZFCompressorContext.INSTANCE;
+        ChunkEncoder encoder = context.popEncoder();
+        try {
+            long start = System.nanoTime();
+            byte[] compressed = LZFEncoder.encode(encoder, data, offset, length);
+            context.stats().compressed(length, start);
+            return compressed;
+        } finally {
+            context.pushEncoder(encoder);
+        }
     }
 
     public CompressedStreamInput streamInput(StreamInput in) throws IOException {
@@ -96,4 +109,8 @@ public class BasicLZFCompressor implements BasicCompressor {
         return new LZFCompressedStreamOutput(out);
     }
 
+    public CompressorStats stats() {
+        return LZFCompressorContext.INSTANCE.stats();
+    }
+
 }
@@ -39,7 +39,7 @@ public class LZFCompressedStreamInput extends CompressedStreamInput<LZFCompresso
     private byte[] inputBuffer;
 
     public LZFCompressedStreamInput(StreamInput in, ChunkDecoder decoder) throws IOException {
-        super(in, LZFCompressorContext.INSTANCE);
+        super(in, LZFCompressorContext.INSTANCE, LZFCompressorContext.INSTANCE.stats());
         this.recycler = BufferRecycler.instance();
         this.decoder = decoder;
 
@@ -67,7 +67,7 @@ public class LZFCompressedStreamInput extends CompressedStreamInput<LZFCompresso
         buf = uncompressed;
         if (buf != null) {
             uncompressed = null;
-            recycler.releaseDecodeBuffer(uncompressed);
+            recycler.releaseDecodeBuffer(buf);
         }
     }
 }
@@ -32,14 +32,14 @@ import java.io.IOException;
 public class LZFCompressedStreamOutput extends CompressedStreamOutput<LZFCompressorContext> {
 
     private final BufferRecycler recycler;
-    private final ChunkEncoder encoder;
+    private ChunkEncoder encoder;
 
     public LZFCompressedStreamOutput(StreamOutput out) throws IOException {
-        super(out, LZFCompressorContext.INSTANCE);
+        super(out, LZFCompressorContext.INSTANCE, LZFCompressorContext.INSTANCE.stats());
         this.recycler = BufferRecycler.instance();
         this.uncompressed = this.recycler.allocOutputBuffer(LZFChunk.MAX_CHUNK_LEN);
         this.uncompressedLength = LZFChunk.MAX_CHUNK_LEN;
-        this.encoder = new ChunkEncoder(LZFChunk.MAX_CHUNK_LEN);
+        this.encoder = context.popEncoder();
     }
 
     @Override
@@ -59,6 +59,10 @@ public class LZFCompressedStreamOutput extends CompressedStreamOutput<LZFCompres
             uncompressed = null;
             recycler.releaseOutputBuffer(buf);
         }
-        encoder.close();
+        ChunkEncoder encoder = this.encoder;
+        if (encoder != null) {
+            this.encoder = null;
+            context.pushEncoder(encoder);
+        }
     }
 }
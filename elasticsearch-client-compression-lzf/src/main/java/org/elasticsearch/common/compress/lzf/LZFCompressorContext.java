@@ -17,13 +17,62 @@
  * under the License.
  */
 
+
 package org.elasticsearch.common.compress.lzf;
 
+import com.ning.compress.lzf.ChunkEncoder;
+import com.ning.compress.lzf.LZFChunk;
 import org.elasticsearch.common.compress.CompressorContext;
+import org.elasticsearch.common.compress.CompressorStats;
+import org.elasticsearch.common.io.stream.BasicCachedStreamOutput;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Keeps a bounded pool of chunk encoders, so compressing does not allocate a new encoder (and its
+ * hash table and output buffer) per message. Encoders hold no state between chunks, the hash table
+ * entries of a previous chunk are verified before they are used, so they need no reset.
  */
 public class LZFCompressorContext implements CompressorContext {
 
     public static final LZFCompressorContext INSTANCE = new LZFCompressorContext();
+
+    // the hash table (16k ints) and the output buffer of an encoder for the max chunk length
+    private static final long ENCODER_BYTES = (1 << 14) * 4 + LZFChunk.MAX_CHUNK_LEN + (LZFChunk.MAX_CHUNK_LEN >> 5) + 7;
+
+    private final Queue<ChunkEncoder> encoders = ConcurrentCollections.newQueue();
+
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private final CompressorStats stats = new CompressorStats();
+
+    public CompressorStats stats() {
+        return stats;
+    }
+
+    /**
+     * An encoder for chunks up to {@link LZFChunk#MAX_CHUNK_LEN}, to be given back with
+     * {@link #pushEncoder(ChunkEncoder)}.
+     */
+    public ChunkEncoder popEncoder() {
+        ChunkEncoder encoder = encoders.poll();
+        if (encoder == null) {
+            stats.contextCreated(ENCODER_BYTES);
+            return new ChunkEncoder(LZFChunk.MAX_CHUNK_LEN);
+        }
+        pooled.decrementAndGet();
+        stats.contextReused();
+        return encoder;
+    }
+
+    public void pushEncoder(ChunkEncoder encoder) {
+        if (pooled.incrementAndGet() > BasicCachedStreamOutput.COUNT_LIMIT) {
+            pooled.decrementAndGet();
+            encoder.close();
+        } else {
+            encoders.add(encoder);
+        }
+    }
 }
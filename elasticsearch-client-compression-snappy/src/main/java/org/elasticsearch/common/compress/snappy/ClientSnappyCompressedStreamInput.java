@@ -21,6 +21,7 @@ package org.elasticsearch.common.compress.snappy;
 
 import com.ning.compress.BufferRecycler;
 import org.elasticsearch.common.compress.CompressedStreamInput;
+import org.elasticsearch.common.compress.CompressorStats;
 import org.elasticsearch.common.io.stream.StreamInput;
 
 import java.io.IOException;
@@ -39,7 +40,11 @@ public abstract class ClientSnappyCompressedStreamInput extends CompressedStream
     protected byte[] inputBuffer;
 
     public ClientSnappyCompressedStreamInput(StreamInput in, SnappyCompressorContext context) throws IOException {
-        super(in, context);
+        this(in, context, null);
+    }
+
+    public ClientSnappyCompressedStreamInput(StreamInput in, SnappyCompressorContext context, CompressorStats stats) throws IOException {
+        super(in, context, stats);
         this.recycler = BufferRecycler.instance();
         this.uncompressed = recycler.allocDecodeBuffer(Math.max(chunkSize, maxCompressedChunkLength));
         this.inputBuffer = recycler.allocInputBuffer(Math.max(chunkSize, maxCompressedChunkLength));
@@ -61,12 +66,12 @@ public abstract class ClientSnappyCompressedStreamInput extends CompressedStream
         byte[] buf = uncompressed;
         if (buf != null) {
             uncompressed = null;
-            recycler.releaseDecodeBuffer(uncompressed);
+            recycler.releaseDecodeBuffer(buf);
         }
         buf = inputBuffer;
         if (buf != null) {
             inputBuffer = null;
-            recycler.releaseInputBuffer(inputBuffer);
+            recycler.releaseInputBuffer(buf);
         }
     }
 }
@@ -21,6 +21,7 @@ package org.elasticsearch.common.compress.snappy;
 
 import com.ning.compress.BufferRecycler;
 import org.elasticsearch.common.compress.CompressedStreamOutput;
+import org.elasticsearch.common.compress.CompressorStats;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
 import java.io.IOException;
@@ -34,7 +35,11 @@ public abstract class ClientSnappyCompressedStreamOutput extends CompressedStrea
     protected byte[] compressedBuffer;
 
     public ClientSnappyCompressedStreamOutput(StreamOutput out, SnappyCompressorContext context) throws IOException {
-        super(out, context);
+        this(out, context, null);
+    }
+
+    public ClientSnappyCompressedStreamOutput(StreamOutput out, SnappyCompressorContext context, CompressorStats stats) throws IOException {
+        super(out, context, stats);
         this.recycler = BufferRecycler.instance();
         this.uncompressed = this.recycler.allocOutputBuffer(context.compressChunkLength());
         this.uncompressedLength = context.compressChunkLength();
@@ -21,10 +21,10 @@ package org.elasticsearch.common.compress.snappy;
 
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.compress.BasicCompressor;
-import org.elasticsearch.common.io.Streams;
-import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.compress.CompressedStreamInput;
+import org.elasticsearch.common.compress.CompressorStats;
 import org.elasticsearch.common.io.stream.BasicCachedStreamOutput;
-import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
@@ -39,6 +39,8 @@ public abstract class ClientSnappyCompressor implements BasicCompressor {
 
     protected SnappyCompressorContext compressorContext;
 
+    protected final CompressorStats stats = new CompressorStats();
+
     // default block size (32k)
     static final int DEFAULT_CHUNK_SIZE = 1 << 15;
 
@@ -98,13 +100,18 @@ public abstract class ClientSnappyCompressor implements BasicCompressor {
 
     
     public byte[] uncompress(byte[] data, int offset, int length) throws IOException {
-        StreamInput compressed = streamInput(new BytesStreamInput(data, offset, length, false));
+        CompressedStreamInput compressed = streamInput(new BytesStreamInput(data, offset, length, false));
         BasicCachedStreamOutput.Entry entry = BasicCachedStreamOutput.popEntry();
         try {
-            Streams.copy(compressed, entry.bytes());
+            compressed.copyTo(entry.bytes());
             return entry.bytes().bytes().copyBytesArray().toBytes();
         } finally {
+            compressed.close();
             BasicCachedStreamOutput.pushEntry(entry);
         }
     }
+
+    public CompressorStats stats() {
+        return stats;
+    }
 }
@@ -44,12 +44,12 @@ public class ClientXerialSnappyCompressor extends ClientSnappyCompressor {
 
     
     public CompressedStreamInput streamInput(StreamInput in) throws IOException {
-        return new XerialSnappyCompressedStreamInput(in, compressorContext);
+        return new XerialSnappyCompressedStreamInput(in, compressorContext, stats);
     }
 
     
     public CompressedStreamOutput streamOutput(StreamOutput out) throws IOException {
-        return new XerialSnappyCompressedStreamOutput(out, compressorContext);
+        return new XerialSnappyCompressedStreamOutput(out, compressorContext, stats);
     }
 
 }
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.common.compress.snappy.xerial;
 
+import org.elasticsearch.common.compress.CompressorStats;
 import org.elasticsearch.common.compress.snappy.ClientSnappyCompressedStreamInput;
 import org.elasticsearch.common.compress.snappy.SnappyCompressorContext;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -34,6 +35,10 @@ public class XerialSnappyCompressedStreamInput extends ClientSnappyCompressedStr
         super(in, context);
     }
 
+    public XerialSnappyCompressedStreamInput(StreamInput in, SnappyCompressorContext context, CompressorStats stats) throws IOException {
+        super(in, context, stats);
+    }
+
     @Override
     protected int uncompress(StreamInput in, byte[] out) throws IOException {
         int compressedByte = in.read();
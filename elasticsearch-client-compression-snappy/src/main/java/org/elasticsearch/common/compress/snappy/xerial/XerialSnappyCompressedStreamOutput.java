@@ -19,6 +19,7 @@
 
 package org.elasticsearch.common.compress.snappy.xerial;
 
+import org.elasticsearch.common.compress.CompressorStats;
 import org.elasticsearch.common.compress.snappy.ClientSnappyCompressedStreamOutput;
 import org.elasticsearch.common.compress.snappy.SnappyCompressorContext;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -34,6 +35,10 @@ public class XerialSnappyCompressedStreamOutput extends ClientSnappyCompressedSt
         super(out, context);
     }
 
+    public XerialSnappyCompressedStreamOutput(StreamOutput out, SnappyCompressorContext context, CompressorStats stats) throws IOException {
+        super(out, context, stats);
+    }
+
     @Override
     protected void compress(byte[] data, int offset, int len, StreamOutput out) throws IOException {
         int compressedLength = Snappy.rawCompress(data, offset, len, compressedBuffer, 0);
@@ -26,11 +26,27 @@ import com.ning.http.client.providers.netty.NettyAsyncHttpProvider;
 import com.ning.http.client.providers.netty.NettyAsyncHttpProviderConfig;
 import java.util.concurrent.Executors;
 import org.elasticsearch.client.GenericClient;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.threadpool.ThreadPool;
 
 public abstract class HttpClient extends AsyncHttpClient implements GenericClient {
+
+    public static final Setting<String> USER = Setting.stringSetting("http.user", null);
+    public static final Setting<String> PASSWORD = Setting.stringSetting("http.password", null);
+    public static final Setting<String> CONNECTION_URL = Setting.stringSetting("http.connection.url", "http://localhost:9200");
+    static final Setting<Integer> POOL_SIZE = Setting.intSetting("http.connection.poolsize", 5);
+    static final Setting<Integer> MAX_TOTAL = Setting.intSetting("http.connection.maxtotal", 5);
+    static final Setting<Integer> MAX_PER_HOST = Setting.intSetting("http.connection.maxperhost", 1);
+    static final Setting<Boolean> POOLING = Setting.booleanSetting("http.connection.pooling", Boolean.TRUE);
+    static final Setting<Boolean> FOLLOW_REDIRECT = Setting.booleanSetting("http.connection.followredirect", Boolean.TRUE);
+    static final Setting<Integer> CONNECTION_TIMEOUT = Setting.intSetting("http.connection.timeout", 5000);
+    static final Setting<TimeValue> REQUEST_TIMEOUT = Setting.timeSetting("http.request.timeout", TimeValue.timeValueSeconds(15L));
+    static final Setting<Integer> MAX_RETRIES = Setting.intSetting("http.request.maxretries", 3);
+    static final Setting<Boolean> COMPRESSION = Setting.booleanSetting("http.compression.enabled", Boolean.TRUE);
+    static final Setting<String> PROXY_HOST = Setting.stringSetting("http.proxy.host", null);
+    static final Setting<Integer> PROXY_PORT = Setting.intSetting("http.proxy.port", -1);
     
     private Settings settings;
     
@@ -53,17 +69,17 @@ public abstract class HttpClient extends AsyncHttpClient implements GenericClien
         providerConfig.addProperty(NettyAsyncHttpProviderConfig.USE_BLOCKING_IO, "false");
         AsyncHttpClientConfig.Builder config = new AsyncHttpClientConfig.Builder()
                 .setAsyncHttpClientProviderConfig(providerConfig)
-                .setExecutorService(Executors.newFixedThreadPool(settings.getAsInt("http.connection.poolsize", 5)))
-                .setMaximumConnectionsTotal(settings.getAsInt("http.connection.maxtotal", 5))
-                .setMaximumConnectionsPerHost(settings.getAsInt("http.connection.maxperhost", 1))
-                .setAllowPoolingConnection(settings.getAsBoolean("http.connection.pooling", Boolean.TRUE))
-                .setFollowRedirects(settings.getAsBoolean("http.connection.followredirect", Boolean.TRUE))
-                .setConnectionTimeoutInMs(settings.getAsInt("http.connection.timeout", 5000))
-                .setRequestTimeoutInMs((int) settings.getAsTime("http.request.timeout", TimeValue.timeValueSeconds(15L)).getMillis())
-                .setMaxRequestRetry(settings.getAsInt("http.request.maxretries", 3))
-                .setCompressionEnabled(settings.getAsBoolean("http.compression.enabled", Boolean.TRUE));
-        if (settings.get("http.proxy.host") != null && settings.getAsInt("http.proxy.port", -1) != -1) {
-            config.setProxyServer(new ProxyServer(settings.get("http.proxy.host"), settings.getAsInt("http.proxy.port", -1)));
+                .setExecutorService(Executors.newFixedThreadPool(POOL_SIZE.get(settings)))
+                .setMaximumConnectionsTotal(MAX_TOTAL.get(settings))
+                .setMaximumConnectionsPerHost(MAX_PER_HOST.get(settings))
+                .setAllowPoolingConnection(POOLING.get(settings))
+                .setFollowRedirects(FOLLOW_REDIRECT.get(settings))
+                .setConnectionTimeoutInMs(CONNECTION_TIMEOUT.get(settings))
+                .setRequestTimeoutInMs((int) REQUEST_TIMEOUT.get(settings).getMillis())
+                .setMaxRequestRetry(MAX_RETRIES.get(settings))
+                .setCompressionEnabled(COMPRESSION.get(settings));
+        if (PROXY_HOST.get(settings) != null && PROXY_PORT.get(settings) != -1) {
+            config.setProxyServer(new ProxyServer(PROXY_HOST.get(settings), PROXY_PORT.get(settings)));
         }
         return new NettyAsyncHttpProvider(config.build());
     }
@@ -208,14 +208,16 @@ public class HttpRequest {
     }
 
     public Request buildRequest(Settings settings) {
-        if (settings.get("http.user") != null) {
-            realmBuilder = realmBuilder.setPrincipal(settings.get("http.user"));
+        String user = HttpClient.USER.get(settings);
+        if (user != null) {
+            realmBuilder = realmBuilder.setPrincipal(user);
         }
-        if (settings.get("http.password") != null) {
-            realmBuilder = realmBuilder.setPassword(settings.get("http.password"));
+        String password = HttpClient.PASSWORD.get(settings);
+        if (password != null) {
+            realmBuilder = realmBuilder.setPassword(password);
         }
         String url = this.uri != null
-                ? this.uri.toASCIIString() : settings.get("http.connection.url", "http://localhost:9200");
+                ? this.uri.toASCIIString() : HttpClient.CONNECTION_URL.get(settings);
         return builder.setUrl(buildPath(url, index, type, id)).setRealm(realmBuilder.build()).build();
     }
 }
@@ -109,9 +109,11 @@ public class HttpBulkAction extends HttpAction<BulkRequest, BulkResponse> {
                 .append(request.index())
                 .append("\",\"_type\":\"")
                 .append(request.type())
-                .append("\",\"_id\":\"")
-                .append(request.id())
-                .append("\"}}\n");
+                .append('"');
+        if (request.id() != null) {
+            sb.append(",\"_id\":\"").append(request.id()).append('"');
+        }
+        sb.append("}}\n");
         formatBulk(out, sb, request.source());
     }
 
@@ -46,7 +46,8 @@ public class HttpGetAction extends HttpAction<GetRequest, GetResponse> {
                 .index(request.index())
                 .type(request.type())
                 .id(request.id())
-                .param("fields", request.fields());
+                .param("fields", request.fields())
+                .param("preference", request.preference());
         return httpRequest;
     }
 
@@ -47,7 +47,8 @@ public class HttpMultiGetAction extends HttpAction<MultiGetRequest, MultiGetResp
 
     @Override
     protected HttpRequest toRequest(final MultiGetRequest request) throws IOException {
-        HttpRequest httpRequest = new HttpRequest(POST, ENDPOINT);
+        HttpRequest httpRequest = new HttpRequest(POST, ENDPOINT)
+                .param("preference", request.preference());
         XContentBuilder builder = jsonBuilder().startObject().startArray("docs");
         for (Item item : request.items()) {
             builder.startObject()
@@ -0,0 +1,289 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.action.bulk;
+
+import com.google.common.base.Charsets;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Unicode;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContent;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+
+import java.io.IOException;
+
+/**
+ * Parses the action lines of a bulk body, for example <tt>{"index":{"_index":"test","_id":"1"}}</tt>.
+ * <p/>
+ * JSON action lines are read straight from the bytes of the bulk body. Lines the fast path does not
+ * understand (escaped strings, <tt>null</tt>, booleans or fractions as values, nested values) and
+ * all other content types are parsed with a {@link XContentParser}, with the same outcome.
+ */
+final class BulkActionParser {
+
+    private final XContent xContent;
+
+    private final boolean json;
+
+    String action;
+    String index;
+    String type;
+    String id;
+    String routing;
+    String parent;
+    String timestamp;
+    Long ttl;
+    String opType;
+    long version;
+    VersionType versionType;
+    String percolate;
+
+    // the state of the fast path
+    private byte[] buffer;
+    private int pos;
+    private int end;
+
+    BulkActionParser(XContent xContent) {
+        this.xContent = xContent;
+        this.json = xContent.type() == XContentType.JSON;
+    }
+
+    /**
+     * Parses the action line between <tt>from</tt> (inclusive) and <tt>to</tt> (exclusive), returning
+     * <tt>false</tt> if the line is empty.
+     */
+    boolean parse(BytesReference data, int from, int to, @Nullable String defaultIndex, @Nullable String defaultType) throws IOException {
+        if (json && data.hasArray()) {
+            reset(defaultIndex, defaultType);
+            buffer = data.array();
+            pos = data.arrayOffset() + from;
+            end = data.arrayOffset() + to;
+            try {
+                skipWhitespace();
+                if (pos == end) {
+                    return false;
+                }
+                if (parseJson()) {
+                    return true;
+                }
+            } finally {
+                buffer = null;
+            }
+        }
+        reset(defaultIndex, defaultType);
+        XContentParser parser = xContent.createParser(data.slice(from, to - from));
+        try {
+            return parse(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private void reset(String defaultIndex, String defaultType) {
+        action = null;
+        index = defaultIndex;
+        type = defaultType;
+        id = null;
+        routing = null;
+        parent = null;
+        timestamp = null;
+        ttl = null;
+        opType = null;
+        version = 0;
+        versionType = VersionType.INTERNAL;
+        percolate = null;
+    }
+
+    private boolean parse(XContentParser parser) throws IOException {
+        // Move to START_OBJECT
+        XContentParser.Token token = parser.nextToken();
+        if (token == null) {
+            return false;
+        }
+        assert token == XContentParser.Token.START_OBJECT;
+        // Move to FIELD_NAME, that's the action
+        token = parser.nextToken();
+        assert token == XContentParser.Token.FIELD_NAME;
+        action = parser.currentName();
+
+        // at this stage, next token can either be END_OBJECT (and use default index and type, with auto generated id)
+        // or START_OBJECT which will have another set of parameters
+
+        String currentFieldName = null;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (token.isValue()) {
+                if ("percolate".equals(currentFieldName) || "_percolate".equals(currentFieldName)) {
+                    percolate = parser.textOrNull();
+                } else {
+                    field(currentFieldName, parser.text(), token == XContentParser.Token.VALUE_STRING);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void field(String name, String value, boolean string) {
+        if ("_index".equals(name)) {
+            index = value;
+        } else if ("_type".equals(name)) {
+            type = value;
+        } else if ("_id".equals(name)) {
+            id = value;
+        } else if ("_routing".equals(name) || "routing".equals(name)) {
+            routing = value;
+        } else if ("_parent".equals(name) || "parent".equals(name)) {
+            parent = value;
+        } else if ("_timestamp".equals(name) || "timestamp".equals(name)) {
+            timestamp = value;
+        } else if ("_ttl".equals(name) || "ttl".equals(name)) {
+            if (string) {
+                ttl = TimeValue.parseTimeValue(value, null).millis();
+            } else {
+                ttl = Long.parseLong(value);
+            }
+        } else if ("op_type".equals(name) || "opType".equals(name)) {
+            opType = value;
+        } else if ("_version".equals(name) || "version".equals(name)) {
+            version = Long.parseLong(value);
+        } else if ("_version_type".equals(name) || "_versionType".equals(name) || "version_type".equals(name) || "versionType".equals(name)) {
+            versionType = VersionType.fromString(value);
+        } else if ("percolate".equals(name) || "_percolate".equals(name)) {
+            percolate = value;
+        }
+    }
+
+    /**
+     * Reads <tt>{"action":{"field":value,...}}</tt>, returning <tt>false</tt> if the line has to go
+     * through the parser. Anything after the parameters of the action is ignored, as with the parser.
+     */
+    private boolean parseJson() {
+        if (!consume('{')) {
+            return false;
+        }
+        action = readString();
+        if (action == null || !consume(':') || !consume('{')) {
+            return false;
+        }
+        if (consume('}')) {
+            return true;
+        }
+        while (true) {
+            String name = readString();
+            if (name == null || !consume(':')) {
+                return false;
+            }
+            skipWhitespace();
+            if (pos == end) {
+                return false;
+            }
+            byte b = buffer[pos];
+            if (b == '"') {
+                String value = readString();
+                if (value == null) {
+                    return false;
+                }
+                field(name, value, true);
+            } else if (b == '-' || (b >= '0' && b <= '9')) {
+                String value = readNumber();
+                if (value == null) {
+                    return false;
+                }
+                field(name, value, false);
+            } else {
+                return false;
+            }
+            if (consume('}')) {
+                return true;
+            }
+            if (!consume(',')) {
+                return false;
+            }
+        }
+    }
+
+    private boolean consume(char c) {
+        skipWhitespace();
+        if (pos < end && buffer[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a string without escapes, <tt>null</tt> if there is none.
+     */
+    private String readString() {
+        if (!consume('"')) {
+            return null;
+        }
+        int start = pos;
+        for (; pos < end; pos++) {
+            byte b = buffer[pos];
+            if (b == '"') {
+                return Unicode.fromBytes(buffer, start, pos++ - start);
+            }
+            if (b == '\\' || (b >= 0 && b < 0x20)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads an integral number, <tt>null</tt> if it is not one.
+     */
+    private String readNumber() {
+        int start = pos;
+        if (buffer[pos] == '-') {
+            pos++;
+        }
+        int digits = pos;
+        while (pos < end && buffer[pos] >= '0' && buffer[pos] <= '9') {
+            pos++;
+        }
+        // leading zeros are left to the parser to reject, longer numbers to read
+        if (pos == digits || pos - digits > 18 || (buffer[digits] == '0' && pos - digits > 1)) {
+            return null;
+        }
+        if (pos < end) {
+            byte b = buffer[pos];
+            if (b == '.' || b == 'e' || b == 'E' || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')) {
+                return null;
+            }
+        }
+        return new String(buffer, start, pos - start, Charsets.US_ASCII);
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = buffer[pos];
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return;
+            }
+            pos++;
+        }
+    }
+}
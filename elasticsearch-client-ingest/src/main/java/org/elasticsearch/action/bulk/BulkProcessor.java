@@ -26,12 +26,14 @@ import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.IngestClient;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.TimeOrderedIds;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ClientEsExecutors;
 
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 import org.elasticsearch.action.bulk.BulkRequest;
@@ -211,7 +213,8 @@ public class BulkProcessor {
 
     /**
      * Adds an {@link IndexRequest} to the list of actions to execute. Follows the same behavior of {@link IndexRequest}
-     * (for example, if no id is provided, one will be generated, or usage of the create flag).
+     * (for example, usage of the create flag). If no id is provided, a time ordered one is generated
+     * (see {@link TimeOrderedIds}).
      */
     public BulkProcessor add(IndexRequest request) {
         return add((ActionRequest) request);
@@ -225,6 +228,9 @@ public class BulkProcessor {
     }
 
     public BulkProcessor add(ActionRequest request) {
+        if (request instanceof IndexRequest) {
+            generateId((IndexRequest) request);
+        }
         internalAdd(request);
         return this;
     }
@@ -235,11 +241,24 @@ public class BulkProcessor {
     }
 
     public synchronized BulkProcessor add(BytesReference data, boolean contentUnsafe, @Nullable String defaultIndex, @Nullable String defaultType) throws Exception {
+        int from = bulkRequest.requests().size();
         bulkRequest.add(data, contentUnsafe, defaultIndex, defaultType);
+        List<ActionRequest> requests = bulkRequest.requests();
+        for (int i = from; i < requests.size(); i++) {
+            if (requests.get(i) instanceof IndexRequest) {
+                generateId((IndexRequest) requests.get(i));
+            }
+        }
         executeIfNeeded();
         return this;
     }
 
+    private static void generateId(IndexRequest request) {
+        if (request.id() == null) {
+            request.id(TimeOrderedIds.next());
+        }
+    }
+
     private void executeIfNeeded() {
         if (closed) {
             throw new ElasticSearchIllegalStateException("bulk process already closed");
@@ -32,11 +32,8 @@ import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
-import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContent;
 import org.elasticsearch.common.xcontent.XContentFactory;
-import org.elasticsearch.common.xcontent.XContentParser;
-import org.elasticsearch.index.VersionType;
 
 import java.io.IOException;
 import java.util.List;
@@ -144,10 +141,12 @@ public class BulkRequest extends ActionRequest<BulkRequest> {
     }
 
     /**
-     * Adds a framed data in binary format
+     * Adds a framed data in binary format. The sources of the index requests are slices of the data,
+     * copied only once the request is forked if <tt>contentUnsafe</tt> is set.
      */
     public BulkRequest add(BytesReference data, boolean contentUnsafe, @Nullable String defaultIndex, @Nullable String defaultType) throws Exception {
         XContent xContent = XContentFactory.xContent(data);
+        BulkActionParser actionParser = new BulkActionParser(xContent);
         int from = 0;
         int length = data.length();
         byte marker = xContent.streamSeparator();
@@ -157,105 +156,38 @@ public class BulkRequest extends ActionRequest<BulkRequest> {
                 break;
             }
             // now parse the action
-            XContentParser parser = xContent.createParser(data.slice(from, nextMarker - from));
-
-            try {
-                // move pointers
-                from = nextMarker + 1;
+            boolean parsed = actionParser.parse(data, from, nextMarker, defaultIndex, defaultType);
+            // move pointers
+            from = nextMarker + 1;
+            if (!parsed) {
+                continue;
+            }
 
-                // Move to START_OBJECT
-                XContentParser.Token token = parser.nextToken();
-                if (token == null) {
-                    continue;
+            String action = actionParser.action;
+            if ("delete".equals(action)) {
+                add(new DeleteRequest(actionParser.index, actionParser.type, actionParser.id).parent(actionParser.parent)
+                        .version(actionParser.version).versionType(actionParser.versionType).routing(actionParser.routing));
+            } else {
+                nextMarker = findNextMarker(marker, from, data, length);
+                if (nextMarker == -1) {
+                    break;
                 }
-                assert token == XContentParser.Token.START_OBJECT;
-                // Move to FIELD_NAME, that's the action
-                token = parser.nextToken();
-                assert token == XContentParser.Token.FIELD_NAME;
-                String action = parser.currentName();
-
-                String index = defaultIndex;
-                String type = defaultType;
-                String id = null;
-                String routing = null;
-                String parent = null;
-                String timestamp = null;
-                Long ttl = null;
-                String opType = null;
-                long version = 0;
-                VersionType versionType = VersionType.INTERNAL;
-                String percolate = null;
-
-                // at this stage, next token can either be END_OBJECT (and use default index and type, with auto generated id)
-                // or START_OBJECT which will have another set of parameters
-
-                String currentFieldName = null;
-                while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
-                    if (token == XContentParser.Token.FIELD_NAME) {
-                        currentFieldName = parser.currentName();
-                    } else if (token.isValue()) {
-                        if ("_index".equals(currentFieldName)) {
-                            index = parser.text();
-                        } else if ("_type".equals(currentFieldName)) {
-                            type = parser.text();
-                        } else if ("_id".equals(currentFieldName)) {
-                            id = parser.text();
-                        } else if ("_routing".equals(currentFieldName) || "routing".equals(currentFieldName)) {
-                            routing = parser.text();
-                        } else if ("_parent".equals(currentFieldName) || "parent".equals(currentFieldName)) {
-                            parent = parser.text();
-                        } else if ("_timestamp".equals(currentFieldName) || "timestamp".equals(currentFieldName)) {
-                            timestamp = parser.text();
-                        } else if ("_ttl".equals(currentFieldName) || "ttl".equals(currentFieldName)) {
-                            if (parser.currentToken() == XContentParser.Token.VALUE_STRING) {
-                                ttl = TimeValue.parseTimeValue(parser.text(), null).millis();
-                            } else {
-                                ttl = parser.longValue();
-                            }
-                        } else if ("op_type".equals(currentFieldName) || "opType".equals(currentFieldName)) {
-                            opType = parser.text();
-                        } else if ("_version".equals(currentFieldName) || "version".equals(currentFieldName)) {
-                            version = parser.longValue();
-                        } else if ("_version_type".equals(currentFieldName) || "_versionType".equals(currentFieldName) || "version_type".equals(currentFieldName) || "versionType".equals(currentFieldName)) {
-                            versionType = VersionType.fromString(parser.text());
-                        } else if ("percolate".equals(currentFieldName) || "_percolate".equals(currentFieldName)) {
-                            percolate = parser.textOrNull();
-                        }
+                // order is important, we set parent after routing, so routing will be set to parent if not set explicitly
+                // we use internalAdd so we don't fork here, this allows us not to copy over the big byte array to small chunks
+                // of index request. All index requests are still unsafe if applicable.
+                if ("index".equals(action) || "create".equals(action)) {
+                    IndexRequest indexRequest = new IndexRequest(actionParser.index, actionParser.type, actionParser.id)
+                            .routing(actionParser.routing).parent(actionParser.parent).timestamp(actionParser.timestamp)
+                            .ttl(actionParser.ttl).version(actionParser.version).versionType(actionParser.versionType);
+                    if ("create".equals(action)) {
+                        indexRequest.create(true);
+                    } else if (actionParser.opType != null) {
+                        indexRequest.create("create".equals(actionParser.opType));
                     }
+                    internalAdd(indexRequest.source(data.slice(from, nextMarker - from), contentUnsafe).percolate(actionParser.percolate));
                 }
-
-                if ("delete".equals(action)) {
-                    add(new DeleteRequest(index, type, id).parent(parent).version(version).versionType(versionType).routing(routing));
-                } else {
-                    nextMarker = findNextMarker(marker, from, data, length);
-                    if (nextMarker == -1) {
-                        break;
-                    }
-                    // order is important, we set parent after routing, so routing will be set to parent if not set explicitly
-                    // we use internalAdd so we don't fork here, this allows us not to copy over the big byte array to small chunks
-                    // of index request. All index requests are still unsafe if applicable.
-                    if ("index".equals(action)) {
-                        if (opType == null) {
-                            internalAdd(new IndexRequest(index, type, id).routing(routing).parent(parent).timestamp(timestamp).ttl(ttl).version(version).versionType(versionType)
-                                    .source(data.slice(from, nextMarker - from), contentUnsafe)
-                                    .percolate(percolate));
-                        } else {
-                            internalAdd(new IndexRequest(index, type, id).routing(routing).parent(parent).timestamp(timestamp).ttl(ttl).version(version).versionType(versionType)
-                                    .create("create".equals(opType))
-                                    .source(data.slice(from, nextMarker - from), contentUnsafe)
-                                    .percolate(percolate));
-                        }
-                    } else if ("create".equals(action)) {
-                        internalAdd(new IndexRequest(index, type, id).routing(routing).parent(parent).timestamp(timestamp).ttl(ttl).version(version).versionType(versionType)
-                                .create(true)
-                                .source(data.slice(from, nextMarker - from), contentUnsafe)
-                                .percolate(percolate));
-                    }
-                    // move pointers
-                    from = nextMarker + 1;
-                }
-            } finally {
-                parser.close();
+                // move pointers
+                from = nextMarker + 1;
             }
         }
         return this;
@@ -300,6 +232,16 @@ public class BulkRequest extends ActionRequest<BulkRequest> {
     }
 
     private int findNextMarker(byte marker, int from, BytesReference data, int length) {
+        if (data.hasArray()) {
+            byte[] array = data.array();
+            int offset = data.arrayOffset();
+            for (int i = offset + from; i < offset + length; i++) {
+                if (array[i] == marker) {
+                    return i - offset;
+                }
+            }
+            return -1;
+        }
         for (int i = from; i < length; i++) {
             if (data.get(i) == marker) {
                 return i;
@@ -79,6 +79,22 @@ public class GetRequest extends SingleShardOperationRequest<GetRequest> {
         this.id = id;
     }
 
+    /**
+     * Copy constructor, the copy shares the fields of the given request.
+     */
+    public GetRequest(GetRequest request) {
+        super(request.index());
+        listenerThreaded(request.listenerThreaded());
+        operationThreaded(request.operationThreaded());
+        this.type = request.type;
+        this.id = request.id;
+        this.routing = request.routing;
+        this.preference = request.preference;
+        this.fields = request.fields;
+        this.refresh = request.refresh;
+        this.realtime = request.realtime;
+    }
+
     @Override
     public ActionRequestValidationException validate() {
         ActionRequestValidationException validationException = super.validate();
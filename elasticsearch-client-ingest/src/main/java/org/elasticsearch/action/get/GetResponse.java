@@ -51,6 +51,13 @@ public class GetResponse extends ActionResponse implements Iterable<GetField>, T
         this.getResult = getResult;
     }
 
+    /**
+     * The underlying get result.
+     */
+    public GetResult getResult() {
+        return getResult;
+    }
+
     /**
      * Does the document exists.
      */
@@ -171,7 +178,7 @@ public class GetResponse extends ActionResponse implements Iterable<GetField>, T
      * The source of the document (As a map).
      */
     public Map<String, Object> sourceAsMap() throws ElasticSearchParseException {        
-        return XContentHelper.convertToMap(getResult.internalSourceRef(), false).v2();
+        return XContentHelper.convertToCompactMap(getResult.internalSourceRef());
     }    
 
     public Map<String, GetField> fields() {
@@ -0,0 +1,261 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.get;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.get.GetField;
+import org.elasticsearch.index.get.GetResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A versioned near cache of {@link GetResult}s by index, type and id.
+ * <p/>
+ * The cache is populated by get responses and by successful writes made through the
+ * same client. A write records its version, so an older result (for example from a get
+ * that was in flight during the write) never replaces a newer one. The memory used is
+ * bounded by the estimated size of the cached results (<tt>get.cache.size</tt>), not
+ * by the number of entries.
+ * <p/>
+ * Results are copied when cached and when returned, so a caller changing a result (for
+ * example the array returned by {@link GetResult#source()}) does not change the cached one.
+ */
+public class GetResultCache {
+
+    private static final long ENTRY_OVERHEAD = RamUsageEstimator.shallowSizeOfInstance(Entry.class)
+            + RamUsageEstimator.shallowSizeOfInstance(Key.class)
+            + RamUsageEstimator.shallowSizeOfInstance(GetResult.class)
+            + 4 * (RamUsageEstimator.shallowSizeOfInstance(String.class) + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER)
+            + 64; // cache segment entry
+
+    private final ConcurrentMap<Key, Entry> map;
+
+    private final Cache<Key, Entry> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    public GetResultCache(Settings settings) {
+        ByteSizeValue size = settings.getAsBytesSize("get.cache.size", new ByteSizeValue(64, ByteSizeUnit.MB));
+        TimeValue expire = settings.getAsTime("get.cache.expire", TimeValue.timeValueMinutes(5));
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(size.bytes())
+                .weigher(new Weigher<Key, Entry>() {
+                    @Override
+                    public int weigh(Key key, Entry entry) {
+                        return entry.weight;
+                    }
+                })
+                .expireAfterWrite(expire.millis(), TimeUnit.MILLISECONDS)
+                .build();
+        this.map = cache.asMap();
+    }
+
+    /**
+     * Returns a copy of the cached result, or <tt>null</tt> if there is no current result for
+     * the document with the given routing.
+     */
+    @Nullable
+    public GetResult get(String index, @Nullable String type, String id, @Nullable String routing) {
+        Entry entry = map.get(new Key(index, type, id));
+        if (entry == null || entry.result == null || !equals(routing, entry.routing)) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return copy(entry.result);
+    }
+
+    /**
+     * Caches the result of a get of the given (requested) index and type, unless a newer
+     * version of the document has already been seen.
+     */
+    public void put(String index, @Nullable String type, @Nullable String routing, GetResult result) {
+        update(new Key(index, type, result.id()), new Entry(copy(result), result.exists() ? result.version() : -1, routing));
+    }
+
+    /**
+     * Records a successful write of a document. The source of the written document, if
+     * given, is cached as the current version; otherwise only the version is recorded so
+     * that older results get rejected.
+     */
+    public void written(String index, String type, String id, @Nullable String routing, long version, boolean exists,
+                        @Nullable BytesReference source) {
+        GetResult result = null;
+        if (!exists) {
+            result = new GetResult(index, type, id, version, false, null, null);
+        } else if (source != null) {
+            result = new GetResult(index, type, id, version, true, source.copyBytesArray(), null);
+        }
+        Entry entry = new Entry(result, version, routing);
+        update(new Key(index, type, id), entry);
+        // gets without a type are cached separately
+        update(new Key(index, null, id), entry);
+    }
+
+    public void invalidate(String index, @Nullable String type, String id) {
+        map.remove(new Key(index, type, id));
+        map.remove(new Key(index, null, id));
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    public long missCount() {
+        return missCount.get();
+    }
+
+    private void update(Key key, Entry entry) {
+        while (true) {
+            Entry existing = map.putIfAbsent(key, entry);
+            if (existing == null) {
+                return;
+            }
+            if (existing.version > entry.version || (existing.version == entry.version && existing.result != null)) {
+                return;
+            }
+            if (map.replace(key, existing, entry)) {
+                return;
+            }
+        }
+    }
+
+    private static GetResult copy(GetResult result) {
+        BytesReference source = result.internalSourceRef();
+        Map<String, GetField> fields = result.fields();
+        if (fields != null && !fields.isEmpty()) {
+            Map<String, GetField> copy = new HashMap<String, GetField>(fields.size());
+            for (GetField field : fields.values()) {
+                copy.put(field.name(), new GetField(field.name(), new ArrayList<Object>(field.values())));
+            }
+            fields = copy;
+        }
+        return new GetResult(result.index(), result.type(), result.id(), result.version(), result.exists(),
+                source == null ? null : source.copyBytesArray(), fields);
+    }
+
+    private static boolean equals(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    static final class Key {
+
+        final String index;
+
+        final String type;
+
+        final String id;
+
+        final int hashCode;
+
+        Key(String index, String type, String id) {
+            this.index = index;
+            // "_all" is the default type of a get request
+            this.type = "_all".equals(type) ? null : type;
+            this.id = id;
+            int result = index.hashCode();
+            result = 31 * result + (this.type != null ? this.type.hashCode() : 0);
+            result = 31 * result + id.hashCode();
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hashCode == key.hashCode && id.equals(key.id) && index.equals(key.index)
+                    && GetResultCache.equals(type, key.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    static final class Entry {
+
+        final GetResult result;
+
+        final long version;
+
+        final String routing;
+
+        final int weight;
+
+        Entry(GetResult result, long version, String routing) {
+            this.result = result;
+            this.version = version;
+            this.routing = routing;
+            this.weight = (int) Math.min(Integer.MAX_VALUE, estimate(result, routing));
+        }
+
+        private static long estimate(GetResult result, String routing) {
+            long size = ENTRY_OVERHEAD;
+            if (routing != null) {
+                size += routing.length() * RamUsageEstimator.NUM_BYTES_CHAR;
+            }
+            if (result == null) {
+                return size;
+            }
+            size += (result.index().length() + result.id().length()) * RamUsageEstimator.NUM_BYTES_CHAR;
+            if (result.type() != null) {
+                size += result.type().length() * RamUsageEstimator.NUM_BYTES_CHAR;
+            }
+            BytesReference source = result.internalSourceRef();
+            if (source != null) {
+                size += RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + source.length();
+            }
+            if (result.fields() != null && !result.fields().isEmpty()) {
+                size += RamUsageEstimator.sizeOf(result.fields());
+            }
+            return size;
+        }
+    }
+}
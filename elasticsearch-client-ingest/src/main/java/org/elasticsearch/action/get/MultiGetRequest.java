@@ -161,6 +161,20 @@ public class MultiGetRequest extends ActionRequest<MultiGetRequest> {
 
     List<Item> items = new ArrayList<Item>();
 
+    public MultiGetRequest() {
+    }
+
+    /**
+     * Copy constructor, the copy shares the items of the given request.
+     */
+    public MultiGetRequest(MultiGetRequest request) {
+        listenerThreaded(request.listenerThreaded());
+        this.preference = request.preference;
+        this.realtime = request.realtime;
+        this.refresh = request.refresh;
+        this.items.addAll(request.items);
+    }
+
     public MultiGetRequest add(Item item) {
         items.add(item);
         return this;
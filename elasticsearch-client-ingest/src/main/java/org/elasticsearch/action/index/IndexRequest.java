@@ -312,9 +312,13 @@ public class IndexRequest extends ShardReplicationOperationRequest<IndexRequest>
     @Required
     public IndexRequest source(Map source, XContentType contentType) throws ElasticSearchGenerationException {
         try {
-            XContentBuilder builder = XContentFactory.contentBuilder(contentType);
-            builder.map(source);
-            return source(builder);
+            XContentBuilder builder = XContentFactory.cachedContentBuilder(contentType);
+            try {
+                builder.map(source);
+                return source(builder.copyBytes(), false);
+            } finally {
+                builder.release();
+            }
         } catch (IOException e) {
             throw new ElasticSearchGenerationException("Failed to generate [" + source + "]", e);
         }
@@ -350,9 +354,13 @@ public class IndexRequest extends ShardReplicationOperationRequest<IndexRequest>
     @Required
     public IndexRequest source(String field1, Object value1) {
         try {
-            XContentBuilder builder = XContentFactory.contentBuilder(contentType);
-            builder.startObject().field(field1, value1).endObject();
-            return source(builder);
+            XContentBuilder builder = XContentFactory.cachedContentBuilder(contentType);
+            try {
+                builder.startObject().field(field1, value1).endObject();
+                return source(builder.copyBytes(), false);
+            } finally {
+                builder.release();
+            }
         } catch (IOException e) {
             throw new ElasticSearchGenerationException("Failed to generate", e);
         }
@@ -361,9 +369,13 @@ public class IndexRequest extends ShardReplicationOperationRequest<IndexRequest>
     @Required
     public IndexRequest source(String field1, Object value1, String field2, Object value2) {
         try {
-            XContentBuilder builder = XContentFactory.contentBuilder(contentType);
-            builder.startObject().field(field1, value1).field(field2, value2).endObject();
-            return source(builder);
+            XContentBuilder builder = XContentFactory.cachedContentBuilder(contentType);
+            try {
+                builder.startObject().field(field1, value1).field(field2, value2).endObject();
+                return source(builder.copyBytes(), false);
+            } finally {
+                builder.release();
+            }
         } catch (IOException e) {
             throw new ElasticSearchGenerationException("Failed to generate", e);
         }
@@ -372,9 +384,13 @@ public class IndexRequest extends ShardReplicationOperationRequest<IndexRequest>
     @Required
     public IndexRequest source(String field1, Object value1, String field2, Object value2, String field3, Object value3) {
         try {
-            XContentBuilder builder = XContentFactory.contentBuilder(contentType);
-            builder.startObject().field(field1, value1).field(field2, value2).field(field3, value3).endObject();
-            return source(builder);
+            XContentBuilder builder = XContentFactory.cachedContentBuilder(contentType);
+            try {
+                builder.startObject().field(field1, value1).field(field2, value2).field(field3, value3).endObject();
+                return source(builder.copyBytes(), false);
+            } finally {
+                builder.release();
+            }
         } catch (IOException e) {
             throw new ElasticSearchGenerationException("Failed to generate", e);
         }
@@ -383,9 +399,13 @@ public class IndexRequest extends ShardReplicationOperationRequest<IndexRequest>
     @Required
     public IndexRequest source(String field1, Object value1, String field2, Object value2, String field3, Object value3, String field4, Object value4) {
         try {
-            XContentBuilder builder = XContentFactory.contentBuilder(contentType);
-            builder.startObject().field(field1, value1).field(field2, value2).field(field3, value3).field(field4, value4).endObject();
-            return source(builder);
+            XContentBuilder builder = XContentFactory.cachedContentBuilder(contentType);
+            try {
+                builder.startObject().field(field1, value1).field(field2, value2).field(field3, value3).field(field4, value4).endObject();
+                return source(builder.copyBytes(), false);
+            } finally {
+                builder.release();
+            }
         } catch (IOException e) {
             throw new ElasticSearchGenerationException("Failed to generate", e);
         }
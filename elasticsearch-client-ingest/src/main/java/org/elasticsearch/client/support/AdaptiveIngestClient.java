@@ -0,0 +1,181 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.client.support;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.get.GetAction;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetAction;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.support.AdaptiveReplicaSelector;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.client.GenericClient;
+import org.elasticsearch.client.IngestClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An ingest client that steers gets and multi gets without a <tt>preference</tt> to the node
+ * expected to answer the fastest (<tt>_prefer_node</tt>), as ranked by an
+ * {@link AdaptiveReplicaSelector}. Get responses do not tell the node that answered, so the
+ * nodes have to be set on the {@link #selector()}, or the selector shared with an
+ * <tt>AdaptiveSearchClient</tt> that learns them. All other actions are passed to the
+ * wrapped client.
+ */
+public class AdaptiveIngestClient extends AbstractIngestClient {
+
+    private final IngestClient client;
+
+    private final AdaptiveReplicaSelector selector;
+
+    public AdaptiveIngestClient(IngestClient client) {
+        this(client, new AdaptiveReplicaSelector(client.settings()));
+    }
+
+    public AdaptiveIngestClient(IngestClient client, AdaptiveReplicaSelector selector) {
+        this.client = client;
+        this.selector = selector;
+    }
+
+    public AdaptiveReplicaSelector selector() {
+        return selector;
+    }
+
+    public Settings settings() {
+        return client.settings();
+    }
+
+    public ThreadPool threadPool() {
+        return client.threadPool();
+    }
+
+    public void close() {
+        client.close();
+    }
+
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>, Client extends GenericClient>
+            ActionFuture<Response> execute(Action<Request, Response, RequestBuilder, Client> action, Request request) {
+        PlainActionFuture<Response> future = PlainActionFuture.newFuture();
+        execute(action, request, future);
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>, Client extends GenericClient>
+            void execute(Action<Request, Response, RequestBuilder, Client> action, Request request, ActionListener<Response> listener) {
+        if (action == GetAction.INSTANCE) {
+            get((GetRequest) request, (ActionListener<GetResponse>) listener);
+        } else if (action == MultiGetAction.INSTANCE) {
+            multiGet((MultiGetRequest) request, (ActionListener<MultiGetResponse>) listener);
+        } else {
+            client.execute(action, request, listener);
+        }
+    }
+
+    @Override
+    public void get(GetRequest request, ActionListener<GetResponse> listener) {
+        String nodeId = request.preference() == null ? selector.select() : null;
+        if (nodeId == null) {
+            client.get(request, listener);
+            return;
+        }
+        // the preference is set on a copy, so a retried or reused request is selected for again
+        GetRequest preferred = new GetRequest(request).preference("_prefer_node:" + nodeId);
+        TrackingListener<GetResponse> tracked = track(nodeId, listener);
+        try {
+            client.get(preferred, tracked);
+        } catch (RuntimeException e) {
+            tracked.notSent();
+            throw e;
+        }
+    }
+
+    @Override
+    public void multiGet(MultiGetRequest request, ActionListener<MultiGetResponse> listener) {
+        String nodeId = request.preference() == null ? selector.select() : null;
+        if (nodeId == null) {
+            client.multiGet(request, listener);
+            return;
+        }
+        MultiGetRequest preferred = new MultiGetRequest(request).preference("_prefer_node:" + nodeId);
+        TrackingListener<MultiGetResponse> tracked = track(nodeId, listener);
+        try {
+            client.multiGet(preferred, tracked);
+        } catch (RuntimeException e) {
+            tracked.notSent();
+            throw e;
+        }
+    }
+
+    private <T> TrackingListener<T> track(String nodeId, ActionListener<T> listener) {
+        selector.started(nodeId);
+        return new TrackingListener<T>(nodeId, listener);
+    }
+
+    private class TrackingListener<T> implements ActionListener<T> {
+
+        private final String nodeId;
+
+        private final ActionListener<T> listener;
+
+        private final long start = System.nanoTime();
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        TrackingListener(String nodeId, ActionListener<T> listener) {
+            this.nodeId = nodeId;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onResponse(T response) {
+            if (done.compareAndSet(false, true)) {
+                selector.finished(nodeId, System.nanoTime() - start);
+            }
+            listener.onResponse(response);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            if (done.compareAndSet(false, true)) {
+                selector.failed(nodeId);
+            }
+            listener.onFailure(e);
+        }
+
+        /**
+         * The request threw before it was sent, so it is not outstanding anymore.
+         */
+        void notSent() {
+            if (done.compareAndSet(false, true)) {
+                selector.cancelled(nodeId);
+            }
+        }
+    }
+}
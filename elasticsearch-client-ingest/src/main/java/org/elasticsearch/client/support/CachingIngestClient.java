@@ -0,0 +1,325 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.client.support;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.bulk.BulkAction;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteAction;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetAction;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.GetResultCache;
+import org.elasticsearch.action.get.MultiGetAction;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexAction;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.action.update.UpdateAction;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.GenericClient;
+import org.elasticsearch.client.IngestClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.List;
+
+/**
+ * An ingest client with a versioned near cache for gets. Gets and multi gets are answered
+ * from a {@link GetResultCache} where possible, and the documents written through this
+ * client are cached with their new version, so that reads of own writes do not need a
+ * round trip. All other actions are passed to the wrapped client.
+ * <p/>
+ * Only gets of the complete document (no <tt>fields</tt>) without <tt>refresh</tt> are cached.
+ */
+public class CachingIngestClient extends AbstractIngestClient {
+
+    private final IngestClient client;
+
+    private final GetResultCache cache;
+
+    public CachingIngestClient(IngestClient client) {
+        this(client, client.settings());
+    }
+
+    public CachingIngestClient(IngestClient client, Settings settings) {
+        this.client = client;
+        this.cache = new GetResultCache(settings);
+    }
+
+    public GetResultCache cache() {
+        return cache;
+    }
+
+    public Settings settings() {
+        return client.settings();
+    }
+
+    public ThreadPool threadPool() {
+        return client.threadPool();
+    }
+
+    public void close() {
+        cache.clear();
+        client.close();
+    }
+
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>, Client extends GenericClient>
+            ActionFuture<Response> execute(Action<Request, Response, RequestBuilder, Client> action, Request request) {
+        PlainActionFuture<Response> future = PlainActionFuture.newFuture();
+        execute(action, request, future);
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>, Client extends GenericClient>
+            void execute(Action<Request, Response, RequestBuilder, Client> action, Request request, ActionListener<Response> listener) {
+        if (action == GetAction.INSTANCE) {
+            get((GetRequest) request, (ActionListener<GetResponse>) listener);
+        } else if (action == MultiGetAction.INSTANCE) {
+            multiGet((MultiGetRequest) request, (ActionListener<MultiGetResponse>) listener);
+        } else if (action == IndexAction.INSTANCE) {
+            index((IndexRequest) request, (ActionListener<IndexResponse>) listener);
+        } else if (action == DeleteAction.INSTANCE) {
+            delete((DeleteRequest) request, (ActionListener<DeleteResponse>) listener);
+        } else if (action == UpdateAction.INSTANCE) {
+            update((UpdateRequest) request, (ActionListener<UpdateResponse>) listener);
+        } else if (action == BulkAction.INSTANCE) {
+            bulk((BulkRequest) request, (ActionListener<BulkResponse>) listener);
+        } else {
+            client.execute(action, request, listener);
+        }
+    }
+
+    @Override
+    public void get(final GetRequest request, final ActionListener<GetResponse> listener) {
+        if (request.fields() != null || request.refresh()) {
+            client.get(request, listener);
+            return;
+        }
+        GetResult result = cache.get(request.index(), request.type(), request.id(), request.routing());
+        if (result != null) {
+            listener.onResponse(new GetResponse(result));
+            return;
+        }
+        client.get(request, new ActionListener<GetResponse>() {
+            @Override
+            public void onResponse(GetResponse response) {
+                cache.put(request.index(), request.type(), request.routing(), response.getResult());
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Answers the cached items of the multi get directly, and only sends the missing items
+     * to the cluster. The responses are merged back in the order of the request.
+     */
+    @Override
+    public void multiGet(final MultiGetRequest request, final ActionListener<MultiGetResponse> listener) {
+        if (request.refresh()) {
+            client.multiGet(request, listener);
+            return;
+        }
+        final List<MultiGetRequest.Item> items = request.items();
+        final MultiGetItemResponse[] responses = new MultiGetItemResponse[items.size()];
+        final int[] slots = new int[items.size()];
+        final MultiGetRequest missing = new MultiGetRequest();
+        missing.preference(request.preference());
+        missing.realtime(request.realtime());
+        missing.listenerThreaded(request.listenerThreaded());
+        int missCount = 0;
+        for (int i = 0; i < items.size(); i++) {
+            MultiGetRequest.Item item = items.get(i);
+            GetResult result = item.fields() != null ? null
+                    : cache.get(item.index(), item.type(), item.id(), item.routing());
+            if (result != null) {
+                responses[i] = new MultiGetItemResponse(new GetResponse(result), null);
+            } else {
+                missing.add(item);
+                slots[missCount++] = i;
+            }
+        }
+        if (missCount == 0) {
+            listener.onResponse(new MultiGetResponse(responses));
+            return;
+        }
+        client.multiGet(missing, new ActionListener<MultiGetResponse>() {
+            @Override
+            public void onResponse(MultiGetResponse response) {
+                MultiGetItemResponse[] missingResponses = response.responses();
+                for (int i = 0; i < missingResponses.length; i++) {
+                    MultiGetItemResponse itemResponse = missingResponses[i];
+                    MultiGetRequest.Item item = missing.items().get(i);
+                    if (!itemResponse.failed() && item.fields() == null) {
+                        cache.put(item.index(), item.type(), item.routing(), itemResponse.response().getResult());
+                    }
+                    responses[slots[i]] = itemResponse;
+                }
+                listener.onResponse(new MultiGetResponse(responses));
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    @Override
+    public void index(final IndexRequest request, final ActionListener<IndexResponse> listener) {
+        client.index(request, new ActionListener<IndexResponse>() {
+            @Override
+            public void onResponse(IndexResponse response) {
+                written(request, response);
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                // the write may have been applied before it failed
+                invalidate(request);
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    @Override
+    public void delete(final DeleteRequest request, final ActionListener<DeleteResponse> listener) {
+        client.delete(request, new ActionListener<DeleteResponse>() {
+            @Override
+            public void onResponse(DeleteResponse response) {
+                written(request, response);
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                cache.invalidate(request.index(), request.type(), request.id());
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    @Override
+    public void update(final UpdateRequest request, final ActionListener<UpdateResponse> listener) {
+        client.update(request, new ActionListener<UpdateResponse>() {
+            @Override
+            public void onResponse(UpdateResponse response) {
+                written(request, response);
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                cache.invalidate(request.index(), request.type(), request.id());
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    @Override
+    public void bulk(final BulkRequest request, final ActionListener<BulkResponse> listener) {
+        client.bulk(request, new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                List<ActionRequest> requests = request.requests();
+                for (BulkItemResponse item : response.items()) {
+                    ActionRequest itemRequest = requests.get(item.itemId());
+                    if (item.failed()) {
+                        invalidate(itemRequest);
+                    } else if (itemRequest instanceof IndexRequest) {
+                        written((IndexRequest) itemRequest, item.<IndexResponse>response());
+                    } else if (itemRequest instanceof DeleteRequest) {
+                        written((DeleteRequest) itemRequest, item.<DeleteResponse>response());
+                    } else if (itemRequest instanceof UpdateRequest) {
+                        written((UpdateRequest) itemRequest, item.<UpdateResponse>response());
+                    }
+                }
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                for (ActionRequest itemRequest : request.requests()) {
+                    invalidate(itemRequest);
+                }
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private void written(IndexRequest request, IndexResponse response) {
+        cache.written(response.index(), response.type(), response.id(), request.routing(), response.version(), true, request.source());
+        if (!response.index().equals(request.index())) {
+            // the request was addressed to an alias
+            cache.written(request.index(), response.type(), response.id(), request.routing(), response.version(), true, request.source());
+        }
+    }
+
+    private void written(DeleteRequest request, DeleteResponse response) {
+        cache.written(response.index(), response.type(), response.id(), request.routing(), response.version(), false, null);
+        if (!response.index().equals(request.index())) {
+            cache.written(request.index(), response.type(), response.id(), request.routing(), response.version(), false, null);
+        }
+    }
+
+    private void written(UpdateRequest request, UpdateResponse response) {
+        // the source after the update is not known here, only record the version
+        cache.written(response.index(), response.type(), response.id(), request.routing(), response.version(), true, null);
+        if (!response.index().equals(request.index())) {
+            cache.written(request.index(), response.type(), response.id(), request.routing(), response.version(), true, null);
+        }
+    }
+
+    private void invalidate(ActionRequest request) {
+        if (request instanceof IndexRequest) {
+            IndexRequest indexRequest = (IndexRequest) request;
+            if (indexRequest.id() != null) {
+                cache.invalidate(indexRequest.index(), indexRequest.type(), indexRequest.id());
+            }
+        } else if (request instanceof DeleteRequest) {
+            DeleteRequest deleteRequest = (DeleteRequest) request;
+            cache.invalidate(deleteRequest.index(), deleteRequest.type(), deleteRequest.id());
+        } else if (request instanceof UpdateRequest) {
+            UpdateRequest updateRequest = (UpdateRequest) request;
+            cache.invalidate(updateRequest.index(), updateRequest.type(), updateRequest.id());
+        }
+    }
+}
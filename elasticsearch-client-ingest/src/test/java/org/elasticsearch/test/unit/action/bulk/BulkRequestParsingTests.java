@@ -0,0 +1,260 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.action.bulk;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.VersionType;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.testng.Assert.fail;
+
+/**
+ * Checks that action lines read by the fast path of the bulk parser end up exactly as they do when
+ * parsed with a {@link org.elasticsearch.common.xcontent.XContentParser}, which is what happens for
+ * data without a backing array.
+ */
+@Test
+public class BulkRequestParsingTests {
+
+    @Test
+    public void testNumbersAndStrings() throws Exception {
+        List<String> parsed = assertSameAsParser("{\"index\":{\"_id\":1,\"_version\":5,\"_ttl\":1000}}\n{}\n"
+                + "{\"index\":{\"_id\":\"1\",\"_version\":\"5\",\"_ttl\":\"5s\"}}\n{}\n"
+                + "{\"index\":{\"_id\":-3,\"version\":-1,\"ttl\":7}}\n{}\n"
+                + "{\"index\":{\"_id\":123456789012345678}}\n{}\n"
+                + "{\"index\":{\"_id\":12345678901234567890123}}\n{}\n"
+                + "{\"index\":{\"_id\":1.5,\"_routing\":1e3}}\n{}\n");
+        assertThat(parsed.get(0), equalTo(parsed.get(1).replace("ttl=5000", "ttl=1000")));
+
+        BulkRequest request = bulk("{\"index\":{\"_id\":1,\"_version\":5,\"_ttl\":\"5s\"}}\n{}\n", true);
+        IndexRequest index = (IndexRequest) request.requests().get(0);
+        assertThat(index.id(), equalTo("1"));
+        assertThat(index.version(), equalTo(5L));
+        assertThat(index.ttl(), equalTo(5000L));
+    }
+
+    @Test
+    public void testInvalidNumbers() throws Exception {
+        assertSameAsParser("{\"index\":{\"_id\":01}}\n{}\n");
+        assertSameAsParser("{\"index\":{\"_version\":007}}\n{}\n");
+        assertSameAsParser("{\"index\":{\"_version\":12345678901234567890}}\n{}\n");
+        assertSameAsParser("{\"index\":{\"_version\":1.5}}\n{}\n");
+        assertSameAsParser("{\"index\":{\"_id\":-}}\n{}\n");
+        assertSameAsParser("{\"index\":{\"_id\":1abc}}\n{}\n");
+    }
+
+    @Test
+    public void testEscapesAndUnicode() throws Exception {
+        assertSameAsParser("{\"index\":{\"_id\":\"a\\\"b\\\\c\"}}\n{}\n"
+                + "{\"index\":{\"_id\":\"caf\\u00e9\"}}\n{}\n"
+                + "{\"index\":{\"_index\":\"t\u00e9st\",\"_id\":\"\u4e2d\u6587 \ud83d\ude00\"}}\n{}\n"
+                + "{\"delete\":{\"_id\":\"\\n\"}}\n");
+        // unescaped control characters are rejected by the parser
+        assertSameAsParser("{\"index\":{\"_id\":\"x\ty\"}}\n{}\n");
+
+        BulkRequest request = bulk("{\"index\":{\"_index\":\"t\u00e9st\",\"_id\":\"caf\\u00e9\"}}\n{}\n", true);
+        IndexRequest index = (IndexRequest) request.requests().get(0);
+        assertThat(index.index(), equalTo("t\u00e9st"));
+        assertThat(index.id(), equalTo("caf\u00e9"));
+    }
+
+    @Test
+    public void testNullBooleanAndNestedValues() throws Exception {
+        assertSameAsParser("{\"index\":{\"_routing\":null,\"_id\":\"1\"}}\n{}\n"
+                + "{\"index\":{\"_percolate\":null,\"_id\":\"2\"}}\n{}\n"
+                + "{\"index\":{\"_parent\":true,\"_routing\":false}}\n{}\n"
+                + "{\"index\":{\"_id\":\"3\",\"x\":{\"a\":1},\"_type\":\"t\"}}\n{}\n"
+                + "{\"index\":{\"_id\":\"4\",\"x\":[1,2],\"_type\":\"t\"}}\n{}\n");
+    }
+
+    @Test
+    public void testWhitespaceAndBlankLines() throws Exception {
+        List<String> parsed = assertSameAsParser("\n  \n"
+                + "  { \"index\" : { \"_index\" : \"test\" , \"_type\" : \"type1\" , \"_id\" : \"1\" } }  \n{}\n"
+                + "\n\t\r\n"
+                + "\t{\t\"delete\"\t:\t{\t\"_id\"\t:\t2\t}\t}\r\n"
+                + "{\"index\":{\"_id\":\"3\"}} trailing\n{}\n");
+        assertThat(parsed.size(), equalTo(3));
+        assertThat(parsed.get(0), equalTo("index test/type1/1 routing=null parent=null timestamp=null ttl=-1 version=0/INTERNAL op=INDEX percolate=null source={}"));
+        assertThat(parsed.get(1), equalTo("delete di/dt/2 routing=null parent=null version=0/INTERNAL"));
+    }
+
+    @Test
+    public void testActions() throws Exception {
+        List<String> parsed = assertSameAsParser("{\"index\":{}}\n{\"a\":1}\n"
+                + "{\"create\":{\"_id\":\"1\",\"version_type\":\"external\",\"_version\":2,\"_timestamp\":\"2012\"}}\n{}\n"
+                + "{\"index\":{\"_id\":\"2\",\"op_type\":\"create\",\"routing\":\"r\",\"parent\":\"p\",\"percolate\":\"*\"}}\n{}\n"
+                + "{\"update\":{\"_id\":\"3\"}}\n{}\n"
+                + "{\"delete\":{\"_index\":\"test\",\"_type\":\"type1\",\"_id\":\"4\"}}\n");
+        assertThat(parsed.size(), equalTo(4));
+        assertThat(parsed.get(0), equalTo("index di/dt/null routing=null parent=null timestamp=null ttl=-1 version=0/INTERNAL op=INDEX percolate=null source={\"a\":1}"));
+        assertThat(parsed.get(1), equalTo("index di/dt/1 routing=null parent=null timestamp=2012 ttl=-1 version=2/EXTERNAL op=CREATE percolate=null source={}"));
+        assertThat(parsed.get(2), equalTo("index di/dt/2 routing=r parent=p timestamp=null ttl=-1 version=0/INTERNAL op=CREATE percolate=* source={}"));
+        assertThat(parsed.get(3), equalTo("delete test/type1/4 routing=null parent=null version=0/INTERNAL"));
+    }
+
+    @Test
+    public void testMissingTrailingNewline() throws Exception {
+        assertThat(assertSameAsParser("{\"index\":{\"_id\":\"1\"}}\n{}").size(), equalTo(0));
+        assertThat(assertSameAsParser("{\"index\":{\"_id\":\"1\"}}\n{}\n{\"delete\":{\"_id\":\"2\"}}").size(), equalTo(1));
+        assertThat(assertSameAsParser("{\"delete\":{\"_id\":\"1\"}}\n{\"index\":{\"_id\":\"2\"}}").size(), equalTo(1));
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+        BulkRequest request = bulk("{\"index\":{\"_type\":\"t\"}}\n{}\n", true);
+        IndexRequest index = (IndexRequest) request.requests().get(0);
+        assertThat(index.index(), equalTo("di"));
+        assertThat(index.type(), equalTo("t"));
+        assertThat(index.id(), nullValue());
+        assertThat(index.versionType(), equalTo(VersionType.INTERNAL));
+    }
+
+    /**
+     * Parses the bulk body with and without a backing array and returns the parsed requests, which
+     * are the same in both cases. A failure has to be the same as well.
+     */
+    private static List<String> assertSameAsParser(String body) throws Exception {
+        List<String> fast = null;
+        List<String> parser = null;
+        Exception fastFailure = null;
+        Exception parserFailure = null;
+        try {
+            fast = describe(bulk(body, true));
+        } catch (Exception e) {
+            fastFailure = e;
+        }
+        try {
+            parser = describe(bulk(body, false));
+        } catch (Exception e) {
+            parserFailure = e;
+        }
+        if (fastFailure != null || parserFailure != null) {
+            if (fastFailure == null || parserFailure == null) {
+                fail("[" + body + "] failed on one path only, fast path " + fastFailure + ", parser " + parserFailure);
+            }
+            assertThat(body, fastFailure.getClass(), equalTo((Object) parserFailure.getClass()));
+            return null;
+        }
+        assertThat(body, fast, equalTo(parser));
+        return fast;
+    }
+
+    private static BulkRequest bulk(String body, boolean hasArray) throws Exception {
+        BytesReference data = new BytesArray(body);
+        if (!hasArray) {
+            data = new NoArrayBytesReference(data);
+        }
+        return new BulkRequest().add(data, false, "di", "dt");
+    }
+
+    private static List<String> describe(BulkRequest request) {
+        List<String> requests = new ArrayList<String>();
+        for (ActionRequest r : request.requests()) {
+            if (r instanceof IndexRequest) {
+                IndexRequest index = (IndexRequest) r;
+                requests.add("index " + index.index() + "/" + index.type() + "/" + index.id()
+                        + " routing=" + index.routing() + " parent=" + index.parent() + " timestamp=" + index.timestamp()
+                        + " ttl=" + index.ttl() + " version=" + index.version() + "/" + index.versionType()
+                        + " op=" + index.opType() + " percolate=" + index.percolate() + " source=" + index.source().toUtf8());
+            } else {
+                DeleteRequest delete = (DeleteRequest) r;
+                requests.add("delete " + delete.index() + "/" + delete.type() + "/" + delete.id()
+                        + " routing=" + delete.routing() + " parent=" + delete.parent()
+                        + " version=" + delete.version() + "/" + delete.versionType());
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Hides the backing array, forcing the bulk parser onto the {@link org.elasticsearch.common.xcontent.XContentParser}.
+     */
+    private static class NoArrayBytesReference implements BytesReference {
+
+        private final BytesReference bytes;
+
+        NoArrayBytesReference(BytesReference bytes) {
+            this.bytes = bytes;
+        }
+
+        public byte get(int index) {
+            return bytes.get(index);
+        }
+
+        public int length() {
+            return bytes.length();
+        }
+
+        public BytesReference slice(int from, int length) {
+            return new NoArrayBytesReference(bytes.slice(from, length));
+        }
+
+        public StreamInput streamInput() {
+            return bytes.streamInput();
+        }
+
+        public void writeTo(OutputStream os) throws IOException {
+            bytes.writeTo(os);
+        }
+
+        public byte[] toBytes() {
+            return bytes.toBytes();
+        }
+
+        public BytesArray toBytesArray() {
+            return bytes.toBytesArray();
+        }
+
+        public BytesArray copyBytesArray() {
+            return bytes.copyBytesArray();
+        }
+
+        public boolean hasArray() {
+            return false;
+        }
+
+        public byte[] array() {
+            throw new UnsupportedOperationException();
+        }
+
+        public int arrayOffset() {
+            throw new UnsupportedOperationException();
+        }
+
+        public String toUtf8() {
+            return bytes.toUtf8();
+        }
+    }
+}
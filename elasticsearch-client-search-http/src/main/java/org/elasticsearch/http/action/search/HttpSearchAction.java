@@ -45,6 +45,7 @@ public class HttpSearchAction extends HttpBaseAction<SearchRequest, SearchRespon
         HttpRequest httpRequest = new HttpRequest(POST, ENDPOINT)
                 .param("routing", request.routing())
                 .param("query_hint", request.queryHint())
+                .param("preference", request.preference())
                 .body(request.source());
         if (request.operationThreading() != null) {
             httpRequest.param("operation_threading", request.operationThreading().name().toLowerCase());
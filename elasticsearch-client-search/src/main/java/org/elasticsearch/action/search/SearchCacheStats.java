@@ -0,0 +1,144 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+
+import java.io.IOException;
+
+/**
+ * Statistics of a {@link SearchResponseCache}.
+ */
+public class SearchCacheStats implements Streamable, ToXContent {
+
+    private long size;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long collapsedCount;
+
+    private long evictionCount;
+
+    SearchCacheStats() {
+    }
+
+    public SearchCacheStats(long size, long hitCount, long missCount, long collapsedCount, long evictionCount) {
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.collapsedCount = collapsedCount;
+        this.evictionCount = evictionCount;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * The number of requests that were answered by joining an identical in-flight request.
+     */
+    public long collapsedCount() {
+        return collapsedCount;
+    }
+
+    public long getCollapsedCount() {
+        return collapsedCount;
+    }
+
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public static SearchCacheStats readSearchCacheStats(StreamInput in) throws IOException {
+        SearchCacheStats stats = new SearchCacheStats();
+        stats.readFrom(in);
+        return stats;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        size = in.readVLong();
+        hitCount = in.readVLong();
+        missCount = in.readVLong();
+        collapsedCount = in.readVLong();
+        evictionCount = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(size);
+        out.writeVLong(hitCount);
+        out.writeVLong(missCount);
+        out.writeVLong(collapsedCount);
+        out.writeVLong(evictionCount);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.SEARCH_CACHE);
+        builder.field(Fields.SIZE, size);
+        builder.field(Fields.HIT_COUNT, hitCount);
+        builder.field(Fields.MISS_COUNT, missCount);
+        builder.field(Fields.COLLAPSED_COUNT, collapsedCount);
+        builder.field(Fields.EVICTIONS, evictionCount);
+        builder.endObject();
+        return builder;
+    }
+
+    static final class Fields {
+        static final XContentBuilderString SEARCH_CACHE = new XContentBuilderString("search_cache");
+        static final XContentBuilderString SIZE = new XContentBuilderString("size");
+        static final XContentBuilderString HIT_COUNT = new XContentBuilderString("hit_count");
+        static final XContentBuilderString MISS_COUNT = new XContentBuilderString("miss_count");
+        static final XContentBuilderString COLLAPSED_COUNT = new XContentBuilderString("collapsed_count");
+        static final XContentBuilderString EVICTIONS = new XContentBuilderString("evictions");
+    }
+}
@@ -104,6 +104,27 @@ public class SearchRequest extends ActionRequest<SearchRequest> {
         this.source = new BytesArray(source);
     }
 
+    /**
+     * Copy constructor, the copy shares the indices, types and source of the given request.
+     */
+    public SearchRequest(SearchRequest request) {
+        super(request);
+        listenerThreaded(request.listenerThreaded());
+        this.searchType = request.searchType;
+        this.indices = request.indices;
+        this.queryHint = request.queryHint;
+        this.routing = request.routing;
+        this.preference = request.preference;
+        this.source = request.source;
+        this.sourceUnsafe = request.sourceUnsafe;
+        this.extraSource = request.extraSource;
+        this.extraSourceUnsafe = request.extraSourceUnsafe;
+        this.scroll = request.scroll;
+        this.types = request.types;
+        this.operationThreading = request.operationThreading;
+        this.ignoreIndices = request.ignoreIndices;
+    }
+
     @Override
     public ActionRequestValidationException validate() {
         ActionRequestValidationException validationException = null;
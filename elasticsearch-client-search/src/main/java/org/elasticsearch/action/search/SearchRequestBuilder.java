@@ -32,6 +32,7 @@ import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.builder.SearchTemplate;
 import org.elasticsearch.search.facet.AbstractFacetBuilder;
 import org.elasticsearch.search.highlight.HighlightBuilder;
 import org.elasticsearch.search.sort.SortBuilder;
@@ -694,6 +695,25 @@ public class SearchRequestBuilder extends ActionRequestBuilder<SearchRequest, Se
         return this;
     }
 
+    /**
+     * Sets the source of the request by rendering a precompiled search template with the
+     * given parameters. Note, settings anything other than the search type will cause this
+     * source to be overridden.
+     */
+    public SearchRequestBuilder setSource(SearchTemplate template, Map<String, ?> params) {
+        request.source(template.render(params), false);
+        return this;
+    }
+
+    /**
+     * Sets the source of the request by rendering a precompiled search template with the
+     * parameter values given in the order of {@link SearchTemplate#names()}.
+     */
+    public SearchRequestBuilder setSource(SearchTemplate template, Object... values) {
+        request.source(template.render(values), false);
+        return this;
+    }
+
     /**
      * Sets the source of the request as a json string. Allows to set other parameters.
      */
@@ -0,0 +1,298 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.SearchClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client side cache of search responses. Requests are identified by their indices, types,
+ * routing, preference, search type and source bytes. Concurrent identical requests are
+ * collapsed into a single request to the cluster.
+ * <p/>
+ * Entries expire after <tt>search.cache.expire</tt> or <tt>search.cache.refresh_interval</tt>,
+ * whichever is shorter, since a search can not see changes before the next index refresh
+ * anyway. Writes made through the owning client should call {@link #invalidate(String...)}.
+ * Note that invalidation matches the index names as given in the requests, so searches on
+ * aliases are only invalidated by writes addressed to the same alias, or by expiry.
+ * <p/>
+ * A cached response, including the source maps of its hits, is handed to every caller of the
+ * same search, so responses must be treated as read only.
+ */
+public class SearchResponseCache {
+
+    private final SearchClient client;
+
+    private final Cache<Key, SearchResponse> cache;
+
+    private final ConcurrentMap<Key, PendingSearch> inflight = ConcurrentCollections.newConcurrentMap();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong collapsedCount = new AtomicLong();
+
+    public SearchResponseCache(SearchClient client, Settings settings) {
+        this.client = client;
+        long size = settings.getAsLong("search.cache.size", 1000L);
+        TimeValue expire = settings.getAsTime("search.cache.expire", TimeValue.timeValueMinutes(1));
+        TimeValue refreshInterval = settings.getAsTime("search.cache.refresh_interval", TimeValue.timeValueSeconds(1));
+        long expireMillis = expire.millis();
+        if (refreshInterval.millis() > 0 && refreshInterval.millis() < expireMillis) {
+            expireMillis = refreshInterval.millis();
+        }
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(expireMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Executes the search, answering from the cache or by joining an identical in-flight
+     * search if possible.
+     */
+    public void search(SearchRequest request, ActionListener<SearchResponse> listener) {
+        if (!cacheable(request)) {
+            client.search(request, listener);
+            return;
+        }
+        Key key = new Key(request);
+        SearchResponse response = cache.getIfPresent(key);
+        if (response != null) {
+            hitCount.incrementAndGet();
+            listener.onResponse(response);
+            return;
+        }
+        PendingSearch pending = new PendingSearch(key, generation.get());
+        PendingSearch existing = inflight.putIfAbsent(key, pending);
+        if (existing != null) {
+            collapsedCount.incrementAndGet();
+            existing.addListener(listener);
+            return;
+        }
+        missCount.incrementAndGet();
+        pending.addListener(listener);
+        try {
+            client.search(request, pending);
+        } catch (Throwable e) {
+            // otherwise the search stays registered and every later identical search waits on it forever
+            pending.onFailure(e);
+        }
+    }
+
+    /**
+     * Invalidates all cached responses of searches on the given indices. Searches without
+     * explicit indices, and all searches if no index is given, are invalidated as well.
+     */
+    public void invalidate(String... indices) {
+        generation.incrementAndGet();
+        if (indices == null || indices.length == 0) {
+            cache.invalidateAll();
+            return;
+        }
+        for (Iterator<Key> it = cache.asMap().keySet().iterator(); it.hasNext(); ) {
+            if (it.next().matches(indices)) {
+                it.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public SearchCacheStats stats() {
+        return new SearchCacheStats(cache.size(), hitCount.get(), missCount.get(), collapsedCount.get(),
+                cache.stats().evictionCount());
+    }
+
+    private boolean cacheable(SearchRequest request) {
+        return request.scroll() == null && request.searchType() != SearchType.SCAN;
+    }
+
+    private class PendingSearch implements ActionListener<SearchResponse> {
+
+        private final Key key;
+
+        private final long generation;
+
+        private final List<ActionListener<SearchResponse>> listeners = new ArrayList<ActionListener<SearchResponse>>(2);
+
+        private boolean done;
+
+        private SearchResponse response;
+
+        private Throwable failure;
+
+        PendingSearch(Key key, long generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+
+        void addListener(ActionListener<SearchResponse> listener) {
+            synchronized (this) {
+                if (!done) {
+                    listeners.add(listener);
+                    return;
+                }
+            }
+            // completed between the lookup in the in-flight map and now
+            if (failure != null) {
+                listener.onFailure(failure);
+            } else {
+                listener.onResponse(response);
+            }
+        }
+
+        @Override
+        public void onResponse(SearchResponse response) {
+            // do not cache a response that may predate a write made through this client
+            if (generation == SearchResponseCache.this.generation.get()) {
+                cache.put(key, response);
+            }
+            for (ActionListener<SearchResponse> listener : complete(response, null)) {
+                listener.onResponse(response);
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            for (ActionListener<SearchResponse> listener : complete(null, e)) {
+                listener.onFailure(e);
+            }
+        }
+
+        private synchronized List<ActionListener<SearchResponse>> complete(SearchResponse response, Throwable failure) {
+            if (done) {
+                // already completed, e.g. the client failed after notifying its listener
+                return Collections.<ActionListener<SearchResponse>>emptyList();
+            }
+            this.response = response;
+            this.failure = failure;
+            this.done = true;
+            inflight.remove(key, this);
+            return listeners;
+        }
+    }
+
+    static final class Key {
+
+        private final String[] indices;
+
+        private final String[] types;
+
+        private final String routing;
+
+        private final String preference;
+
+        private final SearchType searchType;
+
+        private final BytesArray source;
+
+        private final BytesArray extraSource;
+
+        private final int hashCode;
+
+        Key(SearchRequest request) {
+            this.indices = request.indices();
+            this.types = request.types();
+            this.routing = request.routing();
+            this.preference = request.preference();
+            this.searchType = request.searchType();
+            // the source may be an unsafe reference into a reused buffer
+            this.source = copy(request.source());
+            this.extraSource = copy(request.extraSource());
+            int result = Arrays.hashCode(indices);
+            result = 31 * result + Arrays.hashCode(types);
+            result = 31 * result + (routing != null ? routing.hashCode() : 0);
+            result = 31 * result + (preference != null ? preference.hashCode() : 0);
+            result = 31 * result + (searchType != null ? searchType.hashCode() : 0);
+            result = 31 * result + (source != null ? source.hashCode() : 0);
+            result = 31 * result + (extraSource != null ? extraSource.hashCode() : 0);
+            this.hashCode = result;
+        }
+
+        boolean matches(String[] writtenIndices) {
+            if (indices == null || indices.length == 0) {
+                return true;
+            }
+            for (String index : indices) {
+                if ("_all".equals(index) || index.indexOf('*') >= 0) {
+                    return true;
+                }
+                for (String writtenIndex : writtenIndices) {
+                    if (index.equals(writtenIndex)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static BytesArray copy(BytesReference bytes) {
+            return bytes == null ? null : bytes.copyBytesArray();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hashCode == key.hashCode
+                    && searchType == key.searchType
+                    && Arrays.equals(indices, key.indices)
+                    && Arrays.equals(types, key.types)
+                    && (routing != null ? routing.equals(key.routing) : key.routing == null)
+                    && (preference != null ? preference.equals(key.preference) : key.preference == null)
+                    && (source != null ? key.source != null && source.bytesEquals(key.source) : key.source == null)
+                    && (extraSource != null ? key.extraSource != null && extraSource.bytesEquals(key.extraSource) : key.extraSource == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
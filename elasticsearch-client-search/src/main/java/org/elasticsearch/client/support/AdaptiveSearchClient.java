@@ -0,0 +1,171 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.client.support;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.action.support.AdaptiveReplicaSelector;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.client.GenericClient;
+import org.elasticsearch.client.SearchClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A search client that steers searches without a <tt>preference</tt> to the node expected to
+ * answer the fastest (<tt>_prefer_node</tt>), as ranked by an {@link AdaptiveReplicaSelector}.
+ * The nodes are learned from the shard targets of the responses, or can be set on the
+ * {@link #selector()}, for example from the cluster state. All other actions are passed to
+ * the wrapped client.
+ */
+public class AdaptiveSearchClient extends AbstractSearchClient {
+
+    private final SearchClient client;
+
+    private final AdaptiveReplicaSelector selector;
+
+    public AdaptiveSearchClient(SearchClient client) {
+        this(client, new AdaptiveReplicaSelector(client.settings()));
+    }
+
+    /**
+     * Creates a client sharing the selector, for example with an <tt>AdaptiveIngestClient</tt>
+     * on the same cluster.
+     */
+    public AdaptiveSearchClient(SearchClient client, AdaptiveReplicaSelector selector) {
+        this.client = client;
+        this.selector = selector;
+    }
+
+    public AdaptiveReplicaSelector selector() {
+        return selector;
+    }
+
+    public Settings settings() {
+        return client.settings();
+    }
+
+    public ThreadPool threadPool() {
+        return client.threadPool();
+    }
+
+    public void close() {
+        client.close();
+    }
+
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>, Client extends GenericClient>
+            ActionFuture<Response> execute(Action<Request, Response, RequestBuilder, Client> action, Request request) {
+        PlainActionFuture<Response> future = PlainActionFuture.newFuture();
+        execute(action, request, future);
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>, Client extends GenericClient>
+            void execute(Action<Request, Response, RequestBuilder, Client> action, Request request, ActionListener<Response> listener) {
+        if (action == SearchAction.INSTANCE) {
+            search((SearchRequest) request, (ActionListener<SearchResponse>) listener);
+        } else {
+            client.execute(action, request, listener);
+        }
+    }
+
+    @Override
+    public void search(SearchRequest request, final ActionListener<SearchResponse> listener) {
+        final String nodeId = request.preference() == null ? selector.select() : null;
+        if (nodeId == null) {
+            client.search(request, new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse response) {
+                    learnNodes(response);
+                    listener.onResponse(response);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    listener.onFailure(e);
+                }
+            });
+            return;
+        }
+        // the preference is set on a copy, so a retried or reused request is selected for again
+        SearchRequest preferred = new SearchRequest(request).preference("_prefer_node:" + nodeId);
+        selector.started(nodeId);
+        final long start = System.nanoTime();
+        final AtomicBoolean done = new AtomicBoolean();
+        try {
+            client.search(preferred, new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse response) {
+                    if (done.compareAndSet(false, true)) {
+                        selector.finished(nodeId, System.nanoTime() - start);
+                    }
+                    learnNodes(response);
+                    listener.onResponse(response);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    if (done.compareAndSet(false, true)) {
+                        selector.failed(nodeId);
+                    }
+                    listener.onFailure(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            // the request was not sent, it is not outstanding anymore
+            if (done.compareAndSet(false, true)) {
+                selector.cancelled(nodeId);
+            }
+            throw e;
+        }
+    }
+
+    private void learnNodes(SearchResponse response) {
+        if (response.hits() != null) {
+            for (SearchHit hit : response.hits().hits()) {
+                learnNode(hit.shard());
+            }
+        }
+        if (response.shardFailures() != null) {
+            for (ShardSearchFailure failure : response.shardFailures()) {
+                learnNode(failure.shard());
+            }
+        }
+    }
+
+    private void learnNode(SearchShardTarget shardTarget) {
+        if (shardTarget != null) {
+            selector.addNode(shardTarget.nodeId());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.client.support;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.GenericAction;
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.action.search.SearchCacheStats;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponseCache;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.action.support.replication.IndexReplicationOperationRequest;
+import org.elasticsearch.action.support.replication.IndicesReplicationOperationRequest;
+import org.elasticsearch.action.support.replication.ShardReplicationOperationRequest;
+import org.elasticsearch.action.support.single.instance.InstanceShardOperationRequest;
+import org.elasticsearch.client.GenericClient;
+import org.elasticsearch.client.SearchClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * A search client that answers repeated searches from a {@link SearchResponseCache}
+ * and passes all other actions to the wrapped client. Writes (index, delete, update,
+ * delete by query and bulk) executed through this client invalidate the searches on the
+ * indices they write to, bulk requests invalidate all searches.
+ */
+public class CachingSearchClient extends AbstractSearchClient {
+
+    private static final String BULK = "bulk";
+
+    private final SearchClient client;
+
+    private final SearchResponseCache cache;
+
+    public CachingSearchClient(SearchClient client) {
+        this(client, client.settings());
+    }
+
+    public CachingSearchClient(SearchClient client, Settings settings) {
+        this.client = client;
+        this.cache = new SearchResponseCache(client, settings);
+    }
+
+    /**
+     * Invalidates cached searches on the given indices, to be called after writing to
+     * them with another client.
+     */
+    public CachingSearchClient invalidate(String... indices) {
+        cache.invalidate(indices);
+        return this;
+    }
+
+    public SearchCacheStats cacheStats() {
+        return cache.stats();
+    }
+
+    public Settings settings() {
+        return client.settings();
+    }
+
+    public ThreadPool threadPool() {
+        return client.threadPool();
+    }
+
+    public void close() {
+        cache.clear();
+        client.close();
+    }
+
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>, Client extends GenericClient>
+            ActionFuture<Response> execute(Action<Request, Response, RequestBuilder, Client> action, Request request) {
+        PlainActionFuture<Response> future = PlainActionFuture.newFuture();
+        execute(action, request, future);
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>, Client extends GenericClient>
+            void execute(Action<Request, Response, RequestBuilder, Client> action, Request request, final ActionListener<Response> listener) {
+        if (action == SearchAction.INSTANCE) {
+            cache.search((SearchRequest) request, (ActionListener<SearchResponse>) listener);
+            return;
+        }
+        final String[] indices = written(action, request);
+        if (indices == null) {
+            client.execute(action, request, listener);
+            return;
+        }
+        cache.invalidate(indices);
+        client.execute(action, request, new ActionListener<Response>() {
+            @Override
+            public void onResponse(Response response) {
+                // searches that ran while writing may have cached the old state
+                cache.invalidate(indices);
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                cache.invalidate(indices);
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * The indices the action writes to, an empty array for all indices, or <tt>null</tt> if it
+     * does not write.
+     */
+    private static String[] written(GenericAction action, ActionRequest request) {
+        if (request instanceof ShardReplicationOperationRequest) {
+            return new String[]{((ShardReplicationOperationRequest) request).index()};
+        }
+        if (request instanceof IndexReplicationOperationRequest) {
+            return new String[]{((IndexReplicationOperationRequest) request).index()};
+        }
+        if (request instanceof IndicesReplicationOperationRequest) {
+            String[] indices = ((IndicesReplicationOperationRequest) request).indices();
+            return indices == null ? Strings.EMPTY_ARRAY : indices;
+        }
+        if (request instanceof InstanceShardOperationRequest) {
+            return new String[]{((InstanceShardOperationRequest) request).index()};
+        }
+        if (BULK.equals(action.name())) {
+            // the bulk request lives in the ingest module, its indices are not known here
+            return Strings.EMPTY_ARRAY;
+        }
+        return null;
+    }
+}
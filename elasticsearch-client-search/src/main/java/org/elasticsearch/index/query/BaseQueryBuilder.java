@@ -49,9 +49,13 @@ public abstract class BaseQueryBuilder implements QueryBuilder {
 
     public BytesReference buildAsBytes(XContentType contentType) throws QueryBuilderException {
         try {
-            XContentBuilder builder = XContentFactory.contentBuilder(contentType);
-            toXContent(builder, EMPTY_PARAMS);
-            return builder.bytes();
+            XContentBuilder builder = XContentFactory.cachedContentBuilder(contentType);
+            try {
+                toXContent(builder, EMPTY_PARAMS);
+                return builder.copyBytes();
+            } finally {
+                builder.release();
+            }
         } catch (Exception e) {
             throw new QueryBuilderException("Failed to build query", e);
         }
@@ -24,6 +24,7 @@ import org.elasticsearch.ElasticSearchParseException;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.support.LazySource;
 import org.elasticsearch.search.highlight.HighlightField;
 
 import java.util.Map;
@@ -122,10 +123,17 @@ public interface SearchHit extends Streamable, ToXContent, Iterable<SearchHitFie
     String getSourceAsString();
 
     /**
-     * The source of the document as a map (can be <tt>null</tt>).
+     * The source of the document as a map (can be <tt>null</tt>). The values are parsed when
+     * they are read, see {@link #lazySource()}.
      */
     Map<String, Object> sourceAsMap() throws ElasticSearchParseException;
 
+    /**
+     * The source of the document as a map that only parses the values that are read, with typed
+     * accessors for paths (can be <tt>null</tt>).
+     */
+    LazySource lazySource() throws ElasticSearchParseException;
+
     /**
      * If enabled, the explanation of the search hit.
      */
@@ -552,9 +552,13 @@ public class SearchSourceBuilder implements ToXContent {
 
     public BytesReference buildAsBytes(XContentType contentType) throws SearchSourceBuilderException {
         try {
-            XContentBuilder builder = XContentFactory.contentBuilder(contentType);
-            toXContent(builder, ToXContent.EMPTY_PARAMS);
-            return builder.bytes();
+            XContentBuilder builder = XContentFactory.cachedContentBuilder(contentType);
+            try {
+                toXContent(builder, ToXContent.EMPTY_PARAMS);
+                return builder.copyBytes();
+            } finally {
+                builder.release();
+            }
         } catch (Exception e) {
             throw new SearchSourceBuilderException("Failed to build search source", e);
         }
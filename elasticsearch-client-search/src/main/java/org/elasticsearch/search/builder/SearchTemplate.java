@@ -0,0 +1,297 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.builder;
+
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A precompiled search source with named parameters. The search source is serialized
+ * once as JSON, the positions of the parameter placeholders are recorded, and each
+ * {@link #render(java.util.Map)} only copies the static fragments and writes the
+ * parameter values in between.
+ * <p/>
+ * Placeholders are created using {@link #param(String)} and can be used wherever the
+ * builders accept a string, for example <tt>termQuery("user", param("user"))</tt>. The
+ * complete quoted placeholder string is replaced by the JSON value of the parameter, so
+ * a parameter can be bound to a string, a number, a boolean, <tt>null</tt>, a map, a
+ * list, an array or a {@link ToXContent} (such as a query builder).
+ */
+public class SearchTemplate {
+
+    private static final String PLACEHOLDER_START = "{{";
+
+    private static final String PLACEHOLDER_END = "}}";
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    /**
+     * Returns the placeholder string for the parameter with the given name.
+     */
+    public static String param(String name) {
+        if (!validName(name)) {
+            throw new ElasticSearchIllegalArgumentException("illegal template parameter name [" + name + "]");
+        }
+        return PLACEHOLDER_START + name + PLACEHOLDER_END;
+    }
+
+    /**
+     * Compiles the search source into a template.
+     */
+    public static SearchTemplate compile(SearchSourceBuilder sourceBuilder) throws SearchSourceBuilderException {
+        return compile(sourceBuilder.buildAsBytes(XContentType.JSON));
+    }
+
+    /**
+     * Compiles a JSON search source containing <tt>"{{name}}"</tt> placeholders into a template.
+     */
+    public static SearchTemplate compile(BytesReference jsonSource) {
+        byte[] source = jsonSource.toBytes();
+        List<String> names = new ArrayList<String>();
+        List<byte[]> fragments = new ArrayList<byte[]>();
+        List<Integer> slots = new ArrayList<Integer>();
+        int fragmentStart = 0;
+        int i = 0;
+        while (i < source.length) {
+            if (source[i] == '"') {
+                int end = placeholderEnd(source, i);
+                if (end > 0) {
+                    String name = new String(source, i + 3, end - i - 6);
+                    int slot = names.indexOf(name);
+                    if (slot < 0) {
+                        slot = names.size();
+                        names.add(name);
+                    }
+                    fragments.add(Arrays.copyOfRange(source, fragmentStart, i));
+                    slots.add(slot);
+                    fragmentStart = end;
+                    i = end;
+                    continue;
+                }
+                // skip the string, honoring escapes
+                i++;
+                while (i < source.length && source[i] != '"') {
+                    if (source[i] == '\\') {
+                        i++;
+                    }
+                    i++;
+                }
+            }
+            i++;
+        }
+        fragments.add(Arrays.copyOfRange(source, fragmentStart, source.length));
+        int[] slotArray = new int[slots.size()];
+        int staticLength = 0;
+        for (int j = 0; j < slotArray.length; j++) {
+            slotArray[j] = slots.get(j);
+        }
+        for (byte[] fragment : fragments) {
+            staticLength += fragment.length;
+        }
+        return new SearchTemplate(names.toArray(new String[names.size()]),
+                fragments.toArray(new byte[fragments.size()][]), slotArray, staticLength);
+    }
+
+    private final String[] names;
+
+    private final byte[][] fragments;
+
+    private final int[] slots;
+
+    private final int staticLength;
+
+    private SearchTemplate(String[] names, byte[][] fragments, int[] slots, int staticLength) {
+        this.names = names;
+        this.fragments = fragments;
+        this.slots = slots;
+        this.staticLength = staticLength;
+    }
+
+    /**
+     * The parameter names of this template, in order of their first occurrence.
+     */
+    public String[] names() {
+        return names;
+    }
+
+    /**
+     * Renders the template, looking up the parameter values by name. Missing parameters
+     * are rendered as <tt>null</tt>.
+     */
+    public BytesReference render(Map<String, ?> params) {
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = params.get(names[i]);
+        }
+        return renderValues(values);
+    }
+
+    /**
+     * Renders the template using the values in the order of {@link #names()}.
+     */
+    public BytesReference render(Object... values) {
+        if (values.length != names.length) {
+            throw new ElasticSearchIllegalArgumentException("template expects " + names.length + " parameters, got " + values.length);
+        }
+        return renderValues(values);
+    }
+
+    private BytesReference renderValues(Object[] values) {
+        BytesStreamOutput out = new BytesStreamOutput(staticLength + 16 * slots.length);
+        try {
+            for (int i = 0; i < slots.length; i++) {
+                out.writeBytes(fragments[i]);
+                writeValue(out, values[slots[i]]);
+            }
+            out.writeBytes(fragments[slots.length]);
+        } catch (IOException e) {
+            throw new SearchSourceBuilderException("Failed to render search template", e);
+        }
+        return out.bytes();
+    }
+
+    private static void writeValue(BytesStreamOutput out, Object value) throws IOException {
+        if (value == null) {
+            writeAscii(out, "null");
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeAscii(out, value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                throw new ElasticSearchIllegalArgumentException("can not bind non finite number [" + value + "]");
+            }
+            writeAscii(out, value.toString());
+        } else if (value instanceof Boolean) {
+            writeAscii(out, ((Boolean) value) ? "true" : "false");
+        } else {
+            XContentBuilder builder = XContentFactory.jsonBuilder();
+            if (value instanceof ToXContent) {
+                ((ToXContent) value).toXContent(builder, ToXContent.EMPTY_PARAMS);
+            } else {
+                builder.value(value);
+            }
+            builder.bytes().writeTo(out);
+        }
+    }
+
+    private static void writeAscii(BytesStreamOutput out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            out.writeByte((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a quoted and escaped JSON string encoded as UTF-8.
+     */
+    private static void writeString(BytesStreamOutput out, String value) throws IOException {
+        out.writeByte((byte) '"');
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            int c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    out.writeByte((byte) '\\');
+                    out.writeByte((byte) c);
+                } else if (c < 0x20) {
+                    out.writeByte((byte) '\\');
+                    out.writeByte((byte) 'u');
+                    out.writeByte((byte) '0');
+                    out.writeByte((byte) '0');
+                    out.writeByte(HEX[c >> 4]);
+                    out.writeByte(HEX[c & 0xF]);
+                } else {
+                    out.writeByte((byte) c);
+                }
+            } else if (c < 0x800) {
+                out.writeByte((byte) (0xC0 | (c >> 6)));
+                out.writeByte((byte) (0x80 | (c & 0x3F)));
+            } else if (c >= 0xD800 && c <= 0xDBFF && i + 1 < len
+                    && value.charAt(i + 1) >= 0xDC00 && value.charAt(i + 1) <= 0xDFFF) {
+                int cp = Character.toCodePoint((char) c, value.charAt(++i));
+                out.writeByte((byte) (0xF0 | (cp >> 18)));
+                out.writeByte((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.writeByte((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.writeByte((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                out.writeByte((byte) (0xE0 | (c >> 12)));
+                out.writeByte((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.writeByte((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        out.writeByte((byte) '"');
+    }
+
+    /**
+     * Returns the index after the closing quote if a quoted placeholder starts at the
+     * given position, or <tt>-1</tt> otherwise.
+     */
+    private static int placeholderEnd(byte[] source, int quote) {
+        int i = quote + 1;
+        if (i + 1 >= source.length || source[i] != '{' || source[i + 1] != '{') {
+            return -1;
+        }
+        i += 2;
+        int nameStart = i;
+        while (i < source.length && validNameChar(source[i])) {
+            i++;
+        }
+        if (i == nameStart || i + 2 >= source.length
+                || source[i] != '}' || source[i + 1] != '}' || source[i + 2] != '"') {
+            return -1;
+        }
+        return i + 3;
+    }
+
+    private static boolean validName(String name) {
+        if (name == null || name.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c > 0x7F || !validNameChar((byte) c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean validNameChar(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+                || b == '_' || b == '-' || b == '.';
+    }
+
+    @Override
+    public String toString() {
+        return renderValues(new Object[names.length]).toUtf8();
+    }
+}
@@ -45,6 +45,7 @@ import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.support.LazySource;
 import static org.elasticsearch.search.SearchShardTarget.readSearchShardTarget;
 import static org.elasticsearch.search.highlight.HighlightField.readHighlightField;
 import static org.elasticsearch.search.internal.InternalSearchHitField.readSearchHitField;
@@ -85,7 +86,7 @@ public class InternalSearchHit implements SearchHit {
     @Nullable
     private SearchShardTarget shard;
 
-    private Map<String, Object> sourceAsMap;
+    private LazySource sourceAsMap;
     private byte[] sourceAsBytes;
 
     private InternalSearchHit() {
@@ -233,15 +234,18 @@ public class InternalSearchHit implements SearchHit {
     @SuppressWarnings({"unchecked"})
     
     public Map<String, Object> sourceAsMap() throws ElasticSearchParseException {
+        return lazySource();
+    }
+
+    
+    public LazySource lazySource() throws ElasticSearchParseException {
         if (source == null) {
             return null;
         }
         if (sourceAsMap != null) {
             return sourceAsMap;
         }
-
-        sourceAsMap = //SourceLookup.sourceAsMap(source);
-                XContentHelper.convertToMap(source, false).v2();
+        sourceAsMap = new LazySource(source);
         return sourceAsMap;
     }
 
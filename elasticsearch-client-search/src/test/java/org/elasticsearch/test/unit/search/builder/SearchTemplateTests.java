@@ -0,0 +1,193 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.search.builder;
+
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.builder.SearchTemplate;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.search.builder.SearchSourceBuilder.searchSource;
+import static org.elasticsearch.search.builder.SearchTemplate.param;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.testng.Assert.fail;
+
+/**
+ */
+@Test
+public class SearchTemplateTests {
+
+    @Test
+    public void testParam() {
+        assertThat(param("user.name-1_x"), equalTo("{{user.name-1_x}}"));
+        for (String name : new String[]{null, "", "a b", "a\"b", "a}}", "\u00e9"}) {
+            try {
+                param(name);
+                fail("expected failure for [" + name + "]");
+            } catch (ElasticSearchIllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testWithoutPlaceholders() {
+        String source = "{\"query\":{\"term\":{\"user\":\"{{not closed\"}},\"size\":10,\"x\":\"{{}}\",\"y\":\"{{a b}}\"}";
+        SearchTemplate template = compile(source);
+        assertThat(template.names().length, equalTo(0));
+        assertThat(template.render().toUtf8(), equalTo(source));
+        assertThat(template.render(new HashMap<String, Object>()).toUtf8(), equalTo(source));
+        assertThat(template.toString(), equalTo(source));
+    }
+
+    @Test
+    public void testRepeatedPlaceholders() {
+        SearchTemplate template = compile("{\"a\":\"{{x}}\",\"b\":[\"{{y}}\",\"{{x}}\"],\"c\":\"{{x}}\"}");
+        assertThat(Arrays.asList(template.names()), equalTo(Arrays.asList("x", "y")));
+        assertThat(template.render("1", 2).toUtf8(), equalTo("{\"a\":\"1\",\"b\":[2,\"1\"],\"c\":\"1\"}"));
+    }
+
+    @Test
+    public void testAdjacentPlaceholders() {
+        SearchTemplate template = compile("[\"{{a}}\",\"{{b}}\"]");
+        assertThat(template.render(1, 2).toUtf8(), equalTo("[1,2]"));
+
+        // two placeholders sharing one string are not a quoted placeholder and stay as they are
+        template = compile("{\"a\":\"{{a}}{{b}}\",\"b\":\"x{{a}}\",\"c\":\"{{a}}x\"}");
+        assertThat(template.names().length, equalTo(0));
+
+        // neither do placeholders following an escaped quote inside a string
+        template = compile("{\"a\":\"\\\"{{a}}\\\"\",\"b\":\"\\\\\",\"c\":\"{{c}}\"}");
+        assertThat(Arrays.asList(template.names()), equalTo(Arrays.asList("c")));
+        assertThat(template.render(true).toUtf8(), equalTo("{\"a\":\"\\\"{{a}}\\\"\",\"b\":\"\\\\\",\"c\":true}"));
+    }
+
+    @Test
+    public void testMissingAndExtraParameters() {
+        SearchTemplate template = compile("{\"a\":\"{{a}}\",\"b\":\"{{b}}\"}");
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("a", "x");
+        params.put("c", "ignored");
+        assertThat(template.render(params).toUtf8(), equalTo("{\"a\":\"x\",\"b\":null}"));
+        assertThat(template.toString(), equalTo("{\"a\":null,\"b\":null}"));
+
+        try {
+            template.render("x");
+            fail("expected failure for a missing parameter");
+        } catch (ElasticSearchIllegalArgumentException e) {
+            // expected
+        }
+        try {
+            template.render("x", "y", "z");
+            fail("expected failure for an extra parameter");
+        } catch (ElasticSearchIllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStringEscaping() throws Exception {
+        SearchTemplate template = compile("{\"v\":\"{{v}}\"}");
+        assertThat(template.render("a\"b\\c/d").toUtf8(), equalTo("{\"v\":\"a\\\"b\\\\c/d\"}"));
+        assertThat(template.render("\n\t\r\u0000\u001f\u007f").toUtf8(),
+                equalTo("{\"v\":\"\\u000a\\u0009\\u000d\\u0000\\u001f\u007f\"}"));
+
+        String[] values = new String[]{"", "plain", "quote\" backslash\\ slash/", "line\nbreak\ttab\r\u0000\u0001\u001f",
+                "caf\u00e9 \u20ac \u4e2d\u6587", "surrogate \ud83d\ude00 pair", "\"{{v}}\""};
+        for (String value : values) {
+            BytesReference rendered = template.render(value);
+            assertThat(value, parse(rendered).get("v"), equalTo((Object) value));
+        }
+    }
+
+    @Test
+    public void testNonStringValues() throws Exception {
+        SearchTemplate template = compile("{\"v\":\"{{v}}\"}");
+        assertThat(template.render(1).toUtf8(), equalTo("{\"v\":1}"));
+        assertThat(template.render(-5L).toUtf8(), equalTo("{\"v\":-5}"));
+        assertThat(template.render((short) 3).toUtf8(), equalTo("{\"v\":3}"));
+        assertThat(template.render(1.5).toUtf8(), equalTo("{\"v\":1.5}"));
+        assertThat(template.render(2.5f).toUtf8(), equalTo("{\"v\":2.5}"));
+        assertThat(template.render(true).toUtf8(), equalTo("{\"v\":true}"));
+        assertThat(template.render(false).toUtf8(), equalTo("{\"v\":false}"));
+        assertThat(template.render(new Object[]{null}).toUtf8(), equalTo("{\"v\":null}"));
+        assertThat(parse(template.render(Arrays.asList("a", 1))).get("v"), equalTo((Object) Arrays.asList("a", 1)));
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("k", "v\"");
+        assertThat(parse(template.render(new Object[]{map})).get("v"), equalTo((Object) map));
+        assertThat(parse(template.render(new Object[]{new String[]{"a", "b"}})).get("v"), equalTo((Object) Arrays.asList("a", "b")));
+
+        for (Object value : new Object[]{Double.NaN, Double.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY}) {
+            try {
+                template.render(value);
+                fail("expected failure for [" + value + "]");
+            } catch (ElasticSearchIllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRenderedSourceParses() throws Exception {
+        SearchTemplate template = compile("{\"query\":{\"terms\":{\"tags\":\"{{tags}}\"}},\"from\":\"{{from}}\",\"size\":\"{{size}}\"}");
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("tags", Arrays.asList("x", "y"));
+        params.put("from", 10);
+        Map<String, Object> source = parse(template.render(params));
+        assertThat(source.get("from"), equalTo((Object) 10));
+        assertThat(source.get("size"), nullValue());
+        assertThat(((Map<?, ?>) ((Map<?, ?>) source.get("query")).get("terms")).get("tags"), equalTo((Object) Arrays.asList("x", "y")));
+    }
+
+    @Test
+    public void testCompileSearchSource() throws Exception {
+        SearchTemplate template = SearchTemplate.compile(searchSource()
+                .query(boolQuery().must(termQuery("user", param("user"))).should(termQuery("tag", param("user")))));
+        assertThat(Arrays.asList(template.names()), equalTo(Arrays.asList("user")));
+        Map<String, Object> source = parse(template.render("a \"b\""));
+        Map<?, ?> bool = (Map<?, ?>) ((Map<?, ?>) source.get("query")).get("bool");
+        assertThat(bool.get("must"), equalTo((Object) parse(new BytesArray("{\"term\":{\"user\":\"a \\\"b\\\"\"}}"))));
+        assertThat(bool.get("should"), equalTo((Object) parse(new BytesArray("{\"term\":{\"tag\":\"a \\\"b\\\"\"}}"))));
+    }
+
+    private static SearchTemplate compile(String source) {
+        return SearchTemplate.compile(new BytesArray(source));
+    }
+
+    private static Map<String, Object> parse(BytesReference source) {
+        Tuple<XContentType, Map<String, Object>> tuple = XContentHelper.convertToMap(source, false);
+        assertThat(tuple.v1(), equalTo(XContentType.JSON));
+        return tuple.v2();
+    }
+}
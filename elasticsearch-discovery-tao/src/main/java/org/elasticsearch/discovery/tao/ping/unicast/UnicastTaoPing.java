@@ -49,6 +49,7 @@ import org.elasticsearch.transport.client.ClientTransportService;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -59,7 +60,16 @@ import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.new
 import static org.elasticsearch.discovery.tao.ping.TaoPing.PingResponse.readPingResponse;
 
 /**
- *
+ * Pings the nodes at the configured unicast hosts (<tt>discovery.tao.ping.unicast.hosts</tt>).
+ * <p/>
+ * By default, the hosts are pinged in two rounds over the ping timeout, with at most
+ * <tt>discovery.tao.ping.unicast.concurrent_connects</tt> connects at a time, and the
+ * connections are closed afterwards. With <tt>discovery.tao.ping.unicast.parallel</tt> set, all
+ * hosts are connected to and pinged at once, each within <tt>discovery.tao.ping.unicast.host_timeout</tt>
+ * (defaults to the ping timeout), and the ping completes as soon as
+ * <tt>discovery.tao.ping.unicast.quorum</tt> hosts (defaults to a majority) answered for the
+ * cluster. The connections to the hosts that answered are then kept for the nodes found on them
+ * (<tt>discovery.tao.ping.unicast.reuse_connections</tt>, defaults to <tt>true</tt>).
  */
 public class UnicastTaoPing implements TaoPing {
 
@@ -77,6 +87,14 @@ public class UnicastTaoPing implements TaoPing {
     
     private final int concurrentConnects;
 
+    private final boolean parallel;
+
+    private final int quorum;
+
+    private final TimeValue hostTimeout;
+
+    private final boolean reuseConnections;
+
     private final DiscoveryNode[] nodes;
 
     //private volatile DiscoveryNodesProvider nodesProvider;
@@ -110,6 +128,10 @@ public class UnicastTaoPing implements TaoPing {
         }
 
         this.concurrentConnects = settings.getAsInt("discovery.tao.ping.unicast.concurrent_connects", 10);
+        this.parallel = settings.getAsBoolean("discovery.tao.ping.unicast.parallel", false);
+        this.quorum = settings.getAsInt("discovery.tao.ping.unicast.quorum", -1);
+        this.hostTimeout = settings.getAsTime("discovery.tao.ping.unicast.host_timeout", null);
+        this.reuseConnections = settings.getAsBoolean("discovery.tao.ping.unicast.reuse_connections", true);
         String[] hostArr = settings.getAsArray("discovery.tao.ping.unicast.hosts");
         // trim the hosts
         for (int i = 0; i < hostArr.length; i++) {
@@ -175,6 +197,10 @@ public class UnicastTaoPing implements TaoPing {
 
     
     public void ping(final PingListener listener, final TimeValue timeout) throws ElasticSearchException {
+        if (parallel) {
+            new ParallelPing(pingIdGenerator.incrementAndGet(), listener, timeout).start();
+            return;
+        }
         final SendPingsHandler sendPingsHandler = new SendPingsHandler(pingIdGenerator.incrementAndGet());
         receivedResponses.put(sendPingsHandler.id(), ConcurrentCollections.<DiscoveryNode, PingResponse>newConcurrentMap());
         sendPings(timeout, null, sendPingsHandler);
@@ -235,6 +261,189 @@ public class UnicastTaoPing implements TaoPing {
         }
     }
 
+    /**
+     * Connects to and pings all hosts at once, and completes as soon as a quorum of hosts answered,
+     * all hosts answered or failed, or the timeout passed.
+     */
+    class ParallelPing {
+
+        private final int id;
+
+        private final PingListener listener;
+
+        private final TimeValue timeout;
+
+        private final TimeValue hostTimeout;
+
+        private final ConcurrentMap<DiscoveryNode, PingResponse> responses = ConcurrentCollections.newConcurrentMap();
+
+        // the hosts we connected to, and the node that answered on each of them
+        private final Set<DiscoveryNode> connected = ConcurrentCollections.newConcurrentSet();
+
+        private final ConcurrentMap<DiscoveryNode, DiscoveryNode> answeredBy = ConcurrentCollections.newConcurrentMap();
+
+        private final AtomicInteger answered = new AtomicInteger();
+
+        private final AtomicInteger completed = new AtomicInteger();
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private volatile int hosts;
+
+        private volatile int required;
+
+        private volatile ExecutorService executor;
+
+        ParallelPing(int id, PingListener listener, TimeValue timeout) {
+            this.id = id;
+            this.listener = listener;
+            this.timeout = timeout;
+            this.hostTimeout = UnicastTaoPing.this.hostTimeout != null ? UnicastTaoPing.this.hostTimeout : timeout;
+        }
+
+        void start() {
+            final UnicastPingRequest pingRequest = new UnicastPingRequest();
+            pingRequest.id = id;
+            pingRequest.timeout = timeout;
+            pingRequest.pingResponse = new PingResponse(localNode, clusterName);
+
+            List<DiscoveryNode> nodesToPing = newArrayList(nodes);
+            for (UnicastHostsProvider provider : hostsProviders) {
+                nodesToPing.addAll(provider.buildDynamicNodes());
+            }
+            hosts = nodesToPing.size();
+            required = quorum > 0 ? Math.min(quorum, hosts) : hosts / 2 + 1;
+            if (hosts == 0) {
+                complete();
+                return;
+            }
+            threadPool.schedule(timeout, TransportThreadPool.Names.GENERIC, new Runnable() {
+                public void run() {
+                    complete();
+                }
+            });
+            ThreadFactory threadFactory = ClientEsExecutors.daemonThreadFactory(settings, "[unicast_connect]");
+            executor = ClientEsExecutors.newScalingExecutorService(0, hosts, 60, TimeUnit.SECONDS, threadFactory);
+            for (final DiscoveryNode node : nodesToPing) {
+                if (transportService.nodeConnected(node)) {
+                    sendPing(pingRequest, node);
+                    continue;
+                }
+                executor.execute(new Runnable() {
+                    public void run() {
+                        long start = System.currentTimeMillis();
+                        try {
+                            logger.trace("[{}] connecting to {}", id, node);
+                            if (reuseConnections) {
+                                transportService.connectToNode(node);
+                            } else {
+                                transportService.connectToNodeLight(node);
+                            }
+                        } catch (ConnectTransportException e) {
+                            logger.trace("[{}] failed to connect to {}", e, id, node);
+                            hostCompleted(false);
+                            return;
+                        }
+                        connected.add(node);
+                        if (done.get()) {
+                            // completed while we were connecting
+                            transportService.disconnectFromNode(node);
+                            return;
+                        }
+                        if (System.currentTimeMillis() - start > hostTimeout.millis()) {
+                            logger.trace("[{}] connect to {} took longer than [{}], bailing", id, node, hostTimeout);
+                            hostCompleted(false);
+                            return;
+                        }
+                        sendPing(pingRequest, node);
+                    }
+                });
+            }
+        }
+
+        private void sendPing(UnicastPingRequest pingRequest, final DiscoveryNode node) {
+            logger.trace("[{}] sending to {}", id, node);
+            transportService.sendRequest(node, UnicastPingRequestHandler.ACTION, pingRequest, TransportRequestOptions.options().withTimeout(hostTimeout), new BaseTransportResponseHandler<UnicastPingResponse>() {
+
+                public UnicastPingResponse newInstance() {
+                    return new UnicastPingResponse();
+                }
+
+                public String executor() {
+                    return TransportThreadPool.Names.SAME;
+                }
+
+                public void handleResponse(UnicastPingResponse response) {
+                    logger.trace("[{}] received response from {}: {}", id, node, Arrays.toString(response.pingResponses));
+                    boolean valid = false;
+                    for (PingResponse pingResponse : response.pingResponses) {
+                        if (pingResponse.target().id().equals(localNode.id())) {
+                            continue;
+                        }
+                        if (!pingResponse.clusterName().equals(clusterName)) {
+                            logger.debug("[{}] filtering out response from {}, not same cluster_name [{}]", id, pingResponse.target(), pingResponse.clusterName().value());
+                            continue;
+                        }
+                        responses.put(pingResponse.target(), pingResponse);
+                        valid = true;
+                    }
+                    // the answering node adds itself last
+                    if (valid && response.pingResponses.length > 0) {
+                        PingResponse own = response.pingResponses[response.pingResponses.length - 1];
+                        if (!own.target().id().equals(localNode.id()) && own.clusterName().equals(clusterName)) {
+                            answeredBy.put(node, own.target());
+                        }
+                    }
+                    hostCompleted(valid);
+                }
+
+                public void handleException(TransportException exp) {
+                    if (done.get()) {
+                        // the connection was closed after the ping completed
+                        return;
+                    }
+                    if (exp instanceof ConnectTransportException) {
+                        logger.trace("[{}] failed to connect to {}", exp, id, node);
+                    } else {
+                        logger.warn("[{}] failed to send ping to [{}]", exp, id, node);
+                    }
+                    hostCompleted(false);
+                }
+            });
+        }
+
+        private void hostCompleted(boolean valid) {
+            int answered = valid ? this.answered.incrementAndGet() : this.answered.get();
+            int completed = this.completed.incrementAndGet();
+            if (answered >= required || completed >= hosts) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            logger.trace("[{}] completed with [{}] of [{}] hosts answered", id, answered.get(), hosts);
+            try {
+                listener.onPing(responses.values().toArray(new PingResponse[responses.size()]));
+            } finally {
+                for (DiscoveryNode node : connected) {
+                    DiscoveryNode target = answeredBy.get(node);
+                    if (reuseConnections && target != null && transportService.transferConnection(node, target)) {
+                        logger.trace("[{}] keeping connection to {} for {}", id, node, target);
+                    } else {
+                        logger.trace("[{}] disconnecting from {}", id, node);
+                        transportService.disconnectFromNode(node);
+                    }
+                }
+                if (executor != null) {
+                    executor.shutdown();
+                }
+            }
+        }
+    }
+
     void sendPings(final TimeValue timeout, @Nullable TimeValue waitTime, final SendPingsHandler sendPingsHandler) {
         final UnicastPingRequest pingRequest = new UnicastPingRequest();
         pingRequest.id = sendPingsHandler.id();
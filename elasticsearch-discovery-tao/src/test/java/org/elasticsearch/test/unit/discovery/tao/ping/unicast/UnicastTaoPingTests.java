@@ -80,4 +80,46 @@ public class UnicastTaoPingTests extends Assert {
             threadPool.shutdown();
         }
     }
+
+    @Test
+    public void testParallelPingsReuseConnections() {
+        TransportThreadPool threadPool = new TransportThreadPool();
+        ClusterName clusterName = new ClusterName("test");
+
+        NettyTransport transportA = new ClientNettyTransport(threadPool);
+        final ClientTransportService transportServiceA = new ClientTransportService(transportA, threadPool).start();
+        final DiscoveryNode nodeA = new DiscoveryNode("A", transportServiceA.boundAddress().publishAddress());
+
+        NettyTransport transportB = new ClientNettyTransport(threadPool);
+        final ClientTransportService transportServiceB = new ClientTransportService(transportB, threadPool).start();
+        final DiscoveryNode nodeB = new DiscoveryNode("B", transportServiceB.boundAddress().publishAddress());
+        InetSocketTransportAddress addressB = (InetSocketTransportAddress) transportB.boundAddress().publishAddress();
+
+        Settings settingsA = ImmutableSettings.settingsBuilder()
+                .putArray("discovery.tao.ping.unicast.hosts", addressB.address().getAddress().getHostAddress() + ":" + addressB.address().getPort())
+                .put("discovery.tao.ping.unicast.parallel", true)
+                .build();
+
+        UnicastTaoPing taoPingA = new UnicastTaoPing(settingsA, threadPool, transportServiceA, clusterName, nodeA, null);
+        taoPingA.start();
+
+        UnicastTaoPing taoPingB = new UnicastTaoPing(ImmutableSettings.Builder.EMPTY_SETTINGS, threadPool, transportServiceB, clusterName, nodeB, null);
+        taoPingB.start();
+
+        try {
+            long start = System.currentTimeMillis();
+            TaoPing.PingResponse[] pingResponses = taoPingA.pingAndWait(TimeValue.timeValueSeconds(10));
+            // completes on the first answer instead of waiting for the timeout
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertEquals(pingResponses.length, 1);
+            assertEquals(pingResponses[0].target().id(), "B");
+            assertTrue(transportServiceA.nodeConnected(nodeB));
+        } finally {
+            taoPingA.stop();
+            taoPingB.stop();
+            transportServiceA.close();
+            transportServiceB.close();
+            threadPool.shutdown();
+        }
+    }
 }
@@ -21,6 +21,7 @@ package org.elasticsearch.transport.netty;
 
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.bytes.ChannelBufferBytesReference;
+import org.elasticsearch.common.io.stream.BasicCachedStreamInput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.jboss.netty.buffer.ChannelBuffer;
 
@@ -121,6 +122,25 @@ public class ChannelBufferStreamInput extends StreamInput {
         return buffer.readByte();
     }
 
+    @Override
+    public String readString() throws IOException {
+        int charCount = readVInt();
+        char[] chars = BasicCachedStreamInput.getCharArray(charCount);
+        int readerIndex = buffer.readerIndex();
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            int end = decodeString(buffer.array(), offset + readerIndex, offset + endIndex, chars, charCount);
+            buffer.readerIndex(end - offset);
+        } else {
+            // copy the most the string can take, and skip what it took
+            int length = (int) Math.min(endIndex - readerIndex, 3L * charCount);
+            byte[] bytes = BasicCachedStreamInput.getByteArray(length);
+            buffer.getBytes(readerIndex, bytes, 0, length);
+            buffer.readerIndex(readerIndex + decodeString(bytes, 0, length, chars, charCount));
+        }
+        return new String(chars, 0, charCount);
+    }
+
     @Override
     public void readBytes(byte[] b, int offset, int len) throws IOException {
         int read = read(b, offset, len);
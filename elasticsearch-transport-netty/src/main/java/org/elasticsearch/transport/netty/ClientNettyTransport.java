@@ -19,10 +19,10 @@
 
 package org.elasticsearch.transport.netty;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import org.elasticsearch.ElasticSearchException;
 import org.elasticsearch.ElasticSearchIllegalStateException;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.compress.NettyCompressorFactory;
@@ -42,6 +42,7 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.bytes.NettyBytesArray;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.concurrent.jsr166y.ThreadLocalRandom;
 import org.elasticsearch.monitor.jvm.JvmInfo;
 import org.elasticsearch.transport.*;
 import org.elasticsearch.transport.support.TransportStatus;
@@ -64,17 +65,18 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.channels.CancelledKeyException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.elasticsearch.common.network.TransportNetworkService.TcpSettings.*;
 import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
@@ -87,6 +89,13 @@ import static org.elasticsearch.common.util.concurrent.ClientEsExecutors.daemonT
  * There are 3 types of connections per node, low/med/high. Low if for batch oriented APIs (like recovery or
  * batch) with high payload that will cause regular request. (like search or single index) to take
  * longer. Med is for the typical search / single doc index. And High is for ping type requests (like FD).
+ * <p/>
+ * Connecting to a node opens all its channels at once and does not block connects to other nodes.
+ * Concurrent connects to the same node share one attempt, and requests sent to a node while it
+ * is connecting are queued and written once its channels are open. After a failed connect, further
+ * connects to the node fail fast for a backoff starting at <tt>reconnect_backoff</tt> (defaults to
+ * <tt>100ms</tt>) and doubling up to <tt>reconnect_backoff_max</tt> (defaults to <tt>10s</tt>), with
+ * random jitter so that many clients do not reconnect to a restarted node at the same time.
  */
 public class ClientNettyTransport implements NettyTransport {
 
@@ -153,10 +162,17 @@ public class ClientNettyTransport implements NettyTransport {
 
     private volatile BoundTransportAddress boundAddress;
 
-    private final Object[] connectMutex;
-    // this lock is here to make sure we close this transport and disconnect all the client nodes
-    // connections while no connect operations is going on... (this might help with 100% CPU when stopping the transport?)
-    private final ReadWriteLock globalLock = new ReentrantReadWriteLock();
+    // connects in progress, requests to these nodes are queued until connected
+    final ConcurrentMap<DiscoveryNode, PendingConnection> connectingNodes = newConcurrentMap();
+
+    final ConcurrentMap<DiscoveryNode, Backoff> backoffs = newConcurrentMap();
+
+    final TimeValue reconnectBackoff;
+
+    final TimeValue reconnectBackoffMax;
+
+    // connects completing while stopping close their channels
+    private volatile boolean stopping;
 
     public ClientNettyTransport(ThreadPool threadPool) {
         this(EMPTY_SETTINGS, threadPool, new TransportNetworkService(EMPTY_SETTINGS));
@@ -177,11 +193,6 @@ public class ClientNettyTransport implements NettyTransport {
             System.setProperty("org.jboss.netty.epollBugWorkaround", "true");
         }
 
-        this.connectMutex = new Object[500];
-        for (int i = 0; i < connectMutex.length; i++) {
-            connectMutex[i] = new Object();
-        }
-
         this.workerCount = componentSettings.getAsInt("worker_count", Runtime.getRuntime().availableProcessors() * 2);
         this.bossCount = componentSettings.getAsInt("boss_count", 1);
         this.blockingServer = settings.getAsBoolean("transport.tcp.blocking_server", settings.getAsBoolean(TCP_BLOCKING_SERVER, settings.getAsBoolean(TCP_BLOCKING, false)));
@@ -199,6 +210,8 @@ public class ClientNettyTransport implements NettyTransport {
         this.connectionsPerNodeLow = componentSettings.getAsInt("connections_per_node.low", settings.getAsInt("transport.connections_per_node.low", 2));
         this.connectionsPerNodeMed = componentSettings.getAsInt("connections_per_node.med", settings.getAsInt("transport.connections_per_node.med", 6));
         this.connectionsPerNodeHigh = componentSettings.getAsInt("connections_per_node.high", settings.getAsInt("transport.connections_per_node.high", 1));
+        this.reconnectBackoff = componentSettings.getAsTime("reconnect_backoff", settings.getAsTime("transport.reconnect_backoff", TimeValue.timeValueMillis(100)));
+        this.reconnectBackoffMax = componentSettings.getAsTime("reconnect_backoff_max", settings.getAsTime("transport.reconnect_backoff_max", TimeValue.timeValueSeconds(10)));
 
         this.maxCumulationBufferCapacity = componentSettings.getAsBytesSize("max_cumulation_buffer_capacity", null);
         this.maxCompositeBufferComponents = componentSettings.getAsInt("max_composite_buffer_components", -1);
@@ -249,6 +262,7 @@ public class ClientNettyTransport implements NettyTransport {
     }
 
     public ClientNettyTransport start() throws ElasticSearchException {
+        stopping = false;
         if (blockingClient) {
             clientBootstrap = new ClientBootstrap(new OioClientSocketChannelFactory(Executors.newCachedThreadPool(daemonThreadFactory(settings, "transport_client_worker"))));
         } else {
@@ -400,7 +414,7 @@ public class ClientNettyTransport implements NettyTransport {
         threadPool.generic().execute(new Runnable() {
             
             public void run() {
-                globalLock.writeLock().lock();
+                stopping = true;
                 try {
                     for (Iterator<NodeChannels> it = connectedNodes.values().iterator(); it.hasNext(); ) {
                         NodeChannels nodeChannels = it.next();
@@ -437,7 +451,6 @@ public class ClientNettyTransport implements NettyTransport {
                         clientBootstrap = null;
                     }
                 } finally {
-                    globalLock.writeLock().unlock();
                     latch.countDown();
                 }
             }
@@ -527,7 +540,10 @@ public class ClientNettyTransport implements NettyTransport {
 
     
     public void sendRequest(final DiscoveryNode node, final long requestId, final String action, final TransportRequest request, TransportRequestOptions options) throws IOException, TransportException {
-        Channel targetChannel = nodeChannel(node, options);
+        NodeChannels nodeChannels = connectedNodes.get(node);
+        if (nodeChannels == null && !connectingNodes.containsKey(node)) {
+            throw new NodeNotConnectedException(node, "Node not connected");
+        }
 
         if (compress) {
             options.withCompress(true);
@@ -557,7 +573,20 @@ public class ClientNettyTransport implements NettyTransport {
         ChannelBuffer buffer = ((NettyBytesArray)cachedEntry.bytes().bytes()).toChannelBuffer();
         NettyHeader.writeHeader(buffer, requestId, status, node.version());
 
-        ChannelFuture future = targetChannel.write(buffer);
+        if (nodeChannels == null) {
+            PendingConnection pending = connectingNodes.get(node);
+            if (pending != null && pending.enqueue(new QueuedRequest(requestId, options.type(), buffer, cachedEntry))) {
+                return;
+            }
+            // the connect completed in the meantime
+            nodeChannels = connectedNodes.get(node);
+            if (nodeChannels == null) {
+                NettyCachedStreamOutput.pushEntry(cachedEntry);
+                throw new NodeNotConnectedException(node, "Node not connected");
+            }
+        }
+
+        ChannelFuture future = nodeChannels.channel(options.type()).write(buffer);
         future.addListener(new CacheFutureListener(cachedEntry));
     }
 
@@ -580,185 +609,353 @@ public class ClientNettyTransport implements NettyTransport {
         if (node == null) {
             throw new ConnectTransportException(null, "can't connect to a null node");
         }
-        globalLock.readLock().lock();
-        try {
-            synchronized (connectLock(node.id())) {
+        if (connectedNodes.containsKey(node)) {
+            return;
+        }
+        PendingConnection pending = connectingNodes.get(node);
+        if (pending == null) {
+            Backoff backoff = backoffs.get(node);
+            if (backoff != null) {
+                long remaining = backoff.nextAttempt - System.currentTimeMillis();
+                if (remaining > 0) {
+                    throw new ConnectTransportException(node, "connect failed [" + backoff.failures + "] times, next attempt in ["
+                            + TimeValue.timeValueMillis(remaining) + "]", backoff.cause);
+                }
+            }
+            PendingConnection created = new PendingConnection(node);
+            pending = connectingNodes.putIfAbsent(node, created);
+            if (pending == null) {
+                pending = created;
+                if (connectedNodes.containsKey(node)) {
+                    // connected right before we registered
+                    created.connected(null);
+                    return;
+                }
                 try {
-                    NodeChannels nodeChannels = connectedNodes.get(node);
-                    if (nodeChannels != null) {
-                        return;
-                    }
+                    created.connect(light);
+                } catch (Exception e) {
+                    created.closeAll();
+                    created.failed(new ConnectTransportException(node, "General node connection failure", e));
+                }
+            }
+        }
+        pending.await();
+    }
 
-                    if (light) {
-                        nodeChannels = connectToChannelsLight(node);
-                    } else {
-                        nodeChannels = new NodeChannels(new Channel[connectionsPerNodeLow], new Channel[connectionsPerNodeMed], new Channel[connectionsPerNodeHigh]);
-                        try {
-                            connectToChannels(nodeChannels, node);
-                        } catch (Exception e) {
-                            nodeChannels.close();
-                            throw e;
-                        }
-                    }
+    
+    public boolean transferConnection(DiscoveryNode from, DiscoveryNode to) {
+        if (connectedNodes.containsKey(to) || connectingNodes.containsKey(to)) {
+            return false;
+        }
+        NodeChannels nodeChannels = connectedNodes.remove(from);
+        if (nodeChannels == null) {
+            return false;
+        }
+        if (connectedNodes.putIfAbsent(to, nodeChannels) != null) {
+            // connected to the node in the meantime, drop the transferred channels
+            nodeChannels.close();
+            transportServiceAdapter.raiseNodeDisconnected(from);
+            return false;
+        }
+        // the close listeners of the old node are no-ops now that it is removed
+        nodeChannels.addCloseListener(new ChannelCloseListener(to, nodeChannels));
+        if (logger.isDebugEnabled()) {
+            logger.debug("transferred connection from [{}] to node [{}]", from, to);
+        }
+        transportServiceAdapter.raiseNodeDisconnected(from);
+        transportServiceAdapter.raiseNodeConnected(to);
+        return true;
+    }
 
-                    NodeChannels existing = connectedNodes.putIfAbsent(node, nodeChannels);
-                    if (existing != null) {
-                        // we are already connected to a node, close this ones
-                        nodeChannels.close();
-                    } else {
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("connected to node [{}]", node);
-                        }
-                        transportServiceAdapter.raiseNodeConnected(node);
-                    }
+    
+    public void disconnectFromNode(DiscoveryNode node) {
+        PendingConnection pending = connectingNodes.get(node);
+        if (pending != null) {
+            // as if the connect completed before the disconnect
+            pending.disconnectWhenConnected = true;
+        }
+        disconnected(node, connectedNodes.remove(node));
+    }
 
-                } catch (ConnectTransportException e) {
-                    throw e;
-                } catch (Exception e) {
-                    throw new ConnectTransportException(node, "General node connection failure", e);
-                }
+    private void disconnectFromNode(DiscoveryNode node, NodeChannels nodeChannels) {
+        if (connectedNodes.remove(node, nodeChannels)) {
+            disconnected(node, nodeChannels);
+        }
+    }
+
+    private void disconnected(DiscoveryNode node, NodeChannels nodeChannels) {
+        if (nodeChannels != null) {
+            try {
+                nodeChannels.close();
+            } finally {
+                logger.debug("disconnected from [{}]", node);
+                transportServiceAdapter.raiseNodeDisconnected(node);
             }
-        } finally {
-            globalLock.readLock().unlock();
         }
     }
 
-    private NodeChannels connectToChannelsLight(DiscoveryNode node) {
-        InetSocketAddress address = ((InetSocketTransportAddress) node.address()).address();
-        ChannelFuture connect = clientBootstrap.connect(address);
-        connect.awaitUninterruptibly((long) (connectTimeout.millis() * 1.5));
-        if (!connect.isSuccess()) {
-            throw new ConnectTransportException(node, "connect_timeout[" + connectTimeout + "]", connect.getCause());
+    private class ChannelCloseListener implements ChannelFutureListener {
+
+        private final DiscoveryNode node;
+
+        private final NodeChannels nodeChannels;
+
+        private ChannelCloseListener(DiscoveryNode node, NodeChannels nodeChannels) {
+            this.node = node;
+            this.nodeChannels = nodeChannels;
+        }
+
+        
+        public void operationComplete(ChannelFuture future) throws Exception {
+            disconnectFromNode(node, nodeChannels);
         }
-        Channel[] channels = new Channel[1];
-        channels[0] = connect.getChannel();
-        channels[0].getCloseFuture().addListener(new ChannelCloseListener(node));
-        return new NodeChannels(channels, channels, channels);
     }
 
-    private void connectToChannels(NodeChannels nodeChannels, DiscoveryNode node) {
-        ChannelFuture[] connectLow = new ChannelFuture[nodeChannels.low.length];
-        ChannelFuture[] connectMed = new ChannelFuture[nodeChannels.med.length];
-        ChannelFuture[] connectHigh = new ChannelFuture[nodeChannels.high.length];
-        InetSocketAddress address = ((InetSocketTransportAddress) node.address()).address();
-        for (int i = 0; i < connectLow.length; i++) {
-            connectLow[i] = clientBootstrap.connect(address);
+    /**
+     * The failed connects to a node, cleared by the next successful connect.
+     */
+    static class Backoff {
+
+        final int failures;
+
+        final long nextAttempt;
+
+        final Throwable cause;
+
+        Backoff(int failures, long nextAttempt, Throwable cause) {
+            this.failures = failures;
+            this.nextAttempt = nextAttempt;
+            this.cause = cause;
         }
-        for (int i = 0; i < connectMed.length; i++) {
-            connectMed[i] = clientBootstrap.connect(address);
+    }
+
+    static class QueuedRequest {
+
+        final long requestId;
+
+        final TransportRequestOptions.Type type;
+
+        final ChannelBuffer buffer;
+
+        final NettyCachedStreamOutput.Entry cachedEntry;
+
+        QueuedRequest(long requestId, TransportRequestOptions.Type type, ChannelBuffer buffer, NettyCachedStreamOutput.Entry cachedEntry) {
+            this.requestId = requestId;
+            this.type = type;
+            this.buffer = buffer;
+            this.cachedEntry = cachedEntry;
         }
-        for (int i = 0; i < connectHigh.length; i++) {
-            connectHigh[i] = clientBootstrap.connect(address);
+    }
+
+    /**
+     * A connect in progress. All channels are opened at once, the connect completes when the
+     * last one is open (or failed), without holding a thread.
+     */
+    class PendingConnection implements ChannelFutureListener {
+
+        private final DiscoveryNode node;
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private final AtomicInteger remaining = new AtomicInteger();
+
+        private ChannelFuture[] low;
+
+        private ChannelFuture[] med;
+
+        private ChannelFuture[] high;
+
+        private List<QueuedRequest> queue = new ArrayList<QueuedRequest>();
+
+        private volatile ConnectTransportException failure;
+
+        volatile boolean disconnectWhenConnected;
+
+        PendingConnection(DiscoveryNode node) {
+            this.node = node;
         }
 
-        try {
-            for (int i = 0; i < connectLow.length; i++) {
-                connectLow[i].awaitUninterruptibly((long) (connectTimeout.millis() * 1.5));
-                if (!connectLow[i].isSuccess()) {
-                    throw new ConnectTransportException(node, "connect_timeout[" + connectTimeout + "]", connectLow[i].getCause());
-                }
-                nodeChannels.low[i] = connectLow[i].getChannel();
-                nodeChannels.low[i].getCloseFuture().addListener(new ChannelCloseListener(node));
+        void connect(boolean light) {
+            InetSocketAddress address = ((InetSocketTransportAddress) node.address()).address();
+            if (light) {
+                low = new ChannelFuture[1];
+                med = low;
+                high = low;
+            } else {
+                low = new ChannelFuture[connectionsPerNodeLow];
+                med = new ChannelFuture[connectionsPerNodeMed];
+                high = new ChannelFuture[connectionsPerNodeHigh];
             }
-
-            for (int i = 0; i < connectMed.length; i++) {
-                connectMed[i].awaitUninterruptibly((long) (connectTimeout.millis() * 1.5));
-                if (!connectMed[i].isSuccess()) {
-                    throw new ConnectTransportException(node, "connect_timeout[" + connectTimeout + "]", connectMed[i].getCause());
+            List<ChannelFuture> futures = new ArrayList<ChannelFuture>(low.length + med.length + high.length);
+            for (ChannelFuture[] group : light ? new ChannelFuture[][]{low} : new ChannelFuture[][]{low, med, high}) {
+                for (int i = 0; i < group.length; i++) {
+                    group[i] = clientBootstrap.connect(address);
+                    futures.add(group[i]);
                 }
-                nodeChannels.med[i] = connectMed[i].getChannel();
-                nodeChannels.med[i].getCloseFuture().addListener(new ChannelCloseListener(node));
             }
+            if (futures.isEmpty()) {
+                completed();
+                return;
+            }
+            remaining.set(futures.size());
+            for (ChannelFuture future : futures) {
+                future.addListener(this);
+            }
+        }
 
-            for (int i = 0; i < connectHigh.length; i++) {
-                connectHigh[i].awaitUninterruptibly((long) (connectTimeout.millis() * 1.5));
-                if (!connectHigh[i].isSuccess()) {
-                    throw new ConnectTransportException(node, "connect_timeout[" + connectTimeout + "]", connectHigh[i].getCause());
-                }
-                nodeChannels.high[i] = connectHigh[i].getChannel();
-                nodeChannels.high[i].getCloseFuture().addListener(new ChannelCloseListener(node));
+        
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (remaining.decrementAndGet() != 0) {
+                return;
             }
+            // complete off the I/O thread, closing channels waits for them
+            try {
+                threadPool.generic().execute(new Runnable() {
+                    public void run() {
+                        completed();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                completed();
+            }
+        }
 
-            if (nodeChannels.low.length == 0) {
-                if (nodeChannels.med.length > 0) {
-                    nodeChannels.low = nodeChannels.med;
-                } else {
-                    nodeChannels.low = nodeChannels.high;
+        private void completed() {
+            for (ChannelFuture[] group : new ChannelFuture[][]{low, med, high}) {
+                for (ChannelFuture connect : group) {
+                    if (!connect.isSuccess()) {
+                        closeAll();
+                        failed(new ConnectTransportException(node, "connect_timeout[" + connectTimeout + "]", connect.getCause()));
+                        return;
+                    }
                 }
             }
-            if (nodeChannels.med.length == 0) {
-                if (nodeChannels.high.length > 0) {
-                    nodeChannels.med = nodeChannels.high;
-                } else {
-                    nodeChannels.med = nodeChannels.low;
+            NodeChannels nodeChannels = new NodeChannels(channels(low), channels(med), channels(high));
+            nodeChannels.fillEmptyGroups();
+            NodeChannels existing = connectedNodes.putIfAbsent(node, nodeChannels);
+            if (existing != null) {
+                // we are already connected to a node, close this ones
+                nodeChannels.close();
+                nodeChannels = existing;
+            } else {
+                nodeChannels.addCloseListener(new ChannelCloseListener(node, nodeChannels));
+                if (logger.isDebugEnabled()) {
+                    logger.debug("connected to node [{}]", node);
                 }
+                transportServiceAdapter.raiseNodeConnected(node);
             }
-            if (nodeChannels.high.length == 0) {
-                if (nodeChannels.med.length > 0) {
-                    nodeChannels.high = nodeChannels.med;
-                } else {
-                    nodeChannels.high = nodeChannels.low;
-                }
+            connected(nodeChannels);
+            if (stopping || disconnectWhenConnected) {
+                disconnectFromNode(node, nodeChannels);
             }
-        } catch (RuntimeException e) {
-            // clean the futures
-            for (ChannelFuture future : ImmutableList.<ChannelFuture>builder().add(connectLow).add(connectMed).add(connectHigh).build()) {
-                future.cancel();
-                if (future.getChannel() != null && future.getChannel().isOpen()) {
-                    try {
-                        future.getChannel().close();
-                    } catch (Exception e1) {
-                        // ignore
-                    }
-                }
+        }
+
+        /**
+         * Queues a request until connected, returns <tt>false</tt> if the connect already completed.
+         */
+        synchronized boolean enqueue(QueuedRequest request) {
+            if (queue == null) {
+                return false;
             }
-            throw e;
+            queue.add(request);
+            return true;
         }
-    }
 
-    
-    public void disconnectFromNode(DiscoveryNode node) {
-        synchronized (connectLock(node.id())) {
-            NodeChannels nodeChannels = connectedNodes.remove(node);
-            if (nodeChannels != null) {
-                try {
-                    nodeChannels.close();
-                } finally {
-                    logger.debug("disconnected from [{}]", node);
-                    transportServiceAdapter.raiseNodeDisconnected(node);
+        void connected(@Nullable NodeChannels nodeChannels) {
+            backoffs.remove(node);
+            List<QueuedRequest> queued = complete();
+            for (QueuedRequest request : queued) {
+                // the node may have been disconnected already
+                NodeChannels channels = nodeChannels == null ? connectedNodes.get(node) : nodeChannels;
+                if (channels == null) {
+                    failRequest(request, new NodeNotConnectedException(node, "Node not connected"));
+                    continue;
                 }
+                ChannelFuture future = channels.channel(request.type).write(request.buffer);
+                future.addListener(new CacheFutureListener(request.cachedEntry));
             }
         }
-    }
 
-    private Channel nodeChannel(DiscoveryNode node, TransportRequestOptions options) throws ConnectTransportException {
-        NodeChannels nodeChannels = connectedNodes.get(node);
-        if (nodeChannels == null) {
-            throw new NodeNotConnectedException(node, "Node not connected");
+        void failed(ConnectTransportException e) {
+            this.failure = e;
+            Backoff backoff = backoffs.get(node);
+            int failures = backoff == null ? 1 : backoff.failures + 1;
+            long delay = reconnectBackoff.millis() << Math.min(failures - 1, 30);
+            delay = Math.max(0, Math.min(reconnectBackoffMax.millis(), delay));
+            // half of the delay is random, to spread the reconnects of many clients
+            delay = delay / 2 + (delay > 1 ? ThreadLocalRandom.current().nextLong(delay / 2 + 1) : 0);
+            backoffs.put(node, new Backoff(failures, System.currentTimeMillis() + delay, e.getCause() == null ? e : e.getCause()));
+            for (QueuedRequest request : complete()) {
+                failRequest(request, e);
+            }
         }
-        return nodeChannels.channel(options.type());
-    }
 
-    private Object connectLock(String nodeId) {
-        int hash = nodeId.hashCode();
-        // abs returns Integer.MIN_VALUE, so we need to protect against it...
-        if (hash == Integer.MIN_VALUE) {
-            hash = 0;
+        void await() throws ConnectTransportException {
+            boolean completed;
+            try {
+                completed = latch.await((long) (connectTimeout.millis() * 1.5), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectTransportException(node, "interrupted while connecting", e);
+            }
+            if (!completed) {
+                throw new ConnectTransportException(node, "connect_timeout[" + connectTimeout + "]");
+            }
+            if (failure != null) {
+                throw failure;
+            }
         }
-        return connectMutex[Math.abs(hash) % connectMutex.length];
-    }
 
-    private class ChannelCloseListener implements ChannelFutureListener {
+        private List<QueuedRequest> complete() {
+            List<QueuedRequest> queued;
+            synchronized (this) {
+                queued = queue;
+                queue = null;
+            }
+            connectingNodes.remove(node, this);
+            latch.countDown();
+            return queued == null ? Collections.<QueuedRequest>emptyList() : queued;
+        }
 
-        private final DiscoveryNode node;
+        private void failRequest(QueuedRequest request, final TransportException e) {
+            NettyCachedStreamOutput.pushEntry(request.cachedEntry);
+            final TransportResponseHandler handler = transportServiceAdapter.remove(request.requestId);
+            if (handler != null) {
+                threadPool.generic().execute(new Runnable() {
+                    public void run() {
+                        handler.handleException(e);
+                    }
+                });
+            }
+        }
 
-        private ChannelCloseListener(DiscoveryNode node) {
-            this.node = node;
+        private Channel[] channels(ChannelFuture[] futures) {
+            Channel[] channels = new Channel[futures.length];
+            for (int i = 0; i < futures.length; i++) {
+                channels[i] = futures[i].getChannel();
+            }
+            return channels;
         }
 
-        
-        public void operationComplete(ChannelFuture future) throws Exception {
-            disconnectFromNode(node);
+        void closeAll() {
+            for (ChannelFuture[] group : new ChannelFuture[][]{low, med, high}) {
+                if (group == null) {
+                    continue;
+                }
+                for (ChannelFuture future : group) {
+                    if (future == null) {
+                        continue;
+                    }
+                    future.cancel();
+                    if (future.getChannel() != null && future.getChannel().isOpen()) {
+                        try {
+                            future.getChannel().close();
+                        } catch (Exception e) {
+                            // ignore
+                        }
+                    }
+                }
+            }
         }
     }
 
@@ -777,6 +974,33 @@ public class ClientNettyTransport implements NettyTransport {
             this.high = high;
         }
 
+        /**
+         * Uses the channels of another group for groups without channels.
+         */
+        void fillEmptyGroups() {
+            if (low.length == 0) {
+                if (med.length > 0) {
+                    low = med;
+                } else {
+                    low = high;
+                }
+            }
+            if (med.length == 0) {
+                if (high.length > 0) {
+                    med = high;
+                } else {
+                    med = low;
+                }
+            }
+            if (high.length == 0) {
+                if (med.length > 0) {
+                    high = med;
+                } else {
+                    high = low;
+                }
+            }
+        }
+
         public boolean hasChannel(Channel channel) {
             return hasChannel(channel, low) || hasChannel(channel, med) || hasChannel(channel, high);
         }
@@ -790,6 +1014,18 @@ public class ClientNettyTransport implements NettyTransport {
             return false;
         }
 
+        void addCloseListener(ChannelFutureListener listener) {
+            Set<Channel> channels = Collections.newSetFromMap(new IdentityHashMap<Channel, Boolean>());
+            Collections.addAll(channels, low);
+            Collections.addAll(channels, med);
+            Collections.addAll(channels, high);
+            for (Channel channel : channels) {
+                if (channel != null) {
+                    channel.getCloseFuture().addListener(listener);
+                }
+            }
+        }
+
         public Channel channel(TransportRequestOptions.Type type) {
             if (type == TransportRequestOptions.Type.MED) {
                 return med[Math.abs(medCounter.incrementAndGet()) % med.length];
@@ -69,6 +69,13 @@ public interface Transport {
      */
     void connectToNodeLight(DiscoveryNode node) throws ConnectTransportException;
 
+    /**
+     * Moves the connection to a node over to another node, for example from a seed address to
+     * the node that answered on it, so the connection is reused instead of closed. Returns
+     * <tt>false</tt> if not connected to <tt>from</tt>, or already connected to <tt>to</tt>.
+     */
+    boolean transferConnection(DiscoveryNode from, DiscoveryNode to);
+
     /**
      * Disconnected from the given node, if not connected, will do nothing.
      */
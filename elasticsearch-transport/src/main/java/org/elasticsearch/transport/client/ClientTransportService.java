@@ -156,6 +156,10 @@ public class ClientTransportService {
         transport.connectToNodeLight(node);
     }
 
+    public boolean transferConnection(DiscoveryNode from, DiscoveryNode to) {
+        return transport.transferConnection(from, to);
+    }
+
     public void disconnectFromNode(DiscoveryNode node) {
         transport.disconnectFromNode(node);
     }
@@ -148,6 +148,23 @@ public class LocalClientTransport implements Transport {
     }
 
     
+    public boolean transferConnection(DiscoveryNode from, DiscoveryNode to) {
+        synchronized (this) {
+            if (connectedNodes.containsKey(to)) {
+                return false;
+            }
+            LocalClientTransport targetTransport = connectedNodes.remove(from);
+            if (targetTransport == null) {
+                return false;
+            }
+            connectedNodes.put(to, targetTransport);
+            transportServiceAdapter.raiseNodeDisconnected(from);
+            transportServiceAdapter.raiseNodeConnected(to);
+            return true;
+        }
+    }
+
+    
     public void disconnectFromNode(DiscoveryNode node) {
         synchronized (this) {
             LocalClientTransport removed = connectedNodes.remove(node);